@@ -41,6 +41,7 @@ import org.apache.beam.sdk.coders.ListCoder;
 import org.apache.beam.sdk.state.BagState;
 import org.apache.beam.sdk.state.CombiningState;
 import org.apache.beam.sdk.state.MapState;
+import org.apache.beam.sdk.state.OrderedListState;
 import org.apache.beam.sdk.state.ReadableState;
 import org.apache.beam.sdk.state.SetState;
 import org.apache.beam.sdk.state.State;
@@ -109,6 +110,13 @@ public class ApexStateInternals<K> implements StateInternals {
           String.format("%s is not supported", SetState.class.getSimpleName()));
     }
 
+    @Override
+    public <T> OrderedListState<T> bindOrderedList(
+        StateTag<OrderedListState<T>> address, Coder<T> elemCoder) {
+      throw new UnsupportedOperationException(
+          String.format("%s is not supported", OrderedListState.class.getSimpleName()));
+    }
+
     @Override
     public <KeyT, ValueT> MapState<KeyT, ValueT> bindMap(
         StateTag<MapState<KeyT, ValueT>> spec,
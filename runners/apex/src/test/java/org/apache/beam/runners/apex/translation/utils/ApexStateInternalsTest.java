@@ -75,6 +75,10 @@ public class ApexStateInternalsTest {
     @Ignore
     public void testMap() {}
 
+    @Override
+    @Ignore
+    public void testOrderedList() {}
+
     @Override
     @Ignore
     public void testSetReadable() {}
@@ -52,6 +52,7 @@ import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.KvCoder;
 import org.apache.beam.sdk.coders.VoidCoder;
 import org.apache.beam.sdk.runners.AppliedPTransform;
+import org.apache.beam.sdk.state.OrderedListState;
 import org.apache.beam.sdk.state.StateSpec;
 import org.apache.beam.sdk.state.StateSpecs;
 import org.apache.beam.sdk.state.TimeDomain;
@@ -599,6 +600,13 @@ public class ParDoTranslation {
                         .setElementCoderId(registerCoderOrThrow(components, elementCoder)))
                 .build();
           }
+
+          @Override
+          public RunnerApi.StateSpec dispatchOrderedList(Coder<?> elementCoder) {
+            // The model has no ordered list state yet, so the SDK harness can't provide one
+            throw new UnsupportedOperationException(
+                String.format("%s is not supported", OrderedListState.class.getSimpleName()));
+          }
         });
   }
 
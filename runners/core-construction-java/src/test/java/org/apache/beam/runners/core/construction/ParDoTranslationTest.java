@@ -418,4 +418,15 @@ public class ParDoTranslationTest {
       assertTrue(payload.getRequestsFinalization());
     }
   }
+
+  /** Tests for the state specs which the portable translation rejects. */
+  @RunWith(JUnit4.class)
+  public static class UnsupportedStateTranslation {
+    @Test(expected = UnsupportedOperationException.class)
+    public void testOrderedListStateIsRejected() throws Exception {
+      SdkComponents sdkComponents = SdkComponents.create();
+      sdkComponents.registerEnvironment(Environments.createDockerEnvironment("java"));
+      ParDoTranslation.translateStateSpec(StateSpecs.orderedList(VarIntCoder.of()), sdkComponents);
+    }
+  }
 }
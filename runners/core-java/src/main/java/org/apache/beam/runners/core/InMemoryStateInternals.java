@@ -24,8 +24,10 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import javax.annotation.Nullable;
 import org.apache.beam.runners.core.StateTag.StateBinder;
 import org.apache.beam.sdk.coders.Coder;
@@ -33,6 +35,7 @@ import org.apache.beam.sdk.coders.CoderException;
 import org.apache.beam.sdk.state.BagState;
 import org.apache.beam.sdk.state.CombiningState;
 import org.apache.beam.sdk.state.MapState;
+import org.apache.beam.sdk.state.OrderedListState;
 import org.apache.beam.sdk.state.ReadableState;
 import org.apache.beam.sdk.state.ReadableStates;
 import org.apache.beam.sdk.state.SetState;
@@ -46,6 +49,7 @@ import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
 import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.sdk.util.CombineFnUtil;
+import org.apache.beam.sdk.values.TimestampedValue;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableSet;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
@@ -131,6 +135,12 @@ public class InMemoryStateInternals<K> implements StateInternals {
       return new InMemorySet<>(elemCoder);
     }
 
+    @Override
+    public <T> OrderedListState<T> bindOrderedList(
+        StateTag<OrderedListState<T>> spec, Coder<T> elemCoder) {
+      return new InMemoryOrderedList<>(elemCoder);
+    }
+
     @Override
     public <KeyT, ValueT> MapState<KeyT, ValueT> bindMap(
         StateTag<MapState<KeyT, ValueT>> spec,
@@ -519,6 +529,103 @@ public class InMemoryStateInternals<K> implements StateInternals {
     }
   }
 
+  /** An {@link InMemoryState} implementation of {@link OrderedListState}. */
+  public static final class InMemoryOrderedList<T>
+      implements OrderedListState<T>, InMemoryState<InMemoryOrderedList<T>> {
+    private final Coder<T> elemCoder;
+    // The values of each timestamp, in the order they were added
+    private NavigableMap<Instant, List<T>> contents = new TreeMap<>();
+
+    public InMemoryOrderedList(Coder<T> elemCoder) {
+      this.elemCoder = elemCoder;
+    }
+
+    @Override
+    public void clear() {
+      // Hot-swapped like the contents of InMemoryBag, so that previous reads are not changed.
+      contents = new TreeMap<>();
+    }
+
+    @Override
+    public InMemoryOrderedList<T> readLater() {
+      return this;
+    }
+
+    @Override
+    public Iterable<TimestampedValue<T>> read() {
+      return toTimestampedValues(contents);
+    }
+
+    @Override
+    public Iterable<TimestampedValue<T>> readRange(Instant minTimestamp, Instant limitTimestamp) {
+      if (!minTimestamp.isBefore(limitTimestamp)) {
+        return ImmutableList.of();
+      }
+      return toTimestampedValues(contents.subMap(minTimestamp, true, limitTimestamp, false));
+    }
+
+    private static <T> Iterable<TimestampedValue<T>> toTimestampedValues(
+        Map<Instant, List<T>> range) {
+      ImmutableList.Builder<TimestampedValue<T>> values = ImmutableList.builder();
+      for (Map.Entry<Instant, List<T>> entry : range.entrySet()) {
+        for (T value : entry.getValue()) {
+          values.add(TimestampedValue.of(value, entry.getKey()));
+        }
+      }
+      return values.build();
+    }
+
+    @Override
+    public void clearRange(Instant minTimestamp, Instant limitTimestamp) {
+      if (minTimestamp.isBefore(limitTimestamp)) {
+        contents.subMap(minTimestamp, true, limitTimestamp, false).clear();
+      }
+    }
+
+    @Override
+    public InMemoryOrderedList<T> readRangeLater(Instant minTimestamp, Instant limitTimestamp) {
+      return this;
+    }
+
+    @Override
+    public void add(TimestampedValue<T> value) {
+      contents.computeIfAbsent(value.getTimestamp(), t -> new ArrayList<>()).add(value.getValue());
+    }
+
+    @Override
+    public boolean isCleared() {
+      return contents.isEmpty();
+    }
+
+    @Override
+    public ReadableState<Boolean> isEmpty() {
+      return new ReadableState<Boolean>() {
+        @Override
+        public ReadableState<Boolean> readLater() {
+          return this;
+        }
+
+        @Override
+        public Boolean read() {
+          return contents.isEmpty();
+        }
+      };
+    }
+
+    @Override
+    public InMemoryOrderedList<T> copy() {
+      InMemoryOrderedList<T> that = new InMemoryOrderedList<>(elemCoder);
+      for (Map.Entry<Instant, List<T>> entry : this.contents.entrySet()) {
+        List<T> values = new ArrayList<>(entry.getValue().size());
+        for (T value : entry.getValue()) {
+          values.add(uncheckedClone(elemCoder, value));
+        }
+        that.contents.put(entry.getKey(), values);
+      }
+      return that;
+    }
+  }
+
   /** An {@link InMemoryState} implementation of {@link MapState}. */
   public static final class InMemoryMap<K, V>
       implements MapState<K, V>, InMemoryState<InMemoryMap<K, V>> {
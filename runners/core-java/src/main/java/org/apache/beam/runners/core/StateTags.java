@@ -25,6 +25,7 @@ import org.apache.beam.sdk.coders.CoderRegistry;
 import org.apache.beam.sdk.state.BagState;
 import org.apache.beam.sdk.state.CombiningState;
 import org.apache.beam.sdk.state.MapState;
+import org.apache.beam.sdk.state.OrderedListState;
 import org.apache.beam.sdk.state.SetState;
 import org.apache.beam.sdk.state.State;
 import org.apache.beam.sdk.state.StateBinder;
@@ -76,6 +77,12 @@ public class StateTags {
         return binder.bindSet(tagForSpec(id, spec), elemCoder);
       }
 
+      @Override
+      public <T> OrderedListState<T> bindOrderedList(
+          String id, StateSpec<OrderedListState<T>> spec, Coder<T> elemCoder) {
+        return binder.bindOrderedList(tagForSpec(id, spec), elemCoder);
+      }
+
       @Override
       public <KeyT, ValueT> MapState<KeyT, ValueT> bindMap(
           String id,
@@ -184,6 +191,14 @@ public class StateTags {
     return new SimpleStateTag<>(new StructuredId(id), StateSpecs.bag(elemCoder));
   }
 
+  /**
+   * Create a state tag for values sorted by timestamp, which is optimized for adding values and
+   * reading or clearing ranges of timestamps.
+   */
+  public static <T> StateTag<OrderedListState<T>> orderedList(String id, Coder<T> elemCoder) {
+    return new SimpleStateTag<>(new StructuredId(id), StateSpecs.orderedList(elemCoder));
+  }
+
   /** Create a state spec that supporting for {@link java.util.Set} like access patterns. */
   public static <T> StateTag<SetState<T>> set(String id, Coder<T> elemCoder) {
     return new SimpleStateTag<>(new StructuredId(id), StateSpecs.set(elemCoder));
@@ -43,6 +43,7 @@ import org.apache.beam.sdk.state.BagState;
 import org.apache.beam.sdk.state.CombiningState;
 import org.apache.beam.sdk.state.GroupingState;
 import org.apache.beam.sdk.state.MapState;
+import org.apache.beam.sdk.state.OrderedListState;
 import org.apache.beam.sdk.state.ReadableState;
 import org.apache.beam.sdk.state.SetState;
 import org.apache.beam.sdk.state.ValueState;
@@ -52,6 +53,7 @@ import org.apache.beam.sdk.transforms.Sum;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.transforms.windowing.IntervalWindow;
 import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
+import org.apache.beam.sdk.values.TimestampedValue;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
 import org.hamcrest.Matchers;
 import org.joda.time.Instant;
@@ -80,6 +82,8 @@ public abstract class StateInternalsTest {
       StateTags.set("stringSet", StringUtf8Coder.of());
   private static final StateTag<MapState<String, Integer>> STRING_MAP_ADDR =
       StateTags.map("stringMap", StringUtf8Coder.of(), VarIntCoder.of());
+  private static final StateTag<OrderedListState<String>> STRING_ORDERED_LIST_ADDR =
+      StateTags.orderedList("stringOrderedList", StringUtf8Coder.of());
   private static final StateTag<WatermarkHoldState> WATERMARK_EARLIEST_ADDR =
       StateTags.watermarkStateInternal("watermark", TimestampCombiner.EARLIEST);
   private static final StateTag<WatermarkHoldState> WATERMARK_LATEST_ADDR =
@@ -394,6 +398,48 @@ public abstract class StateInternalsTest {
     assertThat(underTest.state(NAMESPACE_1, STRING_MAP_ADDR), equalTo(value));
   }
 
+  @Test
+  public void testOrderedList() throws Exception {
+    OrderedListState<String> value = underTest.state(NAMESPACE_1, STRING_ORDERED_LIST_ADDR);
+
+    // State instances are cached, but depend on the namespace.
+    assertThat(value, equalTo(underTest.state(NAMESPACE_1, STRING_ORDERED_LIST_ADDR)));
+    assertThat(value, not(equalTo(underTest.state(NAMESPACE_2, STRING_ORDERED_LIST_ADDR))));
+
+    assertThat(value.read(), Matchers.emptyIterable());
+    assertThat(value.isEmpty().read(), Matchers.is(true));
+
+    TimestampedValue<String> negative = TimestampedValue.of("negative", new Instant(-5));
+    TimestampedValue<String> first = TimestampedValue.of("first", new Instant(1));
+    TimestampedValue<String> tie = TimestampedValue.of("tie", new Instant(1));
+    TimestampedValue<String> middle = TimestampedValue.of("middle", new Instant(10));
+    TimestampedValue<String> last = TimestampedValue.of("last", new Instant(20));
+    value.add(last);
+    value.add(first);
+    value.add(middle);
+    value.add(negative);
+    value.add(tie);
+    assertThat(value.isEmpty().read(), Matchers.is(false));
+    assertThat(value.read(), Matchers.contains(negative, first, tie, middle, last));
+
+    // the range includes its minimum and excludes its limit
+    assertThat(
+        value.readRange(new Instant(1), new Instant(20)), Matchers.contains(first, tie, middle));
+    value.readRangeLater(new Instant(1), new Instant(2));
+    assertThat(value.readRange(new Instant(1), new Instant(2)), Matchers.contains(first, tie));
+    assertThat(value.readRange(new Instant(2), new Instant(10)), Matchers.emptyIterable());
+
+    value.clearRange(new Instant(0), new Instant(10));
+    assertThat(value.read(), Matchers.contains(negative, middle, last));
+    value.clearRange(new Instant(-10), new Instant(-4));
+    assertThat(value.readLater().read(), Matchers.contains(middle, last));
+
+    value.clear();
+    assertThat(value.read(), Matchers.emptyIterable());
+    assertThat(value.isEmpty().read(), Matchers.is(true));
+    assertThat(underTest.state(NAMESPACE_1, STRING_ORDERED_LIST_ADDR), equalTo(value));
+  }
+
   @Test
   public void testCombiningValue() throws Exception {
 
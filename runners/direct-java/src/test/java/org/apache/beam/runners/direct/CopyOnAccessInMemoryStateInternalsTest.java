@@ -17,6 +17,7 @@
  */
 package org.apache.beam.runners.direct;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.emptyIterable;
 import static org.hamcrest.Matchers.equalTo;
@@ -42,6 +43,7 @@ import org.apache.beam.sdk.state.BagState;
 import org.apache.beam.sdk.state.CombiningState;
 import org.apache.beam.sdk.state.GroupingState;
 import org.apache.beam.sdk.state.MapState;
+import org.apache.beam.sdk.state.OrderedListState;
 import org.apache.beam.sdk.state.SetState;
 import org.apache.beam.sdk.state.ValueState;
 import org.apache.beam.sdk.state.WatermarkHoldState;
@@ -50,6 +52,7 @@ import org.apache.beam.sdk.transforms.Combine.CombineFn;
 import org.apache.beam.sdk.transforms.Sum;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
+import org.apache.beam.sdk.values.TimestampedValue;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Lists;
 import org.joda.time.Instant;
 import org.junit.Rule;
@@ -191,6 +194,34 @@ public class CopyOnAccessInMemoryStateInternalsTest {
     assertThat(underlyingValue.read(), equalTo(reReadUnderlyingValue.read()));
   }
 
+  @Test
+  public void testOrderedListStateWithUnderlying() {
+    CopyOnAccessInMemoryStateInternals<String> underlying =
+        CopyOnAccessInMemoryStateInternals.withUnderlying(key, null);
+
+    StateNamespace namespace = new StateNamespaceForTest("foo");
+    StateTag<OrderedListState<Integer>> valueTag = StateTags.orderedList("foo", VarIntCoder.of());
+    OrderedListState<Integer> underlyingValue = underlying.state(namespace, valueTag);
+    assertThat(underlyingValue.read(), emptyIterable());
+
+    underlyingValue.add(TimestampedValue.of(1, new Instant(10)));
+    assertThat(underlyingValue.read(), contains(TimestampedValue.of(1, new Instant(10))));
+
+    CopyOnAccessInMemoryStateInternals<String> internals =
+        CopyOnAccessInMemoryStateInternals.withUnderlying(key, underlying);
+    OrderedListState<Integer> copyOnAccessState = internals.state(namespace, valueTag);
+    assertThat(copyOnAccessState.read(), contains(TimestampedValue.of(1, new Instant(10))));
+
+    copyOnAccessState.add(TimestampedValue.of(4, new Instant(5)));
+    assertThat(
+        copyOnAccessState.read(),
+        contains(TimestampedValue.of(4, new Instant(5)), TimestampedValue.of(1, new Instant(10))));
+    assertThat(underlyingValue.read(), contains(TimestampedValue.of(1, new Instant(10))));
+
+    OrderedListState<Integer> reReadUnderlyingValue = underlying.state(namespace, valueTag);
+    assertThat(underlyingValue.read(), equalTo(reReadUnderlyingValue.read()));
+  }
+
   @Test
   public void testMapStateWithUnderlying() {
     CopyOnAccessInMemoryStateInternals<String> underlying =
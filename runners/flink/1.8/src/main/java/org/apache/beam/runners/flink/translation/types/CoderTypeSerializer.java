@@ -25,22 +25,28 @@ import org.apache.beam.runners.flink.translation.wrappers.DataInputViewWrapper;
 import org.apache.beam.runners.flink.translation.wrappers.DataOutputViewWrapper;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.CoderException;
-import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.common.typeutils.TypeSerializerConfigSnapshot;
 import org.apache.flink.api.common.typeutils.TypeSerializerSchemaCompatibility;
 import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
 import org.apache.flink.core.io.VersionedIOReadableWritable;
+import org.apache.flink.core.memory.DataInputDeserializer;
 import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputSerializer;
 import org.apache.flink.core.memory.DataOutputView;
 
 /**
  * Flink {@link org.apache.flink.api.common.typeutils.TypeSerializer} for Beam {@link
  * org.apache.beam.sdk.coders.Coder Coders}.
+ *
+ * <p>The serializer reuses its stream wrappers and copy buffers across calls, so it is stateful and
+ * {@link #duplicate()} returns a new instance for each thread, as Flink expects.
  */
 public class CoderTypeSerializer<T> extends TypeSerializer<T> {
 
+  private static final int INITIAL_COPY_BUFFER_SIZE = 64;
+
   private final Coder<T> coder;
 
   /**
@@ -52,6 +58,11 @@ public class CoderTypeSerializer<T> extends TypeSerializer<T> {
   @Nullable
   private final SerializablePipelineOptions pipelineOptions;
 
+  @Nullable private transient DataInputViewWrapper inputWrapper;
+  @Nullable private transient DataOutputViewWrapper outputWrapper;
+  @Nullable private transient DataOutputSerializer copyOutput;
+  @Nullable private transient DataInputDeserializer copyInput;
+
   public CoderTypeSerializer(Coder<T> coder) {
     Preconditions.checkNotNull(coder);
     this.coder = coder;
@@ -82,9 +93,16 @@ public class CoderTypeSerializer<T> extends TypeSerializer<T> {
 
   @Override
   public T copy(T t) {
+    if (copyOutput == null) {
+      copyOutput = new DataOutputSerializer(INITIAL_COPY_BUFFER_SIZE);
+      copyInput = new DataInputDeserializer();
+    }
     try {
-      return CoderUtils.clone(coder, t);
-    } catch (CoderException e) {
+      copyOutput.clear();
+      serialize(t, copyOutput);
+      copyInput.setBuffer(copyOutput.getSharedBuffer(), 0, copyOutput.length());
+      return deserialize(copyInput);
+    } catch (IOException e) {
       throw new RuntimeException("Could not clone.", e);
     }
   }
@@ -101,14 +119,22 @@ public class CoderTypeSerializer<T> extends TypeSerializer<T> {
 
   @Override
   public void serialize(T t, DataOutputView dataOutputView) throws IOException {
-    DataOutputViewWrapper outputWrapper = new DataOutputViewWrapper(dataOutputView);
+    if (outputWrapper == null) {
+      outputWrapper = new DataOutputViewWrapper(dataOutputView);
+    } else {
+      outputWrapper.setOutputView(dataOutputView);
+    }
     coder.encode(t, outputWrapper);
   }
 
   @Override
   public T deserialize(DataInputView dataInputView) throws IOException {
     try {
-      DataInputViewWrapper inputWrapper = new DataInputViewWrapper(dataInputView);
+      if (inputWrapper == null) {
+        inputWrapper = new DataInputViewWrapper(dataInputView);
+      } else {
+        inputWrapper.setInputView(dataInputView);
+      }
       return coder.decode(inputWrapper);
     } catch (CoderException e) {
       Throwable cause = e.getCause();
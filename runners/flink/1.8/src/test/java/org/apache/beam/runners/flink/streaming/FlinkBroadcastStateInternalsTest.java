@@ -70,6 +70,10 @@ public class FlinkBroadcastStateInternalsTest extends StateInternalsTest {
   @Ignore
   public void testMap() {}
 
+  @Override
+  @Ignore
+  public void testOrderedList() {}
+
   @Override
   @Ignore
   public void testWatermarkEarliestState() {}
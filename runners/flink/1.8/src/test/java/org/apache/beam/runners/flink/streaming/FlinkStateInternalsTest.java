@@ -31,7 +31,10 @@ import org.apache.beam.runners.core.StateTags;
 import org.apache.beam.runners.flink.translation.wrappers.streaming.state.FlinkStateInternals;
 import org.apache.beam.sdk.coders.CoderException;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.state.CombiningState;
 import org.apache.beam.sdk.state.WatermarkHoldState;
+import org.apache.beam.sdk.transforms.Sum;
 import org.apache.beam.sdk.transforms.windowing.IntervalWindow;
 import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
 import org.apache.beam.sdk.util.CoderUtils;
@@ -121,6 +124,36 @@ public class FlinkStateInternalsTest extends StateInternalsTest {
     assertThat(stateInternals.watermarkHold(), is(noHold));
   }
 
+  @Test
+  public void testAppendOnlyCombiningState() throws Exception {
+    KeyedStateBackend<ByteBuffer> keyedStateBackend = createStateBackend();
+    FlinkStateInternals stateInternals =
+        new FlinkStateInternals<>(keyedStateBackend, StringUtf8Coder.of(), true);
+
+    StateTag<CombiningState<Integer, int[], Integer>> stateTag =
+        StateTags.combiningValueFromInputInternal("sum", VarIntCoder.of(), Sum.ofIntegers());
+    CombiningState<Integer, int[], Integer> sum =
+        stateInternals.state(StateNamespaces.global(), stateTag);
+
+    assertThat(sum.isEmpty().read(), is(true));
+    assertThat(sum.read(), is(0));
+
+    sum.add(1);
+    sum.add(2);
+    sum.addAccum(new int[] {3});
+    assertThat(sum.isEmpty().read(), is(false));
+    assertThat(sum.read(), is(6));
+
+    // the accumulators were merged by the read
+    sum.add(4);
+    assertThat(sum.read(), is(10));
+    assertThat(sum.getAccum()[0], is(10));
+
+    sum.clear();
+    assertThat(sum.isEmpty().read(), is(true));
+    assertThat(sum.read(), is(0));
+  }
+
   public static KeyedStateBackend<ByteBuffer> createStateBackend() throws Exception {
     MemoryStateBackend backend = new MemoryStateBackend();
 
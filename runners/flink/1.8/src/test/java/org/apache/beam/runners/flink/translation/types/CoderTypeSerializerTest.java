@@ -19,11 +19,14 @@ package org.apache.beam.runners.flink.translation.types;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.Collections;
 import org.apache.beam.sdk.coders.AtomicCoder;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
@@ -57,6 +60,24 @@ public class CoderTypeSerializerTest implements Serializable {
     testWriteAndReadConfigSnapshot(concreteClassCoder);
   }
 
+  @Test
+  public void shouldCopyWithReusedBuffers() throws Exception {
+    CoderTypeSerializer<String> serializer = new CoderTypeSerializer<>(StringUtf8Coder.of());
+
+    String value = "value";
+    String copy = serializer.copy(value);
+    assertThat(copy, is(value));
+    assertThat(copy, not(sameInstance(value)));
+    // a longer value than the previous one grows the buffer
+    String longer = String.join("", Collections.nCopies(100, value));
+    assertThat(serializer.copy(longer), is(longer));
+    assertThat(serializer.copy(""), is(""));
+
+    ComparatorTestBase.TestOutputView outView = new ComparatorTestBase.TestOutputView();
+    serializer.serialize(longer, outView);
+    assertThat(serializer.deserialize(outView.getInputView()), is(longer));
+  }
+
   private void testWriteAndReadConfigSnapshot(Coder<String> coder) throws IOException {
     CoderTypeSerializer<String> serializer = new CoderTypeSerializer<>(coder);
 
@@ -186,6 +186,16 @@ public interface FlinkPipelineOptions
 
   void setMaxBundleTimeMills(Long time);
 
+  @Description(
+      "The maximum number of bundles of a portable stage without state and timers that the SDK "
+          + "harness processes at the same time. With more than one bundle, bundles are finished "
+          + "in the background while the next bundle is filled, the bundle size adapts to the "
+          + "processing time of the bundles, and checkpoints only wait for the oldest bundle.")
+  @Default.Integer(1)
+  Integer getMaxConcurrentBundles();
+
+  void setMaxConcurrentBundles(Integer maxConcurrentBundles);
+
   /**
    * Whether to shutdown sources when their watermark reaches {@code +Inf}. For production use cases
    * you want this to be disabled because Flink will currently (versions {@literal <=} 1.5) stop
@@ -248,4 +258,14 @@ public interface FlinkPipelineOptions
   Boolean isAutoBalanceWriteFilesShardingEnabled();
 
   void setAutoBalanceWriteFilesShardingEnabled(Boolean autoBalanceWriteFilesShardingEnabled);
+
+  @Description(
+      "Flag indicating whether combining state should append the accumulators of its inputs to a "
+          + "list state, which are merged when the state is read. This avoids reading the "
+          + "accumulator on each input with the RocksDB state backend, but the state can't be "
+          + "restored from savepoints taken with the flag set differently.")
+  @Default.Boolean(false)
+  Boolean getAppendOnlyCombiningState();
+
+  void setAppendOnlyCombiningState(Boolean appendOnlyCombiningState);
 }
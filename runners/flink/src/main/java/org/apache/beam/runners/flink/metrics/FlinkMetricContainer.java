@@ -25,6 +25,7 @@ import java.util.Map;
 import org.apache.beam.model.pipeline.v1.MetricsApi.MonitoringInfo;
 import org.apache.beam.runners.core.metrics.MetricsContainerImpl;
 import org.apache.beam.runners.core.metrics.MetricsContainerStepMap;
+import org.apache.beam.runners.fnexecution.control.EnvironmentLoad;
 import org.apache.beam.sdk.metrics.DistributionResult;
 import org.apache.beam.sdk.metrics.GaugeResult;
 import org.apache.beam.sdk.metrics.MetricKey;
@@ -40,6 +41,7 @@ import org.apache.flink.configuration.GlobalConfiguration;
 import org.apache.flink.configuration.MetricOptions;
 import org.apache.flink.metrics.Counter;
 import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -100,6 +102,27 @@ public class FlinkMetricContainer {
     metricsAccumulator.add(metricsContainers);
   }
 
+  /**
+   * Reports the load of the SDK harness environments which process the bundles of the operator, in
+   * the {@code sdkHarnessEnvironments} metric group by index of the environment.
+   */
+  public void registerEnvironmentLoads(List<EnvironmentLoad> environmentLoads) {
+    if (environmentLoads.isEmpty()) {
+      return;
+    }
+    MetricGroup environmentsGroup =
+        runtimeContext.getMetricGroup().addGroup("sdkHarnessEnvironments");
+    for (int i = 0; i < environmentLoads.size(); i++) {
+      EnvironmentLoad load = environmentLoads.get(i);
+      MetricGroup environmentGroup = environmentsGroup.addGroup(String.valueOf(i));
+      environmentGroup.gauge("outstandingBundles", (Gauge<Integer>) load::getOutstandingBundles);
+      environmentGroup.gauge("completedBundles", (Gauge<Long>) load::getCompletedBundles);
+      environmentGroup.gauge(
+          "averageBundleMillis", (Gauge<Double>) load::getAverageBundleMillis);
+      environmentGroup.gauge("busyMillis", (Gauge<Long>) load::getBusyMillis);
+    }
+  }
+
   /**
    * Update this container with metrics from the passed {@link MonitoringInfo}s, and send updates
    * along to Flink's internal metrics framework.
@@ -135,6 +135,7 @@ public class FlinkExecutableStageFunction<InputT> extends AbstractRichFunction
     // TODO: Wire this into the distributed cache and make it pluggable.
     stageContext = contextFactory.get(jobInfo);
     stageBundleFactory = stageContext.getStageBundleFactory(executableStage);
+    metricContainer.registerEnvironmentLoads(stageBundleFactory.getEnvironmentLoads());
     // NOTE: It's safe to reuse the state handler between partitions because each partition uses the
     // same backing runtime context and broadcast variables. We use checkState below to catch errors
     // in backward-incompatible Flink changes.
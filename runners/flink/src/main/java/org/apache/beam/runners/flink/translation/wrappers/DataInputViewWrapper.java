@@ -29,12 +29,17 @@ import org.apache.flink.core.memory.DataInputView;
  */
 public class DataInputViewWrapper extends InputStream {
 
-  private final DataInputView inputView;
+  private DataInputView inputView;
 
   public DataInputViewWrapper(DataInputView inputView) {
     this.inputView = inputView;
   }
 
+  /** Reads from the given view from now on, so that the wrapper can be reused. */
+  public void setInputView(DataInputView inputView) {
+    this.inputView = inputView;
+  }
+
   @Override
   public int read() throws IOException {
     try {
@@ -28,12 +28,17 @@ import org.apache.flink.core.memory.DataOutputView;
  */
 public class DataOutputViewWrapper extends OutputStream {
 
-  private final DataOutputView outputView;
+  private DataOutputView outputView;
 
   public DataOutputViewWrapper(DataOutputView outputView) {
     this.outputView = outputView;
   }
 
+  /** Writes to the given view from now on, so that the wrapper can be reused. */
+  public void setOutputView(DataOutputView outputView) {
+    this.outputView = outputView;
+  }
+
   @Override
   public void write(int b) throws IOException {
     outputView.write(b);
@@ -378,7 +378,10 @@ public class DoFnOperator<InputT, OutputT> extends AbstractStreamOperator<Window
     // StatefulPardo or WindowDoFn
     if (keyCoder != null) {
       keyedStateInternals =
-          new FlinkStateInternals<>((KeyedStateBackend) getKeyedStateBackend(), keyCoder);
+          new FlinkStateInternals<>(
+              (KeyedStateBackend) getKeyedStateBackend(),
+              keyCoder,
+              serializedOptions.get().as(FlinkPipelineOptions.class).getAppendOnlyCombiningState());
 
       if (timerService == null) {
         timerService =
@@ -437,7 +440,8 @@ public class DoFnOperator<InputT, OutputT> extends AbstractStreamOperator<Window
                   windowedInputCoder,
                   windowingStrategy.getWindowFn().windowCoder(),
                   getOperatorStateBackend(),
-                  getKeyedStateBackend());
+                  getKeyedStateBackend(),
+                  getMetricGroup());
     }
     doFnRunner = createWrappingDoFnRunner(doFnRunner, stepContext);
     earlyBindStateIfNeeded();
@@ -471,7 +475,12 @@ public class DoFnOperator<InputT, OutputT> extends AbstractStreamOperator<Window
       if (doFn != null) {
         DoFnSignature signature = DoFnSignatures.getSignature(doFn.getClass());
         FlinkStateInternals.EarlyBinder earlyBinder =
-            new FlinkStateInternals.EarlyBinder(getKeyedStateBackend());
+            new FlinkStateInternals.EarlyBinder(
+                getKeyedStateBackend(),
+                serializedOptions
+                    .get()
+                    .as(FlinkPipelineOptions.class)
+                    .getAppendOnlyCombiningState());
         for (DoFnSignature.StateDeclaration value : signature.stateDeclarations().values()) {
           StateSpec<?> spec =
               (StateSpec<?>) signature.stateDeclarations().get(value.id()).field().get(doFn);
@@ -751,11 +760,19 @@ public class DoFnOperator<InputT, OutputT> extends AbstractStreamOperator<Window
     // for more information.
     //noinspection NonAtomicOperationOnVolatileField
     elementCount++;
-    if (elementCount >= maxBundleSize) {
+    if (elementCount >= getMaxBundleSize()) {
       invokeFinishBundle();
     }
   }
 
+  /**
+   * Returns the number of elements after which the current bundle is finished. Subclasses may
+   * choose smaller bundles than the configured maximum bundle size.
+   */
+  protected long getMaxBundleSize() {
+    return maxBundleSize;
+  }
+
   /** Check whether invoke finishBundle by timeout. */
   private void checkInvokeFinishBundleByTime() {
     long now = getProcessingTimeService().getCurrentProcessingTime();
@@ -795,6 +812,7 @@ public class DoFnOperator<InputT, OutputT> extends AbstractStreamOperator<Window
       while (bundleStarted) {
         invokeFinishBundle();
       }
+      snapshotBundlesInProgress();
       outputManager.closeBuffer();
     } catch (Exception e) {
       // https://jira.apache.org/jira/browse/FLINK-14653
@@ -807,6 +825,13 @@ public class DoFnOperator<InputT, OutputT> extends AbstractStreamOperator<Window
     super.snapshotState(context);
   }
 
+  /**
+   * Called by {@link #snapshotState} once the current bundle was finished, while the outputs are
+   * buffered. Subclasses which finish bundles asynchronously have to either wait for the bundles
+   * still in progress, or add their inputs to the snapshot.
+   */
+  protected void snapshotBundlesInProgress() throws Exception {}
+
   @Override
   public final void notifyCheckpointComplete(long checkpointId) throws Exception {
     super.notifyCheckpointComplete(checkpointId);
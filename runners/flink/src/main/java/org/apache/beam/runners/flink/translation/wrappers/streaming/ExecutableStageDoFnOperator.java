@@ -23,6 +23,7 @@ import static org.apache.flink.util.Preconditions.checkNotNull;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -33,8 +34,14 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
@@ -59,6 +66,7 @@ import org.apache.beam.runners.core.TimerInternals;
 import org.apache.beam.runners.core.construction.Timer;
 import org.apache.beam.runners.core.construction.graph.ExecutableStage;
 import org.apache.beam.runners.core.construction.graph.UserStateReference;
+import org.apache.beam.runners.flink.FlinkPipelineOptions;
 import org.apache.beam.runners.flink.translation.functions.FlinkExecutableStageContextFactory;
 import org.apache.beam.runners.flink.translation.functions.FlinkStreamingSideInputHandlerFactory;
 import org.apache.beam.runners.flink.translation.types.CoderTypeSerializer;
@@ -93,13 +101,16 @@ import org.apache.beam.vendor.grpc.v1p26p0.com.google.protobuf.ByteString;
 import org.apache.beam.vendor.grpc.v1p26p0.io.grpc.StatusRuntimeException;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Charsets;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.beam.vendor.sdk.v2.sdk.extensions.protobuf.ByteStringCoder;
+import org.apache.flink.api.common.state.ListState;
 import org.apache.flink.api.common.state.ListStateDescriptor;
 import org.apache.flink.api.common.typeutils.base.StringSerializer;
 import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyedStateBackend;
+import org.apache.flink.runtime.state.StateInitializationContext;
 import org.apache.flink.streaming.api.operators.InternalTimer;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
@@ -119,6 +130,9 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
 
   private static final Logger LOG = LoggerFactory.getLogger(ExecutableStageDoFnOperator.class);
 
+  /** The period of checking for bundles finished in the background. */
+  private static final long BUNDLE_COMPLETION_CHECK_MILLIS = 10;
+
   private final RunnerApi.ExecutableStagePayload payload;
   private final JobInfo jobInfo;
   private final FlinkExecutableStageContextFactory contextFactory;
@@ -128,6 +142,12 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
   private final ReentrantLock stateBackendLock;
 
   private final boolean isStateful;
+  private final Coder<WindowedValue<InputT>> windowedInputCoder;
+  /**
+   * The maximum number of bundles the SDK harness processes at the same time, which is always 1 for
+   * stages with state or timers.
+   */
+  private final int maxConcurrentBundles;
 
   private transient ExecutableStageContext stageContext;
   private transient StateRequestHandler stateRequestHandler;
@@ -135,6 +155,10 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
   private transient StageBundleFactory stageBundleFactory;
   private transient ExecutableStage executableStage;
   private transient SdkHarnessDoFnRunner<InputT, OutputT> sdkHarnessRunner;
+  /** The inputs of the bundles which were still in progress at the last checkpoint. */
+  private transient ListState<WindowedValue<InputT>> bundlesInProgressState;
+  /** A timer that emits the outputs of the bundles which were finished in the background. */
+  private transient ScheduledFuture<?> checkBundlesCompletedTimer;
 
   /**
    * Watermark held back due to async processing. Volatile due to multiple mutually exclusive
@@ -178,6 +202,11 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
         DoFnSchemaInformation.create(),
         Collections.emptyMap());
     this.isStateful = payload.getUserStatesCount() > 0 || payload.getTimersCount() > 0;
+    this.windowedInputCoder = windowedInputCoder;
+    int maxConcurrentBundles = options.as(FlinkPipelineOptions.class).getMaxConcurrentBundles();
+    Preconditions.checkArgument(
+        maxConcurrentBundles > 0, "The number of concurrent bundles must be at least 1");
+    this.maxConcurrentBundles = isStateful ? 1 : maxConcurrentBundles;
     this.payload = payload;
     this.jobInfo = jobInfo;
     this.contextFactory = contextFactory;
@@ -191,6 +220,17 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
     return stateBackendLock;
   }
 
+  @Override
+  public void initializeState(StateInitializationContext context) throws Exception {
+    super.initializeState(context);
+    // Registered regardless of the number of concurrent bundles to restore any previous inputs
+    bundlesInProgressState =
+        getOperatorStateBackend()
+            .getListState(
+                new ListStateDescriptor<>(
+                    "bundles-in-progress", new CoderTypeSerializer<>(windowedInputCoder)));
+  }
+
   @Override
   public void open() throws Exception {
     executableStage = ExecutableStage.fromPayload(payload);
@@ -223,6 +263,62 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
 
     // This will call {@code createWrappingDoFnRunner} which needs the above dependencies.
     super.open();
+
+    if (flinkMetricContainer != null) {
+      flinkMetricContainer.registerEnvironmentLoads(stageBundleFactory.getEnvironmentLoads());
+    }
+
+    if (maxConcurrentBundles > 1) {
+      checkBundlesCompletedTimer =
+          getProcessingTimeService()
+              .scheduleAtFixedRate(
+                  timestamp -> emitCompletedBundles(),
+                  BUNDLE_COMPLETION_CHECK_MILLIS,
+                  BUNDLE_COMPLETION_CHECK_MILLIS);
+    }
+    // Process the inputs of the bundles which had not been completed at the checkpoint again
+    List<WindowedValue<InputT>> restoredInputs = new ArrayList<>();
+    bundlesInProgressState.get().forEach(restoredInputs::add);
+    bundlesInProgressState.clear();
+    for (WindowedValue<InputT> input : restoredInputs) {
+      processElement(new StreamRecord<>(input));
+    }
+  }
+
+  /**
+   * Emits the outputs of the bundles finished in the background, whose completion may allow the
+   * output watermark to advance.
+   */
+  private void emitCompletedBundles() throws Exception {
+    if (sdkHarnessRunner.emitCompletedBundles()) {
+      processWatermark1(new Watermark(currentInputWatermark));
+    }
+  }
+
+  @Override
+  protected long getMaxBundleSize() {
+    if (maxConcurrentBundles > 1) {
+      return sdkHarnessRunner.getAdaptiveBundleSize();
+    }
+    return super.getMaxBundleSize();
+  }
+
+  @Override
+  protected long getPushbackWatermarkHold() {
+    long watermarkHold = super.getPushbackWatermarkHold();
+    if (sdkHarnessRunner != null) {
+      watermarkHold = Math.min(watermarkHold, sdkHarnessRunner.getBundlesWatermarkHold());
+    }
+    return watermarkHold;
+  }
+
+  @Override
+  protected void snapshotBundlesInProgress() throws Exception {
+    if (maxConcurrentBundles > 1) {
+      // Instead of waiting for all the bundles, the inputs of the later bundles are checkpointed
+      // and processed again on restore. This is only safe because the stage has no state.
+      bundlesInProgressState.update(sdkHarnessRunner.completeOldestBundle());
+    }
   }
 
   private StateRequestHandler getStateRequestHandler(ExecutableStage executableStage) {
@@ -475,6 +571,8 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
     if (stageContext != null) {
       // Remove the reference to stageContext and make stageContext available for garbage
       // collection.
+      Optional.ofNullable(checkBundlesCompletedTimer).ifPresent(timer -> timer.cancel(true));
+      Optional.ofNullable(sdkHarnessRunner).ifPresent(SdkHarnessDoFnRunner::shutdown);
       try (AutoCloseable bundleFactoryCloser = stageBundleFactory;
           AutoCloseable closable = stageContext) {
         // DoFnOperator generates another "bundle" for the final watermark
@@ -509,7 +607,11 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
             outputMap,
             (Coder<BoundedWindow>) windowingStrategy.getWindowFn().windowCoder(),
             this::setTimer,
-            () -> FlinkKeyUtils.decodeKey(getCurrentKey(), keyCoder));
+            () -> FlinkKeyUtils.decodeKey(getCurrentKey(), keyCoder),
+            maxConcurrentBundles,
+            super.getMaxBundleSize(),
+            serializedOptions.get().as(FlinkPipelineOptions.class).getMaxBundleTimeMills(),
+            () -> Math.min(currentInputWatermark, super.getPushbackWatermarkHold()));
 
     return ensureStateDoFnRunner(sdkHarnessRunner, payload, stepContext);
   }
@@ -541,7 +643,15 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
     // gives better throughput due to the bundle not getting cut on
     // every watermark. So we have implemented 2) below.
     //
-    if (sdkHarnessRunner.isBundleInProgress()) {
+    // With concurrent bundles, each bundle holds the output watermark at the input watermark of
+    // its start until it is complete, see getPushbackWatermarkHold().
+    //
+    if (maxConcurrentBundles > 1) {
+      if (mark.getTimestamp() >= BoundedWindow.TIMESTAMP_MAX_VALUE.getMillis()) {
+        invokeFinishBundle();
+        sdkHarnessRunner.completeAllBundles();
+      }
+    } else if (sdkHarnessRunner.isBundleInProgress()) {
       if (mark.getTimestamp() >= BoundedWindow.TIMESTAMP_MAX_VALUE.getMillis()) {
         invokeFinishBundle();
         setPushedBackWatermark(Long.MAX_VALUE);
@@ -586,6 +696,26 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
     private final BiConsumer<WindowedValue<InputT>, TimerInternals.TimerData> timerRegistration;
     private final Supplier<Object> keyForTimer;
 
+    /** The maximum number of bundles in progress, including the current bundle. */
+    private final int maxConcurrentBundles;
+
+    private final long maxBundleSize;
+    /** The time the SDK harness should take to process a bundle of the adaptive bundle size. */
+    private final long targetBundleMillis;
+    /** Supplies the watermark which a new bundle holds the output watermark at. */
+    private final Supplier<Long> bundleWatermarkHold;
+    /** Finishes the bundles in the background, if bundles are processed concurrently. */
+    @Nullable private final ExecutorService bundleFinisher;
+    /** The bundles which are finished in the background, oldest first. */
+    private final ArrayDeque<BundleInProgress<InputT, OutputT>> finishingBundles =
+        new ArrayDeque<>();
+    /** The current bundle, if bundles are processed concurrently. */
+    @Nullable private BundleInProgress<InputT, OutputT> currentBundle;
+    /** Whether a bundle was completed since the last call of {@link #emitCompletedBundles()}. */
+    private boolean bundlesCompleted = false;
+    /** The moving average of the processing time of an element, or 0 if not yet measured. */
+    private double averageElementMillis = 0;
+
     /**
      * Current active bundle. Volatile to ensure mutually exclusive bundle processing threads see
      * this consistent. Please see the description in DoFnOperator.
@@ -607,7 +737,11 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
         Map<String, TupleTag<?>> outputMap,
         Coder<BoundedWindow> windowCoder,
         BiConsumer<WindowedValue<InputT>, TimerInternals.TimerData> timerRegistration,
-        Supplier<Object> keyForTimer) {
+        Supplier<Object> keyForTimer,
+        int maxConcurrentBundles,
+        long maxBundleSize,
+        long maxBundleTimeMills,
+        Supplier<Long> bundleWatermarkHold) {
 
       this.doFn = doFn;
       this.mainInput = mainInput;
@@ -628,17 +762,37 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
       }
       this.windowCoder = windowCoder;
       this.outputQueue = new LinkedBlockingQueue<>();
+      this.maxConcurrentBundles = maxConcurrentBundles;
+      this.maxBundleSize = maxBundleSize;
+      // all the bundles in progress should be processed within the bundle time
+      this.targetBundleMillis = Math.max(maxBundleTimeMills / maxConcurrentBundles, 1);
+      this.bundleWatermarkHold = bundleWatermarkHold;
+      if (maxConcurrentBundles > 1) {
+        this.bundleFinisher =
+            Executors.newFixedThreadPool(
+                maxConcurrentBundles - 1,
+                new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("bundle-finisher-%d")
+                    .build());
+      } else {
+        this.bundleFinisher = null;
+      }
     }
 
     @Override
     public void startBundle() {
+      // Concurrent bundles hold back their outputs until they are complete, so that the outputs
+      // of bundles whose inputs are checkpointed are only emitted after the checkpoint.
+      LinkedBlockingQueue<KV<String, OutputT>> bundleOutputQueue =
+          bundleFinisher != null ? new LinkedBlockingQueue<>() : outputQueue;
       OutputReceiverFactory receiverFactory =
           new OutputReceiverFactory() {
             @Override
             public FnDataReceiver<OutputT> create(String pCollectionId) {
               return receivedElement -> {
                 // handover to queue, do not block the grpc thread
-                outputQueue.put(KV.of(pCollectionId, receivedElement));
+                bundleOutputQueue.put(KV.of(pCollectionId, receivedElement));
               };
             }
           };
@@ -650,6 +804,10 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
             Preconditions.checkNotNull(
                 remoteBundle.getInputReceivers().get(mainInput),
                 "Failed to retrieve main input receiver.");
+        if (bundleFinisher != null) {
+          currentBundle =
+              new BundleInProgress<>(remoteBundle, bundleOutputQueue, bundleWatermarkHold.get());
+        }
       } catch (Exception e) {
         throw new RuntimeException("Failed to start remote bundle", e);
       }
@@ -660,6 +818,9 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
       try {
         LOG.debug("Sending value: {}", element);
         mainInputReceiver.accept(element);
+        if (currentBundle != null) {
+          currentBundle.inputs.add(element);
+        }
       } catch (Exception e) {
         throw new RuntimeException("Failed to process element with SDK harness.", e);
       }
@@ -699,28 +860,158 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
 
     @Override
     public void finishBundle() {
+      if (bundleFinisher != null) {
+        finishBundleInBackground();
+        return;
+      }
       try {
         // TODO: it would be nice to emit results as they arrive, can thread wait non-blocking?
         // close blocks until all results are received
         remoteBundle.close();
         emitResults();
       } catch (Exception e) {
-        if (e.getCause() instanceof StatusRuntimeException) {
-          throw new RuntimeException("SDK Harness connection lost.", e);
-        }
-        throw new RuntimeException("Failed to finish remote bundle", e);
+        throw finishBundleFailure(e);
       } finally {
         remoteBundle = null;
       }
     }
 
+    /**
+     * Closes the current bundle in the background, so that the next bundle can be started right
+     * away. Waits for the oldest bundles if too many bundles are in progress.
+     */
+    private void finishBundleInBackground() {
+      BundleInProgress<InputT, OutputT> bundle = Preconditions.checkNotNull(currentBundle);
+      currentBundle = null;
+      remoteBundle = null;
+      bundle.finished =
+          bundleFinisher.submit(
+              () -> {
+                // close blocks until all results are received
+                long closeStartNanos = System.nanoTime();
+                bundle.remoteBundle.close();
+                return System.nanoTime() - closeStartNanos;
+              });
+      finishingBundles.add(bundle);
+      while (finishingBundles.size() >= maxConcurrentBundles) {
+        completeBundle(finishingBundles.poll());
+      }
+      emitResults();
+    }
+
     boolean isBundleInProgress() {
       return remoteBundle != null;
     }
 
+    /**
+     * Returns the watermark which the bundles in progress hold the output watermark at, which is
+     * the watermark at the start of the oldest bundle.
+     */
+    long getBundlesWatermarkHold() {
+      BundleInProgress<InputT, OutputT> oldest = finishingBundles.peek();
+      if (oldest == null) {
+        oldest = currentBundle;
+      }
+      return oldest != null ? oldest.watermarkHold : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the size of the next bundles, so that the SDK harness processes them in about the
+     * target bundle time, given the processing time of the elements of the previous bundles.
+     */
+    long getAdaptiveBundleSize() {
+      if (averageElementMillis <= 0) {
+        return maxBundleSize;
+      }
+      long bundleSize = (long) (targetBundleMillis / averageElementMillis);
+      return Math.max(1, Math.min(maxBundleSize, bundleSize));
+    }
+
+    /**
+     * Emits the outputs of the bundles finished in the background. Returns whether any bundle was
+     * completed since the last call.
+     */
+    boolean emitCompletedBundles() {
+      emitResults();
+      boolean completed = bundlesCompleted;
+      bundlesCompleted = false;
+      return completed;
+    }
+
+    /**
+     * Waits for the oldest of the bundles finished in the background, and emits its outputs.
+     * Returns the inputs of the remaining bundles, which are still in progress.
+     */
+    List<WindowedValue<InputT>> completeOldestBundle() {
+      if (!finishingBundles.isEmpty()) {
+        completeBundle(finishingBundles.poll());
+      }
+      emitResults();
+      List<WindowedValue<InputT>> inputs = new ArrayList<>();
+      for (BundleInProgress<InputT, OutputT> bundle : finishingBundles) {
+        inputs.addAll(bundle.inputs);
+      }
+      return inputs;
+    }
+
+    /** Waits for all the bundles finished in the background, and emits their outputs. */
+    void completeAllBundles() {
+      while (!finishingBundles.isEmpty()) {
+        completeBundle(finishingBundles.poll());
+      }
+      emitResults();
+    }
+
+    void shutdown() {
+      if (bundleFinisher != null) {
+        bundleFinisher.shutdownNow();
+      }
+    }
+
+    /**
+     * Waits for the bundle to be closed, emits its outputs, and measures its processing time. The
+     * processing time is the time the bundle took to close in the background, which excludes the
+     * time the bundle was being filled.
+     */
+    private void completeBundle(BundleInProgress<InputT, OutputT> bundle) {
+      long closeNanos;
+      try {
+        closeNanos = bundle.finished.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while finishing remote bundle", e);
+      } catch (ExecutionException e) {
+        throw finishBundleFailure(e.getCause());
+      }
+      // all the outputs of the bundle have been received once it is closed
+      emitResults(bundle.outputQueue);
+      bundlesCompleted = true;
+      if (!bundle.inputs.isEmpty()) {
+        double elementMillis = closeNanos / 1e6 / bundle.inputs.size();
+        averageElementMillis =
+            averageElementMillis <= 0
+                ? elementMillis
+                : 0.8 * averageElementMillis + 0.2 * elementMillis;
+      }
+    }
+
+    private static RuntimeException finishBundleFailure(Throwable e) {
+      if (e.getCause() instanceof StatusRuntimeException) {
+        return new RuntimeException("SDK Harness connection lost.", e);
+      }
+      return new RuntimeException("Failed to finish remote bundle", e);
+    }
+
     private void emitResults() {
+      while (!finishingBundles.isEmpty() && finishingBundles.peek().finished.isDone()) {
+        completeBundle(finishingBundles.poll());
+      }
+      emitResults(outputQueue);
+    }
+
+    private void emitResults(Queue<KV<String, OutputT>> queue) {
       KV<String, OutputT> result;
-      while ((result = outputQueue.poll()) != null) {
+      while ((result = queue.poll()) != null) {
         final String outputPCollectionId = Preconditions.checkNotNull(result.getKey());
         TupleTag<?> tag = outputMap.get(outputPCollectionId);
         WindowedValue windowedValue =
@@ -763,6 +1054,25 @@ public class ExecutableStageDoFnOperator<InputT, OutputT> extends DoFnOperator<I
     }
   }
 
+  /** A bundle processed concurrently with other bundles, along with its inputs and outputs. */
+  private static class BundleInProgress<InputT, OutputT> {
+    private final RemoteBundle remoteBundle;
+    private final LinkedBlockingQueue<KV<String, OutputT>> outputQueue;
+    private final long watermarkHold;
+    private final List<WindowedValue<InputT>> inputs = new ArrayList<>();
+    /** Completes with the nanoseconds the bundle took to close in the background. */
+    @Nullable private Future<Long> finished;
+
+    BundleInProgress(
+        RemoteBundle remoteBundle,
+        LinkedBlockingQueue<KV<String, OutputT>> outputQueue,
+        long watermarkHold) {
+      this.remoteBundle = remoteBundle;
+      this.outputQueue = outputQueue;
+      this.watermarkHold = watermarkHold;
+    }
+  }
+
   private DoFnRunner<InputT, OutputT> ensureStateDoFnRunner(
       SdkHarnessDoFnRunner<InputT, OutputT> sdkHarnessRunner,
       RunnerApi.ExecutableStagePayload payload,
@@ -25,15 +25,36 @@ import java.util.List;
 import java.util.Objects;
 import org.apache.beam.runners.core.DoFnRunner;
 import org.apache.beam.sdk.coders.InstantCoder;
+import org.apache.beam.sdk.coders.ListCoder;
+import org.apache.beam.sdk.coders.SnappyCoder;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.state.TimeDomain;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.joda.time.Instant;
 
 /** Elements which can be buffered as part of a checkpoint for @RequiresStableInput. */
 class BufferedElements {
 
+  /** Encodes the elements together into one batch, which is compressed. */
+  static byte[] encodeBatch(List<BufferedElement> elements, Coder coder) {
+    try {
+      return CoderUtils.encodeToByteArray(SnappyCoder.of(ListCoder.of(coder)), elements);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to encode buffered elements.", e);
+    }
+  }
+
+  /** Decodes the elements of a batch encoded by {@link #encodeBatch}. */
+  static List<BufferedElement> decodeBatch(byte[] batch, Coder coder) {
+    try {
+      return CoderUtils.decodeFromByteArray(SnappyCoder.of(ListCoder.of(coder)), batch);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to decode buffered elements.", e);
+    }
+  }
+
   static final class Element implements BufferedElement {
     private final WindowedValue element;
 
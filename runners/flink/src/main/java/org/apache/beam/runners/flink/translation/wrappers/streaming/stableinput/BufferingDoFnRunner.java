@@ -17,21 +17,15 @@
  */
 package org.apache.beam.runners.flink.translation.wrappers.streaming.stableinput;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Iterator;
-import java.util.List;
-import java.util.UUID;
 import javax.annotation.Nullable;
 import org.apache.beam.runners.core.DoFnRunner;
-import org.apache.beam.runners.flink.translation.types.CoderTypeSerializer;
 import org.apache.beam.sdk.state.TimeDomain;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.util.WindowedValue;
-import org.apache.flink.api.common.state.ListState;
-import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.runtime.state.KeyedStateBackend;
 import org.apache.flink.runtime.state.OperatorStateBackend;
 import org.joda.time.Instant;
@@ -43,6 +37,9 @@ import org.joda.time.Instant;
  * <p>When a DoFn is annotated with @RequiresStableInput we are only allowed to process elements
  * after a checkpoint has completed. This ensures that the input is stable and we produce idempotent
  * results on failures.
+ *
+ * <p>The size of the buffered elements and the time spent writing and releasing them are reported
+ * in the {@code stableInputBuffer} metric group of the operator.
  */
 public class BufferingDoFnRunner<InputT, OutputT> implements DoFnRunner<InputT, OutputT> {
 
@@ -52,7 +49,8 @@ public class BufferingDoFnRunner<InputT, OutputT> implements DoFnRunner<InputT,
       org.apache.beam.sdk.coders.Coder windowedInputCoder,
       org.apache.beam.sdk.coders.Coder windowCoder,
       OperatorStateBackend operatorStateBackend,
-      @Nullable KeyedStateBackend<Object> keyedStateBackend)
+      @Nullable KeyedStateBackend<Object> keyedStateBackend,
+      MetricGroup metricGroup)
       throws Exception {
     return new BufferingDoFnRunner<>(
         doFnRunner,
@@ -60,20 +58,22 @@ public class BufferingDoFnRunner<InputT, OutputT> implements DoFnRunner<InputT,
         windowedInputCoder,
         windowCoder,
         operatorStateBackend,
-        keyedStateBackend);
+        keyedStateBackend,
+        metricGroup);
   }
 
   /** The underlying DoFnRunner that any buffered data will be handed over to eventually. */
   private final DoFnRunner<InputT, OutputT> underlying;
-  /** A union list state which contains all to-be-acknowledged snapshot ids. */
-  private final ListState<CheckpointElement> notYetAcknowledgedSnapshots;
-  /** A factory for constructing new BufferingElementsHandler scoped by an internal id. */
-  private final BufferingElementsHandlerFactory bufferingElementsHandlerFactory;
+  /** The handler used for buffering. */
+  private final BufferingElementsHandler bufferingElementsHandler;
+
+  /** The number of elements buffered since the last checkpoint. */
+  private long bufferedElements = 0;
 
-  /** The current active state id which is later linked to a checkpoint id. */
-  private String currentStateId;
-  /** The current handler used for buffering. */
-  private BufferingElementsHandler currentBufferingElementsHandler;
+  private volatile long lastCheckpointElements = 0;
+  private volatile long lastCheckpointBytes = 0;
+  private volatile long lastCheckpointDurationMillis = 0;
+  private volatile long lastReleaseDurationMillis = 0;
 
   private BufferingDoFnRunner(
       DoFnRunner<InputT, OutputT> underlying,
@@ -81,28 +81,27 @@ public class BufferingDoFnRunner<InputT, OutputT> implements DoFnRunner<InputT,
       org.apache.beam.sdk.coders.Coder inputCoder,
       org.apache.beam.sdk.coders.Coder windowCoder,
       OperatorStateBackend operatorStateBackend,
-      @Nullable KeyedStateBackend keyedStateBackend)
+      @Nullable KeyedStateBackend keyedStateBackend,
+      MetricGroup metricGroup)
       throws Exception {
 
     this.underlying = underlying;
-    this.notYetAcknowledgedSnapshots =
-        operatorStateBackend.getUnionListState(
-            new ListStateDescriptor<>("notYetAcknowledgedSnapshots", CheckpointElement.class));
-    this.bufferingElementsHandlerFactory =
-        (stateId) -> {
-          ListStateDescriptor<BufferedElement> stateDescriptor =
-              new ListStateDescriptor<>(
-                  stateName + stateId,
-                  new CoderTypeSerializer<>(new BufferedElements.Coder(inputCoder, windowCoder)));
-          if (keyedStateBackend != null) {
-            return KeyedBufferingElementsHandler.create(keyedStateBackend, stateDescriptor);
-          } else {
-            return NonKeyedBufferingElementsHandler.create(
-                operatorStateBackend.getListState(stateDescriptor));
-          }
-        };
-    this.currentStateId = generateNewId();
-    this.currentBufferingElementsHandler = bufferingElementsHandlerFactory.get(currentStateId);
+    BufferedElements.Coder coder = new BufferedElements.Coder(inputCoder, windowCoder);
+    if (keyedStateBackend != null) {
+      this.bufferingElementsHandler =
+          KeyedBufferingElementsHandler.create(
+              keyedStateBackend, operatorStateBackend, stateName, coder);
+    } else {
+      this.bufferingElementsHandler =
+          NonKeyedBufferingElementsHandler.create(operatorStateBackend, stateName, coder);
+    }
+
+    MetricGroup bufferMetrics = metricGroup.addGroup("stableInputBuffer");
+    bufferMetrics.gauge("lastCheckpointElements", (Gauge<Long>) () -> lastCheckpointElements);
+    bufferMetrics.gauge("lastCheckpointBytes", (Gauge<Long>) () -> lastCheckpointBytes);
+    bufferMetrics.gauge(
+        "lastCheckpointDurationMillis", (Gauge<Long>) () -> lastCheckpointDurationMillis);
+    bufferMetrics.gauge("lastReleaseDurationMillis", (Gauge<Long>) () -> lastReleaseDurationMillis);
   }
 
   @Override
@@ -112,7 +111,8 @@ public class BufferingDoFnRunner<InputT, OutputT> implements DoFnRunner<InputT,
 
   @Override
   public void processElement(WindowedValue<InputT> elem) {
-    currentBufferingElementsHandler.buffer(new BufferedElements.Element(elem));
+    bufferingElementsHandler.buffer(new BufferedElements.Element(elem));
+    bufferedElements++;
   }
 
   @Override
@@ -123,9 +123,10 @@ public class BufferingDoFnRunner<InputT, OutputT> implements DoFnRunner<InputT,
       Instant timestamp,
       Instant outputTimestamp,
       TimeDomain timeDomain) {
-    currentBufferingElementsHandler.buffer(
+    bufferingElementsHandler.buffer(
         new BufferedElements.Timer(
             timerId, timerFamilyId, window, timestamp, outputTimestamp, timeDomain));
+    bufferedElements++;
   }
 
   @Override
@@ -141,68 +142,42 @@ public class BufferingDoFnRunner<InputT, OutputT> implements DoFnRunner<InputT,
   /** Should be called when a checkpoint is created. */
   public void checkpoint(long checkpointId) throws Exception {
     // We are about to get checkpointed. The elements buffered thus far
-    // have to be added to the global CheckpointElement state which will
-    // be used to emit elements later when this checkpoint is acknowledged.
-    addToBeAcknowledgedCheckpoint(checkpointId, currentStateId);
-    currentStateId = generateNewId();
-    currentBufferingElementsHandler = bufferingElementsHandlerFactory.get(currentStateId);
+    // are written to state along with the checkpoint id, and will be
+    // emitted later when this checkpoint is acknowledged.
+    long startMillis = System.currentTimeMillis();
+    lastCheckpointBytes = bufferingElementsHandler.checkpoint(checkpointId);
+    lastCheckpointDurationMillis = System.currentTimeMillis() - startMillis;
+    lastCheckpointElements = bufferedElements;
+    bufferedElements = 0;
   }
 
   /** Should be called when a checkpoint is completed. */
   public void checkpointCompleted(long checkpointId) throws Exception {
-    List<CheckpointElement> toAck = removeToBeAcknowledgedCheckpoints(checkpointId);
-    for (CheckpointElement toBeAcked : toAck) {
-      BufferingElementsHandler bufferingElementsHandler =
-          bufferingElementsHandlerFactory.get(toBeAcked.internalId);
-      Iterator<BufferedElement> iterator = bufferingElementsHandler.getElements().iterator();
-      boolean hasElements = iterator.hasNext();
-      if (hasElements) {
-        underlying.startBundle();
-      }
-      while (iterator.hasNext()) {
-        BufferedElement bufferedElement = iterator.next();
-        bufferedElement.processWith(underlying);
-      }
-      if (hasElements) {
-        underlying.finishBundle();
-      }
-      bufferingElementsHandler.clear();
-    }
-  }
-
-  private void addToBeAcknowledgedCheckpoint(long checkpointId, String internalId)
-      throws Exception {
-    notYetAcknowledgedSnapshots.addAll(
-        Collections.singletonList(new CheckpointElement(internalId, checkpointId)));
+    long startMillis = System.currentTimeMillis();
+    bufferingElementsHandler.release(checkpointId, this::emit);
+    lastReleaseDurationMillis = System.currentTimeMillis() - startMillis;
   }
 
-  private List<CheckpointElement> removeToBeAcknowledgedCheckpoints(long checkpointId)
-      throws Exception {
-    List<CheckpointElement> toBeAcknowledged = new ArrayList<>();
-    List<CheckpointElement> checkpoints = new ArrayList<>();
-    for (CheckpointElement element : notYetAcknowledgedSnapshots.get()) {
-      if (element.checkpointId <= checkpointId) {
-        toBeAcknowledged.add(element);
-      } else {
-        checkpoints.add(element);
-      }
+  /** Processes the elements of one checkpoint in a bundle. */
+  private void emit(Iterator<BufferedElement> iterator) {
+    boolean hasElements = iterator.hasNext();
+    if (hasElements) {
+      underlying.startBundle();
+    }
+    while (iterator.hasNext()) {
+      BufferedElement bufferedElement = iterator.next();
+      bufferedElement.processWith(underlying);
+    }
+    if (hasElements) {
+      underlying.finishBundle();
     }
-    notYetAcknowledgedSnapshots.update(checkpoints);
-    // Sort by checkpoint id to preserve order
-    toBeAcknowledged.sort(Comparator.comparingLong(o -> o.checkpointId));
-    return toBeAcknowledged;
-  }
-
-  private static String generateNewId() {
-    return UUID.randomUUID().toString();
-  }
-
-  /** Constructs a new instance of BufferingElementsHandler with a provided state namespace. */
-  private interface BufferingElementsHandlerFactory {
-    BufferingElementsHandler get(String stateId) throws Exception;
   }
 
-  private static class CheckpointElement {
+  /**
+   * A checkpoint whose buffered elements have not been acknowledged yet, along with the namespace
+   * of their state.
+   */
+  static class CheckpointElement {
 
     final String internalId;
     final long checkpointId;
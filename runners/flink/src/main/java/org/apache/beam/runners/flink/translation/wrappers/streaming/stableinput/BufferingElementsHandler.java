@@ -17,7 +17,8 @@
  */
 package org.apache.beam.runners.flink.translation.wrappers.streaming.stableinput;
 
-import java.util.stream.Stream;
+import java.util.Iterator;
+import java.util.function.Consumer;
 
 /**
  * A handler for buffering elements which cannot be processed yet because {@link
@@ -27,15 +28,26 @@ import java.util.stream.Stream;
  * <p>When a DoFn is annotated with @RequiresStableInput we are only allowed to process elements
  * after a checkpoint has completed. This ensures that the input is stable and we produce idempotent
  * results on failures.
+ *
+ * <p>The elements are written to state in batches, which are encoded and compressed together.
  */
 interface BufferingElementsHandler {
 
-  /** Returns all buffered elements. */
-  Stream<BufferedElement> getElements();
+  /** The maximum number of elements written to state in one batch. */
+  int MAX_BATCH_SIZE = 1000;
 
-  /** Adds the given element to the buffered elements. */
+  /** Adds the given element to the elements buffered for the next checkpoint. */
   void buffer(BufferedElement element);
 
-  /** Clears buffered elements. */
-  void clear();
+  /**
+   * Writes the elements buffered since the last checkpoint to state as part of the given
+   * checkpoint. Returns the number of bytes of the batches of the checkpoint.
+   */
+  long checkpoint(long checkpointId) throws Exception;
+
+  /**
+   * Hands the elements of each checkpoint up to the given checkpoint over to the consumer, in
+   * checkpoint order. The elements are removed from state as they are iterated.
+   */
+  void release(long checkpointId, Consumer<Iterator<BufferedElement>> consumer) throws Exception;
 }
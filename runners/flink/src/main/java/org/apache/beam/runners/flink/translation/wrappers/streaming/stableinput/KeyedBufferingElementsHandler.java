@@ -17,76 +17,216 @@
  */
 package org.apache.beam.runners.flink.translation.wrappers.streaming.stableinput;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
+import org.apache.beam.runners.flink.translation.types.CoderTypeSerializer;
+import org.apache.beam.runners.flink.translation.wrappers.streaming.stableinput.BufferingDoFnRunner.CheckpointElement;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.AbstractIterator;
 import org.apache.flink.api.common.state.ListState;
 import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
 import org.apache.flink.runtime.state.KeyedStateBackend;
-import org.apache.flink.runtime.state.VoidNamespace;
-import org.apache.flink.runtime.state.VoidNamespaceSerializer;
+import org.apache.flink.runtime.state.OperatorStateBackend;
 
-/** A keyed implementation of a {@link BufferingElementsHandler}. */
+/**
+ * A keyed implementation of a {@link BufferingElementsHandler}.
+ *
+ * <p>The elements of each key are collected in memory and written to the keyed state of the key in
+ * batches. The batches buffered for a checkpoint are kept in their own namespace of the state,
+ * which is cleared key by key as the elements are released. Keyed state is redistributed by key on
+ * restore, so a union list state tells all the subtasks about the namespaces of all the
+ * checkpoints.
+ */
 public class KeyedBufferingElementsHandler implements BufferingElementsHandler {
 
+  /** The maximum number of elements of all the keys kept in memory before they are written. */
+  private static final int MAX_PENDING_ELEMENTS = 10 * MAX_BATCH_SIZE;
+
   static KeyedBufferingElementsHandler create(
-      KeyedStateBackend backend, ListStateDescriptor<BufferedElement> stateDescriptor)
+      KeyedStateBackend backend,
+      OperatorStateBackend operatorStateBackend,
+      String stateName,
+      BufferedElements.Coder coder)
       throws Exception {
-    return new KeyedBufferingElementsHandler(backend, stateDescriptor);
+    return new KeyedBufferingElementsHandler(backend, operatorStateBackend, stateName, coder);
   }
 
   private final KeyedStateBackend<Object> backend;
   private final String stateName;
-  private final ListState<BufferedElement> state;
+  private final BufferedElements.Coder coder;
+  /** The batches of each key, in the namespace of the checkpoint they were buffered for. */
+  private final ListState<byte[]> state;
+  /** A union list state which contains all to-be-acknowledged snapshot ids. */
+  private final ListState<CheckpointElement> notYetAcknowledgedSnapshots;
+  /** The elements of each key which have not been written to state yet. */
+  private final Map<Object, List<BufferedElement>> pendingElements = new LinkedHashMap<>();
+
+  private int pendingCount = 0;
+  private long pendingBytes = 0;
+  /** The namespace of the batches buffered for the next checkpoint. */
+  private String currentStateId = generateNewId();
 
   private KeyedBufferingElementsHandler(
-      KeyedStateBackend<Object> backend, ListStateDescriptor<BufferedElement> stateDescriptor)
+      KeyedStateBackend<Object> backend,
+      OperatorStateBackend operatorStateBackend,
+      String stateName,
+      BufferedElements.Coder coder)
       throws Exception {
     this.backend = backend;
-    this.stateName = stateDescriptor.getName();
+    this.stateName = stateName;
+    this.coder = coder;
     // Eagerly retrieve the state to work around https://jira.apache.org/jira/browse/FLINK-12653
     this.state =
         backend.getPartitionedState(
-            VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, stateDescriptor);
+            currentStateId,
+            StringSerializer.INSTANCE,
+            new ListStateDescriptor<>(stateName, new CoderTypeSerializer<>(ByteArrayCoder.of())));
+    this.notYetAcknowledgedSnapshots =
+        operatorStateBackend.getUnionListState(
+            new ListStateDescriptor<>("notYetAcknowledgedSnapshots", CheckpointElement.class));
   }
 
   @Override
   public void buffer(BufferedElement element) {
+    // assumes state backend is already keyed
+    Object key = backend.getCurrentKey();
+    List<BufferedElement> elements = pendingElements.computeIfAbsent(key, k -> new ArrayList<>());
+    elements.add(element);
+    pendingCount++;
     try {
-      // assumes state backend is already keyed
-      state.add(element);
+      if (elements.size() >= MAX_BATCH_SIZE) {
+        writeBatch(pendingElements.remove(key));
+      } else if (pendingCount >= MAX_PENDING_ELEMENTS) {
+        writePendingElements();
+      }
     } catch (Exception e) {
       throw new RuntimeException("Failed to buffer element in state backend." + element, e);
     }
   }
 
   @Override
-  public Stream<BufferedElement> getElements() {
-    return backend
-        .getKeys(stateName, VoidNamespace.INSTANCE)
-        .flatMap(
-            key -> {
-              try {
-                backend.setCurrentKey(key);
-                return StreamSupport.stream(state.get().spliterator(), false);
-              } catch (Exception e) {
-                throw new RuntimeException(
-                    "Failed to retrieve buffered element from state backend.", e);
-              }
-            });
+  public long checkpoint(long checkpointId) throws Exception {
+    writePendingElements();
+    notYetAcknowledgedSnapshots.addAll(
+        Collections.singletonList(new CheckpointElement(currentStateId, checkpointId)));
+    long bytes = pendingBytes;
+    pendingBytes = 0;
+    currentStateId = generateNewId();
+    return bytes;
   }
 
   @Override
-  public void clear() {
-    List keys = backend.getKeys(stateName, VoidNamespace.INSTANCE).collect(Collectors.toList());
+  public void release(long checkpointId, Consumer<Iterator<BufferedElement>> consumer)
+      throws Exception {
+    for (CheckpointElement toBeAcked : removeToBeAcknowledgedCheckpoints(checkpointId)) {
+      // Collect the keys first, the keys of the heap backend can't be iterated while cleared
+      List<Object> keys =
+          backend.getKeys(stateName, toBeAcked.internalId).collect(Collectors.toList());
+      consumer.accept(new ReleasingIterator(toBeAcked.internalId, keys.iterator()));
+    }
+  }
+
+  private List<CheckpointElement> removeToBeAcknowledgedCheckpoints(long checkpointId)
+      throws Exception {
+    List<CheckpointElement> toBeAcknowledged = new ArrayList<>();
+    List<CheckpointElement> checkpoints = new ArrayList<>();
+    for (CheckpointElement element : notYetAcknowledgedSnapshots.get()) {
+      if (element.checkpointId <= checkpointId) {
+        toBeAcknowledged.add(element);
+      } else {
+        checkpoints.add(element);
+      }
+    }
+    notYetAcknowledgedSnapshots.update(checkpoints);
+    // Sort by checkpoint id to preserve order
+    toBeAcknowledged.sort(Comparator.comparingLong(o -> o.checkpointId));
+    return toBeAcknowledged;
+  }
+
+  /** Writes the pending elements of all the keys, restoring the current key afterwards. */
+  private void writePendingElements() throws Exception {
+    if (pendingElements.isEmpty()) {
+      return;
+    }
+    Object currentKey = backend.getCurrentKey();
     try {
-      for (Object key : keys) {
-        backend.setCurrentKey(key);
-        state.clear();
+      for (Map.Entry<Object, List<BufferedElement>> entry : pendingElements.entrySet()) {
+        backend.setCurrentKey(entry.getKey());
+        writeBatch(entry.getValue());
+      }
+    } finally {
+      pendingElements.clear();
+      backend.setCurrentKey(currentKey);
+    }
+  }
+
+  /** Writes the elements as a batch of the current key. */
+  private void writeBatch(List<BufferedElement> elements) throws Exception {
+    byte[] batch = BufferedElements.encodeBatch(elements, coder);
+    stateFor(currentStateId).add(batch);
+    pendingCount -= elements.size();
+    pendingBytes += batch.length;
+  }
+
+  private ListState<byte[]> stateFor(String stateId) throws Exception {
+    return backend.getPartitionedState(
+        stateId,
+        StringSerializer.INSTANCE,
+        new ListStateDescriptor<>(stateName, new CoderTypeSerializer<>(ByteArrayCoder.of())));
+  }
+
+  private static String generateNewId() {
+    return UUID.randomUUID().toString();
+  }
+
+  /** Iterates the elements of the keys of a checkpoint, clearing each key once it is iterated. */
+  private class ReleasingIterator extends AbstractIterator<BufferedElement> {
+
+    private final String stateId;
+    private final Iterator<Object> keys;
+    private Iterator<byte[]> batches = Collections.emptyIterator();
+    private Iterator<BufferedElement> elements = Collections.emptyIterator();
+    private boolean keyPending = false;
+
+    ReleasingIterator(String stateId, Iterator<Object> keys) {
+      this.stateId = stateId;
+      this.keys = keys;
+    }
+
+    @Override
+    protected BufferedElement computeNext() {
+      try {
+        while (!elements.hasNext()) {
+          if (batches.hasNext()) {
+            elements = BufferedElements.decodeBatch(batches.next(), coder).iterator();
+            continue;
+          }
+          ListState<byte[]> checkpointState = stateFor(stateId);
+          if (keyPending) {
+            // all the elements of the key have been processed
+            checkpointState.clear();
+            keyPending = false;
+          }
+          if (!keys.hasNext()) {
+            return endOfData();
+          }
+          backend.setCurrentKey(keys.next());
+          keyPending = true;
+          batches = checkpointState.get().iterator();
+        }
+        return elements.next();
+      } catch (Exception e) {
+        throw new RuntimeException("Failed to retrieve buffered element from state backend.", e);
       }
-    } catch (Exception e) {
-      throw new RuntimeException("Failed to clear buffered element state", e);
     }
   }
 }
@@ -17,45 +17,116 @@
  */
 package org.apache.beam.runners.flink.translation.wrappers.streaming.stableinput;
 
-import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkNotNull;
-
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import org.apache.beam.runners.flink.translation.types.CoderTypeSerializer;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.VarLongCoder;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterators;
 import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.runtime.state.OperatorStateBackend;
 
-/** A non-keyed implementation of a {@link BufferingElementsHandler}. */
-public class NonKeyedBufferingElementsHandler<T> implements BufferingElementsHandler {
+/**
+ * A non-keyed implementation of a {@link BufferingElementsHandler}.
+ *
+ * <p>The batches are kept in memory until the next checkpoint, which adds them to one operator list
+ * state along with the id of the checkpoint. As every batch knows its checkpoint, the list state is
+ * redistributed evenly on restore, instead of every subtask receiving the union of all the buffered
+ * checkpoints.
+ */
+public class NonKeyedBufferingElementsHandler implements BufferingElementsHandler {
 
-  static <T> NonKeyedBufferingElementsHandler<T> create(ListState<BufferedElement> elementState) {
-    return new NonKeyedBufferingElementsHandler<>(elementState);
+  static NonKeyedBufferingElementsHandler create(
+      OperatorStateBackend backend, String stateName, BufferedElements.Coder coder)
+      throws Exception {
+    return new NonKeyedBufferingElementsHandler(backend, stateName, coder);
   }
 
-  private final ListState<BufferedElement> elementState;
+  private final BufferedElements.Coder coder;
+  /** The batches of the checkpoints which have not been acknowledged yet. */
+  private final ListState<KV<Long, byte[]>> checkpointedBatches;
+  /** The batches buffered since the last checkpoint. */
+  private final List<byte[]> batches = new ArrayList<>();
+  /** The elements of the batch currently being filled. */
+  private final List<BufferedElement> currentBatch = new ArrayList<>();
 
-  private NonKeyedBufferingElementsHandler(ListState<BufferedElement> elementState) {
-    this.elementState = checkNotNull(elementState);
+  private NonKeyedBufferingElementsHandler(
+      OperatorStateBackend backend, String stateName, BufferedElements.Coder coder)
+      throws Exception {
+    this.coder = coder;
+    this.checkpointedBatches =
+        backend.getListState(
+            new ListStateDescriptor<>(
+                stateName,
+                new CoderTypeSerializer<>(KvCoder.of(VarLongCoder.of(), ByteArrayCoder.of()))));
   }
 
   @Override
-  public Stream<BufferedElement> getElements() {
-    try {
-      return StreamSupport.stream(elementState.get().spliterator(), false);
-    } catch (Exception e) {
-      throw new RuntimeException("Failed to retrieve buffered element from state backend.", e);
+  public void buffer(BufferedElement element) {
+    currentBatch.add(element);
+    if (currentBatch.size() >= MAX_BATCH_SIZE) {
+      flushCurrentBatch();
     }
   }
 
   @Override
-  public void buffer(BufferedElement element) {
-    try {
-      elementState.add(element);
-    } catch (Exception e) {
-      throw new RuntimeException("Failed to buffer element in state backend.", e);
+  public long checkpoint(long checkpointId) throws Exception {
+    flushCurrentBatch();
+    List<KV<Long, byte[]>> checkpointBatches = new ArrayList<>(batches.size());
+    long bytes = 0;
+    for (byte[] batch : batches) {
+      checkpointBatches.add(KV.of(checkpointId, batch));
+      bytes += batch.length;
     }
+    checkpointedBatches.addAll(checkpointBatches);
+    batches.clear();
+    return bytes;
   }
 
   @Override
-  public void clear() {
-    elementState.clear();
+  public void release(long checkpointId, Consumer<Iterator<BufferedElement>> consumer)
+      throws Exception {
+    List<KV<Long, byte[]>> toRelease = new ArrayList<>();
+    List<KV<Long, byte[]>> remaining = new ArrayList<>();
+    for (KV<Long, byte[]> batch : checkpointedBatches.get()) {
+      if (batch.getKey() <= checkpointId) {
+        toRelease.add(batch);
+      } else {
+        remaining.add(batch);
+      }
+    }
+    if (toRelease.isEmpty()) {
+      return;
+    }
+    checkpointedBatches.update(remaining);
+    // The sort is stable, which preserves the order of the batches of a checkpoint
+    toRelease.sort(Comparator.comparingLong(KV::getKey));
+    int start = 0;
+    while (start < toRelease.size()) {
+      long batchCheckpointId = toRelease.get(start).getKey();
+      int end = start;
+      while (end < toRelease.size() && toRelease.get(end).getKey() == batchCheckpointId) {
+        end++;
+      }
+      consumer.accept(
+          Iterators.concat(
+              Iterators.transform(
+                  toRelease.subList(start, end).iterator(),
+                  batch -> BufferedElements.decodeBatch(batch.getValue(), coder).iterator())));
+      start = end;
+    }
+  }
+
+  private void flushCurrentBatch() {
+    if (!currentBatch.isEmpty()) {
+      batches.add(BufferedElements.encodeBatch(currentBatch, coder));
+      currentBatch.clear();
+    }
   }
 }
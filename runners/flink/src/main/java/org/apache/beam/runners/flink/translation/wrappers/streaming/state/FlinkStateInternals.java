@@ -18,23 +18,32 @@
 package org.apache.beam.runners.flink.translation.wrappers.streaming.state;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.apache.beam.runners.core.StateInternals;
 import org.apache.beam.runners.core.StateNamespace;
 import org.apache.beam.runners.core.StateTag;
 import org.apache.beam.runners.flink.translation.types.CoderTypeSerializer;
 import org.apache.beam.runners.flink.translation.wrappers.streaming.FlinkKeyUtils;
+import org.apache.beam.sdk.coders.BigEndianLongCoder;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.InstantCoder;
+import org.apache.beam.sdk.coders.KvCoder;
 import org.apache.beam.sdk.coders.VoidCoder;
 import org.apache.beam.sdk.state.BagState;
 import org.apache.beam.sdk.state.CombiningState;
 import org.apache.beam.sdk.state.MapState;
+import org.apache.beam.sdk.state.OrderedListState;
 import org.apache.beam.sdk.state.ReadableState;
 import org.apache.beam.sdk.state.ReadableStates;
 import org.apache.beam.sdk.state.SetState;
@@ -49,6 +58,10 @@ import org.apache.beam.sdk.transforms.CombineWithContext;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
 import org.apache.beam.sdk.util.CombineContextFactory;
+import org.apache.beam.sdk.util.CombineFnUtil;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.TimestampedValue;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
@@ -57,12 +70,14 @@ import org.apache.flink.api.common.state.ListState;
 import org.apache.flink.api.common.state.ListStateDescriptor;
 import org.apache.flink.api.common.state.MapStateDescriptor;
 import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.common.typeutils.base.BooleanSerializer;
 import org.apache.flink.api.common.typeutils.base.StringSerializer;
 import org.apache.flink.api.common.typeutils.base.VoidSerializer;
 import org.apache.flink.runtime.state.KeyedStateBackend;
 import org.apache.flink.runtime.state.VoidNamespace;
 import org.apache.flink.runtime.state.VoidNamespaceSerializer;
+import org.apache.flink.runtime.state.heap.HeapKeyedStateBackend;
 import org.joda.time.Instant;
 
 /**
@@ -75,6 +90,7 @@ public class FlinkStateInternals<K> implements StateInternals {
 
   private final KeyedStateBackend<ByteBuffer> flinkStateBackend;
   private Coder<K> keyCoder;
+  private final boolean appendOnlyCombiningState;
 
   // Combined watermark holds for all keys of this partition
   private final Map<String, Instant> watermarkHolds = new HashMap<>();
@@ -87,8 +103,22 @@ public class FlinkStateInternals<K> implements StateInternals {
 
   public FlinkStateInternals(KeyedStateBackend<ByteBuffer> flinkStateBackend, Coder<K> keyCoder)
       throws Exception {
+    this(flinkStateBackend, keyCoder, false);
+  }
+
+  /**
+   * Creates the state internals, whose {@link CombiningState}s append accumulators to a Flink
+   * {@link ListState} instead of updating a single accumulator if {@code appendOnlyCombiningState}
+   * is set, see {@link FlinkAppendingCombiningState}.
+   */
+  public FlinkStateInternals(
+      KeyedStateBackend<ByteBuffer> flinkStateBackend,
+      Coder<K> keyCoder,
+      boolean appendOnlyCombiningState)
+      throws Exception {
     this.flinkStateBackend = flinkStateBackend;
     this.keyCoder = keyCoder;
+    this.appendOnlyCombiningState = appendOnlyCombiningState;
     restoreWatermarkHoldsView();
   }
 
@@ -119,7 +149,8 @@ public class FlinkStateInternals<K> implements StateInternals {
                 context,
                 flinkStateBackend,
                 watermarkHolds,
-                watermarkHoldStateDescriptor));
+                watermarkHoldStateDescriptor,
+                appendOnlyCombiningState));
   }
 
   private static class FlinkStateBinder implements StateBinder {
@@ -129,18 +160,21 @@ public class FlinkStateInternals<K> implements StateInternals {
     private final KeyedStateBackend<ByteBuffer> flinkStateBackend;
     private final Map<String, Instant> watermarkHolds;
     private final MapStateDescriptor<String, Instant> watermarkHoldStateDescriptor;
+    private final boolean appendOnlyCombiningState;
 
     private FlinkStateBinder(
         StateNamespace namespace,
         StateContext<?> stateContext,
         KeyedStateBackend<ByteBuffer> flinkStateBackend,
         Map<String, Instant> watermarkHolds,
-        MapStateDescriptor<String, Instant> watermarkHoldStateDescriptor) {
+        MapStateDescriptor<String, Instant> watermarkHoldStateDescriptor,
+        boolean appendOnlyCombiningState) {
       this.namespace = namespace;
       this.stateContext = stateContext;
       this.flinkStateBackend = flinkStateBackend;
       this.watermarkHolds = watermarkHolds;
       this.watermarkHoldStateDescriptor = watermarkHoldStateDescriptor;
+      this.appendOnlyCombiningState = appendOnlyCombiningState;
     }
 
     @Override
@@ -159,6 +193,12 @@ public class FlinkStateInternals<K> implements StateInternals {
       return new FlinkSetState<>(flinkStateBackend, id, namespace, elemCoder);
     }
 
+    @Override
+    public <T2> OrderedListState<T2> bindOrderedList(
+        String id, StateSpec<OrderedListState<T2>> spec, Coder<T2> elemCoder) {
+      return new FlinkOrderedListState<>(flinkStateBackend, id, namespace, elemCoder);
+    }
+
     @Override
     public <KeyT, ValueT> MapState<KeyT, ValueT> bindMap(
         String id,
@@ -174,6 +214,10 @@ public class FlinkStateInternals<K> implements StateInternals {
         StateSpec<CombiningState<InputT, AccumT, OutputT>> spec,
         Coder<AccumT> accumCoder,
         Combine.CombineFn<InputT, AccumT, OutputT> combineFn) {
+      if (appendOnlyCombiningState) {
+        return new FlinkAppendingCombiningState<>(
+            flinkStateBackend, id, combineFn, namespace, accumCoder);
+      }
       return new FlinkCombiningState<>(flinkStateBackend, id, combineFn, namespace, accumCoder);
     }
 
@@ -184,6 +228,14 @@ public class FlinkStateInternals<K> implements StateInternals {
             StateSpec<CombiningState<InputT, AccumT, OutputT>> spec,
             Coder<AccumT> accumCoder,
             CombineWithContext.CombineFnWithContext<InputT, AccumT, OutputT> combineFn) {
+      if (appendOnlyCombiningState) {
+        return new FlinkAppendingCombiningState<>(
+            flinkStateBackend,
+            id,
+            CombineFnUtil.bindContext(combineFn, stateContext),
+            namespace,
+            accumCoder);
+      }
       return new FlinkCombiningStateWithContext<>(
           flinkStateBackend,
           id,
@@ -296,6 +348,8 @@ public class FlinkStateInternals<K> implements StateInternals {
     private final ListStateDescriptor<T> flinkStateDescriptor;
     private final KeyedStateBackend<ByteBuffer> flinkStateBackend;
     private final boolean storesVoidValues;
+    // The heap backend returns the list it stores, instead of a list deserialized for the read
+    private final boolean readsStoredList;
 
     FlinkBagState(
         KeyedStateBackend<ByteBuffer> flinkStateBackend,
@@ -307,6 +361,7 @@ public class FlinkStateInternals<K> implements StateInternals {
       this.stateId = stateId;
       this.flinkStateBackend = flinkStateBackend;
       this.storesVoidValues = coder instanceof VoidCoder;
+      this.readsStoredList = flinkStateBackend instanceof HeapKeyedStateBackend;
       this.flinkStateDescriptor =
           new ListStateDescriptor<>(stateId, new CoderTypeSerializer<>(coder));
     }
@@ -362,7 +417,13 @@ public class FlinkStateInternals<K> implements StateInternals {
             };
           };
         }
-        return result != null ? ImmutableList.copyOf(result) : Collections.emptyList();
+        if (result == null) {
+          return Collections.emptyList();
+        }
+        // Only the stored list needs to be copied, so that the read isn't changed by later adds
+        return readsStoredList
+            ? ImmutableList.copyOf(result)
+            : Iterables.unmodifiableIterable(result);
       } catch (Exception e) {
         throw new RuntimeException("Error reading state.", e);
       }
@@ -752,6 +813,153 @@ public class FlinkStateInternals<K> implements StateInternals {
     }
   }
 
+  /**
+   * A {@link CombiningState} which appends the accumulators of its inputs to a Flink {@link
+   * ListState}, and only merges them when the state is read.
+   *
+   * <p>The RocksDB backend appends to a list with its merge operator, so adding to the state does
+   * not read and deserialize the current accumulator like {@link FlinkCombiningState} does. The
+   * merged accumulator replaces the appended ones on the next read, so this suits states that are
+   * added to far more often than they are read, like the ones of a windowed combine. It is not
+   * compatible with the state of {@link FlinkCombiningState} in savepoints.
+   */
+  private static class FlinkAppendingCombiningState<InputT, AccumT, OutputT>
+      implements CombiningState<InputT, AccumT, OutputT> {
+
+    private final StateNamespace namespace;
+    private final String stateId;
+    private final Combine.CombineFn<InputT, AccumT, OutputT> combineFn;
+    private final ListStateDescriptor<AccumT> flinkStateDescriptor;
+    private final KeyedStateBackend<ByteBuffer> flinkStateBackend;
+
+    FlinkAppendingCombiningState(
+        KeyedStateBackend<ByteBuffer> flinkStateBackend,
+        String stateId,
+        Combine.CombineFn<InputT, AccumT, OutputT> combineFn,
+        StateNamespace namespace,
+        Coder<AccumT> accumCoder) {
+
+      this.namespace = namespace;
+      this.stateId = stateId;
+      this.combineFn = combineFn;
+      this.flinkStateBackend = flinkStateBackend;
+
+      flinkStateDescriptor =
+          new ListStateDescriptor<>(stateId, new CoderTypeSerializer<>(accumCoder));
+    }
+
+    @Override
+    public CombiningState<InputT, AccumT, OutputT> readLater() {
+      return this;
+    }
+
+    @Override
+    public void add(InputT value) {
+      addAccum(combineFn.addInput(combineFn.createAccumulator(), value));
+    }
+
+    @Override
+    public void addAccum(AccumT accum) {
+      try {
+        flinkStateBackend
+            .getPartitionedState(
+                namespace.stringKey(), StringSerializer.INSTANCE, flinkStateDescriptor)
+            .add(accum);
+      } catch (Exception e) {
+        throw new RuntimeException("Error adding to state.", e);
+      }
+    }
+
+    @Override
+    public AccumT getAccum() {
+      try {
+        ListState<AccumT> state =
+            flinkStateBackend.getPartitionedState(
+                namespace.stringKey(), StringSerializer.INSTANCE, flinkStateDescriptor);
+        Iterable<AccumT> accums = state.get();
+        if (accums == null) {
+          return combineFn.createAccumulator();
+        }
+        Iterator<AccumT> iterator = accums.iterator();
+        AccumT first = iterator.next();
+        if (!iterator.hasNext()) {
+          return first;
+        }
+        AccumT merged = combineFn.mergeAccumulators(accums);
+        state.update(Collections.singletonList(merged));
+        return merged;
+      } catch (Exception e) {
+        throw new RuntimeException("Error reading state.", e);
+      }
+    }
+
+    @Override
+    public AccumT mergeAccumulators(Iterable<AccumT> accumulators) {
+      return combineFn.mergeAccumulators(accumulators);
+    }
+
+    @Override
+    public OutputT read() {
+      return combineFn.extractOutput(getAccum());
+    }
+
+    @Override
+    public ReadableState<Boolean> isEmpty() {
+      return new ReadableState<Boolean>() {
+        @Override
+        public Boolean read() {
+          try {
+            return flinkStateBackend
+                    .getPartitionedState(
+                        namespace.stringKey(), StringSerializer.INSTANCE, flinkStateDescriptor)
+                    .get()
+                == null;
+          } catch (Exception e) {
+            throw new RuntimeException("Error reading state.", e);
+          }
+        }
+
+        @Override
+        public ReadableState<Boolean> readLater() {
+          return this;
+        }
+      };
+    }
+
+    @Override
+    public void clear() {
+      try {
+        flinkStateBackend
+            .getPartitionedState(
+                namespace.stringKey(), StringSerializer.INSTANCE, flinkStateDescriptor)
+            .clear();
+      } catch (Exception e) {
+        throw new RuntimeException("Error clearing state.", e);
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      FlinkAppendingCombiningState<?, ?, ?> that = (FlinkAppendingCombiningState<?, ?, ?>) o;
+
+      return namespace.equals(that.namespace) && stateId.equals(that.stateId);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = namespace.hashCode();
+      result = 31 * result + stateId.hashCode();
+      return result;
+    }
+  }
+
   private static class FlinkWatermarkHoldState<K, W extends BoundedWindow>
       implements WatermarkHoldState {
 
@@ -1212,6 +1420,231 @@ public class FlinkStateInternals<K> implements StateInternals {
     }
   }
 
+  /**
+   * An {@link OrderedListState} kept in a Flink {@link org.apache.flink.api.common.state.MapState}
+   * with an entry per value, so that adding a value writes its own entry only.
+   *
+   * <p>The key of a value is its timestamp and a sequence number, which orders the values with the
+   * same timestamp. Both are encoded big-endian with their sign bit flipped, so that the byte order
+   * of the serialized keys, in which RocksDB iterates them, is the order of the values, and range
+   * reads stop at the end of the range. The heap backend has no order, so its values are sorted on
+   * read.
+   */
+  static class FlinkOrderedListState<T> implements OrderedListState<T> {
+
+    // the low bits of a sequence number count the values added within a millisecond
+    private static final int SEQUENCE_COUNTER_BITS = 20;
+
+    private static final AtomicLong LAST_SEQUENCE = new AtomicLong();
+
+    private static final Comparator<KV<Long, Long>> KEY_ORDER =
+        Comparator.<KV<Long, Long>, Long>comparing(key -> timestamp(key).getMillis())
+            .thenComparing(key -> key.getValue() ^ Long.MIN_VALUE);
+
+    private final StateNamespace namespace;
+    private final String stateId;
+    private final MapStateDescriptor<KV<Long, Long>, T> flinkStateDescriptor;
+    private final KeyedStateBackend<ByteBuffer> flinkStateBackend;
+    private final boolean iteratesInOrder;
+
+    FlinkOrderedListState(
+        KeyedStateBackend<ByteBuffer> flinkStateBackend,
+        String stateId,
+        StateNamespace namespace,
+        Coder<T> coder) {
+      this.namespace = namespace;
+      this.stateId = stateId;
+      this.flinkStateBackend = flinkStateBackend;
+      this.iteratesInOrder = !(flinkStateBackend instanceof HeapKeyedStateBackend);
+      this.flinkStateDescriptor = stateDescriptor(stateId, coder);
+    }
+
+    /** The descriptor of the state, also registered by the {@link EarlyBinder}. */
+    static <T> MapStateDescriptor<KV<Long, Long>, T> stateDescriptor(
+        String stateId, Coder<T> coder) {
+      return new MapStateDescriptor<>(stateId, keySerializer(), new CoderTypeSerializer<>(coder));
+    }
+
+    /** The serializer of the keys, whose byte order is the order of the values. */
+    @VisibleForTesting
+    static TypeSerializer<KV<Long, Long>> keySerializer() {
+      return new CoderTypeSerializer<>(
+          KvCoder.of(BigEndianLongCoder.of(), BigEndianLongCoder.of()));
+    }
+
+    /** Returns the key of a value, flipping the sign bits to sort the keys as unsigned. */
+    @VisibleForTesting
+    static KV<Long, Long> key(Instant timestamp, long sequence) {
+      return KV.of(timestamp.getMillis() ^ Long.MIN_VALUE, sequence ^ Long.MIN_VALUE);
+    }
+
+    private static Instant timestamp(KV<Long, Long> key) {
+      return new Instant(key.getKey() ^ Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns an increasing sequence number, which starts from the current time so that it keeps
+     * increasing after a restart unless the clock went back.
+     */
+    private static long nextSequence() {
+      long now = System.currentTimeMillis() << SEQUENCE_COUNTER_BITS;
+      return LAST_SEQUENCE.updateAndGet(last -> Math.max(last + 1, now));
+    }
+
+    private org.apache.flink.api.common.state.MapState<KV<Long, Long>, T> getState()
+        throws Exception {
+      return flinkStateBackend.getPartitionedState(
+          namespace.stringKey(), StringSerializer.INSTANCE, flinkStateDescriptor);
+    }
+
+    @Override
+    public void add(TimestampedValue<T> value) {
+      try {
+        org.apache.flink.api.common.state.MapState<KV<Long, Long>, T> state = getState();
+        KV<Long, Long> key = key(value.getTimestamp(), nextSequence());
+        // the sequence numbers of a previous run may be taken if the clock went back since then
+        while (state.contains(key)) {
+          key = key(value.getTimestamp(), nextSequence());
+        }
+        state.put(key, value.getValue());
+      } catch (Exception e) {
+        throw new RuntimeException("Error adding to state.", e);
+      }
+    }
+
+    @Override
+    public Iterable<TimestampedValue<T>> read() {
+      return readValues(null, null);
+    }
+
+    @Override
+    public Iterable<TimestampedValue<T>> readRange(Instant minTimestamp, Instant limitTimestamp) {
+      return readValues(minTimestamp, limitTimestamp);
+    }
+
+    /** Reads the values of the range, which is not bounded on the sides that are null. */
+    private Iterable<TimestampedValue<T>> readValues(
+        @Nullable Instant minTimestamp, @Nullable Instant limitTimestamp) {
+      try {
+        List<Map.Entry<KV<Long, Long>, T>> entries = new ArrayList<>();
+        forEachInRange(minTimestamp, limitTimestamp, entries::add);
+        if (!iteratesInOrder) {
+          entries.sort(Map.Entry.comparingByKey(KEY_ORDER));
+        }
+        List<TimestampedValue<T>> result = new ArrayList<>(entries.size());
+        for (Map.Entry<KV<Long, Long>, T> entry : entries) {
+          result.add(TimestampedValue.of(entry.getValue(), timestamp(entry.getKey())));
+        }
+        return Collections.unmodifiableList(result);
+      } catch (Exception e) {
+        throw new RuntimeException("Error reading state.", e);
+      }
+    }
+
+    @Override
+    public void clearRange(Instant minTimestamp, Instant limitTimestamp) {
+      try {
+        List<KV<Long, Long>> keys = new ArrayList<>();
+        forEachInRange(minTimestamp, limitTimestamp, entry -> keys.add(entry.getKey()));
+        org.apache.flink.api.common.state.MapState<KV<Long, Long>, T> state = getState();
+        for (KV<Long, Long> key : keys) {
+          state.remove(key);
+        }
+      } catch (Exception e) {
+        throw new RuntimeException("Error clearing state.", e);
+      }
+    }
+
+    /**
+     * Passes the entries of the timestamps in the range to the consumer, without deserializing the
+     * values of the timestamps before the range. The entries are in order if {@link
+     * #iteratesInOrder}.
+     */
+    private void forEachInRange(
+        @Nullable Instant minTimestamp,
+        @Nullable Instant limitTimestamp,
+        Consumer<Map.Entry<KV<Long, Long>, T>> consumer)
+        throws Exception {
+      Iterable<Map.Entry<KV<Long, Long>, T>> entries = getState().entries();
+      if (entries == null) {
+        return;
+      }
+      for (Map.Entry<KV<Long, Long>, T> entry : entries) {
+        Instant timestamp = timestamp(entry.getKey());
+        if (minTimestamp != null && timestamp.isBefore(minTimestamp)) {
+          continue;
+        }
+        if (limitTimestamp != null && !timestamp.isBefore(limitTimestamp)) {
+          if (iteratesInOrder) {
+            return;
+          }
+          continue;
+        }
+        consumer.accept(entry);
+      }
+    }
+
+    @Override
+    public OrderedListState<T> readRangeLater(Instant minTimestamp, Instant limitTimestamp) {
+      return this;
+    }
+
+    @Override
+    public OrderedListState<T> readLater() {
+      return this;
+    }
+
+    @Override
+    public ReadableState<Boolean> isEmpty() {
+      return new ReadableState<Boolean>() {
+        @Override
+        public Boolean read() {
+          try {
+            Iterable<KV<Long, Long>> result = getState().keys();
+            return result == null || Iterables.isEmpty(result);
+          } catch (Exception e) {
+            throw new RuntimeException("Error reading state.", e);
+          }
+        }
+
+        @Override
+        public ReadableState<Boolean> readLater() {
+          return this;
+        }
+      };
+    }
+
+    @Override
+    public void clear() {
+      try {
+        getState().clear();
+      } catch (Exception e) {
+        throw new RuntimeException("Error clearing state.", e);
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      FlinkOrderedListState<?> that = (FlinkOrderedListState<?>) o;
+
+      return namespace.equals(that.namespace) && stateId.equals(that.stateId);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = namespace.hashCode();
+      result = 31 * result + stateId.hashCode();
+      return result;
+    }
+  }
+
   /** Restores a view of the watermark holds of all keys of this partiton. */
   private void restoreWatermarkHoldsView() throws Exception {
     org.apache.flink.api.common.state.MapState<String, Instant> mapState =
@@ -1231,9 +1664,15 @@ public class FlinkStateInternals<K> implements StateInternals {
   public static class EarlyBinder implements StateBinder {
 
     private final KeyedStateBackend keyedStateBackend;
+    private final boolean appendOnlyCombiningState;
 
     public EarlyBinder(KeyedStateBackend keyedStateBackend) {
+      this(keyedStateBackend, false);
+    }
+
+    public EarlyBinder(KeyedStateBackend keyedStateBackend, boolean appendOnlyCombiningState) {
       this.keyedStateBackend = keyedStateBackend;
+      this.appendOnlyCombiningState = appendOnlyCombiningState;
     }
 
     @Override
@@ -1275,6 +1714,18 @@ public class FlinkStateInternals<K> implements StateInternals {
       return null;
     }
 
+    @Override
+    public <T> OrderedListState<T> bindOrderedList(
+        String id, StateSpec<OrderedListState<T>> spec, Coder<T> elemCoder) {
+      try {
+        keyedStateBackend.getOrCreateKeyedState(
+            StringSerializer.INSTANCE, FlinkOrderedListState.stateDescriptor(id, elemCoder));
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      return null;
+    }
+
     @Override
     public <KeyT, ValueT> org.apache.beam.sdk.state.MapState<KeyT, ValueT> bindMap(
         String id,
@@ -1300,13 +1751,7 @@ public class FlinkStateInternals<K> implements StateInternals {
         StateSpec<CombiningState<InputT, AccumT, OutputT>> spec,
         Coder<AccumT> accumCoder,
         Combine.CombineFn<InputT, AccumT, OutputT> combineFn) {
-      try {
-        keyedStateBackend.getOrCreateKeyedState(
-            StringSerializer.INSTANCE,
-            new ValueStateDescriptor<>(id, new CoderTypeSerializer<>(accumCoder)));
-      } catch (Exception e) {
-        throw new RuntimeException(e);
-      }
+      bindCombiningAccumulators(id, accumCoder);
       return null;
     }
 
@@ -1317,14 +1762,24 @@ public class FlinkStateInternals<K> implements StateInternals {
             StateSpec<CombiningState<InputT, AccumT, OutputT>> spec,
             Coder<AccumT> accumCoder,
             CombineWithContext.CombineFnWithContext<InputT, AccumT, OutputT> combineFn) {
+      bindCombiningAccumulators(id, accumCoder);
+      return null;
+    }
+
+    private <AccumT> void bindCombiningAccumulators(String id, Coder<AccumT> accumCoder) {
       try {
-        keyedStateBackend.getOrCreateKeyedState(
-            StringSerializer.INSTANCE,
-            new ValueStateDescriptor<>(id, new CoderTypeSerializer<>(accumCoder)));
+        if (appendOnlyCombiningState) {
+          keyedStateBackend.getOrCreateKeyedState(
+              StringSerializer.INSTANCE,
+              new ListStateDescriptor<>(id, new CoderTypeSerializer<>(accumCoder)));
+        } else {
+          keyedStateBackend.getOrCreateKeyedState(
+              StringSerializer.INSTANCE,
+              new ValueStateDescriptor<>(id, new CoderTypeSerializer<>(accumCoder)));
+        }
       } catch (Exception e) {
         throw new RuntimeException(e);
       }
-      return null;
     }
 
     @Override
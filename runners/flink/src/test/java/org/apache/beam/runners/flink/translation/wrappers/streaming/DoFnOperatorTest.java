@@ -30,6 +30,7 @@ import static org.junit.Assert.assertThrows;
 
 import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.fasterxml.jackson.databind.util.LRUMap;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -49,6 +50,7 @@ import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.coders.VarIntCoder;
 import org.apache.beam.sdk.coders.VarLongCoder;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.state.OrderedListState;
 import org.apache.beam.sdk.state.StateSpec;
 import org.apache.beam.sdk.state.StateSpecs;
 import org.apache.beam.sdk.state.TimeDomain;
@@ -72,6 +74,7 @@ import org.apache.beam.sdk.util.WindowedValue.FullWindowedValueCoder;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PCollectionView;
+import org.apache.beam.sdk.values.TimestampedValue;
 import org.apache.beam.sdk.values.TupleTag;
 import org.apache.beam.sdk.values.WindowingStrategy;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Function;
@@ -82,7 +85,10 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterable
 import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
 import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.contrib.streaming.state.RocksDBStateBackend;
 import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
+import org.apache.flink.runtime.state.StateBackend;
+import org.apache.flink.runtime.state.memory.MemoryStateBackend;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
 import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
 import org.apache.flink.streaming.util.KeyedTwoInputStreamOperatorTestHarness;
@@ -92,7 +98,9 @@ import org.apache.flink.util.OutputTag;
 import org.joda.time.Duration;
 import org.joda.time.Instant;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.Mockito;
@@ -102,6 +110,8 @@ import org.powermock.reflect.Whitebox;
 @RunWith(JUnit4.class)
 public class DoFnOperatorTest {
 
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
   // views and windows for testing side inputs
   private static final long WINDOW_MSECS_1 = 100;
   private static final long WINDOW_MSECS_2 = 500;
@@ -794,6 +804,95 @@ public class DoFnOperatorTest {
     testHarness.close();
   }
 
+  @Test
+  public void testOrderedListStateRestoreWithHeapBackend() throws Exception {
+    testOrderedListStateRestore(new MemoryStateBackend());
+  }
+
+  @Test
+  public void testOrderedListStateRestoreWithRocksDbBackend() throws Exception {
+    testOrderedListStateRestore(new RocksDBStateBackend(tempFolder.newFolder().toURI()));
+  }
+
+  /**
+   * Checks that the ordered list state registered by the early binding of {@link DoFnOperator} is
+   * the one the state is written to, and that it survives a snapshot.
+   */
+  private void testOrderedListStateRestore(StateBackend stateBackend) throws Exception {
+    DoFn<KV<String, String>, KV<String, String>> appendFn =
+        new DoFn<KV<String, String>, KV<String, String>>() {
+
+          @StateId("values")
+          private final StateSpec<OrderedListState<String>> valuesSpec =
+              StateSpecs.orderedList(StringUtf8Coder.of());
+
+          @ProcessElement
+          public void processElement(
+              ProcessContext context, @StateId("values") OrderedListState<String> values) {
+            values.add(TimestampedValue.of(context.element().getValue(), context.timestamp()));
+            List<String> read = new ArrayList<>();
+            for (TimestampedValue<String> value : values.read()) {
+              read.add(value.getValue());
+            }
+            context.output(KV.of(context.element().getKey(), String.join(",", read)));
+          }
+        };
+
+    WindowingStrategy<Object, GlobalWindow> windowingStrategy = WindowingStrategy.globalDefault();
+
+    TupleTag<KV<String, String>> outputTag = new TupleTag<>("main-output");
+
+    FullWindowedValueCoder<KV<String, String>> kvCoder =
+        WindowedValue.getFullCoder(
+            KvCoder.of(StringUtf8Coder.of(), StringUtf8Coder.of()),
+            windowingStrategy.getWindowFn().windowCoder());
+
+    CoderTypeInformation<String> keyCoderInfo = new CoderTypeInformation<>(StringUtf8Coder.of());
+    KeySelector<WindowedValue<KV<String, String>>, String> keySelector = e -> e.getValue().getKey();
+
+    OneInputStreamOperatorTestHarness<
+            WindowedValue<KV<String, String>>, WindowedValue<KV<String, String>>>
+        testHarness =
+            createTestHarness(
+                windowingStrategy,
+                appendFn,
+                kvCoder,
+                kvCoder,
+                outputTag,
+                keyCoderInfo,
+                keySelector);
+    testHarness.setStateBackend(stateBackend);
+    testHarness.open();
+
+    testHarness.processElement(
+        new StreamRecord<>(
+            WindowedValue.timestampedValueInGlobalWindow(KV.of("a", "c"), new Instant(3))));
+    testHarness.processElement(
+        new StreamRecord<>(
+            WindowedValue.timestampedValueInGlobalWindow(KV.of("a", "a"), new Instant(1))));
+
+    OperatorSubtaskState snapshot = testHarness.snapshot(0, 0);
+    testHarness.close();
+
+    testHarness =
+        createTestHarness(
+            windowingStrategy, appendFn, kvCoder, kvCoder, outputTag, keyCoderInfo, keySelector);
+    testHarness.setStateBackend(stateBackend);
+    testHarness.initializeState(snapshot);
+    testHarness.open();
+
+    testHarness.processElement(
+        new StreamRecord<>(
+            WindowedValue.timestampedValueInGlobalWindow(KV.of("a", "b"), new Instant(2))));
+
+    assertThat(
+        stripStreamRecordFromWindowedValue(testHarness.getOutput()),
+        contains(
+            WindowedValue.timestampedValueInGlobalWindow(KV.of("a", "a,b,c"), new Instant(2))));
+
+    testHarness.close();
+  }
+
   @Test
   public void nonKeyedParDoSideInputCheckpointing() throws Exception {
     sideInputCheckpointing(
@@ -19,6 +19,7 @@ package org.apache.beam.runners.flink.translation.wrappers.streaming;
 
 import static org.apache.beam.runners.core.construction.PTransformTranslation.PAR_DO_TRANSFORM_URN;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
@@ -39,12 +40,14 @@ import static org.mockito.Mockito.when;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import javax.annotation.Nullable;
@@ -106,6 +109,7 @@ import org.apache.beam.vendor.sdk.v2.sdk.extensions.protobuf.ByteStringCoder;
 import org.apache.flink.api.common.cache.DistributedCache;
 import org.apache.flink.api.common.functions.RuntimeContext;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
 import org.apache.flink.runtime.state.KeyedStateBackend;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
@@ -416,6 +420,241 @@ public class ExecutableStageDoFnOperatorTest {
     verifyNoMoreInteractions(bundle);
   }
 
+  @Test
+  public void concurrentBundlesEmitOutputsOnceComplete() throws Exception {
+    TupleTag<Integer> mainOutput = new TupleTag<>("main-output");
+    DoFnOperator.MultiOutputOutputManagerFactory<Integer> outputManagerFactory =
+        new DoFnOperator.MultiOutputOutputManagerFactory(mainOutput, VoidCoder.of());
+
+    // Every bundle emits its inputs once it is closed.
+    StageBundleFactory stageBundleFactory =
+        new StageBundleFactory() {
+          @Override
+          public RemoteBundle getBundle(
+              OutputReceiverFactory receiverFactory,
+              StateRequestHandler stateRequestHandler,
+              BundleProgressHandler progressHandler) {
+            List<WindowedValue<?>> inputs = new ArrayList<>();
+            return new RemoteBundle() {
+              @Override
+              public String getId() {
+                return "bundle-id";
+              }
+
+              @Override
+              public Map<String, FnDataReceiver> getInputReceivers() {
+                return ImmutableMap.of("input", input -> inputs.add((WindowedValue<?>) input));
+              }
+
+              @Override
+              public void split(double fractionOfRemainder) {
+                throw new UnsupportedOperationException();
+              }
+
+              @Override
+              public void close() throws Exception {
+                FnDataReceiver<WindowedValue<?>> receiver =
+                    receiverFactory.create(mainOutput.getId());
+                for (WindowedValue<?> input : inputs) {
+                  receiver.accept(input);
+                }
+              }
+            };
+          }
+
+          @Override
+          public ProcessBundleDescriptors.ExecutableProcessBundleDescriptor
+              getProcessBundleDescriptor() {
+            return processBundleDescriptor;
+          }
+
+          @Override
+          public void close() {}
+        };
+    when(stageContext.getStageBundleFactory(any())).thenReturn(stageBundleFactory);
+
+    FlinkPipelineOptions options = PipelineOptionsFactory.as(FlinkPipelineOptions.class);
+    options.setMaxConcurrentBundles(2);
+    options.setMaxBundleSize(1L);
+    ExecutableStageDoFnOperator<Integer, Integer> operator =
+        getOperator(
+            mainOutput,
+            Collections.emptyList(),
+            outputManagerFactory,
+            WindowingStrategy.globalDefault(),
+            null,
+            WindowedValue.getFullCoder(VarIntCoder.of(), GlobalWindow.Coder.INSTANCE),
+            options);
+
+    OneInputStreamOperatorTestHarness<WindowedValue<Integer>, WindowedValue<Integer>> testHarness =
+        new OneInputStreamOperatorTestHarness<>(operator);
+    testHarness.open();
+
+    WindowedValue<Integer> one = WindowedValue.valueInGlobalWindow(1);
+    WindowedValue<Integer> two = WindowedValue.valueInGlobalWindow(2);
+    WindowedValue<Integer> three = WindowedValue.valueInGlobalWindow(3);
+    testHarness.processElement(new StreamRecord<>(one));
+    testHarness.processElement(new StreamRecord<>(two));
+    testHarness.processElement(new StreamRecord<>(three));
+
+    testHarness.close(); // completes all the bundles
+
+    assertThat(
+        testHarness.getOutput(),
+        contains(
+            new StreamRecord<>(one),
+            new StreamRecord<>(two),
+            new StreamRecord<>(three),
+            new Watermark(Long.MAX_VALUE)));
+  }
+
+  @Test
+  public void concurrentBundlesInProgressAreReplayedOnceOnRestore() throws Exception {
+    TupleTag<Integer> mainOutput = new TupleTag<>("main-output");
+    DoFnOperator.MultiOutputOutputManagerFactory<Integer> outputManagerFactory =
+        new DoFnOperator.MultiOutputOutputManagerFactory(mainOutput, VoidCoder.of());
+
+    WindowedValue<Integer> one = WindowedValue.valueInGlobalWindow(1);
+    WindowedValue<Integer> two = WindowedValue.valueInGlobalWindow(2);
+    WindowedValue<Integer> three = WindowedValue.valueInGlobalWindow(3);
+
+    // The bundle of the second element does not close until released, so that it is still in
+    // progress at the checkpoint.
+    CountDownLatch releaseBundle = new CountDownLatch(1);
+    List<WindowedValue<?>> processedBeforeRestore = Collections.synchronizedList(new ArrayList<>());
+    when(stageContext.getStageBundleFactory(any()))
+        .thenReturn(concurrentStageBundleFactory(processedBeforeRestore, two, releaseBundle));
+
+    FlinkPipelineOptions options = PipelineOptionsFactory.as(FlinkPipelineOptions.class);
+    options.setMaxConcurrentBundles(3);
+    options.setMaxBundleSize(1L);
+    Coder<WindowedValue<Integer>> windowedInputCoder =
+        WindowedValue.getFullCoder(VarIntCoder.of(), GlobalWindow.Coder.INSTANCE);
+
+    OneInputStreamOperatorTestHarness<WindowedValue<Integer>, WindowedValue<Integer>> testHarness =
+        new OneInputStreamOperatorTestHarness<>(
+            getOperator(
+                mainOutput,
+                Collections.emptyList(),
+                outputManagerFactory,
+                WindowingStrategy.globalDefault(),
+                null,
+                windowedInputCoder,
+                options));
+    testHarness.open();
+    testHarness.processElement(new StreamRecord<>(one));
+    testHarness.processElement(new StreamRecord<>(two));
+
+    // Completes the bundle of the first element and checkpoints the input of the second one
+    OperatorSubtaskState snapshot = testHarness.snapshot(0, 0);
+    assertThat(processedBeforeRestore, contains(one));
+
+    releaseBundle.countDown();
+    testHarness.close();
+
+    List<WindowedValue<?>> processedAfterRestore = Collections.synchronizedList(new ArrayList<>());
+    when(stageContext.getStageBundleFactory(any()))
+        .thenReturn(concurrentStageBundleFactory(processedAfterRestore, null, null));
+
+    testHarness =
+        new OneInputStreamOperatorTestHarness<>(
+            getOperator(
+                mainOutput,
+                Collections.emptyList(),
+                outputManagerFactory,
+                WindowingStrategy.globalDefault(),
+                null,
+                windowedInputCoder,
+                options));
+    testHarness.initializeState(snapshot);
+    testHarness.open();
+    testHarness.processElement(new StreamRecord<>(three));
+
+    // Completes the bundle of the replayed input and checkpoints the input of the third element
+    snapshot = testHarness.snapshot(1, 1);
+    testHarness.close();
+
+    assertThat(processedAfterRestore, containsInAnyOrder(two, three));
+
+    List<WindowedValue<?>> processedAfterSecondRestore =
+        Collections.synchronizedList(new ArrayList<>());
+    when(stageContext.getStageBundleFactory(any()))
+        .thenReturn(concurrentStageBundleFactory(processedAfterSecondRestore, null, null));
+    testHarness =
+        new OneInputStreamOperatorTestHarness<>(
+            getOperator(
+                mainOutput,
+                Collections.emptyList(),
+                outputManagerFactory,
+                WindowingStrategy.globalDefault(),
+                null,
+                windowedInputCoder,
+                options));
+    testHarness.initializeState(snapshot);
+    testHarness.open();
+    testHarness.close();
+
+    // The input replayed after the first restore is not replayed again
+    assertThat(processedAfterSecondRestore, contains(three));
+  }
+
+  /**
+   * Creates a {@link StageBundleFactory} whose bundles emit their inputs once they are closed, and
+   * record them as processed. The bundle containing {@code blockedInput} does not close until
+   * {@code releaseBundle} is counted down.
+   */
+  private StageBundleFactory concurrentStageBundleFactory(
+      List<WindowedValue<?>> processed,
+      @Nullable WindowedValue<?> blockedInput,
+      @Nullable CountDownLatch releaseBundle) {
+    return new StageBundleFactory() {
+      @Override
+      public RemoteBundle getBundle(
+          OutputReceiverFactory receiverFactory,
+          StateRequestHandler stateRequestHandler,
+          BundleProgressHandler progressHandler) {
+        List<WindowedValue<?>> inputs = new ArrayList<>();
+        return new RemoteBundle() {
+          @Override
+          public String getId() {
+            return "bundle-id";
+          }
+
+          @Override
+          public Map<String, FnDataReceiver> getInputReceivers() {
+            return ImmutableMap.of("input", input -> inputs.add((WindowedValue<?>) input));
+          }
+
+          @Override
+          public void split(double fractionOfRemainder) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public void close() throws Exception {
+            if (blockedInput != null && inputs.contains(blockedInput)) {
+              releaseBundle.await();
+            }
+            FnDataReceiver<WindowedValue<?>> receiver = receiverFactory.create("main-output");
+            for (WindowedValue<?> input : inputs) {
+              receiver.accept(input);
+            }
+            processed.addAll(inputs);
+          }
+        };
+      }
+
+      @Override
+      public ProcessBundleDescriptors.ExecutableProcessBundleDescriptor
+          getProcessBundleDescriptor() {
+        return processBundleDescriptor;
+      }
+
+      @Override
+      public void close() {}
+    };
+  }
+
   @Test
   @SuppressWarnings("unchecked")
   public void testEnsureStateCleanupWithKeyedInput() throws Exception {
@@ -860,6 +1099,24 @@ public class ExecutableStageDoFnOperatorTest {
       WindowingStrategy windowingStrategy,
       @Nullable Coder keyCoder,
       Coder windowedInputCoder) {
+    return getOperator(
+        mainOutput,
+        additionalOutputs,
+        outputManagerFactory,
+        windowingStrategy,
+        keyCoder,
+        windowedInputCoder,
+        PipelineOptionsFactory.as(FlinkPipelineOptions.class));
+  }
+
+  private ExecutableStageDoFnOperator<Integer, Integer> getOperator(
+      TupleTag<Integer> mainOutput,
+      List<TupleTag<?>> additionalOutputs,
+      DoFnOperator.MultiOutputOutputManagerFactory<Integer> outputManagerFactory,
+      WindowingStrategy windowingStrategy,
+      @Nullable Coder keyCoder,
+      Coder windowedInputCoder,
+      FlinkPipelineOptions options) {
 
     FlinkExecutableStageContextFactory contextFactory =
         Mockito.mock(FlinkExecutableStageContextFactory.class);
@@ -883,7 +1140,7 @@ public class ExecutableStageDoFnOperatorTest {
             Collections.emptyMap() /* sideInputTagMapping */,
             Collections.emptyList() /* sideInputs */,
             Collections.emptyMap() /* sideInputId mapping */,
-            PipelineOptionsFactory.as(FlinkPipelineOptions.class),
+            options,
             stagePayload,
             jobInfo,
             contextFactory,
@@ -22,12 +22,14 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.state.TimeDomain;
 import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
 import org.apache.beam.sdk.transforms.windowing.PaneInfo;
 import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Strings;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.hamcrest.Matchers;
 import org.joda.time.Instant;
@@ -66,6 +68,36 @@ public class BufferedElementsTest {
     testRoundTrip(ImmutableList.of(element, element, element, timerElement, timerElement), coder);
   }
 
+  @Test
+  public void testBatch() {
+    org.apache.beam.sdk.coders.Coder windowCoder = GlobalWindow.Coder.INSTANCE;
+    BufferedElements.Coder coder =
+        new BufferedElements.Coder(
+            WindowedValue.FullWindowedValueCoder.of(StringUtf8Coder.of(), windowCoder),
+            windowCoder);
+
+    String value = Strings.repeat("value", 20);
+    List<BufferedElement> elements = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      elements.add(
+          new BufferedElements.Element(
+              WindowedValue.of(value, new Instant(i), GlobalWindow.INSTANCE, PaneInfo.NO_FIRING)));
+    }
+    elements.add(
+        new BufferedElements.Timer(
+            "timerId",
+            "timerId",
+            GlobalWindow.INSTANCE,
+            new Instant(1),
+            new Instant(1),
+            TimeDomain.PROCESSING_TIME));
+
+    byte[] batch = BufferedElements.encodeBatch(elements, coder);
+    assertThat(BufferedElements.decodeBatch(batch, coder), Matchers.is(elements));
+    // the batch is compressed
+    assertThat(batch.length, Matchers.lessThan(100 * value.length() / 4));
+  }
+
   private static void testRoundTrip(
       List<BufferedElement> bufferedElements, BufferedElements.Coder coder) throws IOException {
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
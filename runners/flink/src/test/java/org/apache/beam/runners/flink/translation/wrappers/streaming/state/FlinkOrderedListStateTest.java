@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.flink.translation.wrappers.streaming.state;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.apache.beam.runners.flink.translation.wrappers.streaming.state.FlinkStateInternals.FlinkOrderedListState;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.primitives.UnsignedBytes;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.joda.time.Instant;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the keys of {@link FlinkOrderedListState}, whose serialized form RocksDB iterates in
+ * byte order.
+ */
+@RunWith(JUnit4.class)
+public class FlinkOrderedListStateTest {
+
+  @Test
+  public void testSerializedKeysAreInTimestampAndSequenceOrder() throws Exception {
+    Instant[] timestamps = {
+      BoundedWindow.TIMESTAMP_MIN_VALUE,
+      new Instant(-1000),
+      new Instant(-1),
+      new Instant(0),
+      new Instant(1),
+      new Instant(1000),
+      BoundedWindow.TIMESTAMP_MAX_VALUE
+    };
+    long[] sequences = {0, 1, 255, 256, 1L << 40, Long.MAX_VALUE};
+
+    TypeSerializer<KV<Long, Long>> serializer = FlinkOrderedListState.keySerializer();
+    Comparator<byte[]> byteOrder = UnsignedBytes.lexicographicalComparator();
+    List<byte[]> keys = new ArrayList<>();
+    for (Instant timestamp : timestamps) {
+      for (long sequence : sequences) {
+        keys.add(serialize(serializer, FlinkOrderedListState.key(timestamp, sequence)));
+      }
+    }
+    for (int i = 1; i < keys.size(); i++) {
+      assertThat(
+          "key " + i + " sorts after key " + (i - 1),
+          byteOrder.compare(keys.get(i - 1), keys.get(i)),
+          lessThan(0));
+    }
+  }
+
+  private static byte[] serialize(TypeSerializer<KV<Long, Long>> serializer, KV<Long, Long> key)
+      throws Exception {
+    DataOutputSerializer output = new DataOutputSerializer(16);
+    serializer.serialize(key, output);
+    return output.getCopyOfBuffer();
+  }
+}
@@ -43,6 +43,7 @@ import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.state.BagState;
 import org.apache.beam.sdk.state.CombiningState;
 import org.apache.beam.sdk.state.MapState;
+import org.apache.beam.sdk.state.OrderedListState;
 import org.apache.beam.sdk.state.ReadableState;
 import org.apache.beam.sdk.state.SetState;
 import org.apache.beam.sdk.state.State;
@@ -124,6 +125,13 @@ class WindmillStateInternals<K> implements StateInternals {
               String.format("%s is not supported", SetState.class.getSimpleName()));
         }
 
+        @Override
+        public <T> OrderedListState<T> bindOrderedList(
+            StateTag<OrderedListState<T>> spec, Coder<T> elemCoder) {
+          throw new UnsupportedOperationException(
+              String.format("%s is not supported", OrderedListState.class.getSimpleName()));
+        }
+
         @Override
         public <KeyT, ValueT> MapState<KeyT, ValueT> bindMap(
             StateTag<MapState<KeyT, ValueT>> spec,
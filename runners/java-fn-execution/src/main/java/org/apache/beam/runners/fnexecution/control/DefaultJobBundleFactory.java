@@ -20,18 +20,24 @@ package org.apache.beam.runners.fnexecution.control;
 import com.google.auto.value.AutoValue;
 import java.io.IOException;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.beam.model.fnexecution.v1.ProvisionApi;
+import org.apache.beam.model.jobmanagement.v1.ArtifactApi.ProxyManifest;
 import org.apache.beam.model.pipeline.v1.RunnerApi.Environment;
 import org.apache.beam.model.pipeline.v1.RunnerApi.StandardEnvironments;
 import org.apache.beam.runners.core.construction.BeamUrns;
@@ -41,6 +47,7 @@ import org.apache.beam.runners.core.construction.graph.ExecutableStage;
 import org.apache.beam.runners.fnexecution.GrpcContextHeaderAccessorProvider;
 import org.apache.beam.runners.fnexecution.GrpcFnServer;
 import org.apache.beam.runners.fnexecution.ServerFactory;
+import org.apache.beam.runners.fnexecution.artifact.AbstractLegacyArtifactRetrievalService;
 import org.apache.beam.runners.fnexecution.artifact.BeamFileSystemLegacyArtifactRetrievalService;
 import org.apache.beam.runners.fnexecution.artifact.ClassLoaderLegacyArtifactRetrievalService;
 import org.apache.beam.runners.fnexecution.artifact.LegacyArtifactRetrievalService;
@@ -70,9 +77,13 @@ import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.PortablePipelineOptions;
 import org.apache.beam.sdk.options.PortablePipelineOptions.RetrievalServiceType;
 import org.apache.beam.sdk.util.NoopLock;
+import org.apache.beam.vendor.grpc.v1p26p0.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.grpc.v1p26p0.com.google.protobuf.Struct;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.MoreObjects;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Throwables;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.Cache;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheBuilder;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheLoader;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.LoadingCache;
@@ -80,6 +91,8 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Immutabl
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Sets;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.hash.Hashing;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.UncheckedExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -94,6 +107,11 @@ import org.slf4j.LoggerFactory;
 public class DefaultJobBundleFactory implements JobBundleFactory {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultJobBundleFactory.class);
   private static final IdGenerator factoryIdGenerator = IdGenerators.incrementingLongs();
+  // The options which identify a job rather than configure it, and differ between any two jobs.
+  private static final ImmutableList<String> JOB_IDENTIFYING_OPTION_URNS =
+      ImmutableList.of("beam:option:options_id:v1", "beam:option:job_name:v1");
+  // The number of process bundle descriptors kept with an environment which is reused.
+  private static final int MAX_REUSED_PROCESS_BUNDLE_DESCRIPTORS = 1000;
 
   private final String factoryId = factoryIdGenerator.getId();
   private final ImmutableList<EnvironmentCacheAndLock> environmentCaches;
@@ -103,9 +121,14 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
   private final MapControlClientPool clientPool;
   private final IdGenerator stageIdGenerator;
   private final int environmentExpirationMillis;
+  private final int environmentReuseMillis;
+  // The hash of the artifacts of the job, which environments are reused across jobs for.
+  private final String artifactHash;
+  // The pipeline options the environments are provisioned with, which they are reused for.
+  private final Struct provisionedOptions;
   private final Semaphore availableCachesSemaphore;
-  private final LinkedBlockingDeque<EnvironmentCacheAndLock> availableCaches;
   private final boolean loadBalanceBundles;
+  private final int maxBundlesPerEnvironment;
   /** Clients which were evicted due to environment expiration but still had pending references. */
   private final Set<WrappedSdkHarnessClient> evictedActiveClients;
 
@@ -140,13 +163,18 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     this.clientPool = MapControlClientPool.create();
     this.stageIdGenerator = () -> factoryId + "-" + stageIdSuffixGenerator.getId();
     this.environmentExpirationMillis = getEnvironmentExpirationMillis(jobInfo);
+    this.environmentReuseMillis = getEnvironmentReuseMillis(jobInfo);
+    this.artifactHash = environmentReuseMillis > 0 ? getArtifactHash(jobInfo) : "";
+    this.provisionedOptions =
+        environmentReuseMillis > 0 ? getProvisionedOptions(jobInfo) : Struct.getDefaultInstance();
     this.loadBalanceBundles = shouldLoadBalanceBundles(jobInfo);
+    this.maxBundlesPerEnvironment = getMaxBundlesPerEnvironment(jobInfo);
     this.environmentCaches =
         createEnvironmentCaches(
             serverFactory -> createServerInfo(jobInfo, serverFactory),
             getMaxEnvironmentClients(jobInfo));
-    this.availableCachesSemaphore = new Semaphore(environmentCaches.size(), true);
-    this.availableCaches = new LinkedBlockingDeque<>(environmentCaches);
+    this.availableCachesSemaphore =
+        new Semaphore(environmentCaches.size() * maxBundlesPerEnvironment, true);
     this.evictedActiveClients = Sets.newConcurrentHashSet();
   }
 
@@ -161,17 +189,23 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     this.clientPool = MapControlClientPool.create();
     this.stageIdGenerator = stageIdGenerator;
     this.environmentExpirationMillis = getEnvironmentExpirationMillis(jobInfo);
+    this.environmentReuseMillis = getEnvironmentReuseMillis(jobInfo);
+    this.artifactHash = environmentReuseMillis > 0 ? getArtifactHash(jobInfo) : "";
+    this.provisionedOptions =
+        environmentReuseMillis > 0 ? getProvisionedOptions(jobInfo) : Struct.getDefaultInstance();
     this.loadBalanceBundles = shouldLoadBalanceBundles(jobInfo);
+    this.maxBundlesPerEnvironment = getMaxBundlesPerEnvironment(jobInfo);
     this.environmentCaches =
         createEnvironmentCaches(serverFactory -> serverInfo, getMaxEnvironmentClients(jobInfo));
-    this.availableCachesSemaphore = new Semaphore(environmentCaches.size(), true);
-    this.availableCaches = new LinkedBlockingDeque<>(environmentCaches);
+    this.availableCachesSemaphore =
+        new Semaphore(environmentCaches.size() * maxBundlesPerEnvironment, true);
     this.evictedActiveClients = Sets.newConcurrentHashSet();
   }
 
   private static class EnvironmentCacheAndLock {
     final Lock lock;
     final LoadingCache<Environment, WrappedSdkHarnessClient> cache;
+    final EnvironmentLoad load = new EnvironmentLoad();
 
     EnvironmentCacheAndLock(LoadingCache<Environment, WrappedSdkHarnessClient> cache, Lock lock) {
       this.lock = lock;
@@ -227,20 +261,22 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
               new CacheLoader<Environment, WrappedSdkHarnessClient>() {
                 @Override
                 public WrappedSdkHarnessClient load(Environment environment) throws Exception {
-                  EnvironmentFactory.Provider environmentFactoryProvider =
-                      environmentFactoryProviderMap.get(environment.getUrn());
-                  ServerFactory serverFactory = environmentFactoryProvider.getServerFactory();
-                  ServerInfo serverInfo = serverInfoCreator.apply(serverFactory);
-                  EnvironmentFactory environmentFactory =
-                      environmentFactoryProvider.createEnvironmentFactory(
-                          serverInfo.getControlServer(),
-                          serverInfo.getLoggingServer(),
-                          serverInfo.getRetrievalServer(),
-                          serverInfo.getProvisioningServer(),
-                          clientPool,
-                          stageIdGenerator);
-                  return WrappedSdkHarnessClient.wrapping(
-                      environmentFactory.createEnvironment(environment), serverInfo);
+                  if (environmentReuseMillis <= 0) {
+                    return createClient(environment, serverInfoCreator);
+                  }
+                  SharedEnvironmentPool.Key key =
+                      SharedEnvironmentPool.Key.of(environment, artifactHash, provisionedOptions);
+                  WrappedSdkHarnessClient client =
+                      SharedEnvironmentPool.getInstance()
+                          .acquire(key, () -> createClient(environment, serverInfoCreator));
+                  // Once this job does not use the client anymore, it is returned to the pool
+                  // instead of being closed.
+                  client.setReleaser(
+                      c -> {
+                        evictedActiveClients.remove(c);
+                        SharedEnvironmentPool.getInstance().release(key, c, environmentReuseMillis);
+                      });
+                  return client;
                 }
               });
 
@@ -249,12 +285,86 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     return caches.build();
   }
 
+  private WrappedSdkHarnessClient createClient(
+      Environment environment, ThrowingFunction<ServerFactory, ServerInfo> serverInfoCreator)
+      throws Exception {
+    EnvironmentFactory.Provider environmentFactoryProvider =
+        environmentFactoryProviderMap.get(environment.getUrn());
+    ServerFactory serverFactory = environmentFactoryProvider.getServerFactory();
+    ServerInfo serverInfo = serverInfoCreator.apply(serverFactory);
+    EnvironmentFactory environmentFactory =
+        environmentFactoryProvider.createEnvironmentFactory(
+            serverInfo.getControlServer(),
+            serverInfo.getLoggingServer(),
+            serverInfo.getRetrievalServer(),
+            serverInfo.getProvisioningServer(),
+            clientPool,
+            stageIdGenerator);
+    return WrappedSdkHarnessClient.wrapping(
+        environmentFactory.createEnvironment(environment), serverInfo);
+  }
+
   private static int getEnvironmentExpirationMillis(JobInfo jobInfo) {
     PipelineOptions pipelineOptions =
         PipelineOptionsTranslation.fromProto(jobInfo.pipelineOptions());
     return pipelineOptions.as(PortablePipelineOptions.class).getEnvironmentExpirationMillis();
   }
 
+  private static int getEnvironmentReuseMillis(JobInfo jobInfo) {
+    PipelineOptions pipelineOptions =
+        PipelineOptionsTranslation.fromProto(jobInfo.pipelineOptions());
+    int environmentReuseMillis =
+        pipelineOptions.as(PortablePipelineOptions.class).getEnvironmentReuseMillis();
+    Preconditions.checkArgument(
+        environmentReuseMillis >= 0, "environment_reuse_millis must be >= 0");
+    return environmentReuseMillis;
+  }
+
+  /**
+   * Returns the hash of the manifest of the artifacts staged for the job, which lists the names and
+   * the digests of the artifacts. Falls back to the retrieval token if the manifest can't be read,
+   * so that the environments are only reused by the jobs using the same staged artifacts.
+   */
+  private static String getArtifactHash(JobInfo jobInfo) {
+    if (jobInfo.retrievalToken().isEmpty()) {
+      return "";
+    }
+    PortablePipelineOptions portableOptions =
+        PipelineOptionsTranslation.fromProto(jobInfo.pipelineOptions())
+            .as(PortablePipelineOptions.class);
+    try {
+      ProxyManifest manifest =
+          createArtifactRetrievalService(portableOptions)
+              .getManifestProxy(jobInfo.retrievalToken());
+      return Hashing.sha256().hashBytes(manifest.getManifest().toByteArray()).toString();
+    } catch (Exception e) {
+      LOG.warn(
+          "Could not read the artifact manifest of job {}, its environments are only reused for "
+              + "the same retrieval token.",
+          jobInfo.jobId(),
+          e);
+      return jobInfo.retrievalToken();
+    }
+  }
+
+  /**
+   * Returns the pipeline options which the SDK harness is provisioned with, without the options
+   * identifying the job, such as its name. The environments are only reused by the jobs with the
+   * same options, so that the SDK harness of a job never runs with the configuration of another
+   * job.
+   *
+   * <p>A reused environment keeps the provisioning, artifact retrieval and logging servers of the
+   * job which started it. Its SDK harness thus reports the job id and name of that job, and logs
+   * through the same server for all the jobs it runs.
+   */
+  private static Struct getProvisionedOptions(JobInfo jobInfo) {
+    Struct.Builder options = jobInfo.pipelineOptions().toBuilder();
+    for (String urn : JOB_IDENTIFYING_OPTION_URNS) {
+      options.removeFields(urn);
+    }
+    return options.build();
+  }
+
   private static int getMaxEnvironmentClients(JobInfo jobInfo) {
     PortablePipelineOptions pipelineOptions =
         PipelineOptionsTranslation.fromProto(jobInfo.pipelineOptions())
@@ -289,6 +399,46 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     return loadBalanceBundles;
   }
 
+  private static int getMaxBundlesPerEnvironment(JobInfo jobInfo) {
+    PipelineOptions pipelineOptions =
+        PipelineOptionsTranslation.fromProto(jobInfo.pipelineOptions());
+    int maxBundlesPerEnvironment =
+        pipelineOptions.as(PortablePipelineOptions.class).getMaxBundlesPerEnvironment();
+    Preconditions.checkArgument(
+        maxBundlesPerEnvironment > 0, "max_bundles_per_environment must be > 0");
+    return maxBundlesPerEnvironment;
+  }
+
+  /**
+   * Returns the environment which a new bundle is expected to start the soonest in, among the
+   * environments with less than {@link #maxBundlesPerEnvironment} bundles in progress. A new
+   * environment is only started once the started ones all have bundles in progress.
+   */
+  private EnvironmentCacheAndLock getLeastLoadedCache(Environment environment) {
+    EnvironmentCacheAndLock leastLoaded = null;
+    EnvironmentCacheAndLock notStarted = null;
+    for (EnvironmentCacheAndLock environmentCache : environmentCaches) {
+      EnvironmentLoad load = environmentCache.load;
+      if (load.getOutstandingBundles() >= maxBundlesPerEnvironment) {
+        continue;
+      }
+      if (environmentCache.cache.getIfPresent(environment) == null) {
+        if (notStarted == null) {
+          notStarted = environmentCache;
+        }
+      } else if (leastLoaded == null
+          || load.getExpectedWaitMillis() < leastLoaded.load.getExpectedWaitMillis()) {
+        leastLoaded = environmentCache;
+      }
+    }
+    if (leastLoaded == null
+        || (notStarted != null && leastLoaded.load.getOutstandingBundles() > 0)) {
+      leastLoaded = notStarted;
+    }
+    // The semaphore guarantees that an environment has less than the maximum bundles in progress
+    return Preconditions.checkNotNull(leastLoaded);
+  }
+
   @Override
   public StageBundleFactory forStage(ExecutableStage executableStage) {
     return new SimpleStageBundleFactory(executableStage);
@@ -378,16 +528,17 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
   private PreparedClient prepare(
       WrappedSdkHarnessClient wrappedClient, ExecutableStage executableStage) {
     PreparedClient preparedClient = new PreparedClient();
-    try {
-      preparedClient.wrappedClient = wrappedClient;
+    preparedClient.wrappedClient = wrappedClient;
+    if (environmentReuseMillis > 0) {
+      // Reuse the descriptor registered by a previous job for the same stage, which the SDK harness
+      // keeps the bundle processors of.
       preparedClient.processBundleDescriptor =
-          ProcessBundleDescriptors.fromExecutableStage(
-              stageIdGenerator.getId(),
-              executableStage,
-              wrappedClient.getServerInfo().getDataServer().getApiServiceDescriptor(),
-              wrappedClient.getServerInfo().getStateServer().getApiServiceDescriptor());
-    } catch (IOException e) {
-      throw new RuntimeException("Failed to create ProcessBundleDescriptor.", e);
+          wrappedClient.getProcessBundleDescriptor(
+              executableStage.toPTransform("stage").getSpec().getPayload(),
+              () -> createProcessBundleDescriptor(wrappedClient, executableStage));
+    } else {
+      preparedClient.processBundleDescriptor =
+          createProcessBundleDescriptor(wrappedClient, executableStage);
     }
 
     preparedClient.processor =
@@ -400,6 +551,19 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     return preparedClient;
   }
 
+  private ExecutableProcessBundleDescriptor createProcessBundleDescriptor(
+      WrappedSdkHarnessClient wrappedClient, ExecutableStage executableStage) {
+    try {
+      return ProcessBundleDescriptors.fromExecutableStage(
+          stageIdGenerator.getId(),
+          executableStage,
+          wrappedClient.getServerInfo().getDataServer().getApiServiceDescriptor(),
+          wrappedClient.getServerInfo().getStateServer().getApiServiceDescriptor());
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to create ProcessBundleDescriptor.", e);
+    }
+  }
+
   /**
    * A {@link StageBundleFactory} for remotely processing bundles that supports environment
    * expiration.
@@ -414,7 +578,11 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
 
     private SimpleStageBundleFactory(ExecutableStage executableStage) {
       this.executableStage = executableStage;
-      this.environmentIndex = stageBundleFactoryCount.getAndIncrement() % environmentCaches.size();
+      // With load balancing, further environments are only started once they are needed
+      this.environmentIndex =
+          loadBalanceBundles
+              ? 0
+              : stageBundleFactoryCount.getAndIncrement() % environmentCaches.size();
       WrappedSdkHarnessClient client =
           environmentCaches
               .get(environmentIndex)
@@ -438,8 +606,11 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
       if (loadBalanceBundles) {
         // The semaphore is used to ensure fairness, i.e. first stop first go.
         availableCachesSemaphore.acquire();
-        // The blocking queue of caches for serving multiple bundles concurrently.
-        currentCache = availableCaches.take();
+        // Select and reserve the environment in one step, for concurrent bundles to see its load.
+        synchronized (environmentCaches) {
+          currentCache = getLeastLoadedCache(executableStage.getEnvironment());
+          currentCache.load.start();
+        }
         // Lock because the environment expiration can remove the ref for the client
         // which would close the underlying environment before we can ref it.
         try {
@@ -476,6 +647,7 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
           currentClient = prepare(client, executableStage);
           preparedClients.put(client, currentClient);
         }
+        currentCache.load.start();
       }
 
       if (environmentExpirationMillis > 0) {
@@ -511,8 +683,8 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
             bundle.close();
           } finally {
             client.unref();
+            currentCache.load.finish();
             if (loadBalanceBundles) {
-              availableCaches.offer(currentCache);
               availableCachesSemaphore.release();
             }
           }
@@ -525,6 +697,11 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
       return currentClient.processBundleDescriptor;
     }
 
+    @Override
+    public List<EnvironmentLoad> getEnvironmentLoads() {
+      return environmentCaches.stream().map(c -> c.load).collect(Collectors.toList());
+    }
+
     @Override
     public void close() throws Exception {
       // Clear reference to encourage cache eviction. Values are weakly referenced.
@@ -543,6 +720,13 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     private final SdkHarnessClient client;
     private final ServerInfo serverInfo;
     private final AtomicInteger bundleRefCount = new AtomicInteger();
+    /**
+     * The descriptors registered with the environment by stage payload, when it is reused. The
+     * least recently used ones are dropped along with their bundle processors.
+     */
+    private final Cache<ByteString, ExecutableProcessBundleDescriptor> processBundleDescriptors;
+    /** Returns the client to the pool of environments once unused, instead of closing it. */
+    @Nullable private volatile Consumer<WrappedSdkHarnessClient> releaser;
 
     private boolean closed;
 
@@ -558,6 +742,14 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
       this.environment = environment;
       this.client = client;
       this.serverInfo = serverInfo;
+      this.processBundleDescriptors =
+          CacheBuilder.newBuilder()
+              .maximumSize(MAX_REUSED_PROCESS_BUNDLE_DESCRIPTORS)
+              .<ByteString, ExecutableProcessBundleDescriptor>removalListener(
+                  notification ->
+                      client.removeProcessor(
+                          notification.getValue().getProcessBundleDescriptor().getId()))
+              .build();
       ref();
     }
 
@@ -569,6 +761,21 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
       return serverInfo;
     }
 
+    /** Returns the descriptor registered for the stage payload, or creates one. */
+    ExecutableProcessBundleDescriptor getProcessBundleDescriptor(
+        ByteString stagePayload, Callable<ExecutableProcessBundleDescriptor> descriptorCreator) {
+      try {
+        return processBundleDescriptors.get(stagePayload, descriptorCreator);
+      } catch (ExecutionException | UncheckedExecutionException e) {
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new RuntimeException(e.getCause());
+      }
+    }
+
+    void setReleaser(Consumer<WrappedSdkHarnessClient> releaser) {
+      this.releaser = releaser;
+    }
+
     public synchronized void close() {
       if (closed) {
         return;
@@ -604,9 +811,17 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
       int refCount = bundleRefCount.decrementAndGet();
       Preconditions.checkState(refCount >= 0, "Reference count must not be negative.");
       if (refCount == 0) {
-        // Close environment after it was removed from cache and all bundles finished.
-        LOG.info("Closing environment {}", environment.getEnvironment());
-        close();
+        Consumer<WrappedSdkHarnessClient> releaser = this.releaser;
+        if (releaser != null) {
+          // The pool of environments holds the client until another job takes it.
+          this.releaser = null;
+          ref();
+          releaser.accept(this);
+        } else {
+          // Close environment after it was removed from cache and all bundles finished.
+          LOG.info("Closing environment {}", environment.getEnvironment());
+          close();
+        }
       }
       return refCount;
     }
@@ -619,13 +834,8 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     PortablePipelineOptions portableOptions =
         PipelineOptionsTranslation.fromProto(jobInfo.pipelineOptions())
             .as(PortablePipelineOptions.class);
-    LegacyArtifactRetrievalService artifactRetrievalService;
-
-    if (portableOptions.getRetrievalServiceType() == RetrievalServiceType.CLASSLOADER) {
-      artifactRetrievalService = new ClassLoaderLegacyArtifactRetrievalService();
-    } else {
-      artifactRetrievalService = BeamFileSystemLegacyArtifactRetrievalService.create();
-    }
+    LegacyArtifactRetrievalService artifactRetrievalService =
+        createArtifactRetrievalService(portableOptions);
 
     GrpcFnServer<FnApiControlClientPoolService> controlServer =
         GrpcFnServer.allocatePortAndCreateFor(
@@ -647,7 +857,12 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     GrpcFnServer<GrpcDataService> dataServer =
         GrpcFnServer.allocatePortAndCreateFor(
             GrpcDataService.create(
-                portableOptions, executor, OutboundObserverFactory.serverDirect()),
+                portableOptions,
+                // the data service of a reused environment outlives the job starting it
+                environmentReuseMillis > 0
+                    ? SharedEnvironmentPool.getInstance().getDataExecutor()
+                    : executor,
+                OutboundObserverFactory.serverDirect()),
             serverFactory);
     GrpcFnServer<GrpcStateService> stateServer =
         GrpcFnServer.allocatePortAndCreateFor(GrpcStateService.create(), serverFactory);
@@ -664,6 +879,14 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     return serverInfo;
   }
 
+  private static AbstractLegacyArtifactRetrievalService createArtifactRetrievalService(
+      PortablePipelineOptions portableOptions) {
+    if (portableOptions.getRetrievalServiceType() == RetrievalServiceType.CLASSLOADER) {
+      return new ClassLoaderLegacyArtifactRetrievalService();
+    }
+    return BeamFileSystemLegacyArtifactRetrievalService.create();
+  }
+
   /** A container for EnvironmentFactory and its corresponding Grpc servers. */
   @AutoValue
   public abstract static class ServerInfo {
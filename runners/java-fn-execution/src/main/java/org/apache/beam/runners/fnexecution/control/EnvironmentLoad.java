@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.fnexecution.control;
+
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * The load of one of the environments of a {@link DefaultJobBundleFactory}: the bundles in
+ * progress in the environment, and the recent processing time of its bundles.
+ */
+@ThreadSafe
+public class EnvironmentLoad {
+  // The weight of the last bundle in the average processing time of the bundles.
+  private static final double LAST_BUNDLE_WEIGHT = 0.2;
+
+  private int outstandingBundles;
+  private long completedBundles;
+  private double averageBundleMillis;
+  private long busyNanos;
+  private long busySinceNanos;
+  private long lastFinishNanos = Long.MIN_VALUE;
+
+  /** Records the start of a bundle. */
+  synchronized void start() {
+    start(System.nanoTime());
+  }
+
+  /** Records the end of a bundle. */
+  synchronized void finish() {
+    finish(System.nanoTime());
+  }
+
+  @VisibleForTesting
+  synchronized void start(long nowNanos) {
+    if (outstandingBundles++ == 0) {
+      busySinceNanos = nowNanos;
+    }
+  }
+
+  /**
+   * Records the end of a bundle. The processing time of the bundle is the busy time since the
+   * previous bundle finished. Concurrent bundles share the environment, so the time between their
+   * starts and ends would include the time they wait for each other.
+   */
+  @VisibleForTesting
+  synchronized void finish(long nowNanos) {
+    double bundleMillis = (nowNanos - Math.max(busySinceNanos, lastFinishNanos)) / 1e6;
+    lastFinishNanos = nowNanos;
+    if (--outstandingBundles == 0) {
+      busyNanos += nowNanos - busySinceNanos;
+    }
+    averageBundleMillis =
+        completedBundles++ == 0
+            ? bundleMillis
+            : (1 - LAST_BUNDLE_WEIGHT) * averageBundleMillis + LAST_BUNDLE_WEIGHT * bundleMillis;
+  }
+
+  /**
+   * Returns how long a new bundle would wait for the bundles in progress, given the recent
+   * processing time of the bundles. Environments which have not completed a bundle yet are
+   * estimated by their number of bundles in progress only.
+   */
+  synchronized double getExpectedWaitMillis() {
+    return outstandingBundles * Math.max(averageBundleMillis, 1);
+  }
+
+  /** Returns the number of bundles in progress in the environment. */
+  public synchronized int getOutstandingBundles() {
+    return outstandingBundles;
+  }
+
+  /** Returns the number of bundles the environment completed. */
+  public synchronized long getCompletedBundles() {
+    return completedBundles;
+  }
+
+  /**
+   * Returns the moving average of the processing time of the recent bundles, which is the busy time
+   * of the environment per completed bundle.
+   */
+  public synchronized double getAverageBundleMillis() {
+    return averageBundleMillis;
+  }
+
+  /**
+   * Returns the total time during which the environment had bundles in progress. Its increase over
+   * a period of time divided by the period is the utilization of the environment.
+   */
+  public synchronized long getBusyMillis() {
+    long nanos = busyNanos;
+    if (outstandingBundles > 0) {
+      nanos += System.nanoTime() - busySinceNanos;
+    }
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+}
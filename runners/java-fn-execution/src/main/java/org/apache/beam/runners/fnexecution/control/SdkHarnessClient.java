@@ -486,6 +486,14 @@ public class SdkHarnessClient implements AutoCloseable {
     return bundleProcessor;
   }
 
+  /**
+   * Drops the cached {@link BundleProcessor} of the process bundle descriptor, which is not used
+   * anymore. The bundles in progress of the processor are not affected.
+   */
+  void removeProcessor(String processBundleDescriptorId) {
+    clientProcessors.remove(processBundleDescriptorId);
+  }
+
   /**
    * A {@link StateDelegator} that issues zero state requests to any provided {@link
    * StateRequestHandler state handlers}.
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.fnexecution.control;
+
+import com.google.auto.value.AutoValue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.beam.model.pipeline.v1.RunnerApi.Environment;
+import org.apache.beam.runners.fnexecution.control.DefaultJobBundleFactory.WrappedSdkHarnessClient;
+import org.apache.beam.vendor.grpc.v1p26p0.com.google.protobuf.Struct;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of the environments of the jobs of this process, which are reused by the jobs running the
+ * same environment with the same artifacts and pipeline options, see {@link
+ * org.apache.beam.sdk.options.PortablePipelineOptions#getEnvironmentReuseMillis()}.
+ *
+ * <p>A {@link DefaultJobBundleFactory} takes an idle environment from the pool before starting a
+ * new one, and returns its environments to the pool instead of closing them. An environment is
+ * closed once no job took it for the reuse duration of the job which returned it. The process
+ * bundle descriptors registered with an environment are kept along with it, so that the next jobs
+ * running the same stages neither register them again nor make the SDK harness create new bundle
+ * processors for them.
+ */
+@ThreadSafe
+class SharedEnvironmentPool {
+  private static final Logger LOG = LoggerFactory.getLogger(SharedEnvironmentPool.class);
+
+  private static final SharedEnvironmentPool INSTANCE = new SharedEnvironmentPool();
+
+  static {
+    Runtime.getRuntime()
+        .addShutdownHook(new Thread(INSTANCE::closeIdle, "SharedEnvironmentPool-shutdown"));
+  }
+
+  private final Map<Key, Deque<IdleClient>> idleClients = new HashMap<>();
+  private final ScheduledExecutorService expirationExecutor;
+  // The executor of the data services of the environments, which outlive the job starting them.
+  private final ExecutorService dataExecutor;
+
+  static SharedEnvironmentPool getInstance() {
+    return INSTANCE;
+  }
+
+  private SharedEnvironmentPool() {
+    this.expirationExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("SharedEnvironmentPool-expiration-%d")
+                .build());
+    this.dataExecutor =
+        Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("SharedEnvironmentPool-data-%d")
+                .build());
+  }
+
+  ExecutorService getDataExecutor() {
+    return dataExecutor;
+  }
+
+  /** Returns an idle client of the environment with the artifacts, or creates one. */
+  WrappedSdkHarnessClient acquire(Key key, Callable<WrappedSdkHarnessClient> clientCreator)
+      throws Exception {
+    synchronized (this) {
+      Deque<IdleClient> clients = idleClients.get(key);
+      if (clients != null) {
+        IdleClient idle = clients.poll();
+        if (clients.isEmpty()) {
+          idleClients.remove(key);
+        }
+        if (idle != null) {
+          idle.expiration.cancel(false);
+          LOG.info("Reusing environment {}", key.environment());
+          return idle.client;
+        }
+      }
+    }
+    return clientCreator.call();
+  }
+
+  /** Keeps the client, which its job does not use anymore, for the jobs starting later. */
+  synchronized void release(Key key, WrappedSdkHarnessClient client, long idleMillis) {
+    IdleClient idle = new IdleClient(client);
+    idleClients.computeIfAbsent(key, k -> new ArrayDeque<>()).add(idle);
+    idle.expiration =
+        expirationExecutor.schedule(() -> expire(key, idle), idleMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /** Closes the idle clients right away. */
+  void closeIdle() {
+    List<IdleClient> closing = new ArrayList<>();
+    synchronized (this) {
+      idleClients.values().forEach(closing::addAll);
+      idleClients.clear();
+    }
+    for (IdleClient idle : closing) {
+      idle.expiration.cancel(false);
+      idle.client.close();
+    }
+  }
+
+  synchronized int getIdleCount() {
+    return idleClients.values().stream().mapToInt(Deque::size).sum();
+  }
+
+  private void expire(Key key, IdleClient idle) {
+    synchronized (this) {
+      Deque<IdleClient> clients = idleClients.get(key);
+      if (clients == null || !clients.remove(idle)) {
+        // a job took the client in the meantime
+        return;
+      }
+      if (clients.isEmpty()) {
+        idleClients.remove(key);
+      }
+    }
+    LOG.info("Closing idle environment {}", key.environment());
+    idle.client.close();
+  }
+
+  /** The environments which a client can be reused for. */
+  @AutoValue
+  abstract static class Key {
+    abstract Environment environment();
+
+    /** The hash of the manifest of the artifacts staged for the environment. */
+    abstract String artifactHash();
+
+    /** The pipeline options which the SDK harness of the environment was provisioned with. */
+    abstract Struct pipelineOptions();
+
+    static Key of(Environment environment, String artifactHash, Struct pipelineOptions) {
+      return new AutoValue_SharedEnvironmentPool_Key(environment, artifactHash, pipelineOptions);
+    }
+  }
+
+  private static class IdleClient {
+    private final WrappedSdkHarnessClient client;
+    private ScheduledFuture<?> expiration;
+
+    IdleClient(WrappedSdkHarnessClient client) {
+      this.client = client;
+    }
+  }
+}
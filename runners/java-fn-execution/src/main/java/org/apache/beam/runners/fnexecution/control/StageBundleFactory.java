@@ -17,6 +17,8 @@
  */
 package org.apache.beam.runners.fnexecution.control;
 
+import java.util.Collections;
+import java.util.List;
 import org.apache.beam.runners.fnexecution.state.StateRequestHandler;
 
 /**
@@ -36,4 +38,9 @@ public interface StageBundleFactory extends AutoCloseable {
       throws Exception;
 
   ProcessBundleDescriptors.ExecutableProcessBundleDescriptor getProcessBundleDescriptor();
+
+  /** Returns the load of the environments which the bundles of the stage may be processed in. */
+  default List<EnvironmentLoad> getEnvironmentLoads() {
+    return Collections.emptyList();
+  }
 }
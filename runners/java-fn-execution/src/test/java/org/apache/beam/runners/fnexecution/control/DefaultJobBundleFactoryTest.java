@@ -26,6 +26,7 @@ import static org.mockito.Mockito.when;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -500,6 +501,136 @@ public class DefaultJobBundleFactoryTest {
     Assert.assertThat(e.getMessage(), containsString("state_cache_size"));
   }
 
+  @Test
+  public void loadBalancingStartsEnvironmentsOnDemand() throws Exception {
+    PortablePipelineOptions portableOptions =
+        PipelineOptionsFactory.as(PortablePipelineOptions.class);
+    portableOptions.setSdkWorkerParallelism(2);
+    portableOptions.setLoadBalanceBundles(true);
+    portableOptions.setMaxBundlesPerEnvironment(2);
+    Struct pipelineOptions = PipelineOptionsTranslation.toProto(portableOptions);
+
+    try (DefaultJobBundleFactory bundleFactory =
+        new DefaultJobBundleFactory(
+            JobInfo.create("testJob", "testJob", "token", pipelineOptions),
+            envFactoryProviderMap,
+            stageIdGenerator,
+            serverInfo)) {
+      OutputReceiverFactory orf = mock(OutputReceiverFactory.class);
+      StateRequestHandler srh = mock(StateRequestHandler.class);
+      when(srh.getCacheTokens()).thenReturn(Collections.emptyList());
+      StageBundleFactory sbf = bundleFactory.forStage(getExecutableStage(environment));
+      // sequential bundles are all processed by the started environment
+      sbf.getBundle(orf, srh, BundleProgressHandler.ignored()).close();
+      sbf.getBundle(orf, srh, BundleProgressHandler.ignored()).close();
+      verify(envFactory, Mockito.times(1)).createEnvironment(environment);
+
+      // concurrent bundles start the other environment before queueing up in the first one
+      RemoteBundle b1 = sbf.getBundle(orf, srh, BundleProgressHandler.ignored());
+      RemoteBundle b2 = sbf.getBundle(orf, srh, BundleProgressHandler.ignored());
+      verify(envFactory, Mockito.times(2)).createEnvironment(environment);
+      RemoteBundle b3 = sbf.getBundle(orf, srh, BundleProgressHandler.ignored());
+      verify(envFactory, Mockito.times(2)).createEnvironment(environment);
+
+      List<EnvironmentLoad> loads = sbf.getEnvironmentLoads();
+      Assert.assertEquals(2, loads.size());
+      Assert.assertEquals(
+          3, loads.get(0).getOutstandingBundles() + loads.get(1).getOutstandingBundles());
+      b1.close();
+      b2.close();
+      b3.close();
+      Assert.assertEquals(
+          0, loads.get(0).getOutstandingBundles() + loads.get(1).getOutstandingBundles());
+      Assert.assertEquals(
+          5, loads.get(0).getCompletedBundles() + loads.get(1).getCompletedBundles());
+    }
+  }
+
+  @Test
+  public void reusesEnvironmentAcrossJobs() throws Exception {
+    Environment reusedEnvironment =
+        environment.toBuilder().setPayload(ByteString.copyFromUtf8("reused")).build();
+    when(envFactory.createEnvironment(reusedEnvironment)).thenReturn(remoteEnvironment);
+    PortablePipelineOptions portableOptions =
+        PipelineOptionsFactory.as(PortablePipelineOptions.class);
+    portableOptions.setEnvironmentReuseMillis(60_000);
+    Struct pipelineOptions = PipelineOptionsTranslation.toProto(portableOptions);
+
+    for (String jobId : new String[] {"job1", "job2"}) {
+      try (DefaultJobBundleFactory bundleFactory =
+          new DefaultJobBundleFactory(
+              JobInfo.create(jobId, jobId, "token", pipelineOptions),
+              envFactoryProviderMap,
+              stageIdGenerator,
+              serverInfo)) {
+        bundleFactory.forStage(getExecutableStage(reusedEnvironment));
+      }
+    }
+    // The second job neither starts an environment nor registers the stage again
+    verify(envFactory, Mockito.times(1)).createEnvironment(reusedEnvironment);
+    verify(instructionHandler, Mockito.times(1)).handle(any());
+    verify(remoteEnvironment, Mockito.never()).close();
+
+    SharedEnvironmentPool.getInstance().closeIdle();
+    verify(remoteEnvironment).close();
+  }
+
+  @Test
+  public void reusesEnvironmentAcrossJobsWithOtherNames() throws Exception {
+    Environment reusedEnvironment =
+        environment.toBuilder().setPayload(ByteString.copyFromUtf8("other-names")).build();
+    when(envFactory.createEnvironment(reusedEnvironment)).thenReturn(remoteEnvironment);
+
+    for (String jobId : new String[] {"job1", "job2"}) {
+      // Every submission of a job has its own job name and options id
+      PortablePipelineOptions portableOptions =
+          PipelineOptionsFactory.as(PortablePipelineOptions.class);
+      portableOptions.setEnvironmentReuseMillis(60_000);
+      portableOptions.setJobName(jobId);
+      try (DefaultJobBundleFactory bundleFactory =
+          new DefaultJobBundleFactory(
+              JobInfo.create(
+                  jobId, jobId, "token", PipelineOptionsTranslation.toProto(portableOptions)),
+              envFactoryProviderMap,
+              stageIdGenerator,
+              serverInfo)) {
+        bundleFactory.forStage(getExecutableStage(reusedEnvironment));
+      }
+    }
+    verify(envFactory, Mockito.times(1)).createEnvironment(reusedEnvironment);
+
+    SharedEnvironmentPool.getInstance().closeIdle();
+    verify(remoteEnvironment).close();
+  }
+
+  @Test
+  public void doesNotReuseEnvironmentAcrossJobsWithOtherOptions() throws Exception {
+    Environment reusedEnvironment =
+        environment.toBuilder().setPayload(ByteString.copyFromUtf8("other-options")).build();
+    when(envFactory.createEnvironment(reusedEnvironment)).thenReturn(remoteEnvironment);
+
+    for (String jobId : new String[] {"job1", "job2"}) {
+      PortablePipelineOptions portableOptions =
+          PipelineOptionsFactory.as(PortablePipelineOptions.class);
+      portableOptions.setEnvironmentReuseMillis(60_000);
+      portableOptions.setDefaultEnvironmentConfig(jobId);
+      try (DefaultJobBundleFactory bundleFactory =
+          new DefaultJobBundleFactory(
+              JobInfo.create(
+                  jobId, jobId, "token", PipelineOptionsTranslation.toProto(portableOptions)),
+              envFactoryProviderMap,
+              stageIdGenerator,
+              serverInfo)) {
+        bundleFactory.forStage(getExecutableStage(reusedEnvironment));
+      }
+    }
+    // The SDK harness of the first job was provisioned with the options of the first job
+    verify(envFactory, Mockito.times(2)).createEnvironment(reusedEnvironment);
+
+    SharedEnvironmentPool.getInstance().closeIdle();
+    verify(remoteEnvironment, Mockito.times(2)).close();
+  }
+
   private DefaultJobBundleFactory createDefaultJobBundleFactory(
       Map<String, EnvironmentFactory.Provider> envFactoryProviderMap) {
     return new DefaultJobBundleFactory(
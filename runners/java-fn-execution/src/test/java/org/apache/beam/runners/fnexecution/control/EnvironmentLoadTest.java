@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.fnexecution.control;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link EnvironmentLoad}. */
+@RunWith(JUnit4.class)
+public class EnvironmentLoadTest {
+  private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void testSequentialBundles() {
+    EnvironmentLoad load = new EnvironmentLoad();
+    load.start(0);
+    load.finish(10 * MILLIS);
+    assertEquals(10, load.getAverageBundleMillis(), 1e-9);
+
+    // The idle time between the bundles is not part of the processing time
+    load.start(100 * MILLIS);
+    load.finish(120 * MILLIS);
+    assertEquals(0.8 * 10 + 0.2 * 20, load.getAverageBundleMillis(), 1e-9);
+    assertEquals(2, load.getCompletedBundles());
+    assertEquals(0, load.getOutstandingBundles());
+  }
+
+  @Test
+  public void testConcurrentBundlesExcludeQueueing() {
+    EnvironmentLoad load = new EnvironmentLoad();
+    // Three bundles share the environment, which completes one of them every 10ms
+    load.start(0);
+    load.start(0);
+    load.start(0);
+    assertEquals(3, load.getOutstandingBundles());
+    load.finish(10 * MILLIS);
+    load.finish(20 * MILLIS);
+    load.finish(30 * MILLIS);
+
+    assertEquals(10, load.getAverageBundleMillis(), 1e-9);
+    assertEquals(0, load.getOutstandingBundles());
+    assertEquals(3, load.getCompletedBundles());
+  }
+
+  @Test
+  public void testExpectedWaitMillis() {
+    EnvironmentLoad load = new EnvironmentLoad();
+    // Not completed a bundle yet, so only the bundles in progress count
+    load.start(0);
+    load.start(0);
+    assertEquals(2, load.getExpectedWaitMillis(), 1e-9);
+
+    load.finish(10 * MILLIS);
+    assertEquals(10, load.getExpectedWaitMillis(), 1e-9);
+    load.start(10 * MILLIS);
+    assertEquals(20, load.getExpectedWaitMillis(), 1e-9);
+  }
+
+  @Test
+  public void testBusyMillis() {
+    EnvironmentLoad load = new EnvironmentLoad();
+    load.start(0);
+    load.start(5 * MILLIS);
+    load.finish(10 * MILLIS);
+    load.finish(20 * MILLIS);
+    load.start(50 * MILLIS);
+    load.finish(60 * MILLIS);
+    assertEquals(30, load.getBusyMillis());
+  }
+}
@@ -88,6 +88,22 @@ public interface SamzaPipelineOptions extends PipelineOptions {
 
   void setStoreBatchGetSize(int storeBatchGetSize);
 
+  @Description(
+      "The maximum number of decoded state values cached by each task. Writes to the state store "
+          + "are deferred until the end of each message. 0 disables the cache.")
+  @Default.Integer(0)
+  int getStoreCacheSize();
+
+  void setStoreCacheSize(int storeCacheSize);
+
+  @Description(
+      "The maximum number of event time timers kept in memory by each operator. The later timers "
+          + "are kept in the state store, and loaded as the watermark advances.")
+  @Default.Integer(50000)
+  int getEventTimerBufferSize();
+
+  void setEventTimerBufferSize(int eventTimerBufferSize);
+
   @Description("Enable/disable Beam metrics in Samza Runner")
   @Default.Boolean(true)
   Boolean getEnableMetrics();
@@ -28,6 +28,8 @@ import java.util.Map;
 public class SamzaPipelineOptionsValidator {
   public static void validate(SamzaPipelineOptions opts) {
     checkArgument(opts.getMaxSourceParallelism() >= 1);
+    checkArgument(opts.getStoreCacheSize() >= 0);
+    checkArgument(opts.getEventTimerBufferSize() > 0);
     validateBundlingRelatedOptions(opts);
   }
 
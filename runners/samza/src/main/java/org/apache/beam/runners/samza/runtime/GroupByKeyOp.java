@@ -126,7 +126,8 @@ public class GroupByKeyOp<K, InputT, OutputT>
                 SamzaStoreStateInternals.BEAM_STORE,
                 SamzaStoreStateInternals.getBeamStore(context.getTaskContext())),
             keyCoder,
-            pipelineOptions.getStoreBatchGetSize());
+            pipelineOptions.getStoreBatchGetSize(),
+            SamzaStoreStateCache.forTask(context.getTaskContext(), pipelineOptions));
 
     this.timerInternalsFactory =
         SamzaTimerInternalsFactory.createTimerInternalFactory(
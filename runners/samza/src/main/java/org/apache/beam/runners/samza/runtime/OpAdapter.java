@@ -47,6 +47,7 @@ public class OpAdapter<InT, OutT, K>
   private transient OpEmitter<OutT> emitter;
   private transient Config config;
   private transient Context context;
+  private transient SamzaStoreStateCache stateCache;
 
   public static <InT, OutT, K> FlatMapFunction<OpMessage<InT>, OpMessage<OutT>> adapt(
       Op<InT, OutT, K> op) {
@@ -70,6 +71,8 @@ public class OpAdapter<InT, OutT, K>
     assert context != null;
 
     op.open(config, context, timerRegistry, emitter);
+    // the state cache of the task, if the operator uses state and the cache is enabled
+    this.stateCache = SamzaStoreStateCache.getIfPresent(context.getTaskContext());
   }
 
   @Override
@@ -96,6 +99,7 @@ public class OpAdapter<InT, OutT, K>
       throw UserCodeException.wrap(e);
     }
 
+    flushStateCache();
     final List<OpMessage<OutT>> results = new ArrayList<>(outputList);
     outputList.clear();
     return results;
@@ -113,6 +117,7 @@ public class OpAdapter<InT, OutT, K>
       throw UserCodeException.wrap(e);
     }
 
+    flushStateCache();
     final List<OpMessage<OutT>> results = new ArrayList<>(outputList);
     outputList.clear();
     return results;
@@ -134,6 +139,7 @@ public class OpAdapter<InT, OutT, K>
       throw UserCodeException.wrap(e);
     }
 
+    flushStateCache();
     final List<OpMessage<OutT>> results = new ArrayList<>(outputList);
     outputList.clear();
     return results;
@@ -144,6 +150,13 @@ public class OpAdapter<InT, OutT, K>
     op.close();
   }
 
+  /** Writes back the state cached by the task, as Samza may commit the task after this message. */
+  private void flushStateCache() {
+    if (stateCache != null) {
+      stateCache.flush();
+    }
+  }
+
   private class OpEmitterImpl implements OpEmitter<OutT> {
     @Override
     public void emitElement(WindowedValue<OutT> element) {
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.samza.runtime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.annotation.Nullable;
+import org.apache.beam.runners.samza.SamzaPipelineOptions;
+import org.apache.beam.runners.samza.runtime.SamzaStoreStateInternals.ByteArray;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.samza.context.TaskContext;
+import org.apache.samza.metrics.Counter;
+import org.apache.samza.metrics.MetricsRegistry;
+import org.apache.samza.storage.kv.Entry;
+import org.apache.samza.storage.kv.KeyValueStore;
+
+/**
+ * A write-back cache of decoded state values in front of the {@link KeyValueStore}s of {@link
+ * SamzaStoreStateInternals}, shared by all the operators of a task.
+ *
+ * <p>Reads of cached values skip both the store and the decoding, and writes only update the cache
+ * and mark the value dirty. The dirty values are encoded and written to their stores with batched
+ * {@link KeyValueStore#putAll} and {@link KeyValueStore#deleteAll} calls by {@link #flush()}, which
+ * {@link OpAdapter} calls once an operator has processed a message. Samza commits a task between
+ * messages, so the stores are up to date whenever their changelogs are committed. The least
+ * recently used values are evicted once the cache holds {@code maxSize} values, and written back
+ * right away if they are dirty.
+ *
+ * <p>The cache is not enabled by default, see {@link SamzaPipelineOptions#getStoreCacheSize()}.
+ */
+class SamzaStoreStateCache {
+  private static final String METRICS_GROUP = SamzaStoreStateCache.class.getName();
+
+  // The caches of the tasks of this container, which are dropped along with their task.
+  private static final Map<TaskContext, SamzaStoreStateCache> CACHES =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  private final int maxSize;
+  private final LinkedHashMap<CacheKey, CachedValue> values;
+  private int dirtyCount = 0;
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter writes;
+  private final Counter evictions;
+
+  SamzaStoreStateCache(int maxSize, MetricsRegistry metricsRegistry) {
+    this.maxSize = maxSize;
+    this.values =
+        new LinkedHashMap<CacheKey, CachedValue>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<CacheKey, CachedValue> eldest) {
+            return evict(eldest);
+          }
+        };
+    this.hits = metricsRegistry.newCounter(METRICS_GROUP, "hits");
+    this.misses = metricsRegistry.newCounter(METRICS_GROUP, "misses");
+    this.writes = metricsRegistry.newCounter(METRICS_GROUP, "writes");
+    this.evictions = metricsRegistry.newCounter(METRICS_GROUP, "evictions");
+  }
+
+  /** Returns the cache of the task, or null if the cache is disabled. */
+  @Nullable
+  static SamzaStoreStateCache forTask(TaskContext context, SamzaPipelineOptions pipelineOptions) {
+    final int maxSize = pipelineOptions.getStoreCacheSize();
+    if (maxSize <= 0) {
+      return null;
+    }
+    return CACHES.computeIfAbsent(
+        context, c -> new SamzaStoreStateCache(maxSize, c.getTaskMetricsRegistry()));
+  }
+
+  /** Returns the cache of the task if one was created, or null. */
+  @Nullable
+  static SamzaStoreStateCache getIfPresent(TaskContext context) {
+    return CACHES.get(context);
+  }
+
+  /** Returns the value of the key, which is read from the store and decoded on a miss. */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  synchronized <T> T read(KeyValueStore<ByteArray, byte[]> store, ByteArray key, Coder<T> coder) {
+    final CacheKey cacheKey = new CacheKey(store, key);
+    final CachedValue cached = values.get(cacheKey);
+    if (cached != null) {
+      hits.inc();
+      return (T) cached.value;
+    }
+    misses.inc();
+    final T value = decode(store.get(key), coder);
+    values.put(cacheKey, new CachedValue(value, (Coder<Object>) coder, false));
+    return value;
+  }
+
+  /** Sets the value of the key, or deletes it if null. The store is updated by {@link #flush()}. */
+  @SuppressWarnings("unchecked")
+  synchronized <T> void write(
+      KeyValueStore<ByteArray, byte[]> store, ByteArray key, @Nullable T value, Coder<T> coder) {
+    final CachedValue previous =
+        values.put(new CacheKey(store, key), new CachedValue(value, (Coder<Object>) coder, true));
+    if (previous == null || !previous.dirty) {
+      dirtyCount++;
+    }
+  }
+
+  /** Drops the value of the key without writing it, once it was changed in the store directly. */
+  synchronized void invalidate(KeyValueStore<ByteArray, byte[]> store, ByteArray key) {
+    final CachedValue previous = values.remove(new CacheKey(store, key));
+    if (previous != null && previous.dirty) {
+      dirtyCount--;
+    }
+  }
+
+  /** Writes the dirty values to their stores, with one batch of puts and deletes per store. */
+  synchronized void flush() {
+    if (dirtyCount == 0) {
+      return;
+    }
+    final Map<KeyValueStore<ByteArray, byte[]>, List<Entry<ByteArray, byte[]>>> puts =
+        new HashMap<>();
+    final Map<KeyValueStore<ByteArray, byte[]>, List<ByteArray>> deletes = new HashMap<>();
+    for (Map.Entry<CacheKey, CachedValue> entry : values.entrySet()) {
+      final CachedValue cached = entry.getValue();
+      if (!cached.dirty) {
+        continue;
+      }
+      final CacheKey cacheKey = entry.getKey();
+      if (cached.value == null) {
+        deletes.computeIfAbsent(cacheKey.store, s -> new ArrayList<>()).add(cacheKey.key);
+      } else {
+        puts.computeIfAbsent(cacheKey.store, s -> new ArrayList<>())
+            .add(new Entry<>(cacheKey.key, encode(cached.value, cached.coder)));
+      }
+      cached.dirty = false;
+    }
+    puts.forEach(KeyValueStore::putAll);
+    deletes.forEach(KeyValueStore::deleteAll);
+    writes.inc(dirtyCount);
+    dirtyCount = 0;
+  }
+
+  synchronized int size() {
+    return values.size();
+  }
+
+  /** Evicts the least recently used value once the cache is full, writing it back if dirty. */
+  private boolean evict(Map.Entry<CacheKey, CachedValue> eldest) {
+    if (values.size() <= maxSize) {
+      return false;
+    }
+    final CachedValue cached = eldest.getValue();
+    if (cached.dirty) {
+      final CacheKey cacheKey = eldest.getKey();
+      if (cached.value == null) {
+        cacheKey.store.delete(cacheKey.key);
+      } else {
+        cacheKey.store.put(cacheKey.key, encode(cached.value, cached.coder));
+      }
+      dirtyCount--;
+      writes.inc();
+    }
+    evictions.inc();
+    return true;
+  }
+
+  private static byte[] encode(Object value, Coder<Object> coder) {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try {
+      coder.encode(value, baos);
+    } catch (IOException e) {
+      throw new RuntimeException("Could not encode state value: " + value, e);
+    }
+    return baos.toByteArray();
+  }
+
+  @Nullable
+  private static <T> T decode(@Nullable byte[] valueBytes, Coder<T> coder) {
+    if (valueBytes == null) {
+      return null;
+    }
+    try {
+      return coder.decode(new ByteArrayInputStream(valueBytes));
+    } catch (IOException e) {
+      throw new RuntimeException("Could not decode state", e);
+    }
+  }
+
+  /** A key of a store. Stores are compared by identity, as each state may have its own store. */
+  private static class CacheKey {
+    private final KeyValueStore<ByteArray, byte[]> store;
+    private final ByteArray key;
+
+    CacheKey(KeyValueStore<ByteArray, byte[]> store, ByteArray key) {
+      this.store = store;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CacheKey)) {
+        return false;
+      }
+      final CacheKey that = (CacheKey) o;
+      return store == that.store && key.equals(that.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(store) + key.hashCode();
+    }
+  }
+
+  /** A decoded value, or null if the key has no value. */
+  private static class CachedValue {
+    @Nullable private final Object value;
+    private final Coder<Object> coder;
+    private boolean dirty;
+
+    CachedValue(@Nullable Object value, Coder<Object> coder, boolean dirty) {
+      this.value = value;
+      this.coder = coder;
+      this.dirty = dirty;
+    }
+  }
+}
@@ -42,6 +42,7 @@ import org.apache.beam.runners.samza.SamzaPipelineOptions;
 import org.apache.beam.runners.samza.state.SamzaMapState;
 import org.apache.beam.runners.samza.state.SamzaSetState;
 import org.apache.beam.runners.samza.transforms.UpdatingCombineFn;
+import org.apache.beam.sdk.coders.BigEndianIntegerCoder;
 import org.apache.beam.sdk.coders.BooleanCoder;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.InstantCoder;
@@ -49,6 +50,7 @@ import org.apache.beam.sdk.coders.VoidCoder;
 import org.apache.beam.sdk.state.BagState;
 import org.apache.beam.sdk.state.CombiningState;
 import org.apache.beam.sdk.state.MapState;
+import org.apache.beam.sdk.state.OrderedListState;
 import org.apache.beam.sdk.state.ReadableState;
 import org.apache.beam.sdk.state.ReadableStates;
 import org.apache.beam.sdk.state.SetState;
@@ -75,7 +77,11 @@ import org.apache.samza.storage.kv.KeyValueIterator;
 import org.apache.samza.storage.kv.KeyValueStore;
 import org.joda.time.Instant;
 
-/** {@link StateInternals} that uses Samza local {@link KeyValueStore} to manage state. */
+/**
+ * {@link StateInternals} that uses Samza local {@link KeyValueStore} to manage state. With {@link
+ * SamzaPipelineOptions#getStoreCacheSize()} set, the decoded values are cached by a {@link
+ * SamzaStoreStateCache} and written back to the stores once each message is processed.
+ */
 public class SamzaStoreStateInternals<K> implements StateInternals {
   static final String BEAM_STORE = "beamStore";
 
@@ -88,18 +94,21 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
   private final byte[] keyBytes;
   private final int batchGetSize;
   private final String stageId;
+  @Nullable private final SamzaStoreStateCache cache;
 
   private SamzaStoreStateInternals(
       Map<String, KeyValueStore<ByteArray, byte[]>> stores,
       @Nullable K key,
       @Nullable byte[] keyBytes,
       String stageId,
-      int batchGetSize) {
+      int batchGetSize,
+      @Nullable SamzaStoreStateCache cache) {
     this.stores = stores;
     this.key = key;
     this.keyBytes = keyBytes;
     this.batchGetSize = batchGetSize;
     this.stageId = stageId;
+    this.cache = cache;
   }
 
   @SuppressWarnings("unchecked")
@@ -130,7 +139,12 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
     } else {
       stateKeyCoder = VoidCoder.of();
     }
-    return new Factory<>(Objects.toString(id), stores, stateKeyCoder, batchGetSize);
+    return new Factory<>(
+        Objects.toString(id),
+        stores,
+        stateKeyCoder,
+        batchGetSize,
+        SamzaStoreStateCache.forTask(context, pipelineOptions));
   }
 
   @Override
@@ -163,6 +177,13 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
             return new SamzaSetStateImpl<>(namespace, address, elemCoder);
           }
 
+          @Override
+          public <T> OrderedListState<T> bindOrderedList(
+              StateTag<OrderedListState<T>> spec, Coder<T> elemCoder) {
+            throw new UnsupportedOperationException(
+                String.format("%s is not supported", OrderedListState.class.getSimpleName()));
+          }
+
           @Override
           public <KeyT, ValueT> MapState<KeyT, ValueT> bindMap(
               StateTag<MapState<KeyT, ValueT>> spec,
@@ -217,16 +238,27 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
     private final Map<String, KeyValueStore<ByteArray, byte[]>> stores;
     private final Coder<K> keyCoder;
     private final int batchGetSize;
+    @Nullable private final SamzaStoreStateCache cache;
 
     public Factory(
         String stageId,
         Map<String, KeyValueStore<ByteArray, byte[]>> stores,
         Coder<K> keyCoder,
         int batchGetSize) {
+      this(stageId, stores, keyCoder, batchGetSize, null);
+    }
+
+    Factory(
+        String stageId,
+        Map<String, KeyValueStore<ByteArray, byte[]>> stores,
+        Coder<K> keyCoder,
+        int batchGetSize,
+        @Nullable SamzaStoreStateCache cache) {
       this.stageId = stageId;
       this.stores = stores;
       this.keyCoder = keyCoder;
       this.batchGetSize = batchGetSize;
+      this.cache = cache;
     }
 
     @Override
@@ -247,7 +279,8 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
         throw new RuntimeException("Cannot encode key for state store", e);
       }
 
-      return new SamzaStoreStateInternals<>(stores, key, baos.toByteArray(), stageId, batchGetSize);
+      return new SamzaStoreStateInternals<>(
+          stores, key, baos.toByteArray(), stageId, batchGetSize, cache);
     }
   }
 
@@ -288,22 +321,24 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
     }
 
     protected void clearInternal() {
-      store.delete(getEncodedStoreKey());
+      deleteValue(getEncodedStoreKey());
     }
 
     protected void writeInternal(T value) {
-      store.put(getEncodedStoreKey(), encodeValue(value));
+      writeValue(getEncodedStoreKey(), value);
     }
 
     protected T readInternal() {
-      final byte[] valueBytes = store.get(getEncodedStoreKey());
-      return decodeValue(valueBytes);
+      return readValue(getEncodedStoreKey());
     }
 
     protected ReadableState<Boolean> isEmptyInternal() {
       return new ReadableState<Boolean>() {
         @Override
         public Boolean read() {
+          if (cache != null) {
+            return readInternal() == null;
+          }
           return store.get(getEncodedStoreKey()) == null;
         }
 
@@ -314,6 +349,39 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
       };
     }
 
+    /** Reads the value of a key of the store, through the cache if enabled. */
+    protected T readValue(ByteArray storeKey) {
+      if (cache != null) {
+        return cache.read(store, storeKey, coder);
+      }
+      return decodeValue(store.get(storeKey));
+    }
+
+    /** Writes the value of a key of the store, through the cache if enabled. */
+    protected void writeValue(ByteArray storeKey, T value) {
+      if (cache != null) {
+        cache.write(store, storeKey, value, coder);
+      } else {
+        store.put(storeKey, encodeValue(value));
+      }
+    }
+
+    /** Deletes a key of the store, through the cache if enabled. */
+    protected void deleteValue(ByteArray storeKey) {
+      if (cache != null) {
+        cache.write(store, storeKey, null, coder);
+      } else {
+        store.delete(storeKey);
+      }
+    }
+
+    /** Writes the dirty values of the cache, before iterating over a range of the store. */
+    protected void flushCache() {
+      if (cache != null) {
+        cache.flush();
+      }
+    }
+
     protected ByteArray getEncodedStoreKey() {
       return ByteArray.of(encodedStoreKey);
     }
@@ -405,14 +473,29 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
         final int size = getSize();
         final ByteArray encodedKey = encodeKey(size);
         store.put(encodedKey, encodeValue(value));
-        store.put(getEncodedStoreKey(), Ints.toByteArray(size + 1));
+        setSize(size + 1);
       }
     }
 
     @Override
     public ReadableState<Boolean> isEmpty() {
       synchronized (store) {
-        return isEmptyInternal();
+        if (cache == null) {
+          return isEmptyInternal();
+        }
+        return new ReadableState<Boolean>() {
+          @Override
+          public Boolean read() {
+            synchronized (store) {
+              return getSize() == 0;
+            }
+          }
+
+          @Override
+          public ReadableState<Boolean> readLater() {
+            return this;
+          }
+        };
       }
     }
 
@@ -457,16 +540,35 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
             keys.add(encodeKey(i));
           }
           store.deleteAll(keys);
-          store.delete(getEncodedStoreKey());
+          setSize(0);
         }
       }
     }
 
+    /**
+     * The elements are written to the store right away, as they are only read back by {@link
+     * #read()}, so only the size of the bag goes through the cache.
+     */
     private int getSize() {
+      if (cache != null) {
+        final Integer size = cache.read(store, getEncodedStoreKey(), BigEndianIntegerCoder.of());
+        return size == null ? 0 : size;
+      }
       final byte[] sizeBytes = store.get(getEncodedStoreKey());
       return sizeBytes == null ? 0 : Ints.fromByteArray(sizeBytes);
     }
 
+    private void setSize(int size) {
+      if (cache != null) {
+        cache.write(
+            store, getEncodedStoreKey(), size == 0 ? null : size, BigEndianIntegerCoder.of());
+      } else if (size == 0) {
+        store.delete(getEncodedStoreKey());
+      } else {
+        store.put(getEncodedStoreKey(), Ints.toByteArray(size));
+      }
+    }
+
     private ByteArray encodeKey(int size) {
       final ByteArrayOutputStream baos = getThreadLocalBaos();
       try (DataOutputStream dos = new DataOutputStream(baos)) {
@@ -541,7 +643,15 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
 
     @Override
     public ReadableState<Iterator<T>> readIterator() {
-      final Iterator<Map.Entry<T, Boolean>> iter = mapState.readIterator().read();
+      return keysOf(mapState.readIterator().read());
+    }
+
+    @Override
+    public ReadableState<Iterator<T>> readIterator(T fromElement) {
+      return keysOf(mapState.readIterator(fromElement).read());
+    }
+
+    private ReadableState<Iterator<T>> keysOf(Iterator<Map.Entry<T, Boolean>> iter) {
       return new ReadableState<Iterator<T>>() {
         @Nullable
         @Override
@@ -599,14 +709,14 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
     public void put(KeyT key, ValueT value) {
       final ByteArray encodedKey = encodeKey(key);
       maxKeySize = Math.max(maxKeySize, encodedKey.getValue().length);
-      store.put(encodedKey, encodeValue(value));
+      writeValue(encodedKey, value);
     }
 
     @Override
     @Nullable
     public ReadableState<ValueT> putIfAbsent(KeyT key, ValueT value) {
       final ByteArray encodedKey = encodeKey(key);
-      final ValueT current = decodeValue(store.get(encodedKey));
+      final ValueT current = readValue(encodedKey);
       if (current == null) {
         put(key, value);
       }
@@ -616,12 +726,12 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
 
     @Override
     public void remove(KeyT key) {
-      store.delete(encodeKey(key));
+      deleteValue(encodeKey(key));
     }
 
     @Override
     public ReadableState<ValueT> get(KeyT key) {
-      ValueT value = decodeValue(store.get(encodeKey(key)));
+      ValueT value = readValue(encodeKey(key));
       return ReadableStates.immediate(value);
     }
 
@@ -675,8 +785,18 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
 
     @Override
     public ReadableState<Iterator<Map.Entry<KeyT, ValueT>>> readIterator() {
+      return readIteratorFrom(getEncodedStoreKey());
+    }
+
+    @Override
+    public ReadableState<Iterator<Map.Entry<KeyT, ValueT>>> readIterator(KeyT fromKey) {
+      return readIteratorFrom(encodeKey(fromKey));
+    }
+
+    private ReadableState<Iterator<Map.Entry<KeyT, ValueT>>> readIteratorFrom(ByteArray fromKey) {
+      flushCache();
       final ByteArray maxKey = createMaxKey();
-      final KeyValueIterator<ByteArray, byte[]> kvIter = store.range(getEncodedStoreKey(), maxKey);
+      final KeyValueIterator<ByteArray, byte[]> kvIter = store.range(fromKey, maxKey);
       openIterators.add(kvIter);
 
       return new ReadableState<Iterator<Map.Entry<KeyT, ValueT>>>() {
@@ -716,6 +836,7 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
      */
     private <OutputT> Iterable<OutputT> createIterable(
         SerializableFunction<org.apache.samza.storage.kv.Entry<ByteArray, byte[]>, OutputT> fn) {
+      flushCache();
       final ByteArray maxKey = createMaxKey();
       final KeyValueIterator<ByteArray, byte[]> kvIter = store.range(getEncodedStoreKey(), maxKey);
       final List<Entry<ByteArray, byte[]>> iterable = ImmutableList.copyOf(kvIter);
@@ -743,10 +864,15 @@ public class SamzaStoreStateInternals<K> implements StateInternals {
 
     @Override
     public void clear() {
+      flushCache();
       final ByteArray maxKey = createMaxKey();
       final KeyValueIterator<ByteArray, byte[]> kvIter = store.range(getEncodedStoreKey(), maxKey);
       while (kvIter.hasNext()) {
-        store.delete(kvIter.next().getKey());
+        final ByteArray encodedKey = kvIter.next().getKey();
+        store.delete(encodedKey);
+        if (cache != null) {
+          cache.invalidate(store, encodedKey);
+        }
       }
       kvIter.close();
     }
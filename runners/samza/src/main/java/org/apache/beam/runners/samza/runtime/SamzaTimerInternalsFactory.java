@@ -18,17 +18,21 @@
 package org.apache.beam.runners.samza.runtime;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.NavigableSet;
-import java.util.TreeSet;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 import javax.annotation.Nullable;
 import org.apache.beam.runners.core.StateNamespace;
 import org.apache.beam.runners.core.StateNamespaces;
@@ -38,6 +42,7 @@ import org.apache.beam.runners.core.TimerInternalsFactory;
 import org.apache.beam.runners.samza.SamzaPipelineOptions;
 import org.apache.beam.runners.samza.SamzaRunner;
 import org.apache.beam.runners.samza.state.SamzaMapState;
+import org.apache.beam.runners.samza.state.SamzaSetState;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.CoderException;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
@@ -48,6 +53,8 @@ import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
 import org.apache.beam.sdk.values.PCollection.IsBounded;
 import org.apache.beam.sdk.values.WindowingStrategy;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.primitives.UnsignedBytes;
 import org.apache.samza.operators.Scheduler;
 import org.joda.time.Instant;
 import org.slf4j.Logger;
@@ -57,16 +64,29 @@ import org.slf4j.LoggerFactory;
  * {@link TimerInternalsFactory} that creates Samza {@link TimerInternals}. This class keeps track
  * of the {@link org.apache.beam.runners.core.TimerInternals.TimerData} added to the sorted timer
  * set, and removes the ready timers when the watermark is advanced.
+ *
+ * <p>All the event time timers are persisted in state, including in an index sorted by timestamp
+ * and then by timer key, but only the first {@link SamzaPipelineOptions#getEventTimerBufferSize()}
+ * of them in that order are kept in memory. Once the timers in memory have all fired, the next ones
+ * are loaded from the index, so that the heap used by timers stays bounded however many keys have
+ * pending timers, even if they all have the same timestamp.
  */
 public class SamzaTimerInternalsFactory<K> implements TimerInternalsFactory<K> {
   private static final Logger LOG = LoggerFactory.getLogger(SamzaTimerInternalsFactory.class);
 
-  private final NavigableSet<KeyedTimerData<K>> eventTimeTimers;
+  // the event time timers in memory, in the order of the timestamp index
+  private final NavigableMap<EventTimerPosition<K>, KeyedTimerData<K>> eventTimeBuffer;
+  private final int maxEventTimerBufferSize;
   private final Coder<K> keyCoder;
+  private final TimerKeyCoder<K> timerKeyCoder;
   private final Scheduler<KeyedTimerData<K>> timerRegistry;
   private final SamzaTimerState state;
   private final IsBounded isBounded;
 
+  // All the persisted event time timers up to this position (inclusive) are in the buffer, or all
+  // of them if null.
+  @Nullable private EventTimerPosition<K> lastEventTimerInBuffer = null;
+
   private Instant inputWatermark = BoundedWindow.TIMESTAMP_MIN_VALUE;
   private Instant outputWatermark = BoundedWindow.TIMESTAMP_MIN_VALUE;
 
@@ -76,10 +96,13 @@ public class SamzaTimerInternalsFactory<K> implements TimerInternalsFactory<K> {
       String timerStateId,
       SamzaStoreStateInternals.Factory<?> nonKeyedStateInternalsFactory,
       Coder<BoundedWindow> windowCoder,
-      IsBounded isBounded) {
+      IsBounded isBounded,
+      int maxEventTimerBufferSize) {
     this.keyCoder = keyCoder;
+    this.timerKeyCoder = new TimerKeyCoder<>(keyCoder, windowCoder);
     this.timerRegistry = timerRegistry;
-    this.eventTimeTimers = new TreeSet<>();
+    this.eventTimeBuffer = new TreeMap<>();
+    this.maxEventTimerBufferSize = maxEventTimerBufferSize;
     this.state = new SamzaTimerState(timerStateId, nonKeyedStateInternalsFactory, windowCoder);
     this.isBounded = isBounded;
   }
@@ -101,7 +124,8 @@ public class SamzaTimerInternalsFactory<K> implements TimerInternalsFactory<K> {
         timerStateId,
         nonKeyedStateInternalsFactory,
         windowCoder,
-        isBounded);
+        isBounded,
+        pipelineOptions.getEventTimerBufferSize());
   }
 
   @Override
@@ -151,20 +175,57 @@ public class SamzaTimerInternalsFactory<K> implements TimerInternalsFactory<K> {
   public Collection<KeyedTimerData<K>> removeReadyTimers() {
     final Collection<KeyedTimerData<K>> readyTimers = new ArrayList<>();
 
-    while (!eventTimeTimers.isEmpty()
-        && eventTimeTimers.first().getTimerData().getTimestamp().isBefore(inputWatermark)) {
-      final KeyedTimerData<K> keyedTimerData = eventTimeTimers.pollFirst();
+    reloadEventTimeBufferIfDrained();
+    while (!eventTimeBuffer.isEmpty()
+        && eventTimeBuffer.firstKey().timestamp < inputWatermark.getMillis()) {
+      final KeyedTimerData<K> keyedTimerData = eventTimeBuffer.pollFirstEntry().getValue();
       readyTimers.add(keyedTimerData);
       state.deletePersisted(keyedTimerData);
+      reloadEventTimeBufferIfDrained();
     }
 
     return readyTimers;
   }
 
+  /** Loads the next timers from state once the buffer is empty but some are left out. */
+  private void reloadEventTimeBufferIfDrained() {
+    if (eventTimeBuffer.isEmpty() && lastEventTimerInBuffer != null) {
+      state.reloadEventTimeTimers(lastEventTimerInBuffer);
+    }
+  }
+
+  /** Adds an event time timer to the buffer, unless it is after the timers kept in memory. */
+  private void addToEventTimeBuffer(KeyedTimerData<K> keyedTimerData) {
+    final EventTimerPosition<K> position = positionOf(keyedTimerData);
+    if (lastEventTimerInBuffer != null && position.compareTo(lastEventTimerInBuffer) > 0) {
+      // it will be loaded from state once the earlier timers fired
+      return;
+    }
+
+    eventTimeBuffer.put(position, keyedTimerData);
+    if (eventTimeBuffer.size() > maxEventTimerBufferSize) {
+      // drop the last timer from memory
+      eventTimeBuffer.pollLastEntry();
+      lastEventTimerInBuffer = eventTimeBuffer.lastKey();
+    }
+  }
+
+  private EventTimerPosition<K> positionOf(KeyedTimerData<K> keyedTimerData) {
+    return new EventTimerPosition<>(
+        keyedTimerData.getTimerData().getTimestamp().getMillis(),
+        TimerKey.of(keyedTimerData),
+        timerKeyCoder);
+  }
+
   public void removeProcessingTimer(KeyedTimerData<K> keyedTimerData) {
     state.deletePersisted(keyedTimerData);
   }
 
+  @VisibleForTesting
+  int getEventTimeBufferSize() {
+    return eventTimeBuffer.size();
+  }
+
   public Instant getInputWatermark() {
     return inputWatermark;
   }
@@ -204,7 +265,8 @@ public class SamzaTimerInternalsFactory<K> implements TimerInternalsFactory<K> {
       }
 
       final KeyedTimerData<K> keyedTimerData = new KeyedTimerData<>(keyBytes, key, timerData);
-      if (eventTimeTimers.contains(keyedTimerData)) {
+      if (timerData.getDomain() == TimeDomain.EVENT_TIME
+          && keyedTimerData.equals(eventTimeBuffer.get(positionOf(keyedTimerData)))) {
         return;
       }
 
@@ -227,7 +289,7 @@ public class SamzaTimerInternalsFactory<K> implements TimerInternalsFactory<K> {
 
         switch (timerData.getDomain()) {
           case EVENT_TIME:
-            eventTimeTimers.add(keyedTimerData);
+            addToEventTimeBuffer(keyedTimerData);
             break;
 
           case PROCESSING_TIME:
@@ -265,7 +327,7 @@ public class SamzaTimerInternalsFactory<K> implements TimerInternalsFactory<K> {
 
       switch (timerData.getDomain()) {
         case EVENT_TIME:
-          eventTimeTimers.remove(keyedTimerData);
+          eventTimeBuffer.remove(positionOf(keyedTimerData));
           break;
 
         case PROCESSING_TIME:
@@ -303,6 +365,8 @@ public class SamzaTimerInternalsFactory<K> implements TimerInternalsFactory<K> {
 
   private class SamzaTimerState {
     private final SamzaMapState<TimerKey<K>, Long> eventTimerTimerState;
+    // the event time timers again, ordered by timestamp
+    private final SamzaSetState<TimestampedTimerKey<K>> timestampSortedEventTimeTimerState;
     private final SamzaMapState<TimerKey<K>, Long> processingTimerTimerState;
 
     SamzaTimerState(
@@ -321,6 +385,17 @@ public class SamzaTimerInternalsFactory<K> implements TimerInternalsFactory<K> {
                           new TimerKeyCoder<>(keyCoder, windowCoder),
                           VarLongCoder.of()));
 
+      this.timestampSortedEventTimeTimerState =
+          (SamzaSetState<TimestampedTimerKey<K>>)
+              nonKeyedStateInternalsFactory
+                  .stateInternalsForKey(null)
+                  .state(
+                      StateNamespaces.global(),
+                      StateTags.set(
+                          timerStateId + "-ts",
+                          new TimestampedTimerKeyCoder<>(
+                              new TimerKeyCoder<>(keyCoder, windowCoder))));
+
       this.processingTimerTimerState =
           (SamzaMapState<TimerKey<K>, Long>)
               nonKeyedStateInternalsFactory
@@ -354,8 +429,14 @@ public class SamzaTimerInternalsFactory<K> implements TimerInternalsFactory<K> {
       final TimerKey<K> timerKey = TimerKey.of(keyedTimerData);
       switch (keyedTimerData.getTimerData().getDomain()) {
         case EVENT_TIME:
-          eventTimerTimerState.put(
-              timerKey, keyedTimerData.getTimerData().getTimestamp().getMillis());
+          final long timestamp = keyedTimerData.getTimerData().getTimestamp().getMillis();
+          final Long lastTimestamp = eventTimerTimerState.get(timerKey).read();
+          if (lastTimestamp != null) {
+            timestampSortedEventTimeTimerState.remove(
+                new TimestampedTimerKey<>(lastTimestamp, timerKey));
+          }
+          eventTimerTimerState.put(timerKey, timestamp);
+          timestampSortedEventTimeTimerState.add(new TimestampedTimerKey<>(timestamp, timerKey));
           break;
 
         case PROCESSING_TIME:
@@ -373,7 +454,12 @@ public class SamzaTimerInternalsFactory<K> implements TimerInternalsFactory<K> {
       final TimerKey<K> timerKey = TimerKey.of(keyedTimerData);
       switch (keyedTimerData.getTimerData().getDomain()) {
         case EVENT_TIME:
-          eventTimerTimerState.remove(timerKey);
+          final Long timestamp = eventTimerTimerState.get(timerKey).read();
+          if (timestamp != null) {
+            timestampSortedEventTimeTimerState.remove(
+                new TimestampedTimerKey<>(timestamp, timerKey));
+            eventTimerTimerState.remove(timerKey);
+          }
           break;
 
         case PROCESSING_TIME:
@@ -386,20 +472,70 @@ public class SamzaTimerInternalsFactory<K> implements TimerInternalsFactory<K> {
       }
     }
 
-    private void loadEventTimeTimers() {
+    /**
+     * Loads the persisted event time timers after the given position into the empty buffer, or from
+     * the first one if null, up to the size of the buffer.
+     */
+    void reloadEventTimeTimers(@Nullable EventTimerPosition<K> after) {
+      final Iterator<TimestampedTimerKey<K>> iter =
+          after == null
+              ? timestampSortedEventTimeTimerState.readIterator().read()
+              : timestampSortedEventTimeTimerState
+                  .readIterator(new TimestampedTimerKey<>(after.timestamp, after.timerKey))
+                  .read();
+      lastEventTimerInBuffer = null;
+      while (iter.hasNext()) {
+        final TimestampedTimerKey<K> timestampedTimerKey = iter.next();
+        final EventTimerPosition<K> position =
+            new EventTimerPosition<>(
+                timestampedTimerKey.timestamp, timestampedTimerKey.timerKey, timerKeyCoder);
+        if (after != null && position.compareTo(after) <= 0) {
+          // the read starts at the position itself
+          continue;
+        }
+        if (eventTimeBuffer.size() >= maxEventTimerBufferSize) {
+          lastEventTimerInBuffer = eventTimeBuffer.lastKey();
+          break;
+        }
+        eventTimeBuffer.put(
+            position,
+            TimerKey.toKeyedTimerData(
+                timestampedTimerKey.timerKey,
+                timestampedTimerKey.timestamp,
+                TimeDomain.EVENT_TIME,
+                keyCoder));
+      }
+      // the iterator might not have reached the end
+      ((SamzaStoreStateInternals.KeyValueIteratorState) timestampSortedEventTimeTimerState)
+          .closeIterators();
+
+      LOG.debug("Loaded {} event time timers in memory", eventTimeBuffer.size());
+    }
+
+    /** Builds the timestamp index of the event time timers persisted without it. */
+    private void indexEventTimeTimers() {
+      final Iterator<TimestampedTimerKey<K>> indexIter =
+          timestampSortedEventTimeTimerState.readIterator().read();
+      final boolean indexed = indexIter.hasNext();
+      ((SamzaStoreStateInternals.KeyValueIteratorState) timestampSortedEventTimeTimerState)
+          .closeIterators();
+      if (indexed) {
+        return;
+      }
+
       final Iterator<Map.Entry<TimerKey<K>, Long>> iter =
           eventTimerTimerState.readIterator().read();
       // since the iterator will reach to the end, it will be closed automatically
+      int count = 0;
       while (iter.hasNext()) {
         final Map.Entry<TimerKey<K>, Long> entry = iter.next();
-        final KeyedTimerData keyedTimerData =
-            TimerKey.toKeyedTimerData(
-                entry.getKey(), entry.getValue(), TimeDomain.EVENT_TIME, keyCoder);
-
-        eventTimeTimers.add(keyedTimerData);
+        timestampSortedEventTimeTimerState.add(
+            new TimestampedTimerKey<>(entry.getValue(), entry.getKey()));
+        ++count;
+      }
+      if (count > 0) {
+        LOG.info("Indexed {} event time timers by timestamp", count);
       }
-
-      LOG.info("Loaded {} event time timers in memory", eventTimeTimers.size());
     }
 
     private void loadProcessingTimeTimers() {
@@ -422,7 +558,9 @@ public class SamzaTimerInternalsFactory<K> implements TimerInternalsFactory<K> {
     }
 
     private void restore() {
-      loadEventTimeTimers();
+      indexEventTimeTimers();
+      reloadEventTimeTimers(null);
+      LOG.info("Loaded {} event time timers in memory", eventTimeBuffer.size());
       loadProcessingTimeTimers();
     }
   }
@@ -519,6 +657,118 @@ public class SamzaTimerInternalsFactory<K> implements TimerInternalsFactory<K> {
     }
   }
 
+  /** A {@link TimerKey} with the timestamp of its timer, to sort timers by timestamp. */
+  private static class TimestampedTimerKey<K> {
+    private final long timestamp;
+    private final TimerKey<K> timerKey;
+
+    TimestampedTimerKey(long timestamp, TimerKey<K> timerKey) {
+      this.timestamp = timestamp;
+      this.timerKey = timerKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      TimestampedTimerKey<?> that = (TimestampedTimerKey<?>) o;
+      return timestamp == that.timestamp && timerKey.equals(that.timerKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Long.hashCode(timestamp) + timerKey.hashCode();
+    }
+  }
+
+  /**
+   * The position of an event time timer in the timestamp index: its timestamp, then its encoded
+   * {@link TimerKey}, compared as unsigned bytes like the store compares its keys.
+   */
+  private static class EventTimerPosition<K> implements Comparable<EventTimerPosition<K>> {
+    private static final Comparator<byte[]> BYTES_ORDER = UnsignedBytes.lexicographicalComparator();
+
+    private final long timestamp;
+    private final TimerKey<K> timerKey;
+    private final byte[] encodedTimerKey;
+
+    EventTimerPosition(long timestamp, TimerKey<K> timerKey, TimerKeyCoder<K> timerKeyCoder) {
+      this.timestamp = timestamp;
+      this.timerKey = timerKey;
+      final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      try {
+        timerKeyCoder.encode(timerKey, baos);
+      } catch (IOException e) {
+        throw new RuntimeException("Could not encode timer key: " + timerKey, e);
+      }
+      this.encodedTimerKey = baos.toByteArray();
+    }
+
+    @Override
+    public int compareTo(EventTimerPosition<K> other) {
+      final int timestampCompare = Long.compare(timestamp, other.timestamp);
+      return timestampCompare != 0
+          ? timestampCompare
+          : BYTES_ORDER.compare(encodedTimerKey, other.encodedTimerKey);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      EventTimerPosition<?> that = (EventTimerPosition<?>) o;
+      return timestamp == that.timestamp && Arrays.equals(encodedTimerKey, that.encodedTimerKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Long.hashCode(timestamp) + Arrays.hashCode(encodedTimerKey);
+    }
+  }
+
+  /**
+   * Coder for {@link TimestampedTimerKey}. The timestamp is encoded first, in 8 big-endian bytes
+   * with the sign bit flipped, so that the store orders the keys by timestamp.
+   */
+  public static class TimestampedTimerKeyCoder<K> extends StructuredCoder<TimestampedTimerKey<K>> {
+    private final TimerKeyCoder<K> timerKeyCoder;
+
+    TimestampedTimerKeyCoder(TimerKeyCoder<K> timerKeyCoder) {
+      this.timerKeyCoder = timerKeyCoder;
+    }
+
+    @Override
+    public void encode(TimestampedTimerKey<K> value, OutputStream outStream)
+        throws CoderException, IOException {
+      new DataOutputStream(outStream).writeLong(value.timestamp ^ Long.MIN_VALUE);
+      timerKeyCoder.encode(value.timerKey, outStream);
+    }
+
+    @Override
+    public TimestampedTimerKey<K> decode(InputStream inStream) throws CoderException, IOException {
+      final long timestamp = new DataInputStream(inStream).readLong() ^ Long.MIN_VALUE;
+      return new TimestampedTimerKey<>(timestamp, timerKeyCoder.decode(inStream));
+    }
+
+    @Override
+    public List<? extends Coder<?>> getCoderArguments() {
+      return Collections.singletonList(timerKeyCoder);
+    }
+
+    @Override
+    public void verifyDeterministic() throws NonDeterministicException {}
+  }
+
   /** Coder for {@link TimerKey}. */
   public static class TimerKeyCoder<K> extends StructuredCoder<TimerKey<K>> {
     private static final StringUtf8Coder STRING_CODER = StringUtf8Coder.of();
@@ -34,4 +34,10 @@ public interface SamzaMapState<KeyT, ValueT> extends MapState<KeyT, ValueT> {
    * @return a {@link ReadableState} of an iterator
    */
   ReadableState<Iterator<Map.Entry<KeyT, ValueT>>> readIterator();
+
+  /**
+   * Returns an iterator like {@link #readIterator()}, but starting from the given key (inclusive)
+   * in the order of the encoded keys.
+   */
+  ReadableState<Iterator<Map.Entry<KeyT, ValueT>>> readIterator(KeyT fromKey);
 }
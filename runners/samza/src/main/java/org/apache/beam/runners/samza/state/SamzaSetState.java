@@ -33,4 +33,10 @@ public interface SamzaSetState<T> extends SetState<T> {
    * @return a {@link ReadableState} of an iterator
    */
   ReadableState<Iterator<T>> readIterator();
+
+  /**
+   * Returns an iterator like {@link #readIterator()}, but starting from the given element
+   * (inclusive) in the order of the encoded elements.
+   */
+  ReadableState<Iterator<T>> readIterator(T fromElement);
 }
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.samza.runtime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.apache.beam.runners.samza.runtime.SamzaStoreStateInternals.ByteArray;
+import org.apache.beam.runners.samza.runtime.SamzaStoreStateInternals.ByteArraySerdeFactory;
+import org.apache.beam.sdk.coders.BigEndianIntegerCoder;
+import org.apache.samza.metrics.Counter;
+import org.apache.samza.metrics.Metric;
+import org.apache.samza.metrics.MetricsRegistryMap;
+import org.apache.samza.serializers.ByteSerde;
+import org.apache.samza.storage.kv.KeyValueStore;
+import org.apache.samza.storage.kv.KeyValueStoreMetrics;
+import org.apache.samza.storage.kv.SerializedKeyValueStore;
+import org.apache.samza.storage.kv.SerializedKeyValueStoreMetrics;
+import org.apache.samza.storage.kv.inmemory.InMemoryKeyValueStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link SamzaStoreStateCache}. */
+@RunWith(JUnit4.class)
+public class SamzaStoreStateCacheTest {
+  private final MetricsRegistryMap metricsRegistry = new MetricsRegistryMap();
+  private KeyValueStore<ByteArray, byte[]> store;
+
+  @Before
+  public void setUp() {
+    store =
+        new SerializedKeyValueStore<>(
+            new InMemoryKeyValueStore(
+                new KeyValueStoreMetrics("beamStore", new MetricsRegistryMap())),
+            new ByteArraySerdeFactory.ByteArraySerde(),
+            new ByteSerde(),
+            new SerializedKeyValueStoreMetrics("beamStore", new MetricsRegistryMap()));
+  }
+
+  private static ByteArray key(String key) {
+    return ByteArray.of(key.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private long count(String name) {
+    final Map<String, Metric> metrics =
+        metricsRegistry.getGroup(SamzaStoreStateCache.class.getName());
+    return ((Counter) metrics.get(name)).getCount();
+  }
+
+  @Test
+  public void testWritesAreDeferredUntilFlush() {
+    final SamzaStoreStateCache cache = new SamzaStoreStateCache(10, metricsRegistry);
+    cache.write(store, key("a"), 1, BigEndianIntegerCoder.of());
+    cache.write(store, key("a"), 2, BigEndianIntegerCoder.of());
+    cache.write(store, key("b"), 3, BigEndianIntegerCoder.of());
+
+    assertNull(store.get(key("a")));
+    assertEquals(2, (int) cache.read(store, key("a"), BigEndianIntegerCoder.of()));
+
+    cache.flush();
+    assertArrayEquals(new byte[] {0, 0, 0, 2}, store.get(key("a")));
+    assertArrayEquals(new byte[] {0, 0, 0, 3}, store.get(key("b")));
+    assertEquals(2, count("writes"));
+
+    cache.write(store, key("a"), null, BigEndianIntegerCoder.of());
+    cache.flush();
+    assertNull(store.get(key("a")));
+    assertEquals(3, count("writes"));
+  }
+
+  @Test
+  public void testReadsAreCached() {
+    final SamzaStoreStateCache cache = new SamzaStoreStateCache(10, metricsRegistry);
+    store.put(key("a"), new byte[] {0, 0, 0, 7});
+
+    assertEquals(7, (int) cache.read(store, key("a"), BigEndianIntegerCoder.of()));
+    assertNull(cache.read(store, key("missing"), BigEndianIntegerCoder.of()));
+    store.delete(key("a"));
+    assertEquals(7, (int) cache.read(store, key("a"), BigEndianIntegerCoder.of()));
+    assertNull(cache.read(store, key("missing"), BigEndianIntegerCoder.of()));
+
+    assertEquals(2, count("misses"));
+    assertEquals(2, count("hits"));
+
+    cache.invalidate(store, key("a"));
+    assertNull(cache.read(store, key("a"), BigEndianIntegerCoder.of()));
+    assertEquals(3, count("misses"));
+  }
+
+  @Test
+  public void testEvictionWritesBackDirtyValues() {
+    final SamzaStoreStateCache cache = new SamzaStoreStateCache(2, metricsRegistry);
+    cache.write(store, key("a"), 1, BigEndianIntegerCoder.of());
+    cache.write(store, key("b"), 2, BigEndianIntegerCoder.of());
+    cache.read(store, key("a"), BigEndianIntegerCoder.of());
+    // "b" is the least recently used value
+    cache.write(store, key("c"), 3, BigEndianIntegerCoder.of());
+
+    assertEquals(2, cache.size());
+    assertEquals(1, count("evictions"));
+    assertArrayEquals(new byte[] {0, 0, 0, 2}, store.get(key("b")));
+    assertNull(store.get(key("a")));
+
+    cache.flush();
+    assertArrayEquals(new byte[] {0, 0, 0, 1}, store.get(key("a")));
+    assertArrayEquals(new byte[] {0, 0, 0, 3}, store.get(key("c")));
+    assertEquals(3, count("writes"));
+  }
+}
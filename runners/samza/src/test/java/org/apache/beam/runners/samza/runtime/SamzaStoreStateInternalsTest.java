@@ -54,6 +54,7 @@ import org.apache.beam.sdk.transforms.Sum;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterators;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Sets;
 import org.apache.samza.context.ContainerContext;
@@ -187,6 +188,57 @@ public class SamzaStoreStateInternalsTest implements Serializable {
         .run(pipeline);
   }
 
+  @Test
+  public void testStateWithStoreCache() {
+    final String stateId = "foo";
+    final String countStateId = "count";
+
+    DoFn<KV<String, Integer>, KV<String, Integer>> fn =
+        new DoFn<KV<String, Integer>, KV<String, Integer>>() {
+
+          @StateId(stateId)
+          private final StateSpec<SetState<Integer>> setState = StateSpecs.set(VarIntCoder.of());
+
+          @StateId(countStateId)
+          private final StateSpec<CombiningState<Integer, int[], Integer>> countState =
+              StateSpecs.combiningFromInputInternal(VarIntCoder.of(), Sum.ofIntegers());
+
+          @ProcessElement
+          public void processElement(
+              ProcessContext c,
+              @StateId(stateId) SetState<Integer> setState,
+              @StateId(countStateId) CombiningState<Integer, int[], Integer> count) {
+            setState.add(c.element().getValue());
+            count.add(1);
+            if (count.read() >= 4) {
+              c.output(KV.of(c.element().getKey(), Iterables.size(setState.read())));
+            }
+          }
+        };
+
+    PCollection<KV<String, Integer>> output =
+        pipeline
+            .apply(
+                Create.of(
+                    KV.of("hello", 97),
+                    KV.of("hello", 42),
+                    KV.of("hello", 42),
+                    KV.of("hello", 12),
+                    KV.of("world", 1),
+                    KV.of("world", 2),
+                    KV.of("world", 3),
+                    KV.of("world", 4)))
+            .apply(ParDo.of(fn));
+
+    PAssert.that(output).containsInAnyOrder(KV.of("hello", 3), KV.of("world", 4));
+
+    SamzaPipelineOptions options = PipelineOptionsFactory.create().as(SamzaPipelineOptions.class);
+    options.setRunner(TestSamzaRunner.class);
+    // small enough for values to be evicted
+    options.setStoreCacheSize(3);
+    TestSamzaRunner.fromOptions(options).run(pipeline).waitUntilFinish();
+  }
+
   /** A storage engine to create test stores. */
   public static class TestStorageEngine extends InMemoryKeyValueStorageEngineFactory {
 
@@ -31,8 +31,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.beam.runners.core.StateNamespace;
 import org.apache.beam.runners.core.StateNamespaces;
 import org.apache.beam.runners.core.TimerInternals;
@@ -295,6 +297,99 @@ public class SamzaTimerInternalsFactoryTest {
     store.close();
   }
 
+  @Test
+  public void testEventTimeTimersWithBoundedBuffer() {
+    final SamzaPipelineOptions pipelineOptions =
+        PipelineOptionsFactory.create().as(SamzaPipelineOptions.class);
+    pipelineOptions.setEventTimerBufferSize(2);
+
+    KeyValueStore<ByteArray, byte[]> store = createStore("store5");
+    final SamzaTimerInternalsFactory<String> timerInternalsFactory =
+        createTimerInternalsFactory(null, "timer", pipelineOptions, store);
+
+    final StateNamespace nameSpace = StateNamespaces.global();
+    final TimerInternals timerInternals = timerInternalsFactory.timerInternalsForKey("testKey");
+    // the latest timers are dropped from memory as the earlier ones are set
+    final long[] timestamps = {50, 40, 30, 30, 20, 10};
+    for (int i = 0; i < timestamps.length; i++) {
+      timerInternals.setTimer(
+          TimerInternals.TimerData.of(
+              "timer" + i, nameSpace, new Instant(timestamps[i]), TimeDomain.EVENT_TIME));
+    }
+
+    timerInternalsFactory.setInputWatermark(new Instant(35));
+    Collection<KeyedTimerData<String>> readyTimers = timerInternalsFactory.removeReadyTimers();
+    assertEquals(Arrays.asList(10L, 20L, 30L, 30L), getTimestamps(readyTimers));
+
+    store.close();
+
+    // restore by creating a new instance
+    store = createStore("store5");
+    final SamzaTimerInternalsFactory<String> restoredFactory =
+        createTimerInternalsFactory(null, "timer", pipelineOptions, store);
+
+    restoredFactory.setInputWatermark(new Instant(100));
+    readyTimers = restoredFactory.removeReadyTimers();
+    assertEquals(Arrays.asList(40L, 50L), getTimestamps(readyTimers));
+
+    store.close();
+  }
+
+  @Test
+  public void testEventTimeTimersOfSameTimestampWithBoundedBuffer() {
+    final SamzaPipelineOptions pipelineOptions =
+        PipelineOptionsFactory.create().as(SamzaPipelineOptions.class);
+    pipelineOptions.setEventTimerBufferSize(2);
+
+    KeyValueStore<ByteArray, byte[]> store = createStore("store6");
+    final SamzaTimerInternalsFactory<String> timerInternalsFactory =
+        createTimerInternalsFactory(null, "timer", pipelineOptions, store);
+
+    final StateNamespace nameSpace = StateNamespaces.global();
+    // end of window timers of many keys share the timestamp, and do not all stay in memory
+    for (int i = 0; i < 5; i++) {
+      timerInternalsFactory
+          .timerInternalsForKey("key" + i)
+          .setTimer(
+              TimerInternals.TimerData.of(
+                  "timer", nameSpace, new Instant(10), TimeDomain.EVENT_TIME));
+      assertTrue(timerInternalsFactory.getEventTimeBufferSize() <= 2);
+    }
+    timerInternalsFactory
+        .timerInternalsForKey("key5")
+        .setTimer(
+            TimerInternals.TimerData.of("timer", nameSpace, new Instant(5), TimeDomain.EVENT_TIME));
+    assertEquals(2, timerInternalsFactory.getEventTimeBufferSize());
+
+    timerInternalsFactory.setInputWatermark(new Instant(20));
+    Collection<KeyedTimerData<String>> readyTimers = timerInternalsFactory.removeReadyTimers();
+    assertEquals(Arrays.asList(5L, 10L, 10L, 10L, 10L, 10L), getTimestamps(readyTimers));
+    final Set<String> keys = new HashSet<>();
+    for (KeyedTimerData<String> timer : readyTimers) {
+      keys.add(timer.getKey());
+    }
+    assertEquals(6, keys.size());
+
+    store.close();
+
+    // nothing is left to load after a restore
+    store = createStore("store6");
+    final SamzaTimerInternalsFactory<String> restoredFactory =
+        createTimerInternalsFactory(null, "timer", pipelineOptions, store);
+    restoredFactory.setInputWatermark(new Instant(100));
+    assertTrue(restoredFactory.removeReadyTimers().isEmpty());
+
+    store.close();
+  }
+
+  private static List<Long> getTimestamps(Collection<KeyedTimerData<String>> timers) {
+    final List<Long> timestamps = new ArrayList<>();
+    for (KeyedTimerData<String> timer : timers) {
+      timestamps.add(timer.getTimerData().getTimestamp().getMillis());
+    }
+    return timestamps;
+  }
+
   @Test
   public void testByteArray() {
     ByteArray key1 = ByteArray.of("hello world".getBytes(StandardCharsets.UTF_8));
@@ -17,6 +17,15 @@
  */
 package org.apache.beam.runners.spark.structuredstreaming.translation;
 
+import javax.annotation.Nullable;
+import org.apache.beam.sdk.coders.BigEndianIntegerCoder;
+import org.apache.beam.sdk.coders.BigEndianLongCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.DoubleCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.coders.VarLongCoder;
+import org.apache.spark.sql.types.DataType;
 import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.types.Metadata;
 import org.apache.spark.sql.types.StructField;
@@ -36,4 +45,23 @@ public class SchemaHelpers {
     // using a NullType schema stores null in the elements
     return BINARY_SCHEMA;
   }
+
+  /**
+   * Returns the Spark atomic type of the values encoded by the coder, or null if Spark has no
+   * native type for them. Spark keeps values of atomic types in its own binary format, which its
+   * grouping and aggregate functions work on without decoding them to objects.
+   */
+  @Nullable
+  public static DataType atomicType(Coder<?> coder) {
+    if (coder instanceof StringUtf8Coder) {
+      return DataTypes.StringType;
+    } else if (coder instanceof VarIntCoder || coder instanceof BigEndianIntegerCoder) {
+      return DataTypes.IntegerType;
+    } else if (coder instanceof VarLongCoder || coder instanceof BigEndianLongCoder) {
+      return DataTypes.LongType;
+    } else if (coder instanceof DoubleCoder) {
+      return DataTypes.DoubleType;
+    }
+    return null;
+  }
 }
@@ -63,9 +63,19 @@ class CombinePerKeyTranslatorBatch<K, InputT, AccumT, OutputT>
     Coder<K> keyCoder = inputCoder.getKeyCoder();
     KvCoder<K, OutputT> outputKVCoder = (KvCoder<K, OutputT>) output.getCoder();
     Coder<OutputT> outputCoder = outputKVCoder.getValueCoder();
+    WindowedValue.WindowedValueCoder<KV<K, OutputT>> wvCoder =
+        WindowedValue.FullWindowedValueCoder.of(
+            outputKVCoder, input.getWindowingStrategy().getWindowFn().windowCoder());
+
+    if (NativeAggregations.canTranslate(combineFn, inputCoder, windowingStrategy)) {
+      // let Spark aggregate the keys and values in its own format
+      context.putDataset(
+          output, NativeAggregations.combinePerKey(inputDataset, combineFn, inputCoder, wvCoder));
+      return;
+    }
 
     KeyValueGroupedDataset<K, WindowedValue<KV<K, InputT>>> groupedDataset =
-        inputDataset.groupByKey(KVHelpers.extractKey(), EncoderHelpers.fromBeamCoder(keyCoder));
+        inputDataset.groupByKey(KVHelpers.extractKey(), EncoderHelpers.keyEncoder(keyCoder));
 
     Coder<AccumT> accumulatorCoder = null;
     try {
@@ -83,9 +93,6 @@ class CombinePerKeyTranslatorBatch<K, InputT, AccumT, OutputT>
                 .toColumn());
 
     // expand the list into separate elements and put the key back into the elements
-    WindowedValue.WindowedValueCoder<KV<K, OutputT>> wvCoder =
-        WindowedValue.FullWindowedValueCoder.of(
-            outputKVCoder, input.getWindowingStrategy().getWindowFn().windowCoder());
     Dataset<WindowedValue<KV<K, OutputT>>> outputDataset =
         combinedDataset.flatMap(
             (FlatMapFunction<
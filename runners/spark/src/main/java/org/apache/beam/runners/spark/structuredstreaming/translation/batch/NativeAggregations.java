@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.structuredstreaming.translation.batch;
+
+import java.util.Map;
+import java.util.function.Function;
+import org.apache.beam.runners.spark.structuredstreaming.translation.SchemaHelpers;
+import org.apache.beam.runners.spark.structuredstreaming.translation.helpers.EncoderHelpers;
+import org.apache.beam.runners.spark.structuredstreaming.translation.helpers.RowHelpers;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.transforms.CombineFnBase.GlobalCombineFn;
+import org.apache.beam.sdk.transforms.Count;
+import org.apache.beam.sdk.transforms.Max;
+import org.apache.beam.sdk.transforms.Min;
+import org.apache.beam.sdk.transforms.Sum;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindows;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.WindowingStrategy;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
+import org.apache.spark.api.java.function.MapFunction;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.catalyst.encoders.RowEncoder;
+import org.apache.spark.sql.functions;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+
+/**
+ * Translation of the {@link org.apache.beam.sdk.transforms.Combine.PerKey} of Beam's {@link Sum},
+ * {@link Min}, {@link Max} and {@link Count} combine functions to Spark's built-in aggregate
+ * functions.
+ *
+ * <p>The keys and values are put in the columns of Spark {@link Row}s instead of being encoded as
+ * binary blobs, so that Spark groups and aggregates them in its own binary format, with generated
+ * code. This only applies to the global window, whose output timestamp does not depend on the
+ * input timestamps, and to keys and values of Spark atomic types.
+ */
+class NativeAggregations {
+
+  private static final String KEY_COLUMN = "key";
+  private static final String VALUE_COLUMN = "value";
+
+  /** The Spark aggregation of the value column that each supported combine function is. */
+  private static final Map<Class<?>, Function<Column, Column>> AGGREGATIONS =
+      ImmutableMap.<Class<?>, Function<Column, Column>>builder()
+          // Spark sums integers as longs, the cast wraps the sum around like Beam does
+          .put(Sum.ofIntegers().getClass(), c -> functions.sum(c).cast(DataTypes.IntegerType))
+          .put(Sum.ofLongs().getClass(), functions::sum)
+          .put(Sum.ofDoubles().getClass(), functions::sum)
+          // Spark orders NaN after all doubles, so only integers are pushed down for min and max
+          .put(Min.ofIntegers().getClass(), functions::min)
+          .put(Min.ofLongs().getClass(), functions::min)
+          .put(Max.ofIntegers().getClass(), functions::max)
+          .put(Max.ofLongs().getClass(), functions::max)
+          .build();
+
+  /** Returns whether the combine can be translated to a Spark aggregate function. */
+  static boolean canTranslate(
+      GlobalCombineFn<?, ?, ?> combineFn,
+      KvCoder<?, ?> inputCoder,
+      WindowingStrategy<?, ?> windowingStrategy) {
+    if (!(windowingStrategy.getWindowFn() instanceof GlobalWindows)
+        || windowingStrategy.getTimestampCombiner() != TimestampCombiner.END_OF_WINDOW) {
+      return false;
+    }
+    DataType keyType = SchemaHelpers.atomicType(inputCoder.getKeyCoder());
+    // Beam groups floating point keys by their encoding, which Spark does not
+    if (keyType == null || DataTypes.DoubleType.equals(keyType)) {
+      return false;
+    }
+    if (isCount(combineFn)) {
+      return true;
+    }
+    return AGGREGATIONS.containsKey(combineFn.getClass())
+        && SchemaHelpers.atomicType(inputCoder.getValueCoder()) != null;
+  }
+
+  /**
+   * Combines the values of each key with the Spark aggregate function of the combine function,
+   * which must be one that {@link #canTranslate} accepts.
+   */
+  static <K, InputT, OutputT> Dataset<WindowedValue<KV<K, OutputT>>> combinePerKey(
+      Dataset<WindowedValue<KV<K, InputT>>> input,
+      GlobalCombineFn<?, ?, ?> combineFn,
+      KvCoder<K, InputT> inputCoder,
+      Coder<WindowedValue<KV<K, OutputT>>> outputCoder) {
+    boolean isCount = isCount(combineFn);
+    StructType schema =
+        new StructType().add(KEY_COLUMN, SchemaHelpers.atomicType(inputCoder.getKeyCoder()), false);
+    Column aggregation;
+    if (isCount) {
+      // the values are not needed to count them
+      aggregation = functions.count(functions.lit(1));
+    } else {
+      schema =
+          schema.add(VALUE_COLUMN, SchemaHelpers.atomicType(inputCoder.getValueCoder()), false);
+      aggregation = AGGREGATIONS.get(combineFn.getClass()).apply(functions.col(VALUE_COLUMN));
+    }
+
+    Dataset<Row> rows =
+        input.map(
+            RowHelpers.<K, InputT>storeKvInRowMapFunction(!isCount), RowEncoder.apply(schema));
+    return rows.groupBy(KEY_COLUMN)
+        .agg(aggregation)
+        .map(
+            (MapFunction<Row, WindowedValue<KV<K, OutputT>>>)
+                row -> {
+                  @SuppressWarnings("unchecked")
+                  KV<K, OutputT> kv = KV.of((K) row.get(0), (OutputT) row.get(1));
+                  // the timestamp and pane of the output of the AggregatorCombiner
+                  return WindowedValue.of(
+                      kv,
+                      GlobalWindow.INSTANCE.maxTimestamp(),
+                      GlobalWindow.INSTANCE,
+                      PaneInfo.NO_FIRING);
+                },
+            EncoderHelpers.fromBeamCoder(outputCoder));
+  }
+
+  private static boolean isCount(GlobalCombineFn<?, ?, ?> combineFn) {
+    return combineFn.getClass().equals(Count.combineFn().getClass());
+  }
+}
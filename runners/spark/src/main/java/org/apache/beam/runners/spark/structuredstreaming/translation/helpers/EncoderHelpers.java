@@ -41,6 +41,7 @@ import org.apache.spark.sql.catalyst.expressions.codegen.CodeGenerator;
 import org.apache.spark.sql.catalyst.expressions.codegen.CodegenContext;
 import org.apache.spark.sql.catalyst.expressions.codegen.ExprCode;
 import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.types.ObjectType;
 import scala.StringContext;
 import scala.collection.JavaConversions;
@@ -69,6 +70,24 @@ public class EncoderHelpers {
         classTag);
   }
 
+  /**
+   * Returns the Spark built-in encoder of the keys encoded by the coder if there is one, or wraps
+   * the coder otherwise. Keys encoded by the built-in encoders are grouped by Spark without being
+   * decoded. Floating point keys are always wrapped, since Beam groups them by their encoding.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Encoder<T> keyEncoder(Coder<T> coder) {
+    DataType atomicType = SchemaHelpers.atomicType(coder);
+    if (DataTypes.StringType.equals(atomicType)) {
+      return (Encoder<T>) Encoders.STRING();
+    } else if (DataTypes.IntegerType.equals(atomicType)) {
+      return (Encoder<T>) Encoders.INT();
+    } else if (DataTypes.LongType.equals(atomicType)) {
+      return (Encoder<T>) Encoders.LONG();
+    }
+    return fromBeamCoder(coder);
+  }
+
   /**
    * Catalyst Expression that serializes elements using Beam {@link Coder}.
    *
@@ -27,8 +27,10 @@ import java.util.List;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
 import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.KV;
 import org.apache.spark.api.java.function.MapFunction;
 import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
 import org.apache.spark.sql.catalyst.InternalRow;
 
 /** Helper functions for working with {@link Row}. */
@@ -52,6 +54,23 @@ public final class RowHelpers {
         };
   }
 
+  /**
+   * A Spark {@link MapFunction} for putting the key and the value of a {@link KV} in the two
+   * columns of a {@link Row}, or only the key if {@code withValue} is false. The key and value must
+   * be of Spark atomic types, see {@link
+   * org.apache.beam.runners.spark.structuredstreaming.translation.SchemaHelpers#atomicType}.
+   */
+  public static <K, V> MapFunction<WindowedValue<KV<K, V>>, Row> storeKvInRowMapFunction(
+      boolean withValue) {
+    return (MapFunction<WindowedValue<KV<K, V>>, Row>)
+        wv -> {
+          KV<K, V> kv = wv.getValue();
+          return withValue
+              ? RowFactory.create(kv.getKey(), kv.getValue())
+              : RowFactory.create(kv.getKey());
+        };
+  }
+
   /**
    * Serialize a windowedValue to bytes using windowedValueCoder {@link
    * WindowedValue.FullWindowedValueCoder} and stores it an InternalRow.
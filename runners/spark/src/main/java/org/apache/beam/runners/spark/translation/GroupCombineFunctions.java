@@ -17,6 +17,7 @@
  */
 package org.apache.beam.runners.spark.translation;
 
+import java.util.Iterator;
 import javax.annotation.Nullable;
 import org.apache.beam.runners.spark.coders.CoderHelpers;
 import org.apache.beam.runners.spark.util.ByteArray;
@@ -27,7 +28,11 @@ import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.sdk.util.WindowedValue.WindowedValueCoder;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.WindowingStrategy;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.AbstractIterator;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterators;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.PeekingIterator;
+import org.apache.spark.HashPartitioner;
 import org.apache.spark.Partitioner;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
@@ -41,6 +46,11 @@ public class GroupCombineFunctions {
   /**
    * An implementation of {@link
    * org.apache.beam.runners.core.GroupByKeyViaGroupByKeyOnly.GroupByKeyOnly} for the Spark runner.
+   *
+   * <p>Like {@link GroupNonMergingWindowsFunctions#groupByKeyAndWindow}, the values are sorted by
+   * their encoded key with Spark's repartitionAndSortWithinPartitions, and the values of each key
+   * are streamed by a {@link StreamedValuesIterable} instead of being collected in memory. They can
+   * only be iterated until the next key is read.
    */
   public static <K, V> JavaRDD<KV<K, Iterable<WindowedValue<V>>>> groupByKeyOnly(
       JavaRDD<WindowedValue<KV<K, V>>> rdd,
@@ -54,13 +64,53 @@ public class GroupCombineFunctions {
             .mapToPair(TranslationUtils.toPairFunction())
             .mapToPair(CoderHelpers.toByteFunction(keyCoder, wvCoder));
 
-    // If no partitioner is passed, the default group by key operation is called
-    JavaPairRDD<ByteArray, Iterable<byte[]>> groupedRDD =
-        (partitioner != null) ? pairRDD.groupByKey(partitioner) : pairRDD.groupByKey();
+    // If no partitioner is passed, the values are hash partitioned like the input
+    return pairRDD
+        .repartitionAndSortWithinPartitions(
+            (partitioner != null) ? partitioner : new HashPartitioner(rdd.getNumPartitions()))
+        .mapPartitions(it -> new GroupByKeyOnlyIterator<>(it, keyCoder, wvCoder));
+  }
 
-    return groupedRDD
-        .mapToPair(CoderHelpers.fromByteFunctionIterable(keyCoder, wvCoder))
-        .map(new TranslationUtils.FromPairFunction<>());
+  /**
+   * Transforms a stream of values sorted by encoded key into the values of each key, which are
+   * streamed from the underlying iterator.
+   */
+  static class GroupByKeyOnlyIterator<K, V>
+      extends AbstractIterator<KV<K, Iterable<WindowedValue<V>>>> {
+
+    private final PeekingIterator<Tuple2<ByteArray, byte[]>> inner;
+    private final Coder<K> keyCoder;
+    private final WindowedValueCoder<V> wvCoder;
+    private StreamedValuesIterable<WindowedValue<V>> currentValues = null;
+
+    GroupByKeyOnlyIterator(
+        Iterator<Tuple2<ByteArray, byte[]>> inner,
+        Coder<K> keyCoder,
+        WindowedValueCoder<V> wvCoder) {
+      this.inner = Iterators.peekingIterator(inner);
+      this.keyCoder = keyCoder;
+      this.wvCoder = wvCoder;
+    }
+
+    @Override
+    protected KV<K, Iterable<WindowedValue<V>>> computeNext() {
+      if (currentValues != null) {
+        // skip the values of the previous key that were not iterated
+        currentValues.release();
+        currentValues = null;
+      }
+      if (!inner.hasNext()) {
+        return endOfData();
+      }
+      final ByteArray key = inner.peek()._1;
+      currentValues =
+          new StreamedValuesIterable<>(
+              inner,
+              key,
+              bytes -> CoderHelpers.fromByteArray(bytes, wvCoder),
+              StreamedValuesIterable.DEFAULT_MAX_BUFFERED_BYTES);
+      return KV.of(CoderHelpers.fromByteArray(key.getValue(), keyCoder), currentValues);
+    }
   }
 
   /**
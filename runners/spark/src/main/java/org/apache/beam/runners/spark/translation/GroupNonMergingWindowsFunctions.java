@@ -31,7 +31,6 @@ import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.sdk.util.WindowedValue.FullWindowedValueCoder;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.WindowingStrategy;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.AbstractIterator;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterators;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.PeekingIterator;
@@ -149,8 +148,9 @@ public class GroupNonMergingWindowsFunctions {
   }
 
   /**
-   * Transform stream of sorted key values into stream of value iterators for each key. This
-   * iterator can be iterated only once!
+   * Transform stream of sorted key values into stream of value iterators for each key. The values
+   * of a key are streamed by a {@link StreamedValuesIterable}, and can only be iterated until the
+   * next key is read.
    *
    * <p>From Iterator<K, V> transform to <K, Iterator<V>>.
    *
@@ -164,9 +164,10 @@ public class GroupNonMergingWindowsFunctions {
     private final Coder<K> keyCoder;
     private final WindowingStrategy<?, W> windowingStrategy;
     private final FullWindowedValueCoder<KV<K, V>> windowedValueCoder;
+    private final long maxBufferedBytes;
 
     private boolean hasNext = true;
-    private ByteArray currentKey = null;
+    private StreamedValuesIterable<V> currentValues = null;
 
     GroupByKeyIterator(
         Iterator<Tuple2<ByteArray, byte[]>> inner,
@@ -174,11 +175,27 @@ public class GroupNonMergingWindowsFunctions {
         WindowingStrategy<?, W> windowingStrategy,
         WindowedValue.FullWindowedValueCoder<KV<K, V>> windowedValueCoder)
         throws Coder.NonDeterministicException {
+      this(
+          inner,
+          keyCoder,
+          windowingStrategy,
+          windowedValueCoder,
+          StreamedValuesIterable.DEFAULT_MAX_BUFFERED_BYTES);
+    }
+
+    GroupByKeyIterator(
+        Iterator<Tuple2<ByteArray, byte[]>> inner,
+        Coder<K> keyCoder,
+        WindowingStrategy<?, W> windowingStrategy,
+        WindowedValue.FullWindowedValueCoder<KV<K, V>> windowedValueCoder,
+        long maxBufferedBytes)
+        throws Coder.NonDeterministicException {
 
       this.inner = Iterators.peekingIterator(inner);
       this.keyCoder = keyCoder;
       this.windowingStrategy = windowingStrategy;
       this.windowedValueCoder = windowedValueCoder;
+      this.maxBufferedBytes = maxBufferedBytes;
     }
 
     @Override
@@ -188,53 +205,22 @@ public class GroupNonMergingWindowsFunctions {
 
     @Override
     public WindowedValue<KV<K, Iterable<V>>> next() {
-      while (inner.hasNext()) {
-        final ByteArray nextKey = inner.peek()._1;
-        if (nextKey.equals(currentKey)) {
-          // we still did not see all values for a given key
-          inner.next();
-          continue;
-        }
-        currentKey = nextKey;
+      if (currentValues != null) {
+        // skip the values of the previous key that were not iterated
+        currentValues.release();
+        currentValues = null;
+      }
+      if (inner.hasNext()) {
         final WindowedValue<KV<K, V>> decodedItem = decodeItem(inner.peek());
-        return decodedItem.withValue(
-            KV.of(decodedItem.getValue().getKey(), new ValueIterator(inner, currentKey)));
+        currentValues =
+            new StreamedValuesIterable<>(
+                inner, inner.peek()._1, this::decodeValue, maxBufferedBytes);
+        return decodedItem.withValue(KV.of(decodedItem.getValue().getKey(), currentValues));
       }
       hasNext = false;
       return null;
     }
 
-    class ValueIterator implements Iterable<V> {
-
-      boolean consumed = false;
-      private final PeekingIterator<Tuple2<ByteArray, byte[]>> inner;
-      private final ByteArray currentKey;
-
-      ValueIterator(PeekingIterator<Tuple2<ByteArray, byte[]>> inner, ByteArray currentKey) {
-        this.inner = inner;
-        this.currentKey = currentKey;
-      }
-
-      @Override
-      public Iterator<V> iterator() {
-        if (consumed) {
-          throw new IllegalStateException(
-              "ValueIterator can't be iterated more than once,"
-                  + "otherwise there could be data lost");
-        }
-        consumed = true;
-        return new AbstractIterator<V>() {
-          @Override
-          protected V computeNext() {
-            if (inner.hasNext() && currentKey.equals(inner.peek()._1)) {
-              return decodeValue(inner.next()._2);
-            }
-            return endOfData();
-          }
-        };
-      }
-    }
-
     private V decodeValue(byte[] windowedValueBytes) {
       final WindowedValue<KV<K, V>> windowedValue =
           CoderHelpers.fromByteArray(windowedValueBytes, windowedValueCoder);
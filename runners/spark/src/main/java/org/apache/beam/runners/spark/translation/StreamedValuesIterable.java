@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.translation;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.apache.beam.runners.spark.util.ByteArray;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.AbstractIterator;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.PeekingIterator;
+import org.apache.spark.SparkEnv;
+import scala.Tuple2;
+
+/**
+ * The values of a key, streamed from a partition sorted by key as they are iterated.
+ *
+ * <p>The values are never all held in memory by the first iteration. The encoded values it reads
+ * are kept so that the values can be iterated again: up to {@code maxBufferedBytes} of them in
+ * memory, and the rest in a temporary file in the local directories of Spark. Both are dropped by
+ * {@link #release()}, once the grouping moves on to the next key, after which the values can't be
+ * iterated anymore.
+ */
+class StreamedValuesIterable<V> implements Iterable<V> {
+
+  /** The default size of the values of a key kept in memory for further iterations. */
+  static final long DEFAULT_MAX_BUFFERED_BYTES = 32L * 1024 * 1024;
+
+  private final PeekingIterator<Tuple2<ByteArray, byte[]>> inner;
+  private final ByteArray key;
+  private final Function<byte[], V> decodeFn;
+  private final long maxBufferedBytes;
+
+  private final List<byte[]> buffered = new ArrayList<>();
+  private long bufferedBytes = 0;
+  @Nullable private File spillFile;
+  @Nullable private DataOutputStream spillOut;
+  private int spilledCount = 0;
+  private int flushedCount = 0;
+  private final List<Closeable> spillReaders = new ArrayList<>();
+  private boolean streamed = false;
+  private boolean released = false;
+
+  StreamedValuesIterable(
+      PeekingIterator<Tuple2<ByteArray, byte[]>> inner,
+      ByteArray key,
+      Function<byte[], V> decodeFn,
+      long maxBufferedBytes) {
+    this.inner = inner;
+    this.key = key;
+    this.decodeFn = decodeFn;
+    this.maxBufferedBytes = maxBufferedBytes;
+  }
+
+  @Override
+  public Iterator<V> iterator() {
+    checkState(!released, "The values of a key can't be iterated once the next key was read");
+    return new AbstractIterator<V>() {
+      private int index = 0;
+      @Nullable private DataInputStream spillIn;
+      // the index of the next spilled value spillIn reads, which lags behind when this iterator
+      // reads values from the partition, or when other iterators spilled them
+      private int spillInIndex = 0;
+
+      @Override
+      protected V computeNext() {
+        checkState(!released, "The values of a key can't be iterated once the next key was read");
+        final byte[] valueBytes;
+        if (index < buffered.size()) {
+          valueBytes = buffered.get(index);
+        } else if (index < buffered.size() + spilledCount) {
+          valueBytes = readSpilled();
+        } else if (hasNextInner()) {
+          valueBytes = inner.next()._2;
+          keep(valueBytes);
+        } else {
+          streamed = true;
+          closeQuietly(spillIn);
+          return endOfData();
+        }
+        index++;
+        return decodeFn.apply(valueBytes);
+      }
+
+      private byte[] readSpilled() {
+        try {
+          final int spillIndex = index - buffered.size();
+          if (spillIndex >= flushedCount) {
+            spillOut.flush();
+            flushedCount = spilledCount;
+          }
+          if (spillIn == null) {
+            spillIn =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)));
+            spillReaders.add(spillIn);
+          }
+          // skip the spilled values this iteration already read from the partition
+          for (; spillInIndex < spillIndex; spillInIndex++) {
+            spillIn.skipBytes(spillIn.readInt());
+          }
+          final byte[] valueBytes = new byte[spillIn.readInt()];
+          spillIn.readFully(valueBytes);
+          spillInIndex++;
+          return valueBytes;
+        } catch (IOException e) {
+          throw new UncheckedIOException("Could not read back spilled values", e);
+        }
+      }
+    };
+  }
+
+  /** Skips the values of the key that were not iterated, and drops the values kept. */
+  void release() {
+    while (hasNextInner()) {
+      inner.next();
+    }
+    streamed = true;
+    released = true;
+    buffered.clear();
+    spillReaders.forEach(StreamedValuesIterable::closeQuietly);
+    closeQuietly(spillOut);
+    if (spillFile != null && !spillFile.delete()) {
+      spillFile.deleteOnExit();
+    }
+  }
+
+  private boolean hasNextInner() {
+    return !streamed && inner.hasNext() && key.equals(inner.peek()._1);
+  }
+
+  private void keep(byte[] valueBytes) {
+    if (spillOut == null && bufferedBytes + valueBytes.length <= maxBufferedBytes) {
+      buffered.add(valueBytes);
+      bufferedBytes += valueBytes.length;
+      return;
+    }
+    try {
+      if (spillOut == null) {
+        spillFile = createSpillFile();
+        spillOut =
+            new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+      }
+      // the spilled values are only flushed once they are read back
+      spillOut.writeInt(valueBytes.length);
+      spillOut.write(valueBytes);
+      spilledCount++;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not spill values to disk", e);
+    }
+  }
+
+  private static File createSpillFile() throws IOException {
+    final SparkEnv sparkEnv = SparkEnv.get();
+    if (sparkEnv == null) {
+      // outside of a Spark executor
+      return File.createTempFile("beam-spark-values-", ".bin");
+    }
+    // the local directories of Spark are meant for large temporary files, unlike java.io.tmpdir
+    return sparkEnv.blockManager().diskBlockManager().createTempLocalBlock()._2();
+  }
+
+  private static void closeQuietly(@Nullable Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        // the stream is not used anymore
+      }
+    }
+  }
+}
@@ -55,6 +55,10 @@ public class SparkStateInternalsTest extends StateInternalsTest {
   @Ignore
   public void testMap() {}
 
+  @Override
+  @Ignore
+  public void testOrderedList() {}
+
   @Override
   @Ignore
   public void testSetReadable() {}
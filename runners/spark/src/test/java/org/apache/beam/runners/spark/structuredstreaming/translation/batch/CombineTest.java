@@ -28,6 +28,7 @@ import org.apache.beam.sdk.testing.PAssert;
 import org.apache.beam.sdk.transforms.Combine;
 import org.apache.beam.sdk.transforms.Count;
 import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.Max;
 import org.apache.beam.sdk.transforms.SerializableBiFunction;
 import org.apache.beam.sdk.transforms.Sum;
 import org.apache.beam.sdk.transforms.windowing.FixedWindows;
@@ -99,6 +100,19 @@ public class CombineTest implements Serializable {
     pipeline.run();
   }
 
+  @Test
+  public void testCombinePerKeyWithNativeAggregations() {
+    PCollection<KV<String, Long>> input =
+        pipeline.apply("CreateNative", Create.of(KV.of("a", 1L), KV.of("a", 5L), KV.of("b", 2L)));
+    PAssert.that(input.apply("NativeSum", Sum.longsPerKey()))
+        .containsInAnyOrder(KV.of("a", 6L), KV.of("b", 2L));
+    PAssert.that(input.apply("NativeMax", Max.longsPerKey()))
+        .containsInAnyOrder(KV.of("a", 5L), KV.of("b", 2L));
+    PAssert.that(input.apply("NativeCount", Count.perKey()))
+        .containsInAnyOrder(KV.of("a", 2L), KV.of("b", 1L));
+    pipeline.run();
+  }
+
   @Test
   public void testCombinePerKeyPreservesWindowing() {
     PCollection<KV<Integer, Integer>> input =
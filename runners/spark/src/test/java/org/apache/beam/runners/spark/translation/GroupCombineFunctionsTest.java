@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.translation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.beam.runners.spark.coders.CoderHelpers;
+import org.apache.beam.runners.spark.translation.GroupCombineFunctions.GroupByKeyOnlyIterator;
+import org.apache.beam.runners.spark.util.ByteArray;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.util.WindowedValue.WindowedValueCoder;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Lists;
+import org.junit.Test;
+import scala.Tuple2;
+
+/** Unit tests of {@link GroupCombineFunctions}. */
+public class GroupCombineFunctionsTest {
+
+  private static final WindowedValueCoder<Integer> WV_CODER =
+      WindowedValue.getFullCoder(VarIntCoder.of(), GlobalWindow.Coder.INSTANCE);
+
+  @Test
+  public void testGroupByKeyOnlyIterator() {
+    GroupByKeyOnlyIterator<String, Integer> iteratorUnderTest = createIterator();
+
+    assertTrue(iteratorUnderTest.hasNext());
+    KV<String, Iterable<WindowedValue<Integer>>> k1 = iteratorUnderTest.next();
+    assertEquals("k1", k1.getKey());
+    Iterator<WindowedValue<Integer>> k1Values = k1.getValue().iterator();
+    assertEquals(1, k1Values.next().getValue().intValue());
+    // a second iteration reads the value kept by the first one, then the next one
+    assertEquals(Arrays.asList(1, 2), values(k1.getValue()));
+    assertEquals(2, k1Values.next().getValue().intValue());
+    assertFalse(k1Values.hasNext());
+
+    // the values of k2 which are not iterated are skipped
+    KV<String, Iterable<WindowedValue<Integer>>> k2 = iteratorUnderTest.next();
+    assertEquals("k2", k2.getKey());
+    assertEquals(3, k2.getValue().iterator().next().getValue().intValue());
+
+    KV<String, Iterable<WindowedValue<Integer>>> k3 = iteratorUnderTest.next();
+    assertEquals("k3", k3.getKey());
+    assertEquals(Arrays.asList(6), values(k3.getValue()));
+    assertFalse(iteratorUnderTest.hasNext());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testGroupByKeyOnlyValuesCannotBeIteratedAfterNextKey() {
+    GroupByKeyOnlyIterator<String, Integer> iteratorUnderTest = createIterator();
+    Iterable<WindowedValue<Integer>> k1Values = iteratorUnderTest.next().getValue();
+    iteratorUnderTest.next();
+    k1Values.iterator();
+  }
+
+  private static List<Integer> values(Iterable<WindowedValue<Integer>> windowedValues) {
+    return Lists.newArrayList(Iterables.transform(windowedValues, WindowedValue::getValue));
+  }
+
+  private static GroupByKeyOnlyIterator<String, Integer> createIterator() {
+    List<Tuple2<ByteArray, byte[]>> items =
+        Arrays.asList(
+            item("k1", 1),
+            item("k1", 2),
+            item("k2", 3),
+            item("k2", 4),
+            item("k2", 5),
+            item("k3", 6));
+    return new GroupByKeyOnlyIterator<>(items.iterator(), StringUtf8Coder.of(), WV_CODER);
+  }
+
+  private static Tuple2<ByteArray, byte[]> item(String key, int value) {
+    return new Tuple2<>(
+        new ByteArray(CoderHelpers.toByteArray(key, StringUtf8Coder.of())),
+        CoderHelpers.toByteArray(WindowedValue.valueInGlobalWindow(value), WV_CODER));
+  }
+}
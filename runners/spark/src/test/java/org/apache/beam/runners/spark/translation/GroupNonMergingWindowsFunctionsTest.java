@@ -38,6 +38,7 @@ import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.sdk.util.WindowedValue.FullWindowedValueCoder;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.WindowingStrategy;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Lists;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.primitives.Bytes;
 import org.joda.time.Duration;
 import org.joda.time.Instant;
@@ -99,16 +100,43 @@ public class GroupNonMergingWindowsFunctionsTest {
     assertEquals(3L, valuesIteratorForK2.next().longValue());
   }
 
+  @Test
+  public void testGbkIteratorValuesCanBeReiterated() throws Coder.NonDeterministicException {
+    // with no memory to keep the values, they are read back from disk
+    long[] maxBufferedBytesToTest = {StreamedValuesIterable.DEFAULT_MAX_BUFFERED_BYTES, 0};
+    for (long maxBufferedBytes : maxBufferedBytesToTest) {
+      GroupByKeyIterator<String, Integer, GlobalWindow> iteratorUnderTest =
+          createGbkIterator(
+              GlobalWindow.INSTANCE,
+              GlobalWindow.Coder.INSTANCE,
+              WindowingStrategy.globalDefault(),
+              maxBufferedBytes);
+      iteratorUnderTest.next();
+      Iterable<Integer> values = iteratorUnderTest.next().getValue().getValue();
+
+      Iterator<Integer> firstIteration = values.iterator();
+      assertEquals(3L, firstIteration.next().longValue());
+      // a second iteration reads the values kept by the first one, then the next ones
+      assertEquals(Arrays.asList(3, 4, 5), Lists.newArrayList(values));
+      assertEquals(4L, firstIteration.next().longValue());
+      assertEquals(5L, firstIteration.next().longValue());
+      Assert.assertFalse(firstIteration.hasNext());
+      assertEquals(Arrays.asList(3, 4, 5), Lists.newArrayList(values));
+    }
+  }
+
   @Test(expected = IllegalStateException.class)
-  public void testGbkIteratorValuesCannotBeReiterated() throws Coder.NonDeterministicException {
+  public void testGbkIteratorValuesCannotBeIteratedAfterNextKey()
+      throws Coder.NonDeterministicException {
     GroupByKeyIterator<String, Integer, GlobalWindow> iteratorUnderTest = createGbkIterator();
     WindowedValue<KV<String, Iterable<Integer>>> firstEl = iteratorUnderTest.next();
     Iterable<Integer> value = firstEl.getValue().getValue();
     for (Integer i : value) {
       // first iteration
     }
+    iteratorUnderTest.next();
     for (Integer i : value) {
-      // second iteration should throw IllegalStateException
+      // iterating after the next key was read should throw IllegalStateException
     }
   }
 
@@ -121,6 +149,16 @@ public class GroupNonMergingWindowsFunctionsTest {
   private <W extends BoundedWindow> GroupByKeyIterator<String, Integer, W> createGbkIterator(
       W window, Coder<W> winCoder, WindowingStrategy<Object, W> winStrategy)
       throws Coder.NonDeterministicException {
+    return createGbkIterator(
+        window, winCoder, winStrategy, StreamedValuesIterable.DEFAULT_MAX_BUFFERED_BYTES);
+  }
+
+  private <W extends BoundedWindow> GroupByKeyIterator<String, Integer, W> createGbkIterator(
+      W window,
+      Coder<W> winCoder,
+      WindowingStrategy<Object, W> winStrategy,
+      long maxBufferedBytes)
+      throws Coder.NonDeterministicException {
 
     StringUtf8Coder keyCoder = StringUtf8Coder.of();
     final WindowedValue.FullWindowedValueCoder<KV<String, Integer>> winValCoder =
@@ -137,7 +175,8 @@ public class GroupNonMergingWindowsFunctionsTest {
             factory.create("k2", 3),
             factory.create("k2", 4),
             factory.create("k2", 5));
-    return new GroupByKeyIterator<>(items.iterator(), keyCoder, winStrategy, winValCoder);
+    return new GroupByKeyIterator<>(
+        items.iterator(), keyCoder, winStrategy, winValCoder, maxBufferedBytes);
   }
 
   private static class ItemFactory<K, V, W extends BoundedWindow> {
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.translation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.beam.runners.spark.coders.CoderHelpers;
+import org.apache.beam.runners.spark.util.ByteArray;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterators;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Lists;
+import org.junit.Test;
+import scala.Tuple2;
+
+/** Unit tests of {@link StreamedValuesIterable}. */
+public class StreamedValuesIterableTest {
+
+  @Test
+  public void testInterleavedIterationsOfSpilledValues() {
+    // with no memory to keep the values, they are all spilled to disk
+    StreamedValuesIterable<Integer> values = createValues(0, 0, 1, 2, 3);
+
+    Iterator<Integer> first = values.iterator();
+    Iterator<Integer> second = values.iterator();
+    assertEquals(0, first.next().intValue());
+    // reads the value back from disk
+    assertEquals(0, second.next().intValue());
+    // reads a value from the partition while the first iteration reads from disk
+    assertEquals(1, second.next().intValue());
+    assertEquals(1, first.next().intValue());
+    assertEquals(2, first.next().intValue());
+    // skips on disk the value it read from the partition
+    assertEquals(2, second.next().intValue());
+    assertEquals(3, second.next().intValue());
+    assertEquals(3, first.next().intValue());
+    assertFalse(first.hasNext());
+    assertFalse(second.hasNext());
+    assertEquals(Arrays.asList(0, 1, 2, 3), Lists.newArrayList(values));
+    values.release();
+  }
+
+  @Test
+  public void testInterleavedIterationsOfBufferedAndSpilledValues() {
+    // a single value fits in memory, the next ones are spilled to disk
+    StreamedValuesIterable<Integer> values = createValues(1, 0, 1, 2, 3, 4);
+
+    Iterator<Integer> first = values.iterator();
+    Iterator<Integer> second = values.iterator();
+    assertEquals(0, first.next().intValue());
+    assertEquals(1, first.next().intValue());
+    assertEquals(0, second.next().intValue());
+    assertEquals(1, second.next().intValue());
+    assertEquals(2, second.next().intValue());
+    assertEquals(3, second.next().intValue());
+    assertEquals(2, first.next().intValue());
+    assertEquals(4, second.next().intValue());
+    assertEquals(3, first.next().intValue());
+    assertEquals(4, first.next().intValue());
+    assertFalse(first.hasNext());
+    assertFalse(second.hasNext());
+    values.release();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testValuesCannotBeIteratedAfterRelease() {
+    StreamedValuesIterable<Integer> values = createValues(0, 0, 1);
+    values.release();
+    values.iterator();
+  }
+
+  private static StreamedValuesIterable<Integer> createValues(
+      long maxBufferedBytes, Integer... values) {
+    ByteArray key = new ByteArray(CoderHelpers.toByteArray("k", StringUtf8Coder.of()));
+    List<Tuple2<ByteArray, byte[]>> items = Lists.newArrayList();
+    for (Integer value : values) {
+      items.add(new Tuple2<>(key, CoderHelpers.toByteArray(value, VarIntCoder.of())));
+    }
+    // a value of the next key, which the values must not include
+    ByteArray nextKey = new ByteArray(CoderHelpers.toByteArray("l", StringUtf8Coder.of()));
+    items.add(new Tuple2<>(nextKey, CoderHelpers.toByteArray(-1, VarIntCoder.of())));
+    return new StreamedValuesIterable<>(
+        Iterators.peekingIterator(items.iterator()),
+        key,
+        bytes -> CoderHelpers.fromByteArray(bytes, VarIntCoder.of()),
+        maxBufferedBytes);
+  }
+}
@@ -91,6 +91,13 @@ public interface PortablePipelineOptions extends PipelineOptions {
 
   void setEnvironmentExpirationMillis(int environmentExpirationMillis);
 
+  @Description(
+      "Duration in milliseconds for which environments are kept once a job does not use them anymore, to be reused by the next jobs of the same process with the same environment, artifacts and pipeline options, apart from the job name. A reused environment keeps the job id, job name and logging endpoint of the job which started it. 0 means environments are not reused across jobs.")
+  @Default.Integer(0)
+  int getEnvironmentReuseMillis();
+
+  void setEnvironmentReuseMillis(int environmentReuseMillis);
+
   @Description(
       "Specifies if bundles should be distributed to the next available free SDK worker. By default SDK workers are pinned to runner tasks for the duration of the pipeline. This option can help for pipelines with long and skewed bundle execution times to increase throughput and improve worker utilization.")
   @Default.Boolean(false)
@@ -98,6 +105,13 @@ public interface PortablePipelineOptions extends PipelineOptions {
 
   void setLoadBalanceBundles(boolean loadBalanceBundles);
 
+  @Description(
+      "The maximum number of bundles which each SDK worker processes at the same time when bundles are load balanced. Bundles are sent to the SDK worker expected to start them the soonest, given its bundles in progress and their recent processing time, and further SDK workers are only started once the started ones are all busy.")
+  @Default.Integer(1)
+  int getMaxBundlesPerEnvironment();
+
+  void setMaxBundlesPerEnvironment(int maxBundlesPerEnvironment);
+
   @Description("The output path for the executable file to be created.")
   @Nullable
   String getOutputExecutablePath();
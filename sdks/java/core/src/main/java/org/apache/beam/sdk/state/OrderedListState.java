@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.state;
+
+import javax.annotation.Nonnull;
+import org.apache.beam.sdk.annotations.Experimental;
+import org.apache.beam.sdk.annotations.Experimental.Kind;
+import org.apache.beam.sdk.values.TimestampedValue;
+import org.joda.time.Instant;
+
+/**
+ * A {@link ReadableState} cell containing a list of values sorted by timestamp. Timestamped values
+ * can be added to the list, and the values of a range of timestamps can be read or cleared.
+ *
+ * <p>Implementations of this form of state are expected to implement {@link #add} efficiently, not
+ * via a sequence of read-modify-write, and to read or clear a range without reading the values
+ * outside of it. Values with the same timestamp are read in the order they were added.
+ *
+ * @param <T> The type of elements in the list.
+ */
+@Experimental(Kind.STATE)
+public interface OrderedListState<T>
+    extends GroupingState<TimestampedValue<T>, Iterable<TimestampedValue<T>>> {
+
+  /** Reads all the values of the list, sorted by timestamp. */
+  @Override
+  @Nonnull
+  Iterable<TimestampedValue<T>> read();
+
+  /**
+   * Reads the values of the list with a timestamp at or after {@code minTimestamp} and before
+   * {@code limitTimestamp}, sorted by timestamp.
+   */
+  @Nonnull
+  Iterable<TimestampedValue<T>> readRange(Instant minTimestamp, Instant limitTimestamp);
+
+  /**
+   * Removes the values of the list with a timestamp at or after {@code minTimestamp} and before
+   * {@code limitTimestamp}.
+   *
+   * <p>Changes will not be reflected in the results of previous calls to {@link #read} or {@link
+   * #readRange}.
+   */
+  void clearRange(Instant minTimestamp, Instant limitTimestamp);
+
+  /**
+   * Indicates that the range will be read with {@link #readRange} later, allowing the runner to
+   * batch reads.
+   */
+  OrderedListState<T> readRangeLater(Instant minTimestamp, Instant limitTimestamp);
+
+  @Override
+  OrderedListState<T> readLater();
+}
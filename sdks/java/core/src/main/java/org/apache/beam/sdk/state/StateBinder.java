@@ -36,6 +36,9 @@ public interface StateBinder {
 
   <T> SetState<T> bindSet(String id, StateSpec<SetState<T>> spec, Coder<T> elemCoder);
 
+  <T> OrderedListState<T> bindOrderedList(
+      String id, StateSpec<OrderedListState<T>> spec, Coder<T> elemCoder);
+
   <KeyT, ValueT> MapState<KeyT, ValueT> bindMap(
       String id,
       StateSpec<MapState<KeyT, ValueT>> spec,
@@ -82,6 +82,8 @@ public interface StateSpec<StateT extends State> extends Serializable {
 
     ResultT dispatchSet(Coder<?> elementCoder);
 
+    ResultT dispatchOrderedList(Coder<?> elementCoder);
+
     /** A base class for a visitor with a default method for cases it is not interested in. */
     abstract class WithDefault<ResultT> implements Cases<ResultT> {
 
@@ -111,6 +113,11 @@ public interface StateSpec<StateT extends State> extends Serializable {
       public ResultT dispatchSet(Coder<?> elementCoder) {
         return dispatchDefault();
       }
+
+      @Override
+      public ResultT dispatchOrderedList(Coder<?> elementCoder) {
+        return dispatchDefault();
+      }
     }
   }
 }
@@ -164,6 +164,27 @@ public class StateSpecs {
     return new SetStateSpec<>(elemCoder);
   }
 
+  /**
+   * Create a {@link StateSpec} for an {@link OrderedListState}, optimized for adding values and
+   * reading or clearing ranges of timestamps.
+   *
+   * <p>This method attempts to infer the element coder automatically.
+   *
+   * @see #orderedList(Coder)
+   */
+  public static <T> StateSpec<OrderedListState<T>> orderedList() {
+    return new OrderedListStateSpec<>(null);
+  }
+
+  /**
+   * Identical to {@link #orderedList()}, but with an element coder explicitly supplied.
+   *
+   * <p>If automatic coder inference fails, use this method.
+   */
+  public static <T> StateSpec<OrderedListState<T>> orderedList(Coder<T> elemCoder) {
+    return new OrderedListStateSpec<>(elemCoder);
+  }
+
   /**
    * Create a {@link StateSpec} for a {@link SetState}, optimized for key lookups and writes.
    *
@@ -656,6 +677,68 @@ public class StateSpecs {
     }
   }
 
+  /**
+   * A specification for a state cell supporting ordered list access patterns.
+   *
+   * <p>Includes the coder for the element type {@code T}
+   */
+  private static class OrderedListStateSpec<T> implements StateSpec<OrderedListState<T>> {
+
+    @Nullable private Coder<T> elemCoder;
+
+    private OrderedListStateSpec(@Nullable Coder<T> elemCoder) {
+      this.elemCoder = elemCoder;
+    }
+
+    @Override
+    public OrderedListState<T> bind(String id, StateBinder visitor) {
+      return visitor.bindOrderedList(id, this, elemCoder);
+    }
+
+    @Override
+    public <ResultT> ResultT match(Cases<ResultT> cases) {
+      return cases.dispatchOrderedList(elemCoder);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void offerCoders(Coder[] coders) {
+      if (this.elemCoder == null && coders[0] != null) {
+        this.elemCoder = (Coder<T>) coders[0];
+      }
+    }
+
+    @Override
+    public void finishSpecifying() {
+      if (elemCoder == null) {
+        throw new IllegalStateException(
+            "Unable to infer a coder for OrderedListState and no Coder"
+                + " was specified. Please set a coder by either invoking"
+                + " StateSpecs.orderedList(Coder<T> elemCoder) or by registering the coder in the"
+                + " Pipeline's CoderRegistry.");
+      }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+
+      if (!(obj instanceof OrderedListStateSpec)) {
+        return false;
+      }
+
+      OrderedListStateSpec<?> that = (OrderedListStateSpec<?>) obj;
+      return Objects.equals(this.elemCoder, that.elemCoder);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(getClass(), elemCoder);
+    }
+  }
+
   /**
    * A specification for a state cell tracking a combined watermark hold.
    *
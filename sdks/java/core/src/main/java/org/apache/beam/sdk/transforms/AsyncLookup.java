@@ -0,0 +1,480 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.transforms;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.apache.beam.sdk.annotations.Experimental;
+import org.apache.beam.sdk.coders.CannotProvideCoderException;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.transforms.display.DisplayData;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.TypeDescriptor;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.Cache;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheBuilder;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+
+/**
+ * A {@link PTransform} that enriches each element with a value looked up by key in an external
+ * store, such as Redis, HBase, Bigtable or a database.
+ *
+ * <p>The keys of the elements of a bundle are deduplicated and looked up in batches of {@link
+ * #withBatchSize(int)} keys, each with a single asynchronous request of a {@link LookupFn}. Up to
+ * {@link #withMaxInflightRequests(int)} requests are in flight at once, while the next elements are
+ * processed, and an element whose key is already being looked up waits for that request. With
+ * {@link #withCacheSize(long)}, the values are also cached by each worker for {@link
+ * #withCacheTtl(Duration)}, so that the elements of a frequent key do not all go to the store.
+ *
+ * <p>Each element is output with the value of its key, in the window and with the timestamp of the
+ * element. Elements whose key has no value are not output; a {@link LookupFn} can return a default
+ * value for such keys to keep them. The output is in no particular order.
+ *
+ * <p>Example of use:
+ *
+ * <pre>{@code
+ * PCollection<Order> orders = ...;
+ * PCollection<KV<Order, String>> ordersWithCustomers =
+ *     orders.apply(
+ *         AsyncLookup.of(Order::getCustomerId, RedisIO.lookup().withEndpoint("::1", 6379))
+ *             .withCacheSize(100_000)
+ *             .withCacheTtl(Duration.standardMinutes(5)));
+ * }</pre>
+ *
+ * @param <InputT> the type of the input elements
+ * @param <K> the type of the keys looked up
+ * @param <V> the type of the values looked up
+ */
+@Experimental
+public class AsyncLookup<InputT, K, V>
+    extends PTransform<PCollection<InputT>, PCollection<KV<InputT, V>>> {
+
+  /** The default number of keys of a request is 100. */
+  public static final int DEFAULT_BATCH_SIZE = 100;
+  /** The default number of requests in flight per {@link DoFn} instance is 10. */
+  public static final int DEFAULT_MAX_INFLIGHT_REQUESTS = 10;
+  /** The default duration a value is cached for is 10 mins. */
+  public static final Duration DEFAULT_CACHE_TTL = Duration.standardMinutes(10);
+
+  /**
+   * The caches of the {@link AsyncLookup} transforms running in this worker, by transform. A cache
+   * is removed once the last {@link DoFn} instance using it is torn down.
+   */
+  private static final ConcurrentMap<String, SharedCache> CACHES = new ConcurrentHashMap<>();
+
+  /**
+   * Looks up the values of batches of keys in an external store.
+   *
+   * <p>Several requests may be in flight at once, so {@link #lookup} should return without waiting
+   * for the answer of the store, with a stage completed by the thread of an asynchronous client or
+   * of an executor owned by the function.
+   */
+  public interface LookupFn<K, V> extends Serializable {
+    /** Prepares the function, e.g. opens connections. Called once per {@link DoFn} instance. */
+    default void setup() throws Exception {}
+
+    /**
+     * Looks up the values of distinct keys. The returned map may omit the keys that have no value.
+     */
+    CompletionStage<Map<K, V>> lookup(List<K> keys) throws Exception;
+
+    /** Releases the resources of the function. */
+    default void teardown() throws Exception {}
+  }
+
+  /**
+   * Returns an {@link AsyncLookup} which looks up the values of the keys returned by {@code keyFn}
+   * with {@code lookupFn}. The keys must have consistent {@link Object#equals} and {@link
+   * Object#hashCode} methods.
+   */
+  public static <InputT, K, V> AsyncLookup<InputT, K, V> of(
+      SerializableFunction<InputT, K> keyFn, LookupFn<K, V> lookupFn) {
+    checkArgument(keyFn != null, "keyFn can not be null");
+    checkArgument(lookupFn != null, "lookupFn can not be null");
+    return new AsyncLookup<>(
+        keyFn,
+        lookupFn,
+        null,
+        DEFAULT_BATCH_SIZE,
+        DEFAULT_MAX_INFLIGHT_REQUESTS,
+        0,
+        DEFAULT_CACHE_TTL,
+        UUID.randomUUID().toString());
+  }
+
+  private final SerializableFunction<InputT, K> keyFn;
+  private final LookupFn<K, V> lookupFn;
+  @Nullable private final Coder<V> valueCoder;
+  private final int batchSize;
+  private final int maxInflightRequests;
+  private final long cacheSize;
+  private final Duration cacheTtl;
+  private final String cacheId;
+
+  private AsyncLookup(
+      SerializableFunction<InputT, K> keyFn,
+      LookupFn<K, V> lookupFn,
+      @Nullable Coder<V> valueCoder,
+      int batchSize,
+      int maxInflightRequests,
+      long cacheSize,
+      Duration cacheTtl,
+      String cacheId) {
+    this.keyFn = keyFn;
+    this.lookupFn = lookupFn;
+    this.valueCoder = valueCoder;
+    this.batchSize = batchSize;
+    this.maxInflightRequests = maxInflightRequests;
+    this.cacheSize = cacheSize;
+    this.cacheTtl = cacheTtl;
+    this.cacheId = cacheId;
+  }
+
+  /** Returns an {@link AsyncLookup} like this one but with up to {@code batchSize} keys. */
+  public AsyncLookup<InputT, K, V> withBatchSize(int batchSize) {
+    checkArgument(batchSize > 0, "batchSize must be > 0, but was %s", batchSize);
+    return new AsyncLookup<>(
+        keyFn,
+        lookupFn,
+        valueCoder,
+        batchSize,
+        maxInflightRequests,
+        cacheSize,
+        cacheTtl,
+        cacheId);
+  }
+
+  /**
+   * Returns an {@link AsyncLookup} like this one but with up to {@code maxInflightRequests}
+   * requests in flight per {@link DoFn} instance.
+   */
+  public AsyncLookup<InputT, K, V> withMaxInflightRequests(int maxInflightRequests) {
+    checkArgument(
+        maxInflightRequests > 0,
+        "maxInflightRequests must be > 0, but was %s",
+        maxInflightRequests);
+    return new AsyncLookup<>(
+        keyFn,
+        lookupFn,
+        valueCoder,
+        batchSize,
+        maxInflightRequests,
+        cacheSize,
+        cacheTtl,
+        cacheId);
+  }
+
+  /**
+   * Returns an {@link AsyncLookup} like this one but caching the values of up to {@code cacheSize}
+   * keys in each worker, the least recently used keys being evicted first. The keys without a value
+   * are cached too. The default is not to cache.
+   */
+  public AsyncLookup<InputT, K, V> withCacheSize(long cacheSize) {
+    checkArgument(cacheSize >= 0, "cacheSize must be >= 0, but was %s", cacheSize);
+    return new AsyncLookup<>(
+        keyFn,
+        lookupFn,
+        valueCoder,
+        batchSize,
+        maxInflightRequests,
+        cacheSize,
+        cacheTtl,
+        cacheId);
+  }
+
+  /**
+   * Returns an {@link AsyncLookup} like this one but with the cached values expiring {@code
+   * cacheTtl} after they were looked up.
+   */
+  public AsyncLookup<InputT, K, V> withCacheTtl(Duration cacheTtl) {
+    checkArgument(cacheTtl != null, "cacheTtl can not be null");
+    checkArgument(cacheTtl.getMillis() > 0, "cacheTtl must be positive, but was %s", cacheTtl);
+    return new AsyncLookup<>(
+        keyFn,
+        lookupFn,
+        valueCoder,
+        batchSize,
+        maxInflightRequests,
+        cacheSize,
+        cacheTtl,
+        cacheId);
+  }
+
+  /**
+   * Returns an {@link AsyncLookup} like this one but with the given {@link Coder} for the values.
+   * Required when no coder can be inferred from the type of the {@link LookupFn}.
+   */
+  public AsyncLookup<InputT, K, V> withValueCoder(Coder<V> valueCoder) {
+    checkArgument(valueCoder != null, "valueCoder can not be null");
+    return new AsyncLookup<>(
+        keyFn,
+        lookupFn,
+        valueCoder,
+        batchSize,
+        maxInflightRequests,
+        cacheSize,
+        cacheTtl,
+        cacheId);
+  }
+
+  @Override
+  public PCollection<KV<InputT, V>> expand(PCollection<InputT> input) {
+    Coder<V> coder = valueCoder;
+    if (coder == null) {
+      TypeDescriptor<V> valueType =
+          TypeDescriptors.extractFromTypeParameters(
+              lookupFn,
+              LookupFn.class,
+              new TypeDescriptors.TypeVariableExtractor<LookupFn<K, V>, V>() {});
+      try {
+        coder = input.getPipeline().getCoderRegistry().getCoder(valueType);
+      } catch (CannotProvideCoderException e) {
+        throw new IllegalStateException(
+            "Unable to infer a coder for the values of the lookup, use withValueCoder()", e);
+      }
+    }
+    return input
+        .apply(ParDo.of(new LookupDoFn<>(this)))
+        .setCoder(KvCoder.of(input.getCoder(), coder));
+  }
+
+  @Override
+  public void populateDisplayData(DisplayData.Builder builder) {
+    super.populateDisplayData(builder);
+    builder
+        .add(DisplayData.item("lookupFn", lookupFn.getClass()).withLabel("Lookup Function"))
+        .add(DisplayData.item("batchSize", batchSize).withLabel("Batch Size"))
+        .add(DisplayData.item("maxInflightRequests", maxInflightRequests))
+        .add(DisplayData.item("cacheSize", cacheSize).withLabel("Cache Size"));
+    if (cacheSize > 0) {
+      builder.add(DisplayData.item("cacheTtl", cacheTtl).withLabel("Cache TTL"));
+    }
+  }
+
+  /** Looks up the keys of the elements, and outputs the elements once their value is known. */
+  private static class LookupDoFn<InputT, K, V> extends DoFn<InputT, KV<InputT, V>> {
+    private final SerializableFunction<InputT, K> keyFn;
+    private final LookupFn<K, V> lookupFn;
+    private final int batchSize;
+    private final int maxInflightRequests;
+    private final long cacheSize;
+    private final Duration cacheTtl;
+    private final String cacheId;
+
+    @Nullable private transient Cache<K, Optional<V>> cache;
+    // The elements waiting for the value of their key, which is in a request or in the batch.
+    private transient Map<K, List<Output<KV<InputT, V>>>> waiting;
+    private transient List<K> batch;
+    private transient Deque<Request<K, V>> requests;
+    private transient List<Output<KV<InputT, V>>> outputs;
+
+    LookupDoFn(AsyncLookup<InputT, K, V> spec) {
+      this.keyFn = spec.keyFn;
+      this.lookupFn = spec.lookupFn;
+      this.batchSize = spec.batchSize;
+      this.maxInflightRequests = spec.maxInflightRequests;
+      this.cacheSize = spec.cacheSize;
+      this.cacheTtl = spec.cacheTtl;
+      this.cacheId = spec.cacheId;
+    }
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+      if (cacheSize > 0) {
+        SharedCache shared =
+            CACHES.compute(
+                cacheId,
+                (id, current) -> {
+                  SharedCache acquired =
+                      current != null ? current : new SharedCache(cacheSize, cacheTtl);
+                  acquired.references++;
+                  return acquired;
+                });
+        cache = (Cache) shared.cache;
+      }
+      lookupFn.setup();
+    }
+
+    @StartBundle
+    public void startBundle() {
+      waiting = new HashMap<>();
+      batch = new ArrayList<>();
+      requests = new ArrayDeque<>();
+      outputs = new ArrayList<>();
+    }
+
+    @ProcessElement
+    public void processElement(
+        @Element InputT element,
+        @Timestamp Instant timestamp,
+        BoundedWindow window,
+        OutputReceiver<KV<InputT, V>> receiver)
+        throws Exception {
+      K key = keyFn.apply(element);
+      Optional<V> cached = cache != null ? cache.getIfPresent(key) : null;
+      if (cached != null) {
+        if (cached.isPresent()) {
+          receiver.output(KV.of(element, cached.get()));
+        }
+      } else {
+        List<Output<KV<InputT, V>>> elements = waiting.get(key);
+        if (elements == null) {
+          elements = new ArrayList<>();
+          waiting.put(key, elements);
+          batch.add(key);
+        }
+        elements.add(new Output<>(KV.of(element, null), timestamp, window));
+        if (batch.size() >= batchSize) {
+          sendBatch();
+        }
+      }
+
+      while (!requests.isEmpty() && requests.peek().values.isDone()) {
+        complete(requests.poll());
+      }
+      // The elements of the current window that are not earlier than the current element can be
+      // output now, the others are output when the bundle finishes.
+      Iterator<Output<KV<InputT, V>>> it = outputs.iterator();
+      while (it.hasNext()) {
+        Output<KV<InputT, V>> output = it.next();
+        if (output.window.equals(window) && !output.timestamp.isBefore(timestamp)) {
+          receiver.outputWithTimestamp(output.value, output.timestamp);
+          it.remove();
+        }
+      }
+    }
+
+    @FinishBundle
+    public void finishBundle(FinishBundleContext context) throws Exception {
+      if (!batch.isEmpty()) {
+        sendBatch();
+      }
+      while (!requests.isEmpty()) {
+        complete(requests.poll());
+      }
+      for (Output<KV<InputT, V>> output : outputs) {
+        context.output(output.value, output.timestamp, output.window);
+      }
+      outputs.clear();
+    }
+
+    @Teardown
+    public void teardown() throws Exception {
+      if (cache != null) {
+        CACHES.computeIfPresent(cacheId, (id, shared) -> --shared.references > 0 ? shared : null);
+        cache = null;
+      }
+      lookupFn.teardown();
+    }
+
+    private void sendBatch() throws Exception {
+      if (requests.size() >= maxInflightRequests) {
+        complete(requests.poll());
+      }
+      List<K> keys = batch;
+      batch = new ArrayList<>();
+      requests.add(new Request<>(keys, lookupFn.lookup(keys).toCompletableFuture()));
+    }
+
+    /** Waits for the request, and moves the elements of its keys with a value to the outputs. */
+    private void complete(Request<K, V> request) throws Exception {
+      Map<K, V> values;
+      try {
+        values = request.values.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception) {
+          throw (Exception) e.getCause();
+        }
+        throw e;
+      }
+      for (K key : request.keys) {
+        V value = values.get(key);
+        if (cache != null) {
+          cache.put(key, Optional.ofNullable(value));
+        }
+        List<Output<KV<InputT, V>>> elements = waiting.remove(key);
+        if (value != null) {
+          for (Output<KV<InputT, V>> element : elements) {
+            outputs.add(
+                new Output<>(
+                    KV.of(element.value.getKey(), value), element.timestamp, element.window));
+          }
+        }
+      }
+    }
+  }
+
+  /** A cache shared by the {@link DoFn} instances of a transform, with their number. */
+  private static class SharedCache {
+    private final Cache<Object, Optional<Object>> cache;
+    // Only accessed within the compute functions of CACHES.
+    private int references;
+
+    SharedCache(long cacheSize, Duration cacheTtl) {
+      this.cache =
+          CacheBuilder.newBuilder()
+              .maximumSize(cacheSize)
+              .expireAfterWrite(cacheTtl.getMillis(), TimeUnit.MILLISECONDS)
+              .build();
+    }
+  }
+
+  private static class Request<K, V> {
+    private final List<K> keys;
+    private final CompletableFuture<Map<K, V>> values;
+
+    Request(List<K> keys, CompletableFuture<Map<K, V>> values) {
+      this.keys = keys;
+      this.values = values;
+    }
+  }
+
+  private static class Output<T> {
+    private final T value;
+    private final Instant timestamp;
+    private final BoundedWindow window;
+
+    Output(T value, Instant timestamp, BoundedWindow window) {
+      this.value = value;
+      this.timestamp = timestamp;
+      this.window = window;
+    }
+  }
+}
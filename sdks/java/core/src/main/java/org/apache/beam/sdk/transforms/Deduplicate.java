@@ -17,12 +17,21 @@
  */
 package org.apache.beam.sdk.transforms;
 
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
 import javax.annotation.Nullable;
 import org.apache.beam.sdk.annotations.Experimental;
 import org.apache.beam.sdk.annotations.Experimental.Kind;
+import org.apache.beam.sdk.coders.BigEndianLongCoder;
 import org.apache.beam.sdk.coders.BooleanCoder;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
 import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.CoderException;
 import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.state.MapState;
 import org.apache.beam.sdk.state.StateSpec;
 import org.apache.beam.sdk.state.StateSpecs;
 import org.apache.beam.sdk.state.TimeDomain;
@@ -30,9 +39,11 @@ import org.apache.beam.sdk.state.Timer;
 import org.apache.beam.sdk.state.TimerSpec;
 import org.apache.beam.sdk.state.TimerSpecs;
 import org.apache.beam.sdk.state.ValueState;
+import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.TypeDescriptor;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.hash.Hashing;
 import org.joda.time.Duration;
 
 /**
@@ -56,6 +67,17 @@ import org.joda.time.Duration;
  * provide an optimized implementation of their choice using the deduplication time domain and
  * threshold specified.
  *
+ * <p>By default, the state of each value is kept, and expired, on its own, which can amount to a
+ * lot of state and timers when there are many distinct values. {@link KeyedValues#withShards}
+ * bounds the number of keys instead: the values are identified by a 128-bit hash of their
+ * encoding, and the hashes are spread over a fixed number of shards. Each shard keeps the hashes
+ * of two generations, the current one and the previous one, and a single timer per shard drops
+ * the previous generation once per duration, so that a value is remembered for at least the
+ * duration and at most twice the duration. {@link KeyedValues#withBloomFilter} keeps each
+ * generation in a bloom filter sized for the expected number of values instead of the exact
+ * hashes, in which case a few distinct values, about the false positive probability of them, are
+ * dropped as duplicates.
+ *
  * <p>Does not preserve any order the input PCollection might have had.
  *
  * <p>Example of use:
@@ -72,6 +94,8 @@ public final class Deduplicate {
   public static final TimeDomain DEFAULT_TIME_DOMAIN = TimeDomain.PROCESSING_TIME;
   /** The default duration is 10 mins. */
   public static final Duration DEFAULT_DURATION = Duration.standardMinutes(10);
+  /** The default number of shards of the sharded deduplication is 1024. */
+  public static final int DEFAULT_NUM_SHARDS = 1024;
 
   /**
    * Deduplicates values over a specified time domain and threshold. Construct via {@link
@@ -80,10 +104,12 @@ public final class Deduplicate {
   public static final class Values<T> extends PTransform<PCollection<T>, PCollection<T>> {
     private final TimeDomain timeDomain;
     private final Duration duration;
+    @Nullable private final Sharding sharding;
 
-    private Values(TimeDomain timeDomain, Duration duration) {
+    private Values(TimeDomain timeDomain, Duration duration, @Nullable Sharding sharding) {
       this.timeDomain = timeDomain;
       this.duration = duration;
+      this.sharding = sharding;
     }
 
     @Override
@@ -98,7 +124,7 @@ public final class Deduplicate {
                       return KV.of(element, (Void) null);
                     }
                   }))
-          .apply(new KeyedValues<>(timeDomain, duration))
+          .apply(new KeyedValues<>(timeDomain, duration, sharding))
           .apply(Keys.create());
     }
 
@@ -106,14 +132,34 @@ public final class Deduplicate {
      * Returns a {@code Values} {@link PTransform} like this one but with the specified time domain.
      */
     public Values<T> withTimeDomain(TimeDomain timeDomain) {
-      return new Values<T>(timeDomain, duration);
+      return new Values<T>(timeDomain, duration, sharding);
     }
 
     /**
      * Returns a {@code Values} {@link PTransform} like this one but with the specified duration.
      */
     public Values<T> withDuration(Duration duration) {
-      return new Values<T>(timeDomain, duration);
+      return new Values<T>(timeDomain, duration, sharding);
+    }
+
+    /**
+     * Returns a {@code Values} {@link PTransform} like this one but which keeps the values in the
+     * specified number of shards, see {@link KeyedValues#withShards}.
+     */
+    public Values<T> withShards(int numShards) {
+      return new Values<T>(timeDomain, duration, Sharding.withShards(sharding, numShards));
+    }
+
+    /**
+     * Returns a {@code Values} {@link PTransform} like this one but which keeps the values in bloom
+     * filters, see {@link KeyedValues#withBloomFilter}.
+     */
+    public Values<T> withBloomFilter(
+        long expectedValuesPerDuration, double falsePositiveProbability) {
+      return new Values<T>(
+          timeDomain,
+          duration,
+          Sharding.withBloomFilter(sharding, expectedValuesPerDuration, falsePositiveProbability));
     }
   }
 
@@ -133,15 +179,18 @@ public final class Deduplicate {
     @Nullable private final Coder<IdT> coder;
     private final TimeDomain timeDomain;
     private final Duration duration;
+    @Nullable private final Sharding sharding;
 
     private WithRepresentativeValues(
         TimeDomain timeDomain,
         Duration duration,
+        @Nullable Sharding sharding,
         SerializableFunction<T, IdT> fn,
         @Nullable TypeDescriptor<IdT> type,
         @Nullable Coder<IdT> coder) {
       this.timeDomain = timeDomain;
       this.duration = duration;
+      this.sharding = sharding;
       this.fn = fn;
       this.type = type;
       this.coder = coder;
@@ -161,7 +210,7 @@ public final class Deduplicate {
      *     value coder will be cleared.
      */
     public WithRepresentativeValues<T, IdT> withRepresentativeType(TypeDescriptor<IdT> type) {
-      return new WithRepresentativeValues<>(timeDomain, duration, fn, type, null);
+      return new WithRepresentativeValues<>(timeDomain, duration, sharding, fn, type, null);
     }
 
     /**
@@ -178,7 +227,7 @@ public final class Deduplicate {
      *     descriptor will be cleared.
      */
     public WithRepresentativeValues<T, IdT> withRepresentativeCoder(Coder<IdT> coder) {
-      return new WithRepresentativeValues<>(timeDomain, duration, fn, null, coder);
+      return new WithRepresentativeValues<>(timeDomain, duration, sharding, fn, null, coder);
     }
 
     /**
@@ -186,7 +235,7 @@ public final class Deduplicate {
      * specified time domain.
      */
     public WithRepresentativeValues<T, IdT> withTimeDomain(TimeDomain timeDomain) {
-      return new WithRepresentativeValues<>(timeDomain, duration, fn, type, coder);
+      return new WithRepresentativeValues<>(timeDomain, duration, sharding, fn, type, coder);
     }
 
     /**
@@ -194,7 +243,32 @@ public final class Deduplicate {
      * the specified deduplication duration.
      */
     public WithRepresentativeValues<T, IdT> withDuration(Duration duration) {
-      return new WithRepresentativeValues<>(timeDomain, duration, fn, type, coder);
+      return new WithRepresentativeValues<>(timeDomain, duration, sharding, fn, type, coder);
+    }
+
+    /**
+     * Returns a {@code WithRepresentativeValues} {@link PTransform} like this one but which keeps
+     * the representative values in the specified number of shards, see {@link
+     * KeyedValues#withShards}.
+     */
+    public WithRepresentativeValues<T, IdT> withShards(int numShards) {
+      return new WithRepresentativeValues<>(
+          timeDomain, duration, Sharding.withShards(sharding, numShards), fn, type, coder);
+    }
+
+    /**
+     * Returns a {@code WithRepresentativeValues} {@link PTransform} like this one but which keeps
+     * the representative values in bloom filters, see {@link KeyedValues#withBloomFilter}.
+     */
+    public WithRepresentativeValues<T, IdT> withBloomFilter(
+        long expectedValuesPerDuration, double falsePositiveProbability) {
+      return new WithRepresentativeValues<>(
+          timeDomain,
+          duration,
+          Sharding.withBloomFilter(sharding, expectedValuesPerDuration, falsePositiveProbability),
+          fn,
+          type,
+          coder);
     }
 
     @Override
@@ -208,7 +282,7 @@ public final class Deduplicate {
         inputWithKey.setCoder(KvCoder.of(coder, input.getCoder()));
       }
       return inputWithKey
-          .apply(new KeyedValues<>(timeDomain, duration))
+          .apply(new KeyedValues<>(timeDomain, duration, sharding))
           .apply(org.apache.beam.sdk.transforms.Values.create());
     }
   }
@@ -221,15 +295,33 @@ public final class Deduplicate {
       extends PTransform<PCollection<KV<K, V>>, PCollection<KV<K, V>>> {
     private final TimeDomain timeDomain;
     private final Duration duration;
+    @Nullable private final Sharding sharding;
 
-    private KeyedValues(TimeDomain timeDomain, Duration duration) {
+    private KeyedValues(TimeDomain timeDomain, Duration duration, @Nullable Sharding sharding) {
       this.timeDomain = timeDomain;
       this.duration = duration;
+      this.sharding = sharding;
     }
 
     @Override
     public PCollection<KV<K, V>> expand(PCollection<KV<K, V>> input) {
-      return input.apply(ParDo.of(new DeduplicateFn<>(timeDomain, duration)));
+      if (sharding == null) {
+        return input.apply(ParDo.of(new DeduplicateFn<>(timeDomain, duration)));
+      }
+      checkArgument(
+          input.getCoder() instanceof KvCoder,
+          "Sharded deduplication requires a %s, but got %s",
+          KvCoder.class.getSimpleName(),
+          input.getCoder());
+      KvCoder<K, V> inputCoder = (KvCoder<K, V>) input.getCoder();
+      Coder<K> keyCoder = inputCoder.getKeyCoder();
+      return input
+          .apply("AssignShards", ParDo.of(new AssignShardFn<>(keyCoder, sharding.numShards)))
+          .setCoder(KvCoder.of(VarIntCoder.of(), inputCoder))
+          .apply(
+              "DeduplicateShards",
+              ParDo.of(new ShardedDeduplicateFn<>(timeDomain, duration, keyCoder, sharding)))
+          .setCoder(inputCoder);
     }
 
     /**
@@ -237,7 +329,7 @@ public final class Deduplicate {
      * domain.
      */
     public KeyedValues<K, V> withTimeDomain(TimeDomain timeDomain) {
-      return new KeyedValues<>(timeDomain, duration);
+      return new KeyedValues<>(timeDomain, duration, sharding);
     }
 
     /**
@@ -245,7 +337,42 @@ public final class Deduplicate {
      * duration.
      */
     public KeyedValues<K, V> withDuration(Duration duration) {
-      return new KeyedValues<>(timeDomain, duration);
+      return new KeyedValues<>(timeDomain, duration, sharding);
+    }
+
+    /**
+     * Returns a {@code KeyedValues} {@link PTransform} like this one but which keeps the keys in
+     * the specified number of shards, instead of keeping the state of each key on its own.
+     *
+     * <p>The keys are identified by a 128-bit hash of their encoding. Each shard keeps the hashes
+     * of the keys seen during the current and the previous duration, and drops the previous ones
+     * once per duration with a single timer, so that the state and the timers do not grow with the
+     * number of distinct keys but only with the number of keys seen within twice the duration. A
+     * key is deduplicated for at least the duration and at most twice the duration.
+     *
+     * <p>The number of shards bounds the parallelism of the deduplication.
+     */
+    public KeyedValues<K, V> withShards(int numShards) {
+      return new KeyedValues<>(timeDomain, duration, Sharding.withShards(sharding, numShards));
+    }
+
+    /**
+     * Returns a {@code KeyedValues} {@link PTransform} like this one but which keeps the keys of
+     * each shard in bloom filters instead of keeping their exact hashes, see {@link #withShards}.
+     * The keys are kept in {@value Deduplicate#DEFAULT_NUM_SHARDS} shards unless specified
+     * otherwise.
+     *
+     * <p>The bloom filters are sized so that about the specified fraction of the distinct keys are
+     * dropped as duplicates, if the number of distinct keys seen per duration does not exceed the
+     * expected number. Each bloom filter is split into blocks of 512 bits which are written on
+     * their own, so that adding a key only rewrites the block of the key.
+     */
+    public KeyedValues<K, V> withBloomFilter(
+        long expectedKeysPerDuration, double falsePositiveProbability) {
+      return new KeyedValues<>(
+          timeDomain,
+          duration,
+          Sharding.withBloomFilter(sharding, expectedKeysPerDuration, falsePositiveProbability));
     }
   }
 
@@ -254,7 +381,7 @@ public final class Deduplicate {
    * TimeDomain#PROCESSING_TIME processing time domain}.
    */
   public static <T> Deduplicate.Values<T> values() {
-    return new Deduplicate.Values<>(DEFAULT_TIME_DOMAIN, DEFAULT_DURATION);
+    return new Deduplicate.Values<>(DEFAULT_TIME_DOMAIN, DEFAULT_DURATION, null);
   }
 
   /**
@@ -262,7 +389,7 @@ public final class Deduplicate {
    * mins within the {@link TimeDomain#PROCESSING_TIME processing time domain}.
    */
   public static <K, V> Deduplicate.KeyedValues<K, V> keyedValues() {
-    return new Deduplicate.KeyedValues<>(DEFAULT_TIME_DOMAIN, DEFAULT_DURATION);
+    return new Deduplicate.KeyedValues<>(DEFAULT_TIME_DOMAIN, DEFAULT_DURATION, null);
   }
 
   /**
@@ -272,7 +399,7 @@ public final class Deduplicate {
   public static <T, IdT> Deduplicate.WithRepresentativeValues<T, IdT> withRepresentativeValueFn(
       SerializableFunction<T, IdT> representativeValueFn) {
     return new Deduplicate.WithRepresentativeValues<T, IdT>(
-        DEFAULT_TIME_DOMAIN, DEFAULT_DURATION, representativeValueFn, null, null);
+        DEFAULT_TIME_DOMAIN, DEFAULT_DURATION, null, representativeValueFn, null, null);
   }
 
   /////////////////////////////////////////////////////////////////////////////
@@ -325,4 +452,346 @@ public final class Deduplicate {
       seenState.clear();
     }
   }
+
+  /**
+   * How the sharded deduplication keeps the keys: the number of shards, and the sizing of the bloom
+   * filters, if any.
+   */
+  private static final class Sharding implements Serializable {
+    private final int numShards;
+    // zero when the exact hashes of the keys are kept
+    private final long expectedKeysPerDuration;
+    private final double falsePositiveProbability;
+
+    private Sharding(int numShards, long expectedKeysPerDuration, double falsePositiveProbability) {
+      this.numShards = numShards;
+      this.expectedKeysPerDuration = expectedKeysPerDuration;
+      this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    private static Sharding withShards(@Nullable Sharding sharding, int numShards) {
+      checkArgument(numShards > 0, "The number of shards must be positive, but was %s", numShards);
+      return sharding == null
+          ? new Sharding(numShards, 0, 0)
+          : new Sharding(
+              numShards, sharding.expectedKeysPerDuration, sharding.falsePositiveProbability);
+    }
+
+    private static Sharding withBloomFilter(
+        @Nullable Sharding sharding,
+        long expectedKeysPerDuration,
+        double falsePositiveProbability) {
+      checkArgument(
+          expectedKeysPerDuration > 0,
+          "The expected number of keys must be positive, but was %s",
+          expectedKeysPerDuration);
+      checkArgument(
+          falsePositiveProbability > 0 && falsePositiveProbability < 1,
+          "The false positive probability must be between 0 and 1, but was %s",
+          falsePositiveProbability);
+      return new Sharding(
+          sharding == null ? DEFAULT_NUM_SHARDS : sharding.numShards,
+          expectedKeysPerDuration,
+          falsePositiveProbability);
+    }
+
+    @Nullable
+    private BlockedBloomFilter bloomFilter() {
+      if (expectedKeysPerDuration == 0) {
+        return null;
+      }
+      long expectedKeysPerShard = (expectedKeysPerDuration + numShards - 1) / numShards;
+      return BlockedBloomFilter.of(expectedKeysPerShard, falsePositiveProbability);
+    }
+  }
+
+  /** Returns the 128-bit hash of the encoding of the key, as its high and low 64 bits. */
+  private static <K> KV<Long, Long> hash(Coder<K> keyCoder, K key) throws CoderException {
+    ByteBuffer hash =
+        ByteBuffer.wrap(
+            Hashing.murmur3_128().hashBytes(CoderUtils.encodeToByteArray(keyCoder, key)).asBytes());
+    return KV.of(hash.getLong(), hash.getLong());
+  }
+
+  /** A {@link DoFn} that keys the values by the shard of their key. */
+  private static class AssignShardFn<K, V> extends DoFn<KV<K, V>, KV<Integer, KV<K, V>>> {
+    private final Coder<K> keyCoder;
+    private final int numShards;
+
+    private AssignShardFn(Coder<K> keyCoder, int numShards) {
+      this.keyCoder = keyCoder;
+      this.numShards = numShards;
+    }
+
+    @ProcessElement
+    public void processElement(
+        @Element KV<K, V> element, OutputReceiver<KV<Integer, KV<K, V>>> receiver)
+        throws CoderException {
+      // the bloom filters use the high bits and the lowest 32 bits of the hash
+      long shardBits = hash(keyCoder, element.getKey()).getValue() >>> 32;
+      receiver.output(KV.of((int) (shardBits % numShards), element));
+    }
+  }
+
+  /**
+   * A bloom filter split into blocks of 512 bits, all the bits of a key being in the same block,
+   * so that a key is looked up and added by reading and writing a single block.
+   */
+  private static final class BlockedBloomFilter implements Serializable {
+    private static final int BLOCK_BITS = 512;
+    private static final int MAX_HASHES = 16;
+
+    private final int numBlocks;
+    private final int numHashes;
+
+    private BlockedBloomFilter(int numBlocks, int numHashes) {
+      this.numBlocks = numBlocks;
+      this.numHashes = numHashes;
+    }
+
+    /**
+     * Returns the bloom filter which fits the expected number of keys with the probability.
+     *
+     * <p>The keys are not spread evenly over the blocks, so that the filter needs more bits than a
+     * classic bloom filter, which is where the search for the number of blocks starts.
+     */
+    private static BlockedBloomFilter of(long expectedKeys, double falsePositiveProbability) {
+      double bitsPerKey = -Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+      long numBlocks = Math.max((long) Math.ceil(expectedKeys * bitsPerKey / BLOCK_BITS), 1);
+      while (true) {
+        checkArgument(
+            numBlocks <= Integer.MAX_VALUE,
+            "Too many keys expected per shard for the bloom filter: %s",
+            expectedKeys);
+        double keysPerBlock = (double) expectedKeys / numBlocks;
+        int numHashes = 1;
+        for (int i = 2; i <= MAX_HASHES; i++) {
+          if (falsePositiveProbability(keysPerBlock, i)
+              < falsePositiveProbability(keysPerBlock, numHashes)) {
+            numHashes = i;
+          }
+        }
+        if (falsePositiveProbability(keysPerBlock, numHashes) <= falsePositiveProbability) {
+          return new BlockedBloomFilter((int) numBlocks, numHashes);
+        }
+        numBlocks += Math.max(numBlocks / 32, 1);
+      }
+    }
+
+    /**
+     * Returns the false positive probability of the blocks with the mean number of keys and number
+     * of hashes: the number of keys of a block follows a Poisson distribution, and a block with
+     * {@code n} keys is a classic bloom filter of {@link #BLOCK_BITS} bits with {@code n} keys.
+     */
+    private static double falsePositiveProbability(double keysPerBlock, int numHashes) {
+      double probability = 0;
+      double logKeysProbability = -keysPerBlock; // the log of the probability of n keys
+      double maxKeys = keysPerBlock + 10 * Math.sqrt(keysPerBlock) + 10;
+      for (int n = 0; n <= maxKeys; n++) {
+        if (n > 0) {
+          logKeysProbability += Math.log(keysPerBlock / n);
+        }
+        double bitUnset = Math.pow(1 - 1.0 / BLOCK_BITS, (double) numHashes * n);
+        probability += Math.exp(logKeysProbability) * Math.pow(1 - bitUnset, numHashes);
+      }
+      return probability;
+    }
+
+    private int block(KV<Long, Long> hash) {
+      return (int) Math.floorMod(hash.getKey(), (long) numBlocks);
+    }
+
+    private boolean mightContain(@Nullable byte[] block, KV<Long, Long> hash) {
+      if (block == null) {
+        return false;
+      }
+      for (int i = 0; i < numHashes; i++) {
+        int bit = bit(hash, i);
+        if ((block[bit >>> 3] & (1 << (bit & 7))) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Returns a copy of the block with the bits of the key set. */
+    private byte[] put(@Nullable byte[] block, KV<Long, Long> hash) {
+      byte[] bits = block == null ? new byte[BLOCK_BITS / 8] : block.clone();
+      for (int i = 0; i < numHashes; i++) {
+        int bit = bit(hash, i);
+        bits[bit >>> 3] |= (byte) (1 << (bit & 7));
+      }
+      return bits;
+    }
+
+    // The i-th bit of the key in its block, by remixing the lowest 32 bits of the hash for each i
+    // with the murmur3 finalizer, so that the bits of a key are about independent of each other.
+    private static int bit(KV<Long, Long> hash, int i) {
+      int bits = (int) hash.getValue().longValue() + i * 0x9E3779B9;
+      bits ^= bits >>> 16;
+      bits *= 0x85EBCA6B;
+      bits ^= bits >>> 13;
+      bits *= 0xC2B2AE35;
+      bits ^= bits >>> 16;
+      return bits >>> Integer.numberOfLeadingZeros(BLOCK_BITS - 1);
+    }
+  }
+
+  /**
+   * A stateful {@link DoFn} that deduplicates the keys of a shard, which it keeps in two
+   * generations: the keys added during the current duration, and the keys added during the
+   * previous duration. A single timer per shard drops the previous generation and starts a new one
+   * once per duration, until a whole duration goes by without new keys.
+   *
+   * @param <K> the type of the keys to deduplicate
+   * @param <V> the type of the values of the keys
+   */
+  private static class ShardedDeduplicateFn<K, V> extends DoFn<KV<Integer, KV<K, V>>, KV<K, V>> {
+    private static final String ROTATION_TIMER = "rotationTimer";
+    private static final String CURRENT_GENERATION_STATE = "currentGeneration";
+    private static final String CURRENT_GENERATION_USED_STATE = "currentGenerationUsed";
+    private static final String HASHES_0_STATE = "hashes0";
+    private static final String HASHES_1_STATE = "hashes1";
+    private static final String BLOCKS_0_STATE = "blocks0";
+    private static final String BLOCKS_1_STATE = "blocks1";
+
+    @TimerId(ROTATION_TIMER)
+    private final TimerSpec rotationTimerSpec;
+
+    @StateId(CURRENT_GENERATION_STATE)
+    private final StateSpec<ValueState<Integer>> currentGenerationState =
+        StateSpecs.value(VarIntCoder.of());
+
+    @StateId(CURRENT_GENERATION_USED_STATE)
+    private final StateSpec<ValueState<Boolean>> currentGenerationUsedState =
+        StateSpecs.value(BooleanCoder.of());
+
+    // the exact hashes of the keys of each generation, unless bloom filters are used
+    @StateId(HASHES_0_STATE)
+    private final StateSpec<MapState<KV<Long, Long>, Boolean>> hashes0State = hashesSpec();
+
+    @StateId(HASHES_1_STATE)
+    private final StateSpec<MapState<KV<Long, Long>, Boolean>> hashes1State = hashesSpec();
+
+    // the blocks of the bloom filter of each generation, by index
+    @StateId(BLOCKS_0_STATE)
+    private final StateSpec<MapState<Integer, byte[]>> blocks0State = blocksSpec();
+
+    @StateId(BLOCKS_1_STATE)
+    private final StateSpec<MapState<Integer, byte[]>> blocks1State = blocksSpec();
+
+    private final Duration duration;
+    private final Coder<K> keyCoder;
+    @Nullable private final BlockedBloomFilter bloomFilter;
+
+    private ShardedDeduplicateFn(
+        TimeDomain timeDomain, Duration duration, Coder<K> keyCoder, Sharding sharding) {
+      this.rotationTimerSpec = TimerSpecs.timer(timeDomain);
+      this.duration = duration;
+      this.keyCoder = keyCoder;
+      this.bloomFilter = sharding.bloomFilter();
+    }
+
+    private static StateSpec<MapState<KV<Long, Long>, Boolean>> hashesSpec() {
+      return StateSpecs.map(
+          KvCoder.of(BigEndianLongCoder.of(), BigEndianLongCoder.of()), BooleanCoder.of());
+    }
+
+    private static StateSpec<MapState<Integer, byte[]>> blocksSpec() {
+      return StateSpecs.map(VarIntCoder.of(), ByteArrayCoder.of());
+    }
+
+    @ProcessElement
+    public void processElement(
+        @Element KV<Integer, KV<K, V>> element,
+        OutputReceiver<KV<K, V>> receiver,
+        @StateId(CURRENT_GENERATION_STATE) ValueState<Integer> currentGenerationState,
+        @StateId(CURRENT_GENERATION_USED_STATE) ValueState<Boolean> currentGenerationUsedState,
+        @StateId(HASHES_0_STATE) MapState<KV<Long, Long>, Boolean> hashes0State,
+        @StateId(HASHES_1_STATE) MapState<KV<Long, Long>, Boolean> hashes1State,
+        @StateId(BLOCKS_0_STATE) MapState<Integer, byte[]> blocks0State,
+        @StateId(BLOCKS_1_STATE) MapState<Integer, byte[]> blocks1State,
+        @TimerId(ROTATION_TIMER) Timer rotationTimer)
+        throws CoderException {
+      Integer currentGeneration = currentGenerationState.read();
+      if (currentGeneration == null) {
+        // the first key of the shard since its state expired
+        currentGeneration = 0;
+        currentGenerationState.write(currentGeneration);
+        rotationTimer.offset(duration).setRelative();
+      }
+      KV<Long, Long> hash = hash(keyCoder, element.getValue().getKey());
+      boolean added;
+      if (bloomFilter == null) {
+        added =
+            currentGeneration == 0
+                ? addHash(hash, hashes0State, hashes1State)
+                : addHash(hash, hashes1State, hashes0State);
+      } else {
+        added =
+            currentGeneration == 0
+                ? addToBloomFilter(hash, blocks0State, blocks1State)
+                : addToBloomFilter(hash, blocks1State, blocks0State);
+      }
+      if (added) {
+        if (currentGenerationUsedState.read() == null) {
+          currentGenerationUsedState.write(true);
+        }
+        receiver.output(element.getValue());
+      }
+    }
+
+    private static boolean addHash(
+        KV<Long, Long> hash,
+        MapState<KV<Long, Long>, Boolean> current,
+        MapState<KV<Long, Long>, Boolean> previous) {
+      if (current.get(hash).read() != null || previous.get(hash).read() != null) {
+        return false;
+      }
+      current.put(hash, true);
+      return true;
+    }
+
+    private boolean addToBloomFilter(
+        KV<Long, Long> hash,
+        MapState<Integer, byte[]> current,
+        MapState<Integer, byte[]> previous) {
+      int block = bloomFilter.block(hash);
+      byte[] currentBlock = current.get(block).read();
+      if (bloomFilter.mightContain(currentBlock, hash)
+          || bloomFilter.mightContain(previous.get(block).read(), hash)) {
+        return false;
+      }
+      current.put(block, bloomFilter.put(currentBlock, hash));
+      return true;
+    }
+
+    @OnTimer(ROTATION_TIMER)
+    public void onRotation(
+        @StateId(CURRENT_GENERATION_STATE) ValueState<Integer> currentGenerationState,
+        @StateId(CURRENT_GENERATION_USED_STATE) ValueState<Boolean> currentGenerationUsedState,
+        @StateId(HASHES_0_STATE) MapState<KV<Long, Long>, Boolean> hashes0State,
+        @StateId(HASHES_1_STATE) MapState<KV<Long, Long>, Boolean> hashes1State,
+        @StateId(BLOCKS_0_STATE) MapState<Integer, byte[]> blocks0State,
+        @StateId(BLOCKS_1_STATE) MapState<Integer, byte[]> blocks1State,
+        @TimerId(ROTATION_TIMER) Timer rotationTimer) {
+      Integer currentGeneration = currentGenerationState.read();
+      // the keys of the previous generation were added at least a duration ago
+      if (currentGeneration == null || currentGeneration == 1) {
+        hashes0State.clear();
+        blocks0State.clear();
+      } else {
+        hashes1State.clear();
+        blocks1State.clear();
+      }
+      if (currentGenerationUsedState.read() == null) {
+        // no key was added for a whole duration, so the shard has no state left
+        currentGenerationState.clear();
+        return;
+      }
+      currentGenerationState.write(currentGeneration == 0 ? 1 : 0);
+      currentGenerationUsedState.clear();
+      rotationTimer.offset(duration).setRelative();
+    }
+  }
 }
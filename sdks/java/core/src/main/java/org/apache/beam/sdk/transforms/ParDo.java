@@ -1009,6 +1009,11 @@ public class ParDo {
           public String dispatchSet(Coder<?> elementCoder) {
             return "SetState<" + elementCoder + ">";
           }
+
+          @Override
+          public String dispatchOrderedList(Coder<?> elementCoder) {
+            return "OrderedListState<" + elementCoder + ">";
+          }
         });
   }
 
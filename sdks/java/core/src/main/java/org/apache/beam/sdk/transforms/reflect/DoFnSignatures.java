@@ -45,6 +45,7 @@ import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.schemas.FieldAccessDescriptor;
 import org.apache.beam.sdk.state.BagState;
 import org.apache.beam.sdk.state.MapState;
+import org.apache.beam.sdk.state.OrderedListState;
 import org.apache.beam.sdk.state.ReadableState;
 import org.apache.beam.sdk.state.SetState;
 import org.apache.beam.sdk.state.State;
@@ -2404,6 +2405,10 @@ public class DoFnSignatures {
     return usesGivenStateClass(doFn, SetState.class);
   }
 
+  public static boolean usesOrderedListState(DoFn<?, ?> doFn) {
+    return usesGivenStateClass(doFn, OrderedListState.class);
+  }
+
   public static boolean usesValueState(DoFn<?, ?> doFn) {
     return usesGivenStateClass(doFn, ValueState.class) || requiresTimeSortedInput(doFn);
   }
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.transforms;
+
+import static org.apache.beam.sdk.transforms.display.DisplayDataMatchers.hasDisplayItem;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import org.apache.beam.sdk.Pipeline.PipelineExecutionException;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.testing.NeedsRunner;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.display.DisplayData;
+import org.apache.beam.sdk.transforms.windowing.FixedWindows;
+import org.apache.beam.sdk.transforms.windowing.IntervalWindow;
+import org.apache.beam.sdk.transforms.windowing.Window;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.TimestampedValue;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link AsyncLookup}. */
+@RunWith(JUnit4.class)
+public class AsyncLookupTest {
+
+  @Rule public final transient TestPipeline p = TestPipeline.create();
+
+  @Rule public transient ExpectedException thrown = ExpectedException.none();
+
+  /** Looks up ten times the even keys, asynchronously. Odd keys have no value. */
+  private static class TimesTenFn implements AsyncLookup.LookupFn<Integer, Integer> {
+    @Override
+    public CompletionStage<Map<Integer, Integer>> lookup(List<Integer> keys) {
+      return CompletableFuture.supplyAsync(
+          () -> {
+            Map<Integer, Integer> values = new HashMap<>();
+            for (Integer key : keys) {
+              if (key % 2 == 0) {
+                values.put(key, key * 10);
+              }
+            }
+            return values;
+          });
+    }
+  }
+
+  @Test
+  @Category(NeedsRunner.class)
+  public void testLookup() {
+    List<Integer> elements = new ArrayList<>();
+    List<KV<Integer, Integer>> expected = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      // Every key appears twice.
+      int element = i % 100;
+      elements.add(element);
+      if (element % 2 == 0) {
+        expected.add(KV.of(element, element * 10));
+      }
+    }
+
+    PCollection<KV<Integer, Integer>> output =
+        p.apply(Create.of(elements))
+            .apply(
+                AsyncLookup.of((Integer element) -> element, new TimesTenFn())
+                    .withBatchSize(7)
+                    .withMaxInflightRequests(2)
+                    .withValueCoder(VarIntCoder.of()));
+    PAssert.that(output).containsInAnyOrder(expected);
+    p.run();
+  }
+
+  @Test
+  @Category(NeedsRunner.class)
+  public void testLookupWithCache() {
+    PCollection<KV<Integer, Integer>> output =
+        p.apply(Create.of(1, 1, 2, 3, 3, 3, 4))
+            .apply(
+                AsyncLookup.of((Integer element) -> element + 1, new TimesTenFn())
+                    .withBatchSize(2)
+                    .withCacheSize(10)
+                    .withCacheTtl(Duration.standardMinutes(1))
+                    .withValueCoder(VarIntCoder.of()));
+    PAssert.that(output)
+        .containsInAnyOrder(KV.of(1, 20), KV.of(1, 20), KV.of(3, 40), KV.of(3, 40), KV.of(3, 40));
+    p.run();
+  }
+
+  @Test
+  @Category(NeedsRunner.class)
+  public void testLookupKeepsWindows() {
+    Instant base = new Instant(0);
+    PCollection<KV<Integer, Integer>> output =
+        p.apply(
+                Create.timestamped(
+                    TimestampedValue.of(2, base),
+                    TimestampedValue.of(2, base.plus(Duration.standardSeconds(40))),
+                    TimestampedValue.of(4, base.plus(Duration.standardSeconds(50)))))
+            .apply(Window.into(FixedWindows.of(Duration.standardSeconds(30))))
+            .apply(
+                AsyncLookup.of((Integer element) -> element, new TimesTenFn())
+                    .withValueCoder(VarIntCoder.of()));
+
+    PAssert.that(output)
+        .inWindow(new IntervalWindow(base, base.plus(Duration.standardSeconds(30))))
+        .containsInAnyOrder(KV.of(2, 20));
+    PAssert.that(output)
+        .inWindow(
+            new IntervalWindow(
+                base.plus(Duration.standardSeconds(30)), base.plus(Duration.standardSeconds(60))))
+        .containsInAnyOrder(KV.of(2, 20), KV.of(4, 40));
+    p.run();
+  }
+
+  /** Fails every lookup. */
+  private static class FailingFn implements AsyncLookup.LookupFn<Integer, Integer> {
+    @Override
+    public CompletionStage<Map<Integer, Integer>> lookup(List<Integer> keys) {
+      CompletableFuture<Map<Integer, Integer>> values = new CompletableFuture<>();
+      values.completeExceptionally(new IllegalStateException("Lookup failed"));
+      return values;
+    }
+  }
+
+  @Test
+  @Category(NeedsRunner.class)
+  public void testLookupFailure() {
+    p.apply(Create.of(1, 2, 3))
+        .apply(
+            AsyncLookup.of((Integer element) -> element, new FailingFn())
+                .withValueCoder(VarIntCoder.of()));
+
+    thrown.expect(PipelineExecutionException.class);
+    thrown.expectMessage("Lookup failed");
+    p.run();
+  }
+
+  @Test
+  public void testDisplayData() {
+    AsyncLookup<Integer, Integer, Integer> lookup =
+        AsyncLookup.of((Integer element) -> element, new TimesTenFn())
+            .withBatchSize(7)
+            .withCacheSize(10);
+    DisplayData displayData = DisplayData.from(lookup);
+    assertThat(displayData, hasDisplayItem("batchSize", 7));
+    assertThat(displayData, hasDisplayItem("cacheSize", 10L));
+    assertThat(displayData, hasDisplayItem("cacheTtl", AsyncLookup.DEFAULT_CACHE_TTL));
+  }
+}
@@ -29,6 +29,7 @@ import org.apache.beam.sdk.testing.NeedsRunner;
 import org.apache.beam.sdk.testing.PAssert;
 import org.apache.beam.sdk.testing.TestPipeline;
 import org.apache.beam.sdk.testing.TestStream;
+import org.apache.beam.sdk.testing.UsesMapState;
 import org.apache.beam.sdk.testing.UsesTestStream;
 import org.apache.beam.sdk.testing.UsesTestStreamWithProcessingTime;
 import org.apache.beam.sdk.transforms.windowing.FixedWindows;
@@ -166,6 +167,71 @@ public class DeduplicateTest {
     p.run();
   }
 
+  @Test
+  @Category({NeedsRunner.class, UsesTestStreamWithProcessingTime.class, UsesMapState.class})
+  public void testShardedProcessingTime() {
+    Instant base = new Instant(0);
+    TestStream<String> values =
+        TestStream.create(StringUtf8Coder.of())
+            .advanceWatermarkTo(base)
+            .addElements(
+                TimestampedValue.of("k1", base),
+                TimestampedValue.of("k2", base.plus(Duration.standardSeconds(10))),
+                TimestampedValue.of("k3", base.plus(Duration.standardSeconds(20))))
+            .advanceProcessingTime(Duration.standardMinutes(1))
+            .addElements(
+                TimestampedValue.of("k1", base.plus(Duration.standardSeconds(30))),
+                TimestampedValue.of("k2", base.plus(Duration.standardSeconds(40))),
+                TimestampedValue.of("k3", base.plus(Duration.standardSeconds(50))))
+            .advanceProcessingTime(Deduplicate.DEFAULT_DURATION.multipliedBy(2))
+            .advanceProcessingTime(Deduplicate.DEFAULT_DURATION.multipliedBy(2))
+            .addElements(TimestampedValue.of("k1", base.plus(Duration.standardSeconds(59))))
+            .advanceWatermarkToInfinity();
+
+    PCollection<String> distinctValues =
+        p.apply(values).apply(Deduplicate.<String>values().withShards(2));
+    // the shards forgot their keys after twice the duration
+    PAssert.that(distinctValues).containsInAnyOrder("k1", "k2", "k3", "k1");
+    p.run();
+  }
+
+  @Test
+  @Category({NeedsRunner.class, UsesTestStreamWithProcessingTime.class, UsesMapState.class})
+  public void testBloomFilterKeyedValues() {
+    Instant base = new Instant(0);
+    TestStream<KV<Integer, String>> values =
+        TestStream.create(KvCoder.of(VarIntCoder.of(), StringUtf8Coder.of()))
+            .advanceWatermarkTo(base)
+            .addElements(
+                TimestampedValue.of(KV.of(1, "k1"), base),
+                TimestampedValue.of(KV.of(2, "k2"), base.plus(Duration.standardSeconds(10))),
+                TimestampedValue.of(KV.of(3, "k3"), base.plus(Duration.standardSeconds(20))))
+            .advanceProcessingTime(Duration.standardMinutes(1))
+            .addElements(
+                TimestampedValue.of(KV.of(1, "k1"), base.plus(Duration.standardSeconds(30))),
+                TimestampedValue.of(KV.of(2, "k2"), base.plus(Duration.standardSeconds(40))),
+                TimestampedValue.of(KV.of(4, "k4"), base.plus(Duration.standardSeconds(50))))
+            .advanceWatermarkToInfinity();
+
+    PCollection<KV<Integer, String>> distinctValues =
+        p.apply(values)
+            .apply(
+                Deduplicate.<Integer, String>keyedValues()
+                    .withShards(4)
+                    .withBloomFilter(1000, 0.001));
+
+    PAssert.that(distinctValues)
+        .containsInAnyOrder(KV.of(1, "k1"), KV.of(2, "k2"), KV.of(3, "k3"), KV.of(4, "k4"));
+    p.run();
+  }
+
+  @Test
+  public void testInvalidFalsePositiveProbabilityShouldThrow() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> Deduplicate.<String>values().withBloomFilter(1000, 1.5));
+  }
+
   private static class Keys<T> implements SerializableFunction<KV<T, String>, T> {
     @Override
     public T apply(KV<T, String> input) {
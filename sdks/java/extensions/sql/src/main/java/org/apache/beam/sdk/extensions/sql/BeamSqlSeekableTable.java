@@ -18,13 +18,19 @@
 package org.apache.beam.sdk.extensions.sql;
 
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.apache.beam.sdk.annotations.Experimental;
 import org.apache.beam.sdk.values.Row;
 
 /**
  * A seekable table converts a JOIN operator to an inline lookup. It's triggered by {@code SELECT *
  * FROM FACT_TABLE JOIN LOOKUP_TABLE ON ...}.
+ *
+ * <p>The lookups are done with {@link org.apache.beam.sdk.transforms.AsyncLookup}: the key sets of
+ * a bundle are deduplicated and sought in batches with {@link #seekRows}, on a thread of their own
+ * while the next fact rows are processed. The calls on an instance are never concurrent.
  */
 @Experimental
 public interface BeamSqlSeekableTable extends Serializable {
@@ -34,6 +40,19 @@ public interface BeamSqlSeekableTable extends Serializable {
   /** return a list of {@code Row} with given key set. */
   List<Row> seekRow(Row lookupSubRow);
 
+  /**
+   * return the lists of {@code Row} of several distinct key sets, by key set. The lookup JOIN calls
+   * it with batches of key sets, so a table backed by a store supporting multi-gets should override
+   * it to seek them with a single request.
+   */
+  default Map<Row, List<Row>> seekRows(List<Row> lookupSubRows) {
+    Map<Row, List<Row>> rows = new HashMap<>();
+    for (Row lookupSubRow : lookupSubRows) {
+      rows.put(lookupSubRow, seekRow(lookupSubRow));
+    }
+    return rows;
+  }
+
   /** cleanup resources of the instance. */
   default void tearDown() {};
 }
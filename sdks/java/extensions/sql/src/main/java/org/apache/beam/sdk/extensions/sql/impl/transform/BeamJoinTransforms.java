@@ -21,18 +21,28 @@ import static java.util.stream.Collectors.toList;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
+import org.apache.beam.sdk.coders.ListCoder;
 import org.apache.beam.sdk.extensions.sql.BeamSqlSeekableTable;
 import org.apache.beam.sdk.extensions.sql.impl.utils.SerializableRexFieldAccess;
 import org.apache.beam.sdk.extensions.sql.impl.utils.SerializableRexInputRef;
 import org.apache.beam.sdk.extensions.sql.impl.utils.SerializableRexNode;
 import org.apache.beam.sdk.schemas.FieldAccessDescriptor;
 import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.SchemaCoder;
+import org.apache.beam.sdk.transforms.AsyncLookup;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.Row;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.beam.vendor.calcite.v1_20_0.org.apache.calcite.rex.RexCall;
 import org.apache.beam.vendor.calcite.v1_20_0.org.apache.calcite.rex.RexInputRef;
 import org.apache.beam.vendor.calcite.v1_20_0.org.apache.calcite.rex.RexNode;
@@ -145,39 +155,63 @@ public class BeamJoinTransforms {
       return input
           .apply(
               "join_as_lookup",
+              AsyncLookup.of(this::extractJoinSubRow, new SeekableTableLookupFn(seekableTable))
+                  .withValueCoder(ListCoder.of(SchemaCoder.of(lkpSchema))))
+          .apply(
+              "combine_rows",
               ParDo.of(
-                  new DoFn<Row, Row>() {
-                    @Setup
-                    public void setup() {
-                      seekableTable.setUp();
-                    }
-
+                  new DoFn<KV<Row, List<Row>>, Row>() {
                     @ProcessElement
                     public void processElement(ProcessContext context) {
-                      Row factRow = context.element();
-                      Row joinSubRow = extractJoinSubRow(factRow);
-                      List<Row> lookupRows = seekableTable.seekRow(joinSubRow);
-                      for (Row lr : lookupRows) {
+                      Row factRow = context.element().getKey();
+                      for (Row lr : context.element().getValue()) {
                         context.output(
                             combineTwoRowsIntoOne(factRow, lr, factColOffset != 0, outputSchema));
                       }
                     }
+                  }))
+          .setRowSchema(joinSubsetType);
+    }
 
-                    @Teardown
-                    public void teardown() {
-                      seekableTable.tearDown();
-                    }
+    private Row extractJoinSubRow(Row factRow) {
+      List<Object> joinSubsetValues =
+          factJoinIdx.stream().map(i -> factRow.getBaseValue(i, Object.class)).collect(toList());
 
-                    private Row extractJoinSubRow(Row factRow) {
-                      List<Object> joinSubsetValues =
-                          factJoinIdx.stream()
-                              .map(i -> factRow.getBaseValue(i, Object.class))
-                              .collect(toList());
+      return Row.withSchema(joinSubsetType).addValues(joinSubsetValues).build();
+    }
+  }
 
-                      return Row.withSchema(joinSubsetType).addValues(joinSubsetValues).build();
-                    }
-                  }))
-          .setRowSchema(joinSubsetType);
+  /**
+   * Seeks batches of join keys in a {@link BeamSqlSeekableTable}. The table is not required to be
+   * thread-safe, so the batches are sought one at a time on a single thread.
+   */
+  private static class SeekableTableLookupFn implements AsyncLookup.LookupFn<Row, List<Row>> {
+    private final BeamSqlSeekableTable seekableTable;
+    private transient ExecutorService executor;
+
+    SeekableTableLookupFn(BeamSqlSeekableTable seekableTable) {
+      this.seekableTable = seekableTable;
+    }
+
+    @Override
+    public void setup() {
+      seekableTable.setUp();
+      executor =
+          Executors.newSingleThreadExecutor(
+              new ThreadFactoryBuilder().setDaemon(true).setNameFormat("JoinAsLookup-%d").build());
+    }
+
+    @Override
+    public CompletionStage<Map<Row, List<Row>>> lookup(List<Row> keys) {
+      return CompletableFuture.supplyAsync(() -> seekableTable.seekRows(keys), executor);
+    }
+
+    @Override
+    public void teardown() {
+      if (executor != null) {
+        executor.shutdown();
+      }
+      seekableTable.tearDown();
     }
   }
 }
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.sql.meta.provider.jdbc;
+
+import com.alibaba.fastjson.JSONObject;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import javax.annotation.Nullable;
+import org.apache.beam.sdk.annotations.Experimental;
+import org.apache.beam.sdk.extensions.sql.impl.BeamTableStatistics;
+import org.apache.beam.sdk.extensions.sql.meta.SchemaBaseBeamTable;
+import org.apache.beam.sdk.extensions.sql.meta.Table;
+import org.apache.beam.sdk.extensions.sql.meta.provider.InvalidTableException;
+import org.apache.beam.sdk.io.jdbc.JdbcIO;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.Schema.FieldType;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.values.PBegin;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollection.IsBounded;
+import org.apache.beam.sdk.values.POutput;
+import org.apache.beam.sdk.values.Row;
+import org.apache.beam.vendor.calcite.v1_20_0.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A {@link SchemaBaseBeamTable} reading and writing a table of a JDBC data source.
+ *
+ * <p>Columns are matched by name, ignoring case, between the declared schema and the JDBC table.
+ */
+@Experimental
+public class JdbcTable extends SchemaBaseBeamTable implements Serializable {
+  @VisibleForTesting final JdbcIO.DataSourceConfiguration dataSourceConfiguration;
+  @VisibleForTesting final String jdbcTable;
+  @VisibleForTesting @Nullable final String partitionColumn;
+  @VisibleForTesting @Nullable final Integer numPartitions;
+  @VisibleForTesting @Nullable final Long lowerBound;
+  @VisibleForTesting @Nullable final Long upperBound;
+  @VisibleForTesting @Nullable final Integer fetchSize;
+
+  JdbcTable(Table table) {
+    super(table.getSchema());
+
+    String location = table.getLocation();
+    if (location == null || !location.startsWith("jdbc:")) {
+      throw new InvalidTableException(
+          "JDBC location must be a JDBC connection url starting with 'jdbc:', but was: "
+              + location);
+    }
+    JSONObject properties = table.getProperties();
+    String driverClassName = properties.getString("driverClassName");
+    if (driverClassName == null) {
+      throw new InvalidTableException("JDBC table requires the 'driverClassName' property");
+    }
+
+    JdbcIO.DataSourceConfiguration config =
+        JdbcIO.DataSourceConfiguration.create(driverClassName, location);
+    if (properties.containsKey("username")) {
+      config = config.withUsername(properties.getString("username"));
+    }
+    if (properties.containsKey("password")) {
+      config = config.withPassword(properties.getString("password"));
+    }
+    this.dataSourceConfiguration = config;
+    this.jdbcTable =
+        properties.containsKey("table") ? properties.getString("table") : table.getName();
+    this.partitionColumn = properties.getString("partitionColumn");
+    this.numPartitions = properties.getInteger("numPartitions");
+    this.lowerBound = properties.getLong("lowerBound");
+    this.upperBound = properties.getLong("upperBound");
+    this.fetchSize = properties.getInteger("fetchSize");
+  }
+
+  @Override
+  public PCollection<Row> buildIOReader(PBegin begin) {
+    PCollection<Row> rows;
+    if (partitionColumn == null) {
+      JdbcIO.ReadRows read =
+          JdbcIO.readRows()
+              .withDataSourceConfiguration(dataSourceConfiguration)
+              .withQuery(String.format("SELECT * FROM %s", jdbcTable));
+      if (fetchSize != null) {
+        read = read.withFetchSize(fetchSize);
+      }
+      rows = begin.apply("Read", read);
+    } else {
+      JdbcIO.ReadWithPartitions read =
+          JdbcIO.readWithPartitions()
+              .withDataSourceConfiguration(dataSourceConfiguration)
+              .withTable(jdbcTable)
+              .withPartitionColumn(partitionColumn);
+      if (numPartitions != null) {
+        read = read.withNumPartitions(numPartitions);
+      }
+      if (lowerBound != null) {
+        read = read.withLowerBound(lowerBound);
+      }
+      if (upperBound != null) {
+        read = read.withUpperBound(upperBound);
+      }
+      if (fetchSize != null) {
+        read = read.withFetchSize(fetchSize);
+      }
+      rows = begin.apply("ReadWithPartitions", read);
+    }
+    return rows.apply("ToTableSchema", new ToTableSchema(getSchema()));
+  }
+
+  @Override
+  public POutput buildIOWriter(PCollection<Row> input) {
+    return input.apply(
+        JdbcIO.<Row>write()
+            .withDataSourceConfiguration(dataSourceConfiguration)
+            .withTable(jdbcTable));
+  }
+
+  @Override
+  public IsBounded isBounded() {
+    return IsBounded.BOUNDED;
+  }
+
+  @Override
+  public BeamTableStatistics getTableStatistics(PipelineOptions options) {
+    return BeamTableStatistics.BOUNDED_UNKNOWN;
+  }
+
+  /** Converts the {@link Row}s read with the inferred JDBC schema to the declared table schema. */
+  private static class ToTableSchema extends PTransform<PCollection<Row>, PCollection<Row>> {
+    private final Schema schema;
+
+    private ToTableSchema(Schema schema) {
+      this.schema = schema;
+    }
+
+    @Override
+    public PCollection<Row> expand(PCollection<Row> input) {
+      Schema jdbcSchema = input.getSchema();
+      int[] indices = new int[schema.getFieldCount()];
+      for (int i = 0; i < schema.getFieldCount(); i++) {
+        String name = schema.getField(i).getName();
+        indices[i] = -1;
+        for (int j = 0; j < jdbcSchema.getFieldCount(); j++) {
+          if (jdbcSchema.getField(j).getName().equalsIgnoreCase(name)) {
+            indices[i] = j;
+            break;
+          }
+        }
+        if (indices[i] < 0) {
+          throw new InvalidTableException("Column " + name + " not found in the JDBC table");
+        }
+      }
+      return input.apply(ParDo.of(new ToTableSchemaFn(schema, indices))).setRowSchema(schema);
+    }
+  }
+
+  private static class ToTableSchemaFn extends DoFn<Row, Row> {
+    private final Schema schema;
+    private final int[] indices;
+
+    private ToTableSchemaFn(Schema schema, int[] indices) {
+      this.schema = schema;
+      this.indices = indices;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext context) {
+      Row row = context.element();
+      Row.Builder builder = Row.withSchema(schema);
+      for (int i = 0; i < indices.length; i++) {
+        builder.addValue(convert(row.getValue(indices[i]), schema.getField(i).getType()));
+      }
+      context.output(builder.build());
+    }
+
+    /** Widens or narrows numeric values to the type of the declared column. */
+    private static Object convert(@Nullable Object value, FieldType type) {
+      if (!(value instanceof Number)) {
+        return value;
+      }
+      Number number = (Number) value;
+      switch (type.getTypeName()) {
+        case BYTE:
+          return number.byteValue();
+        case INT16:
+          return number.shortValue();
+        case INT32:
+          return number.intValue();
+        case INT64:
+          return number.longValue();
+        case FLOAT:
+          return number.floatValue();
+        case DOUBLE:
+          return number.doubleValue();
+        case DECIMAL:
+          return value instanceof BigDecimal ? value : new BigDecimal(number.toString());
+        default:
+          return value;
+      }
+    }
+  }
+}
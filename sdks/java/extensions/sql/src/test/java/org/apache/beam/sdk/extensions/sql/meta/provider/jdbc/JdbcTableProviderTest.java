@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.sql.meta.provider.jdbc;
+
+import static org.apache.beam.sdk.schemas.Schema.toSchema;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.alibaba.fastjson.JSON;
+import java.util.stream.Stream;
+import org.apache.beam.sdk.extensions.sql.meta.BeamSqlTable;
+import org.apache.beam.sdk.extensions.sql.meta.Table;
+import org.apache.beam.sdk.schemas.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class JdbcTableProviderTest {
+  private JdbcTableProvider provider = new JdbcTableProvider();
+
+  @Test
+  public void testGetTableType() {
+    assertEquals("jdbc", provider.getTableType());
+  }
+
+  @Test
+  public void testBuildBeamSqlTable() {
+    Table table =
+        fakeTable(
+            "TEST",
+            "jdbc:derby://localhost:1527/beam",
+            "{\"driverClassName\": \"org.apache.derby.jdbc.ClientDriver\"}");
+    BeamSqlTable sqlTable = provider.buildBeamSqlTable(table);
+
+    assertNotNull(sqlTable);
+    assertTrue(sqlTable instanceof JdbcTable);
+
+    JdbcTable jdbcTable = (JdbcTable) sqlTable;
+    assertEquals("TEST", jdbcTable.jdbcTable);
+    assertNull(jdbcTable.partitionColumn);
+    assertNull(jdbcTable.numPartitions);
+  }
+
+  @Test
+  public void testBuildBeamSqlTable_withPartitions() {
+    Table table =
+        fakeTable(
+            "TEST",
+            "jdbc:derby://localhost:1527/beam",
+            "{\"driverClassName\": \"org.apache.derby.jdbc.ClientDriver\","
+                + " \"table\": \"orders\", \"partitionColumn\": \"id\", \"numPartitions\": 10,"
+                + " \"lowerBound\": 0, \"upperBound\": 1000, \"fetchSize\": 500}");
+    JdbcTable jdbcTable = (JdbcTable) provider.buildBeamSqlTable(table);
+
+    assertEquals("orders", jdbcTable.jdbcTable);
+    assertEquals("id", jdbcTable.partitionColumn);
+    assertEquals(Integer.valueOf(10), jdbcTable.numPartitions);
+    assertEquals(Long.valueOf(0L), jdbcTable.lowerBound);
+    assertEquals(Long.valueOf(1000L), jdbcTable.upperBound);
+    assertEquals(Integer.valueOf(500), jdbcTable.fetchSize);
+  }
+
+  @Test
+  public void testBuildBeamSqlTable_withBadLocation_throwsException() {
+    Table table =
+        fakeTable(
+            "TEST",
+            "derby://localhost:1527/beam",
+            "{\"driverClassName\": \"org.apache.derby.jdbc.ClientDriver\"}");
+    assertThrows(IllegalArgumentException.class, () -> provider.buildBeamSqlTable(table));
+  }
+
+  @Test
+  public void testBuildBeamSqlTable_withoutDriver_throwsException() {
+    Table table = fakeTable("TEST", "jdbc:derby://localhost:1527/beam", "{}");
+    assertThrows(IllegalArgumentException.class, () -> provider.buildBeamSqlTable(table));
+  }
+
+  private static Table fakeTable(String name, String location, String properties) {
+    return Table.builder()
+        .name(name)
+        .comment(name + " table")
+        .location(location)
+        .schema(
+            Stream.of(
+                    Schema.Field.nullable("id", Schema.FieldType.INT64),
+                    Schema.Field.nullable("name", Schema.FieldType.STRING))
+                .collect(toSchema()))
+        .properties(JSON.parseObject(properties))
+        .type("jdbc")
+        .build();
+  }
+}
@@ -37,6 +37,7 @@ import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.state.BagState;
 import org.apache.beam.sdk.state.CombiningState;
 import org.apache.beam.sdk.state.MapState;
+import org.apache.beam.sdk.state.OrderedListState;
 import org.apache.beam.sdk.state.ReadableState;
 import org.apache.beam.sdk.state.ReadableStates;
 import org.apache.beam.sdk.state.SetState;
@@ -297,6 +298,13 @@ public class FnApiStateAccessor implements SideInputReader, StateBinder {
     throw new UnsupportedOperationException("TODO: Add support for a map state to the Fn API.");
   }
 
+  @Override
+  public <T> OrderedListState<T> bindOrderedList(
+      String id, StateSpec<OrderedListState<T>> spec, Coder<T> elemCoder) {
+    throw new UnsupportedOperationException(
+        String.format("%s is not supported", OrderedListState.class.getSimpleName()));
+  }
+
   @Override
   public <KeyT, ValueT> MapState<KeyT, ValueT> bindMap(
       String id,
@@ -49,6 +49,38 @@ public interface S3Options extends AwsOptions {
 
   void setS3ThreadPoolSize(int value);
 
+  @Description(
+      "Number of parts of an S3 object uploaded concurrently by each writer; default is 1, which "
+          + "uploads each part before accepting more bytes. A writer holds up to one more upload "
+          + "buffer than this.")
+  @Default.Integer(1)
+  int getS3UploadParallelism();
+
+  void setS3UploadParallelism(int value);
+
+  @Description(
+      "Maximum number of parts uploaded in the background at once by all the S3 writers created "
+          + "with these options, when s3UploadParallelism is above 1. Default is 64.")
+  @Default.Integer(64)
+  int getS3MaxConcurrentUploads();
+
+  void setS3MaxConcurrentUploads(int value);
+
+  @Description(
+      "Number of chunks of an S3 object fetched ahead of the reader with concurrent ranged GETs. "
+          + "Default is 0, which reads objects with a single sequential GET.")
+  @Default.Integer(0)
+  int getS3ReadAheadChunks();
+
+  void setS3ReadAheadChunks(int value);
+
+  @Description(
+      "Size of the chunks fetched with ranged GETs when s3ReadAheadChunks is set; default is 8MB.")
+  @Default.Integer(8_388_608)
+  int getS3ReadChunkSizeBytes();
+
+  void setS3ReadChunkSizeBytes(int value);
+
   @Description("Algorithm for SSE-S3 encryption, e.g. AES256.")
   @Nullable
   String getSSEAlgorithm();
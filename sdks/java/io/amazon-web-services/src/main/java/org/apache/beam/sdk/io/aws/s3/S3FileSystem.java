@@ -58,6 +58,7 @@ import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -101,6 +102,8 @@ class S3FileSystem extends FileSystem<S3ResourceId> {
   private Supplier<AmazonS3> amazonS3;
   private final S3Options options;
   private final ListeningExecutorService executorService;
+  // Bounds the background part uploads of all the writers, see S3Options#getS3MaxConcurrentUploads.
+  private final Semaphore uploadPermits;
 
   S3FileSystem(S3Options options) {
     this.options = checkNotNull(options, "options");
@@ -118,6 +121,8 @@ class S3FileSystem extends FileSystem<S3ResourceId> {
         MoreExecutors.listeningDecorator(
             Executors.newFixedThreadPool(
                 options.getS3ThreadPoolSize(), new ThreadFactoryBuilder().setDaemon(true).build()));
+    checkArgument(options.getS3MaxConcurrentUploads() > 0, "maxConcurrentUploads");
+    uploadPermits = new Semaphore(options.getS3MaxConcurrentUploads());
   }
 
   @Override
@@ -458,12 +463,18 @@ class S3FileSystem extends FileSystem<S3ResourceId> {
   @Override
   protected WritableByteChannel create(S3ResourceId resourceId, CreateOptions createOptions)
       throws IOException {
-    return new S3WritableByteChannel(amazonS3.get(), resourceId, createOptions.mimeType(), options);
+    return new S3WritableByteChannel(
+        amazonS3.get(),
+        resourceId,
+        createOptions.mimeType(),
+        options,
+        executorService,
+        uploadPermits);
   }
 
   @Override
   protected ReadableByteChannel open(S3ResourceId resourceId) throws IOException {
-    return new S3ReadableSeekableByteChannel(amazonS3.get(), resourceId, options);
+    return new S3ReadableSeekableByteChannel(amazonS3.get(), resourceId, options, executorService);
   }
 
   @Override
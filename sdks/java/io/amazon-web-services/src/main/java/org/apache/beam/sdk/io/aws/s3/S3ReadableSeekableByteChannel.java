@@ -26,17 +26,43 @@ import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
 import org.apache.beam.sdk.io.aws.options.S3Options;
+import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.Distribution;
+import org.apache.beam.sdk.metrics.Metrics;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.ByteStreams;
 
-/** A readable S3 object, as a {@link SeekableByteChannel}. */
+/**
+ * A readable S3 object, as a {@link SeekableByteChannel}.
+ *
+ * <p>By default the object is read with a single GET, which is reopened whenever the position
+ * changes. With {@link S3Options#getS3ReadAheadChunks()} set, the object is instead fetched in
+ * chunks of {@link S3Options#getS3ReadChunkSizeBytes()} with concurrent ranged GETs, up to that
+ * many chunks ahead of the reader. Each ranged GET is read to its end, so its connection goes back
+ * to the pool of the client rather than being aborted on a seek, and seeking forward within the
+ * fetched chunks (e.g. to the start of the next split) does not issue a new request.
+ */
 class S3ReadableSeekableByteChannel implements SeekableByteChannel {
 
+  private static final Counter BYTES_READ =
+      Metrics.counter(S3ReadableSeekableByteChannel.class, "bytesRead");
+  private static final Distribution GET_LATENCY_MS =
+      Metrics.distribution(S3ReadableSeekableByteChannel.class, "getLatencyMs");
+
   private final AmazonS3 amazonS3;
   private final S3ResourceId path;
   private final long contentLength;
@@ -46,11 +72,33 @@ class S3ReadableSeekableByteChannel implements SeekableByteChannel {
   private final S3Options options;
   private ReadableByteChannel s3ObjectContentChannel;
 
+  // Read-ahead state, only used when readAheadChunks > 0.
+  @Nullable private final ExecutorService executorService;
+  private final int readAheadChunks;
+  private final int chunkSize;
+  private final Deque<Chunk> chunks = new ArrayDeque<>(); // In position order.
+  private final Deque<byte[]> freeBuffers = new ArrayDeque<>();
+  private long nextChunkPosition = 0;
+
   S3ReadableSeekableByteChannel(AmazonS3 amazonS3, S3ResourceId path, S3Options options)
       throws IOException {
+    this(amazonS3, path, options, null);
+  }
+
+  S3ReadableSeekableByteChannel(
+      AmazonS3 amazonS3,
+      S3ResourceId path,
+      S3Options options,
+      @Nullable ExecutorService executorService)
+      throws IOException {
     this.amazonS3 = checkNotNull(amazonS3, "amazonS3");
     checkNotNull(path, "path");
     this.options = checkNotNull(options, "options");
+    this.executorService = executorService;
+    this.readAheadChunks = executorService != null ? options.getS3ReadAheadChunks() : 0;
+    this.chunkSize = options.getS3ReadChunkSizeBytes();
+    checkArgument(readAheadChunks >= 0, "s3ReadAheadChunks should be >= 0");
+    checkArgument(readAheadChunks == 0 || chunkSize > 0, "s3ReadChunkSizeBytes should be > 0");
 
     if (path.getSize().isPresent()) {
       contentLength = path.getSize().get();
@@ -78,6 +126,9 @@ class S3ReadableSeekableByteChannel implements SeekableByteChannel {
     if (position == contentLength) {
       return -1;
     }
+    if (readAheadChunks > 0) {
+      return readChunks(destinationBuffer);
+    }
 
     if (s3Object == null) {
       GetObjectRequest request = new GetObjectRequest(path.getBucket(), path.getKey());
@@ -85,11 +136,13 @@ class S3ReadableSeekableByteChannel implements SeekableByteChannel {
       if (position > 0) {
         request.setRange(position, contentLength);
       }
+      long startMillis = System.currentTimeMillis();
       try {
         s3Object = amazonS3.getObject(request);
       } catch (AmazonClientException e) {
         throw new IOException(e);
       }
+      GET_LATENCY_MS.update(System.currentTimeMillis() - startMillis);
       s3ObjectContentChannel =
           Channels.newChannel(new BufferedInputStream(s3Object.getObjectContent(), 1024 * 1024));
     }
@@ -108,9 +161,65 @@ class S3ReadableSeekableByteChannel implements SeekableByteChannel {
     } while (bytesRead > 0);
 
     position += totalBytesRead;
+    BYTES_READ.inc(totalBytesRead);
+    return totalBytesRead;
+  }
+
+  /** Reads from the chunks fetched ahead, waiting for the chunk at the current position. */
+  private int readChunks(ByteBuffer destinationBuffer) throws IOException {
+    int totalBytesRead = 0;
+    while (destinationBuffer.hasRemaining() && position < contentLength) {
+      fetchAhead();
+      Chunk chunk = chunks.getFirst();
+      byte[] data = chunk.await();
+
+      int offset = (int) (position - chunk.start);
+      int length = Math.min(destinationBuffer.remaining(), chunk.length - offset);
+      destinationBuffer.put(data, offset, length);
+      position += length;
+      totalBytesRead += length;
+
+      if (position == chunk.start + chunk.length) {
+        chunks.removeFirst();
+        freeBuffers.push(data);
+      }
+    }
+    BYTES_READ.inc(totalBytesRead);
     return totalBytesRead;
   }
 
+  /** Schedules ranged GETs until {@code readAheadChunks} chunks are in flight or ready. */
+  private void fetchAhead() {
+    while (chunks.size() < readAheadChunks && nextChunkPosition < contentLength) {
+      int length = (int) Math.min(chunkSize, contentLength - nextChunkPosition);
+      byte[] buffer = freeBuffers.isEmpty() ? new byte[chunkSize] : freeBuffers.pop();
+      chunks.addLast(new Chunk(nextChunkPosition, length, buffer));
+      nextChunkPosition += length;
+    }
+  }
+
+  /** Drops the chunks that are not needed to read from {@code newPosition} onwards. */
+  private void skipChunksTo(long newPosition) {
+    while (!chunks.isEmpty()) {
+      Chunk chunk = chunks.getFirst();
+      if (chunk.start <= newPosition && newPosition < chunk.start + chunk.length) {
+        return; // The remaining chunks are still ahead of the reader.
+      }
+      chunks.removeFirst().cancel();
+      if (newPosition < chunk.start) {
+        break;
+      }
+    }
+    cancelChunks();
+    nextChunkPosition = newPosition;
+  }
+
+  private void cancelChunks() {
+    while (!chunks.isEmpty()) {
+      chunks.removeFirst().cancel();
+    }
+  }
+
   @Override
   public long position() throws ClosedChannelException {
     if (!isOpen()) {
@@ -131,6 +240,10 @@ class S3ReadableSeekableByteChannel implements SeekableByteChannel {
       return this;
     }
 
+    if (readAheadChunks > 0) {
+      skipChunksTo(newPosition);
+    }
+
     // The position has changed, so close and destroy the object to induce a re-creation on the next
     // call to read()
     if (s3Object != null) {
@@ -154,6 +267,8 @@ class S3ReadableSeekableByteChannel implements SeekableByteChannel {
     if (s3Object != null) {
       s3Object.close();
     }
+    cancelChunks();
+    freeBuffers.clear();
     open = false;
   }
 
@@ -171,4 +286,60 @@ class S3ReadableSeekableByteChannel implements SeekableByteChannel {
   public SeekableByteChannel truncate(long size) {
     throw new NonWritableChannelException();
   }
+
+  /** A range of the object, fetched with a ranged GET into a buffer owned by the chunk. */
+  private class Chunk {
+    private final long start;
+    private final int length;
+    private final Future<byte[]> data;
+    private volatile long latencyMillis;
+    private boolean reported = false;
+
+    Chunk(long start, int length, byte[] buffer) {
+      this.start = start;
+      this.length = length;
+      this.data = executorService.submit(() -> fetch(buffer));
+    }
+
+    private byte[] fetch(byte[] buffer) throws IOException {
+      GetObjectRequest request = new GetObjectRequest(path.getBucket(), path.getKey());
+      request.setSSECustomerKey(options.getSSECustomerKey());
+      request.setRange(start, start + length - 1);
+      long startMillis = System.currentTimeMillis();
+      try (S3Object object = amazonS3.getObject(request);
+          InputStream content = object.getObjectContent()) {
+        ByteStreams.readFully(content, buffer, 0, length);
+      } catch (AmazonClientException e) {
+        throw new IOException(e);
+      }
+      latencyMillis = System.currentTimeMillis() - startMillis;
+      return buffer;
+    }
+
+    /** Waits for the chunk to be fetched. Metrics are reported here, on the reading thread. */
+    byte[] await() throws IOException {
+      byte[] buffer;
+      try {
+        buffer = data.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while reading " + path);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      }
+      if (!reported) {
+        GET_LATENCY_MS.update(latencyMillis);
+        reported = true;
+      }
+      return buffer;
+    }
+
+    /** Cancels the GET. The buffer is not reused since the GET might still be writing to it. */
+    void cancel() {
+      data.cancel(true);
+    }
+  }
 }
@@ -28,31 +28,52 @@ import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.UploadPartRequest;
-import com.amazonaws.services.s3.model.UploadPartResult;
 import com.amazonaws.util.Base64;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.WritableByteChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import javax.annotation.Nullable;
 import org.apache.beam.sdk.io.aws.options.S3Options;
 import org.apache.beam.sdk.io.aws.options.S3Options.S3UploadBufferSizeBytesFactory;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 
-/** A writable S3 object, as a {@link WritableByteChannel}. */
+/**
+ * A writable S3 object, as a {@link WritableByteChannel}.
+ *
+ * <p>The object is written with a multipart upload, one part per {@link
+ * S3Options#getS3UploadBufferSizeBytes()}. With {@link S3Options#getS3UploadParallelism()} above 1
+ * parts are uploaded in the background, so that the writer can fill the next buffer meanwhile, with
+ * up to that many parts in flight per channel and {@link S3Options#getS3MaxConcurrentUploads()}
+ * across the channels sharing the same upload permits. Buffers of uploaded parts are reused.
+ */
 class S3WritableByteChannel implements WritableByteChannel {
   private final AmazonS3 amazonS3;
   private final S3Options options;
   private final S3ResourceId path;
 
   private final String uploadId;
-  private final ByteBuffer uploadBuffer;
+  private ByteBuffer uploadBuffer;
   private final List<PartETag> eTags;
 
+  @Nullable private final ExecutorService executorService;
+  private final int uploadParallelism;
+  @Nullable private final Semaphore uploadPermits;
+  private final Deque<PendingPart> pendingParts = new ArrayDeque<>(); // In part number order.
+  private final Deque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+
   // AWS S3 parts are 1-indexed, not zero-indexed.
   private int partNumber = 1;
   private boolean open = true;
@@ -60,9 +81,31 @@ class S3WritableByteChannel implements WritableByteChannel {
 
   S3WritableByteChannel(AmazonS3 amazonS3, S3ResourceId path, String contentType, S3Options options)
       throws IOException {
+    this(amazonS3, path, contentType, options, null, null);
+  }
+
+  /**
+   * Creates a channel that uploads parts in the background on {@code executorService}, with at most
+   * as many background uploads across the channels sharing {@code uploadPermits} as it has
+   * permits. Parts are uploaded sequentially when either is null.
+   */
+
+  S3WritableByteChannel(
+      AmazonS3 amazonS3,
+      S3ResourceId path,
+      String contentType,
+      S3Options options,
+      @Nullable ExecutorService executorService,
+      @Nullable Semaphore uploadPermits)
+      throws IOException {
     this.amazonS3 = checkNotNull(amazonS3, "amazonS3");
     this.options = checkNotNull(options);
     this.path = checkNotNull(path, "path");
+    this.executorService = executorService;
+    this.uploadPermits = uploadPermits;
+    checkArgument(options.getS3UploadParallelism() > 0, "S3UploadParallelism must be positive");
+    this.uploadParallelism =
+        executorService != null && uploadPermits != null ? options.getS3UploadParallelism() : 1;
     checkArgument(
         atMostOne(
             options.getSSECustomerKey() != null,
@@ -118,10 +161,11 @@ class S3WritableByteChannel implements WritableByteChannel {
       int bytesWritten = Math.min(sourceBuffer.remaining(), uploadBuffer.remaining());
       totalBytesWritten += bytesWritten;
 
-      byte[] copyBuffer = new byte[bytesWritten];
-      sourceBuffer.get(copyBuffer);
-      uploadBuffer.put(copyBuffer);
-      md5.update(copyBuffer);
+      // Copy straight into the upload buffer, and update the checksum of the part as it fills.
+      int offset = uploadBuffer.position();
+      sourceBuffer.get(uploadBuffer.array(), offset, bytesWritten);
+      uploadBuffer.position(offset + bytesWritten);
+      md5.update(uploadBuffer.array(), offset, bytesWritten);
 
       if (!uploadBuffer.hasRemaining() || sourceBuffer.hasRemaining()) {
         flush();
@@ -133,7 +177,8 @@ class S3WritableByteChannel implements WritableByteChannel {
 
   private void flush() throws IOException {
     uploadBuffer.flip();
-    ByteArrayInputStream inputStream = new ByteArrayInputStream(uploadBuffer.array());
+    ByteArrayInputStream inputStream =
+        new ByteArrayInputStream(uploadBuffer.array(), 0, uploadBuffer.remaining());
 
     UploadPartRequest request =
         new UploadPartRequest()
@@ -145,16 +190,79 @@ class S3WritableByteChannel implements WritableByteChannel {
             .withMD5Digest(Base64.encodeAsString(md5.digest()))
             .withInputStream(inputStream);
     request.setSSECustomerKey(options.getSSECustomerKey());
+    md5.reset();
+
+    if (uploadParallelism == 1) {
+      eTags.add(uploadPart(request));
+      uploadBuffer.clear();
+      return;
+    }
 
-    UploadPartResult result;
+    acquirePermit();
+    ByteBuffer partBuffer = uploadBuffer;
+    Future<PartETag> upload;
     try {
-      result = amazonS3.uploadPart(request);
+      upload =
+          executorService.submit(
+              () -> {
+                try {
+                  return uploadPart(request);
+                } finally {
+                  uploadPermits.release();
+                }
+              });
+    } catch (RuntimeException e) {
+      uploadPermits.release();
+      throw e;
+    }
+    pendingParts.addLast(new PendingPart(partBuffer, upload));
+
+    // Collect the parts that are done, then wait for a buffer if all of them are in flight.
+    while (!pendingParts.isEmpty() && pendingParts.getFirst().upload.isDone()) {
+      completeOldestPart();
+    }
+    while (freeBuffers.isEmpty() && pendingParts.size() >= uploadParallelism) {
+      completeOldestPart();
+    }
+    uploadBuffer =
+        freeBuffers.isEmpty()
+            ? ByteBuffer.allocate(options.getS3UploadBufferSizeBytes())
+            : freeBuffers.pop();
+  }
+
+  private PartETag uploadPart(UploadPartRequest request) throws IOException {
+    try {
+      return amazonS3.uploadPart(request).getPartETag();
     } catch (AmazonClientException e) {
       throw new IOException(e);
     }
-    uploadBuffer.clear();
-    md5.reset();
-    eTags.add(result.getPartETag());
+  }
+
+  private void acquirePermit() throws IOException {
+    try {
+      uploadPermits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to upload to " + path);
+    }
+  }
+
+  /** Waits for the upload of the oldest pending part, and recycles its buffer. */
+  private void completeOldestPart() throws IOException {
+    PendingPart part = pendingParts.removeFirst();
+    try {
+      eTags.add(part.upload.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while uploading to " + path);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+    part.buffer.clear();
+    freeBuffers.push(part.buffer);
   }
 
   @Override
@@ -165,8 +273,20 @@ class S3WritableByteChannel implements WritableByteChannel {
   @Override
   public void close() throws IOException {
     open = false;
-    if (uploadBuffer.remaining() > 0) {
-      flush();
+    try {
+      // The last part may be smaller than the others, or empty for an empty object.
+      if (uploadBuffer.position() > 0 || (eTags.isEmpty() && pendingParts.isEmpty())) {
+        flush();
+      }
+      while (!pendingParts.isEmpty()) {
+        completeOldestPart();
+      }
+    } finally {
+      for (PendingPart part : pendingParts) {
+        part.upload.cancel(true);
+      }
+      pendingParts.clear();
+      freeBuffers.clear();
     }
     CompleteMultipartUploadRequest request =
         new CompleteMultipartUploadRequest()
@@ -181,6 +301,16 @@ class S3WritableByteChannel implements WritableByteChannel {
     }
   }
 
+  private static class PendingPart {
+    private final ByteBuffer buffer;
+    private final Future<PartETag> upload;
+
+    PendingPart(ByteBuffer buffer, Future<PartETag> upload) {
+      this.buffer = buffer;
+      this.upload = upload;
+    }
+  }
+
   @VisibleForTesting
   static boolean atMostOne(boolean... values) {
     boolean one = false;
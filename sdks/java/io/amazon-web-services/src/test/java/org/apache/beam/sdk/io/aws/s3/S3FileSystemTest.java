@@ -58,16 +58,20 @@ import com.amazonaws.services.s3.model.ListObjectsV2Result;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import io.findify.s3mock.S3Mock;
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Random;
 import org.apache.beam.sdk.io.aws.options.S3Options;
 import org.apache.beam.sdk.io.fs.MatchResult;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
@@ -730,6 +734,45 @@ public class S3FileSystemTest {
     open.close();
   }
 
+  @Test
+  public void testReadWithReadAhead() throws IOException {
+    S3Options options = s3Options();
+    options.setS3ReadAheadChunks(3);
+    options.setS3ReadChunkSizeBytes(1000);
+    S3FileSystem s3FileSystem = buildMockedS3FileSystem(options, client);
+
+    client.createBucket("testbucket");
+
+    byte[] content = new byte[10_500];
+    new Random(0).nextBytes(content);
+    ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentLength(content.length);
+    client.putObject(
+        "testbucket", "foo/readahead.bin", new ByteArrayInputStream(content), metadata);
+
+    S3ResourceId path = S3ResourceId.fromUri("s3://testbucket/foo/readahead.bin");
+    try (SeekableByteChannel channel = (SeekableByteChannel) s3FileSystem.open(path)) {
+      assertEquals(content.length, channel.size());
+
+      // Reads spanning several chunks, including the last partial one.
+      ByteBuffer all = ByteBuffer.allocate(content.length);
+      while (all.hasRemaining() && channel.read(all) > 0) {}
+      assertArrayEquals(content, all.array());
+      assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+
+      // Seeks backwards and forwards, within and outside of the fetched chunks.
+      for (long seek : new long[] {2_500, 2_999, 7_001, 10, 10_499}) {
+        channel.position(seek);
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(1_200, content.length - seek));
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {}
+        assertArrayEquals(
+            Arrays.copyOfRange(content, (int) seek, (int) seek + buffer.capacity()),
+            buffer.array());
+        assertEquals(seek + buffer.capacity(), channel.position());
+      }
+    }
+  }
+
   /** A mockito argument matcher to implement equality on GetObjectMetadataRequest. */
   private static class GetObjectMetadataRequestMatcher
       implements ArgumentMatcher<GetObjectMetadataRequest> {
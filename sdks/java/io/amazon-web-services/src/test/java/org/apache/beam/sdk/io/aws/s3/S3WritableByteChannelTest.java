@@ -30,6 +30,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Matchers.notNull;
 import static org.mockito.Mockito.RETURNS_SMART_NULLS;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -42,16 +43,22 @@ import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.services.s3.model.UploadPartResult;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import org.apache.beam.sdk.io.aws.options.S3Options;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 
 /** Tests {@link S3WritableByteChannel}. */
 @RunWith(JUnit4.class)
@@ -137,6 +144,69 @@ public class S3WritableByteChannelTest {
     verifyNoMoreInteractions(mockAmazonS3);
   }
 
+  @Test
+  public void writeWithConcurrentUploads() throws IOException {
+    S3Options options = s3Options();
+    options.setS3UploadParallelism(3);
+    AmazonS3 mockAmazonS3 = mock(AmazonS3.class, withSettings().defaultAnswer(RETURNS_SMART_NULLS));
+    S3ResourceId path = S3ResourceId.fromUri("s3://bucket/dir/file");
+
+    InitiateMultipartUploadResult initiateMultipartUploadResult =
+        new InitiateMultipartUploadResult();
+    initiateMultipartUploadResult.setUploadId("upload-id");
+    doReturn(initiateMultipartUploadResult)
+        .when(mockAmazonS3)
+        .initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+    // Complete the parts out of order, later parts first.
+    doAnswer(
+            invocation -> {
+              UploadPartRequest request = invocation.getArgument(0);
+              Thread.sleep(100 - 10 * request.getPartNumber());
+              UploadPartResult result = new UploadPartResult();
+              result.setPartNumber(request.getPartNumber());
+              result.setETag("etag-" + request.getPartNumber());
+              return result;
+            })
+        .when(mockAmazonS3)
+        .uploadPart(any(UploadPartRequest.class));
+    doReturn(new CompleteMultipartUploadResult())
+        .when(mockAmazonS3)
+        .completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    // Fewer permits than the parallelism of the channel, which waits for them.
+    Semaphore uploadPermits = new Semaphore(2);
+    try {
+      S3WritableByteChannel channel =
+          new S3WritableByteChannel(
+              mockAmazonS3, path, "text/plain", options, executorService, uploadPermits);
+      int contentSize = 34_078_720;
+      ByteBuffer uploadContent = ByteBuffer.allocate(contentSize);
+      while (uploadContent.hasRemaining()) {
+        uploadContent.put((byte) 0xff);
+      }
+      uploadContent.flip();
+
+      assertEquals(contentSize, channel.write(uploadContent));
+      channel.close();
+    } finally {
+      executorService.shutdown();
+    }
+    assertEquals(2, uploadPermits.availablePermits());
+
+    int partQuantity = (int) Math.ceil((double) 34_078_720 / options.getS3UploadBufferSizeBytes());
+    verify(mockAmazonS3, times(partQuantity)).uploadPart(notNull(UploadPartRequest.class));
+    ArgumentCaptor<CompleteMultipartUploadRequest> completeRequest =
+        ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+    verify(mockAmazonS3).completeMultipartUpload(completeRequest.capture());
+    List<PartETag> eTags = completeRequest.getValue().getPartETags();
+    assertEquals(partQuantity, eTags.size());
+    for (int i = 0; i < partQuantity; i++) {
+      assertEquals(i + 1, eTags.get(i).getPartNumber());
+      assertEquals("etag-" + (i + 1), eTags.get(i).getETag());
+    }
+  }
+
   @Test
   public void testAtMostOne() {
     assertTrue(atMostOne(true));
@@ -20,23 +20,32 @@ package org.apache.beam.sdk.io.cassandra;
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
 
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.ColumnMetadata;
 import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.Metadata;
 import com.datastax.driver.core.PlainTextAuthProvider;
 import com.datastax.driver.core.QueryOptions;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
 import com.datastax.driver.core.policies.TokenAwarePolicy;
 import com.google.auto.value.AutoValue;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
@@ -60,7 +69,6 @@ import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PDone;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Joiner;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterators;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -88,6 +96,11 @@ import org.slf4j.LoggerFactory;
  *
  * }</pre>
  *
+ * <p>The source is split along the token ranges of the table, each split only reading token ranges
+ * owned by the same replicas. A reader executes at most {@code withMaxConcurrentQueries()} queries
+ * at the same time and streams their results page by page, the size of the pages can be set with
+ * {@code withFetchSize()}.
+ *
  * <h3>Writing to Apache Cassandra</h3>
  *
  * <p>{@code CassandraIO} provides a sink to write a collection of entities to Apache Cassandra.
@@ -103,6 +116,10 @@ import org.slf4j.LoggerFactory;
  *        .withKeyspace("beam")
  *        .withEntity(Person.class));
  * }</pre>
+ *
+ * <p>By default each entity is written with its own query, with at most 100 queries in flight.
+ * {@code withBatchSize()} groups the entities of the same partition in {@code UNLOGGED} batches,
+ * and {@code withMaxConcurrentQueries()} sets the number of queries or batches in flight.
  */
 @Experimental(Kind.SOURCE_SINK)
 public class CassandraIO {
@@ -168,6 +185,12 @@ public class CassandraIO {
     @Nullable
     abstract ValueProvider<Integer> minNumberOfSplits();
 
+    @Nullable
+    abstract ValueProvider<Integer> fetchSize();
+
+    @Nullable
+    abstract ValueProvider<Integer> maxConcurrentQueries();
+
     @Nullable
     abstract SerializableFunction<Session, Mapper> mapperFactoryFn();
 
@@ -307,6 +330,46 @@ public class CassandraIO {
       return builder().setMinNumberOfSplits(minNumberOfSplits).build();
     }
 
+    /**
+     * Specify the number of rows fetched by each page of the queries. Results are streamed page by
+     * page, the next page being fetched in background while the current one is read. Default is
+     * the fetch size of the driver (5000 rows).
+     */
+    public Read<T> withFetchSize(Integer fetchSize) {
+      checkArgument(fetchSize != null, "fetchSize can not be null");
+      checkArgument(fetchSize > 0, "fetchSize must be greater than 0");
+      return withFetchSize(ValueProvider.StaticValueProvider.of(fetchSize));
+    }
+
+    /**
+     * Specify the number of rows fetched by each page of the queries. Results are streamed page by
+     * page, the next page being fetched in background while the current one is read. Default is
+     * the fetch size of the driver (5000 rows).
+     */
+    public Read<T> withFetchSize(ValueProvider<Integer> fetchSize) {
+      return builder().setFetchSize(fetchSize).build();
+    }
+
+    /**
+     * Specify the maximum number of token range queries of a split executed at the same time. The
+     * following queries are executed as soon as the results of the previous ones are read, which
+     * bounds the memory and the load put on the cluster by each reader. Default is 10.
+     */
+    public Read<T> withMaxConcurrentQueries(Integer maxConcurrentQueries) {
+      checkArgument(maxConcurrentQueries != null, "maxConcurrentQueries can not be null");
+      checkArgument(maxConcurrentQueries > 0, "maxConcurrentQueries must be greater than 0");
+      return withMaxConcurrentQueries(ValueProvider.StaticValueProvider.of(maxConcurrentQueries));
+    }
+
+    /**
+     * Specify the maximum number of token range queries of a split executed at the same time. The
+     * following queries are executed as soon as the results of the previous ones are read, which
+     * bounds the memory and the load put on the cluster by each reader. Default is 10.
+     */
+    public Read<T> withMaxConcurrentQueries(ValueProvider<Integer> maxConcurrentQueries) {
+      return builder().setMaxConcurrentQueries(maxConcurrentQueries).build();
+    }
+
     /**
      * A factory to create a specific {@link Mapper} for a given Cassandra Session. This is useful
      * to provide mappers that don't rely in Cassandra annotated objects.
@@ -357,6 +420,10 @@ public class CassandraIO {
 
       abstract Builder<T> setMinNumberOfSplits(ValueProvider<Integer> minNumberOfSplits);
 
+      abstract Builder<T> setFetchSize(ValueProvider<Integer> fetchSize);
+
+      abstract Builder<T> setMaxConcurrentQueries(ValueProvider<Integer> maxConcurrentQueries);
+
       abstract Builder<T> setMapperFactoryFn(SerializableFunction<Session, Mapper> mapperFactoryFn);
 
       abstract Optional<SerializableFunction<Session, Mapper>> mapperFactoryFn();
@@ -374,6 +441,8 @@ public class CassandraIO {
 
   @VisibleForTesting
   static class CassandraSource<T> extends BoundedSource<T> {
+    private static final int DEFAULT_MAX_CONCURRENT_QUERIES = 10;
+
     final Read<T> spec;
     final List<String> splitQueries;
     // split source ached size - can't be calculated when already split
@@ -444,12 +513,25 @@ public class CassandraIO {
           getNumSplits(desiredBundleSizeBytes, estimatedSizeBytes, spec.minNumberOfSplits());
       LOG.info("Number of desired splits is {}", numSplits);
 
-      SplitGenerator splitGenerator = new SplitGenerator(cluster.getMetadata().getPartitioner());
-      List<BigInteger> tokens =
-          cluster.getMetadata().getTokenRanges().stream()
-              .map(tokenRange -> new BigInteger(tokenRange.getEnd().getValue().toString()))
-              .collect(Collectors.toList());
-      List<List<RingRange>> splits = splitGenerator.generateSplits(numSplits, tokens);
+      Metadata metadata = cluster.getMetadata();
+      SplitGenerator splitGenerator = new SplitGenerator(metadata.getPartitioner());
+      List<BigInteger> tokens = new ArrayList<>();
+      List<String> replicas = new ArrayList<>();
+      for (com.datastax.driver.core.TokenRange tokenRange : metadata.getTokenRanges()) {
+        tokens.add(new BigInteger(tokenRange.getEnd().getValue().toString()));
+        replicas.add(
+            metadata.getReplicas(spec.keyspace().get(), tokenRange).stream()
+                .map(host -> host.getAddress().getHostAddress())
+                .sorted()
+                .collect(Collectors.joining(",")));
+      }
+      // the range starting at a token is owned by the replicas of the ring range ending at the
+      // next token, group the ranges of the same replicas so that a split is read from them only
+      List<String> rangeOwners = new ArrayList<>();
+      for (int i = 0; i < tokens.size(); i++) {
+        rangeOwners.add(replicas.get((i + 1) % tokens.size()));
+      }
+      List<List<RingRange>> splits = splitGenerator.generateSplits(numSplits, tokens, rangeOwners);
       LOG.info("{} splits were actually generated", splits.size());
 
       final String partitionKey =
@@ -579,6 +661,8 @@ public class CassandraIO {
       builder.addIfNotNull(DisplayData.item("username", spec.username()));
       builder.addIfNotNull(DisplayData.item("localDc", spec.localDc()));
       builder.addIfNotNull(DisplayData.item("consistencyLevel", spec.consistencyLevel()));
+      builder.addIfNotNull(DisplayData.item("fetchSize", spec.fetchSize()));
+      builder.addIfNotNull(DisplayData.item("maxConcurrentQueries", spec.maxConcurrentQueries()));
     }
     // ------------- CASSANDRA SOURCE UTIL METHODS ---------------//
 
@@ -672,6 +756,12 @@ public class CassandraIO {
       private final CassandraIO.CassandraSource<T> source;
       private Cluster cluster;
       private Session session;
+      private Mapper<T> mapper;
+      // the queries not executed yet, and the executions in flight in the order of the queries
+      private Iterator<String> queries;
+      private final Deque<ResultSetFuture> executions = new ArrayDeque<>();
+      private int fetchSize;
+      private ResultSet resultSet;
       private Iterator<T> iterator;
       private T current;
 
@@ -692,32 +782,49 @@ public class CassandraIO {
                 source.spec.consistencyLevel());
         session = cluster.connect(source.spec.keyspace().get());
         LOG.debug("Queries: " + source.splitQueries);
-        List<ResultSetFuture> futures = new ArrayList<>();
-        for (String query : source.splitQueries) {
-          futures.add(session.executeAsync(query));
-        }
-
-        final Mapper<T> mapper = getMapper(session, source.spec.entity());
-
-        for (ResultSetFuture result : futures) {
-          if (iterator == null) {
-            iterator = mapper.map(result.getUninterruptibly());
-          } else {
-            iterator = Iterators.concat(iterator, mapper.map(result.getUninterruptibly()));
-          }
+        mapper = getMapper(session, source.spec.entity());
+        fetchSize =
+            source.spec.fetchSize() != null
+                ? source.spec.fetchSize().get()
+                : cluster.getConfiguration().getQueryOptions().getFetchSize();
+        int maxConcurrentQueries =
+            source.spec.maxConcurrentQueries() != null
+                ? source.spec.maxConcurrentQueries().get()
+                : DEFAULT_MAX_CONCURRENT_QUERIES;
+
+        queries = source.splitQueries.iterator();
+        while (executions.size() < maxConcurrentQueries && queries.hasNext()) {
+          executeNextQuery();
         }
-
         return advance();
       }
 
+      private void executeNextQuery() {
+        Statement statement = new SimpleStatement(queries.next()).setFetchSize(fetchSize);
+        executions.add(session.executeAsync(statement));
+      }
+
       @Override
       public boolean advance() {
-        if (iterator.hasNext()) {
-          current = iterator.next();
-          return true;
+        while (iterator == null || !iterator.hasNext()) {
+          if (executions.isEmpty()) {
+            current = null;
+            return false;
+          }
+          resultSet = executions.poll().getUninterruptibly();
+          // the query is done, its slot goes to the next one
+          if (queries.hasNext()) {
+            executeNextQuery();
+          }
+          iterator = mapper.map(resultSet);
+        }
+        // fetch the next page in background while the end of the current one is read
+        if (!resultSet.isFullyFetched()
+            && resultSet.getAvailableWithoutFetching() <= fetchSize / 2) {
+          resultSet.fetchMoreResults();
         }
-        current = null;
-        return false;
+        current = iterator.next();
+        return true;
       }
 
       @Override
@@ -788,6 +895,12 @@ public class CassandraIO {
 
     abstract MutationType mutationType();
 
+    @Nullable
+    abstract ValueProvider<Integer> batchSize();
+
+    @Nullable
+    abstract ValueProvider<Integer> maxConcurrentQueries();
+
     @Nullable
     abstract SerializableFunction<Session, Mapper> mapperFactoryFn();
 
@@ -935,6 +1048,55 @@ public class CassandraIO {
       return builder().setMapperFactoryFn(mapperFactoryFn).build();
     }
 
+    /**
+     * Group the mutations of the entities of the same partition in {@code UNLOGGED} batches of at
+     * most {@code batchSize} statements. As all the statements of a batch target the same
+     * partition, the batch is applied as a single mutation by the replicas of the partition. The
+     * statements are built with {@link Mapper#saveQuery(Object)} or {@link
+     * Mapper#deleteQuery(Object)}, the entities of mappers which do not build statements are still
+     * mutated one at a time. Default is 1, each entity being mutated with its own query.
+     */
+    public Write<T> withBatchSize(int batchSize) {
+      checkArgument(
+          batchSize > 0,
+          "CassandraIO."
+              + getMutationTypeName()
+              + "().withBatchSize(batchSize) called with invalid batch size (%s)",
+          batchSize);
+      return withBatchSize(ValueProvider.StaticValueProvider.of(batchSize));
+    }
+
+    /**
+     * Group the mutations of the entities of the same partition in {@code UNLOGGED} batches of at
+     * most {@code batchSize} statements. See {@link #withBatchSize(int)}.
+     */
+    public Write<T> withBatchSize(ValueProvider<Integer> batchSize) {
+      return builder().setBatchSize(batchSize).build();
+    }
+
+    /**
+     * Specify the maximum number of queries or batches in flight for each instance of the writer.
+     * When the limit is reached, the writer waits for the oldest query to complete before sending
+     * the next one. Default is 100.
+     */
+    public Write<T> withMaxConcurrentQueries(int maxConcurrentQueries) {
+      checkArgument(
+          maxConcurrentQueries > 0,
+          "CassandraIO."
+              + getMutationTypeName()
+              + "().withMaxConcurrentQueries(maxConcurrentQueries) called with invalid value (%s)",
+          maxConcurrentQueries);
+      return withMaxConcurrentQueries(ValueProvider.StaticValueProvider.of(maxConcurrentQueries));
+    }
+
+    /**
+     * Specify the maximum number of queries or batches in flight for each instance of the writer.
+     * See {@link #withMaxConcurrentQueries(int)}.
+     */
+    public Write<T> withMaxConcurrentQueries(ValueProvider<Integer> maxConcurrentQueries) {
+      return builder().setMaxConcurrentQueries(maxConcurrentQueries).build();
+    }
+
     @Override
     public void validate(PipelineOptions pipelineOptions) {
       checkState(
@@ -1000,6 +1162,10 @@ public class CassandraIO {
 
       abstract Builder<T> setMutationType(MutationType mutationType);
 
+      abstract Builder<T> setBatchSize(ValueProvider<Integer> batchSize);
+
+      abstract Builder<T> setMaxConcurrentQueries(ValueProvider<Integer> maxConcurrentQueries);
+
       abstract Builder<T> setMapperFactoryFn(SerializableFunction<Session, Mapper> mapperFactoryFn);
 
       abstract Optional<SerializableFunction<Session, Mapper>> mapperFactoryFn();
@@ -1026,7 +1192,7 @@ public class CassandraIO {
 
     @Setup
     public void setup() {
-      writer = new Mutator<>(spec, Mapper::saveAsync, "writes");
+      writer = new Mutator<>(spec, Mapper::saveAsync, Mapper::saveQuery, "writes");
     }
 
     @ProcessElement
@@ -1034,6 +1200,11 @@ public class CassandraIO {
       writer.mutate(c.element());
     }
 
+    @FinishBundle
+    public void finishBundle() throws ExecutionException, InterruptedException {
+      writer.flush();
+    }
+
     @Teardown
     public void teardown() throws Exception {
       writer.close();
@@ -1051,7 +1222,7 @@ public class CassandraIO {
 
     @Setup
     public void setup() {
-      deleter = new Mutator<>(spec, Mapper::deleteAsync, "deletes");
+      deleter = new Mutator<>(spec, Mapper::deleteAsync, Mapper::deleteQuery, "deletes");
     }
 
     @ProcessElement
@@ -1059,6 +1230,11 @@ public class CassandraIO {
       deleter.mutate(c.element());
     }
 
+    @FinishBundle
+    public void finishBundle() throws ExecutionException, InterruptedException {
+      deleter.flush();
+    }
+
     @Teardown
     public void teardown() throws Exception {
       deleter.close();
@@ -1107,11 +1283,21 @@ public class CassandraIO {
     private final Cluster cluster;
     private final Session session;
     private final SerializableFunction<Session, Mapper> mapperFactoryFn;
-    private List<Future<Void>> mutateFutures;
+    private final Deque<Future<?>> mutateFutures;
     private final BiFunction<Mapper<T>, T, Future<Void>> mutator;
+    private final BiFunction<Mapper<T>, T, Statement> statementFn;
     private final String operationName;
-
-    Mutator(Write<T> spec, BiFunction<Mapper<T>, T, Future<Void>> mutator, String operationName) {
+    private final int batchSize;
+    private final int maxConcurrentQueries;
+    // statements waiting to be batched, by routing key of their partition
+    private final Map<ByteBuffer, List<Statement>> batches;
+    private int batchedStatements;
+
+    Mutator(
+        Write<T> spec,
+        BiFunction<Mapper<T>, T, Future<Void>> mutator,
+        BiFunction<Mapper<T>, T, Statement> statementFn,
+        String operationName) {
       this.cluster =
           getCluster(
               spec.hosts(),
@@ -1122,9 +1308,16 @@ public class CassandraIO {
               spec.consistencyLevel());
       this.session = cluster.connect(spec.keyspace().get());
       this.mapperFactoryFn = spec.mapperFactoryFn();
-      this.mutateFutures = new ArrayList<>();
+      this.mutateFutures = new ArrayDeque<>();
       this.mutator = mutator;
+      this.statementFn = statementFn;
       this.operationName = operationName;
+      this.batchSize = spec.batchSize() != null ? spec.batchSize().get() : 1;
+      this.maxConcurrentQueries =
+          spec.maxConcurrentQueries() != null
+              ? spec.maxConcurrentQueries().get()
+              : CONCURRENT_ASYNC_QUERIES;
+      this.batches = new HashMap<>();
     }
 
     /**
@@ -1133,40 +1326,96 @@ public class CassandraIO {
      * com.datastax.driver.mapping.MappingManager}. This method uses {@link
      * Mapper#saveAsync(Object)} method, which is asynchronous. Beam will wait for all futures to
      * complete, to guarantee all writes have succeeded.
+     *
+     * <p>When batching is enabled, the statement built by {@link Mapper#saveQuery(Object)} is
+     * added to the batch of its partition, which is executed once full. Mappers which do not build
+     * statements mutate each entity on its own.
      */
     void mutate(T entity) throws ExecutionException, InterruptedException {
       Mapper<T> mapper = mapperFactoryFn.apply(session);
-      this.mutateFutures.add(mutator.apply(mapper, entity));
-      if (this.mutateFutures.size() == CONCURRENT_ASYNC_QUERIES) {
-        // We reached the max number of allowed in flight queries.
-        // Write methods are synchronous in Beam,
-        // so we wait for each async query to return before exiting.
-        LOG.debug(
-            "Waiting for a batch of {} Cassandra {} to be executed...",
-            CONCURRENT_ASYNC_QUERIES,
-            operationName);
-        waitForFuturesToFinish();
-        this.mutateFutures = new ArrayList<>();
+      if (batchSize <= 1) {
+        submit(mutator.apply(mapper, entity));
+        return;
+      }
+      Statement statement = statementFn.apply(mapper, entity);
+      if (statement == null) {
+        submit(mutator.apply(mapper, entity));
+        return;
+      }
+      ByteBuffer routingKey =
+          statement.getRoutingKey(
+              cluster.getConfiguration().getProtocolOptions().getProtocolVersion(),
+              cluster.getConfiguration().getCodecRegistry());
+      if (routingKey == null) {
+        // the partition is unknown, the statement can't be grouped with others
+        submit(session.executeAsync(statement));
+        return;
+      }
+      List<Statement> batch = batches.computeIfAbsent(routingKey, key -> new ArrayList<>());
+      batch.add(statement);
+      batchedStatements++;
+      if (batch.size() >= batchSize) {
+        batches.remove(routingKey);
+        executeBatch(batch);
+      } else if (batchedStatements >= batchSize * maxConcurrentQueries) {
+        // too many partitions with incomplete batches, don't hold more statements in memory
+        flushBatches();
       }
     }
 
-    void close() throws ExecutionException, InterruptedException {
-      if (this.mutateFutures.size() > 0) {
-        // Waiting for the last in flight async queries to return before finishing the bundle.
-        waitForFuturesToFinish();
+    private void executeBatch(List<Statement> statements)
+        throws ExecutionException, InterruptedException {
+      batchedStatements -= statements.size();
+      if (statements.size() == 1) {
+        submit(session.executeAsync(statements.get(0)));
+      } else {
+        BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+        batch.addAll(statements);
+        submit(session.executeAsync(batch));
+      }
+    }
+
+    private void flushBatches() throws ExecutionException, InterruptedException {
+      for (List<Statement> batch : batches.values()) {
+        executeBatch(batch);
       }
+      batches.clear();
+    }
 
-      if (session != null) {
-        session.close();
+    private void submit(Future<?> future) throws ExecutionException, InterruptedException {
+      if (mutateFutures.size() >= maxConcurrentQueries) {
+        // We reached the max number of allowed in flight queries, wait for the oldest one.
+        LOG.debug(
+            "Waiting for one of {} Cassandra {} to be executed...",
+            maxConcurrentQueries,
+            operationName);
+        mutateFutures.poll().get();
       }
-      if (cluster != null) {
-        cluster.close();
+      mutateFutures.add(future);
+    }
+
+    /**
+     * Executes the pending batches and waits for all the in flight queries. Write methods are
+     * synchronous in Beam, so all the queries must be done before the bundle is committed.
+     */
+    void flush() throws ExecutionException, InterruptedException {
+      flushBatches();
+      while (!mutateFutures.isEmpty()) {
+        mutateFutures.poll().get();
       }
     }
 
-    private void waitForFuturesToFinish() throws ExecutionException, InterruptedException {
-      for (Future<Void> future : mutateFutures) {
-        future.get();
+    void close() throws ExecutionException, InterruptedException {
+      try {
+        // Waiting for the last in flight async queries to return before closing the session.
+        flush();
+      } finally {
+        if (session != null) {
+          session.close();
+        }
+        if (cluster != null) {
+          cluster.close();
+        }
       }
     }
   }
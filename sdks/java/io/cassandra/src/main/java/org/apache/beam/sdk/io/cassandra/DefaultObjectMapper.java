@@ -18,6 +18,7 @@
 package org.apache.beam.sdk.io.cassandra;
 
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Statement;
 import java.io.Serializable;
 import java.util.Iterator;
 import java.util.concurrent.Future;
@@ -51,4 +52,14 @@ class DefaultObjectMapper<T> implements Mapper<T>, Serializable {
   public Future<Void> saveAsync(T entity) {
     return mapper.saveAsync(entity);
   }
+
+  @Override
+  public Statement deleteQuery(T entity) {
+    return mapper.deleteQuery(entity);
+  }
+
+  @Override
+  public Statement saveQuery(T entity) {
+    return mapper.saveQuery(entity);
+  }
 }
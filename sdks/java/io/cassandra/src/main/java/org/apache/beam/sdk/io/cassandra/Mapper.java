@@ -18,8 +18,10 @@
 package org.apache.beam.sdk.io.cassandra;
 
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Statement;
 import java.util.Iterator;
 import java.util.concurrent.Future;
+import javax.annotation.Nullable;
 import org.apache.beam.sdk.annotations.Experimental;
 import org.apache.beam.sdk.annotations.Experimental.Kind;
 import org.apache.beam.sdk.transforms.SerializableFunction;
@@ -72,4 +74,30 @@ public interface Mapper<T> {
    * @param entity Entity to be saved.
    */
   Future<Void> saveAsync(T entity);
+
+  /**
+   * This method is called for each delete event when deletes are batched, see {@link
+   * CassandraIO.Write#withBatchSize(int)}. It should return the statement deleting the entity,
+   * with its routing key set so that deletes can be grouped by partition. By default it returns
+   * {@code null}, and the entity is deleted on its own with {@link #deleteAsync(Object)}.
+   *
+   * @param entity Entity to be deleted.
+   */
+  @Nullable
+  default Statement deleteQuery(T entity) {
+    return null;
+  }
+
+  /**
+   * This method is called for each save event when writes are batched, see {@link
+   * CassandraIO.Write#withBatchSize(int)}. It should return the statement saving the entity, with
+   * its routing key set so that writes can be grouped by partition. By default it returns {@code
+   * null}, and the entity is saved on its own with {@link #saveAsync(Object)}.
+   *
+   * @param entity Entity to be saved.
+   */
+  @Nullable
+  default Statement saveQuery(T entity) {
+    return null;
+  }
 }
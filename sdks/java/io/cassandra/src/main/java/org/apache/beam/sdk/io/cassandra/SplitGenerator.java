@@ -19,7 +19,10 @@ package org.apache.beam.sdk.io.cassandra;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,8 +71,7 @@ final class SplitGenerator {
   /**
    * Given big0 properly ordered list of tokens, compute at least {@code totalSplitCount} splits.
    * Each split can contain several token ranges in order to reduce the overhead of vnodes.
-   * Currently, token range grouping is not smart and doesn't check if they share the same replicas.
-   * This is planned to change once Beam is able to handle collocation with the Cassandra nodes.
+   * Token ranges are grouped in ring order, regardless of their replicas.
    *
    * @param totalSplitCount requested total amount of splits. This function may generate more
    *     splits.
@@ -77,10 +79,36 @@ final class SplitGenerator {
    * @return big0 list containing at least {@code totalSplitCount} splits.
    */
   List<List<RingRange>> generateSplits(long totalSplitCount, List<BigInteger> ringTokens) {
+    return generateSplits(totalSplitCount, ringTokens, null);
+  }
+
+  /**
+   * Same as {@link #generateSplits(long, List)}, but only token ranges owned by the same replicas
+   * are grouped in a split, so that all the queries of a split are served by the same nodes.
+   *
+   * @param totalSplitCount requested total amount of splits. This function may generate more
+   *     splits.
+   * @param ringTokens list of all start tokens in big0 cluster. They have to be in ring order.
+   * @param rangeOwners the owners (typically the replica set) of each token range, {@code
+   *     rangeOwners.get(i)} owns the range starting at {@code ringTokens.get(i)}. If null, all
+   *     the token ranges are considered to have the same owner.
+   * @return big0 list containing at least {@code totalSplitCount} splits.
+   */
+  List<List<RingRange>> generateSplits(
+      long totalSplitCount, List<BigInteger> ringTokens, @Nullable List<?> rangeOwners) {
     int tokenRangeCount = ringTokens.size();
+    if (rangeOwners != null && rangeOwners.size() != tokenRangeCount) {
+      throw new IllegalArgumentException(
+          String.format("Got %s range owners for %s tokens", rangeOwners.size(), tokenRangeCount));
+    }
 
     List<RingRange> splits = new ArrayList<>();
+    // sub-ranges grouped by owner, in ring order of the first range of each owner
+    Map<Object, List<RingRange>> splitsByOwner = new LinkedHashMap<>();
     for (int i = 0; i < tokenRangeCount; i++) {
+      List<RingRange> ownerSplits =
+          splitsByOwner.computeIfAbsent(
+              rangeOwners == null ? "" : rangeOwners.get(i), owner -> new ArrayList<>());
       BigInteger start = ringTokens.get(i);
       BigInteger stop = ringTokens.get((i + 1) % tokenRangeCount);
 
@@ -127,7 +155,9 @@ final class SplitGenerator {
 
       // Append the splits between the endpoints
       for (int j = 0; j < splitCount; j++) {
-        splits.add(new RingRange(endpointTokens.get(j), endpointTokens.get(j + 1)));
+        RingRange split = new RingRange(endpointTokens.get(j), endpointTokens.get(j + 1));
+        splits.add(split);
+        ownerSplits.add(split);
         LOG.debug("Split #{}: [{},{})", j + 1, endpointTokens.get(j), endpointTokens.get(j + 1));
       }
     }
@@ -141,7 +171,12 @@ final class SplitGenerator {
       throw new RuntimeException(
           "Some tokens are missing from the splits. " + "This should not happen.");
     }
-    return coalesceSplits(getTargetSplitSize(totalSplitCount), splits);
+    BigInteger targetSplitSize = getTargetSplitSize(totalSplitCount);
+    List<List<RingRange>> coalescedSplits = new ArrayList<>();
+    for (List<RingRange> ownerSplits : splitsByOwner.values()) {
+      coalescedSplits.addAll(coalesceSplits(targetSplitSize, ownerSplits));
+    }
+    return coalescedSplits;
   }
 
   private boolean inRange(BigInteger token) {
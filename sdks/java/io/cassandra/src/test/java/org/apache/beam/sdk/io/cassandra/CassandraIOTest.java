@@ -368,6 +368,57 @@ public class CassandraIOTest implements Serializable {
     }
   }
 
+  @Test
+  public void testReadWithFetchSizeAndMaxConcurrentQueries() throws Exception {
+    PCollection<Scientist> output =
+        pipeline.apply(
+            CassandraIO.<Scientist>read()
+                .withHosts(Collections.singletonList(CASSANDRA_HOST))
+                .withPort(cassandraPort)
+                .withKeyspace(CASSANDRA_KEYSPACE)
+                .withTable(CASSANDRA_TABLE)
+                .withMinNumberOfSplits(4)
+                .withFetchSize(3)
+                .withMaxConcurrentQueries(2)
+                .withCoder(SerializableCoder.of(Scientist.class))
+                .withEntity(Scientist.class));
+
+    PAssert.thatSingleton(output.apply("Count", Count.globally())).isEqualTo(NUM_ROWS);
+    pipeline.run();
+  }
+
+  @Test
+  public void testWriteWithBatchSize() {
+    ArrayList<ScientistWrite> data = new ArrayList<>();
+    for (int i = 0; i < NUM_ROWS; i++) {
+      // two versions of each row, in the same partition
+      for (int version = 0; version < 2; version++) {
+        ScientistWrite scientist = new ScientistWrite();
+        scientist.id = i;
+        scientist.name = "Name " + i;
+        data.add(scientist);
+      }
+    }
+
+    pipeline
+        .apply(Create.of(data))
+        .apply(
+            CassandraIO.<ScientistWrite>write()
+                .withHosts(Collections.singletonList(CASSANDRA_HOST))
+                .withPort(cassandraPort)
+                .withKeyspace(CASSANDRA_KEYSPACE)
+                .withEntity(ScientistWrite.class)
+                .withBatchSize(2)
+                .withMaxConcurrentQueries(4));
+    pipeline.run();
+
+    List<Row> results = getRows(CASSANDRA_TABLE_WRITE);
+    assertEquals(NUM_ROWS, results.size());
+    for (Row row : results) {
+      assertTrue(row.getString("person_name").matches("Name (\\d*)"));
+    }
+  }
+
   private static final AtomicInteger counter = new AtomicInteger();
 
   private static class NOOPMapperFactory implements SerializableFunction<Session, Mapper> {
@@ -446,6 +497,49 @@ public class CassandraIOTest implements Serializable {
     assertEquals(1, counter.intValue());
   }
 
+  @Test
+  public void testCustomMapperImplWriteWithBatchSize() throws Exception {
+    counter.set(0);
+
+    SerializableFunction<Session, Mapper> factory = new NOOPMapperFactory();
+
+    // The mapper does not build statements, so the entities are saved one at a time
+    pipeline
+        .apply(Create.of("a", "b", "c"))
+        .apply(
+            CassandraIO.<String>write()
+                .withHosts(Collections.singletonList(CASSANDRA_HOST))
+                .withPort(cassandraPort)
+                .withKeyspace(CASSANDRA_KEYSPACE)
+                .withMapperFactoryFn(factory)
+                .withBatchSize(2)
+                .withEntity(String.class));
+    pipeline.run();
+
+    assertEquals(3, counter.intValue());
+  }
+
+  @Test
+  public void testCustomMapperImplDeleteWithBatchSize() {
+    counter.set(0);
+
+    SerializableFunction<Session, Mapper> factory = new NOOPMapperFactory();
+
+    pipeline
+        .apply(Create.of("a", "b", "c"))
+        .apply(
+            CassandraIO.<String>delete()
+                .withHosts(Collections.singletonList(CASSANDRA_HOST))
+                .withPort(cassandraPort)
+                .withKeyspace(CASSANDRA_KEYSPACE)
+                .withMapperFactoryFn(factory)
+                .withBatchSize(2)
+                .withEntity(String.class));
+    pipeline.run();
+
+    assertEquals(3, counter.intValue());
+  }
+
   @Test
   public void testCustomMapperImplDelete() {
     counter.set(0);
@@ -77,6 +77,43 @@ public final class SplitGeneratorTest {
         segments.get(10).toString());
   }
 
+  @Test
+  public void testGenerateSegmentsByOwner() {
+    List<BigInteger> tokens =
+        Stream.of(
+                "0",
+                "1",
+                "56713727820156410577229101238628035242",
+                "56713727820156410577229101238628035243",
+                "113427455640312821154458202477256070484",
+                "113427455640312821154458202477256070485")
+            .map(BigInteger::new)
+            .collect(Collectors.toList());
+    List<String> owners = Arrays.asList("a", "b", "a", "b", "a", "b");
+
+    SplitGenerator generator = new SplitGenerator("foo.bar.RandomPartitioner");
+    List<List<RingRange>> segments = generator.generateSplits(10, tokens, owners);
+
+    // the small ranges of "a" are grouped together, and never with the ones of "b"
+    assertEquals(13, segments.size());
+    assertEquals(
+        "[(0,1], (56713727820156410577229101238628035242,56713727820156410577229101238628035243],"
+            + " (113427455640312821154458202477256070484,113427455640312821154458202477256070485]]",
+        segments.get(0).toString());
+    assertEquals("[(1,14178431955039102644307275309657008811]]", segments.get(1).toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGenerateSegmentsWithMissingOwners() {
+    List<BigInteger> tokens =
+        Stream.of("0", "1", "56713727820156410577229101238628035242")
+            .map(BigInteger::new)
+            .collect(Collectors.toList());
+
+    SplitGenerator generator = new SplitGenerator("foo.bar.RandomPartitioner");
+    generator.generateSplits(10, tokens, Arrays.asList("a", "b"));
+  }
+
   @Test(expected = RuntimeException.class)
   public void testZeroSizeRange() {
     List<String> tokenStrings =
@@ -224,4 +224,21 @@ public class ElasticsearchIOTest implements Serializable {
     elasticsearchIOTestCommon.setPipeline(pipeline);
     elasticsearchIOTestCommon.testWriteRetryValidRequest();
   }
+
+  @Test
+  public void testReadWithFields() throws Exception {
+    elasticsearchIOTestCommon.setPipeline(pipeline);
+    elasticsearchIOTestCommon.testReadWithFields();
+  }
+
+  @Test
+  public void testBuildPointInTimeQuery() throws Exception {
+    elasticsearchIOTestCommon.testBuildPointInTimeQuery();
+  }
+
+  @Test
+  public void testWriteWithMaxParallelRequests() throws Exception {
+    elasticsearchIOTestCommon.setPipeline(pipeline);
+    elasticsearchIOTestCommon.testWriteWithMaxParallelRequests();
+  }
 }
@@ -222,4 +222,21 @@ public class ElasticsearchIOTest extends ESIntegTestCase implements Serializable
     elasticsearchIOTestCommon.setPipeline(pipeline);
     elasticsearchIOTestCommon.testWriteRetryValidRequest();
   }
+
+  @Test
+  public void testReadWithFields() throws Exception {
+    elasticsearchIOTestCommon.setPipeline(pipeline);
+    elasticsearchIOTestCommon.testReadWithFields();
+  }
+
+  @Test
+  public void testBuildPointInTimeQuery() throws Exception {
+    elasticsearchIOTestCommon.testBuildPointInTimeQuery();
+  }
+
+  @Test
+  public void testWriteWithMaxParallelRequests() throws Exception {
+    elasticsearchIOTestCommon.setPipeline(pipeline);
+    elasticsearchIOTestCommon.testWriteWithMaxParallelRequests();
+  }
 }
@@ -39,6 +39,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
@@ -252,6 +253,58 @@ class ElasticsearchIOTestCommon implements Serializable {
     pipeline.run();
   }
 
+  /** Test that only the requested fields of the documents are read. */
+  void testReadWithFields() throws Exception {
+    if (!useAsITests) {
+      ElasticsearchIOTestUtils.insertTestDocuments(connectionConfiguration, numDocs, restClient);
+    }
+
+    long expectedNumDocs = numDocs;
+    PCollection<String> output =
+        pipeline.apply(
+            ElasticsearchIO.read()
+                .withConnectionConfiguration(connectionConfiguration)
+                .withFields("scientist"));
+    PAssert.that(output)
+        .satisfies(
+            documents -> {
+              long count = 0;
+              for (String document : documents) {
+                assertTrue(document, document.startsWith("{\"scientist\":"));
+                assertFalse(document, document.contains("\"id\""));
+                count++;
+              }
+              assertEquals(expectedNumDocs, count);
+              return null;
+            });
+    pipeline.run();
+  }
+
+  void testBuildPointInTimeQuery() throws Exception {
+    String query = "{\"query\":{\"match_all\":{}},\"sort\":[\"scientist\"]}";
+    assertEquals(
+        "{\"query\":{\"match_all\":{}},\"sort\":[{\"_shard_doc\":\"asc\"}],"
+            + "\"pit\":{\"id\":\"pit-id\",\"keep_alive\":\"1m\"},\"size\":10}",
+        ElasticsearchIO.buildPointInTimeQuery(query, "pit-id", "1m", 10L, null));
+
+    JsonNode searchAfter = new ObjectMapper().readTree("[42]");
+    assertEquals(
+        "{\"query\":{\"match_all\":{}},\"sort\":[{\"_shard_doc\":\"asc\"}],"
+            + "\"pit\":{\"id\":\"pit-id\",\"keep_alive\":\"1m\"},\"size\":10,"
+            + "\"search_after\":[42]}",
+        ElasticsearchIO.buildPointInTimeQuery(query, "pit-id", "1m", 10L, searchAfter));
+
+    assertEquals(
+        "{\"query\":{\"match_all\":{}},\"_source\":[\"scientist\",\"id\"]}",
+        ElasticsearchIO.addSourceFiltering(
+            "{\"query\":{\"match_all\":{}}}", Arrays.asList("scientist", "id")));
+
+    assertFalse(ElasticsearchIO.supportsPointInTime("6.8.0"));
+    assertFalse(ElasticsearchIO.supportsPointInTime("7.9.3"));
+    assertTrue(ElasticsearchIO.supportsPointInTime("7.10.0"));
+    assertTrue(ElasticsearchIO.supportsPointInTime("8.0.0"));
+  }
+
   void testWrite() throws Exception {
     Write write = ElasticsearchIO.write().withConnectionConfiguration(connectionConfiguration);
     executeWriteTest(write);
@@ -650,6 +703,16 @@ class ElasticsearchIOTestCommon implements Serializable {
     executeWriteTest(write);
   }
 
+  void testWriteWithMaxParallelRequests() throws Exception {
+    Write write =
+        ElasticsearchIO.write()
+            .withConnectionConfiguration(connectionConfiguration)
+            .withMaxBatchSize(BATCH_SIZE / 4)
+            .withMaxParallelRequests(4)
+            .withAdaptiveBatchSize(true);
+    executeWriteTest(write);
+  }
+
   private void executeWriteTest(ElasticsearchIO.Write write) throws Exception {
     List<String> data =
         ElasticsearchIOTestUtils.createDocuments(
@@ -25,6 +25,8 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.google.auto.value.AutoValue;
 import java.io.File;
@@ -44,6 +46,13 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -68,6 +77,7 @@ import org.apache.beam.sdk.values.PBegin;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PDone;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
@@ -112,7 +122,12 @@ import org.slf4j.LoggerFactory;
  * <p>The connection configuration also accepts optional configuration: {@code withUsername()} and
  * {@code withPassword()}.
  *
- * <p>You can also specify a query on the {@code read()} using {@code withQuery()}.
+ * <p>You can also specify a query on the {@code read()} using {@code withQuery()}, and restrict the
+ * fields of the returned documents using {@code withFields()}.
+ *
+ * <p>By default documents are read using the scroll API. On Elasticsearch 7.10+, {@code
+ * withPointInTime()} pages through a point in time with {@code search_after} instead, which keeps
+ * no scroll context open on the cluster between two pages.
  *
  * <h3>Writing to Elasticsearch</h3>
  *
@@ -135,6 +150,10 @@ import org.slf4j.LoggerFactory;
  * <p>Optionally, you can provide {@code withBatchSize()} and {@code withBatchSizeBytes()} to
  * specify the size of the write batch in number of documents or in bytes.
  *
+ * <p>Optionally, {@code withMaxParallelRequests()} allows several bulk requests to be in flight at
+ * the same time, and {@code withAdaptiveBatchSize()} shrinks the batches when Elasticsearch pushes
+ * back with 429 TOO_MANY_REQUESTS errors and grows them again once the cluster keeps up.
+ *
  * <p>Optionally, you can provide an {@link ElasticsearchIO.Write.FieldValueExtractFn} using {@code
  * withIdFn()} that will be run to extract the id value out of the provided document rather than
  * using the document id auto-generated by Elasticsearch.
@@ -165,6 +184,7 @@ public class ElasticsearchIO {
         .setWithMetadata(false)
         .setScrollKeepalive("5m")
         .setBatchSize(100L)
+        .setWithPointInTime(false)
         .build();
   }
 
@@ -175,6 +195,8 @@ public class ElasticsearchIO {
         // advised default starting batch size in ES docs
         .setMaxBatchSizeBytes(5L * 1024L * 1024L)
         .setUsePartialUpdate(false) // default is document upsert
+        .setMaxParallelRequests(1)
+        .setAdaptiveBatchSize(false)
         .build();
   }
 
@@ -228,6 +250,40 @@ public class ElasticsearchIO {
     }
   }
 
+  /** Restricts the {@code _source} of the documents returned by {@code query} to {@code fields}. */
+  @VisibleForTesting
+  static String addSourceFiltering(String query, List<String> fields) throws IOException {
+    ObjectNode body = (ObjectNode) mapper.readTree(query);
+    ArrayNode source = body.putArray("_source");
+    for (String field : fields) {
+      source.add(field);
+    }
+    return mapper.writeValueAsString(body);
+  }
+
+  /**
+   * Builds the search request reading the page of a point in time which follows {@code
+   * searchAfter}, or the first page if {@code searchAfter} is null.
+   */
+  @VisibleForTesting
+  static String buildPointInTimeQuery(
+      String query,
+      String pointInTimeId,
+      String keepalive,
+      long batchSize,
+      @Nullable JsonNode searchAfter)
+      throws IOException {
+    ObjectNode body = (ObjectNode) mapper.readTree(query);
+    body.putObject("pit").put("id", pointInTimeId).put("keep_alive", keepalive);
+    body.put("size", batchSize);
+    // _shard_doc is the cheapest total order of the documents of a point in time
+    body.putArray("sort").addObject().put("_shard_doc", "asc");
+    if (searchAfter != null) {
+      body.set("search_after", searchAfter);
+    }
+    return mapper.writeValueAsString(body);
+  }
+
   /** A POJO describing a connection configuration to Elasticsearch. */
   @AutoValue
   public abstract static class ConnectionConfiguration implements Serializable {
@@ -482,6 +538,11 @@ public class ElasticsearchIO {
 
     abstract long getBatchSize();
 
+    @Nullable
+    abstract List<String> getFields();
+
+    abstract boolean isWithPointInTime();
+
     abstract Builder builder();
 
     @AutoValue.Builder
@@ -496,6 +557,10 @@ public class ElasticsearchIO {
 
       abstract Builder setBatchSize(long batchSize);
 
+      abstract Builder setFields(List<String> fields);
+
+      abstract Builder setWithPointInTime(boolean withPointInTime);
+
       abstract Read build();
     }
 
@@ -581,6 +646,37 @@ public class ElasticsearchIO {
       return builder().setBatchSize(batchSize).build();
     }
 
+    /**
+     * Restrict the fields of the documents returned by Elasticsearch using <a
+     * href="https://www.elastic.co/guide/en/elasticsearch/reference/current/search-request-body.html#request-body-search-source-filtering">source
+     * filtering</a>. Only the given fields are transferred and parsed, which reduces a lot the
+     * volume of data read when only a few fields of big documents are needed. Wildcards such as
+     * {@code "address.*"} are supported.
+     *
+     * @param fields the fields of the documents to read
+     * @return a {@link PTransform} reading data from Elasticsearch.
+     */
+    public Read withFields(String... fields) {
+      checkArgument(fields != null, "fields can not be null");
+      checkArgument(fields.length > 0, "fields can not be empty");
+      return builder().setFields(Collections.unmodifiableList(Arrays.asList(fields))).build();
+    }
+
+    /**
+     * Read the documents by paging through a <a
+     * href="https://www.elastic.co/guide/en/elasticsearch/reference/current/point-in-time-api.html">point
+     * in time</a> with {@code search_after} rather than with the scroll API. Each page is a regular
+     * search request sorted on {@code _shard_doc}, so no scroll context has to be held by the
+     * cluster between two reads. The point in time is kept alive for the duration set with {@code
+     * withScrollKeepalive()} and each page contains {@code withBatchSize()} documents. Any sort of
+     * the user query is replaced. This requires Elasticsearch 7.10 or later.
+     *
+     * @return a {@link PTransform} reading data from Elasticsearch.
+     */
+    public Read withPointInTime() {
+      return builder().setWithPointInTime(true).build();
+    }
+
     @Override
     public PCollection<String> expand(PBegin input) {
       ConnectionConfiguration connectionConfiguration = getConnectionConfiguration();
@@ -596,6 +692,10 @@ public class ElasticsearchIO {
       builder.addIfNotNull(DisplayData.item("withMetadata", isWithMetadata()));
       builder.addIfNotNull(DisplayData.item("batchSize", getBatchSize()));
       builder.addIfNotNull(DisplayData.item("scrollKeepalive", getScrollKeepalive()));
+      if (getFields() != null) {
+        builder.add(DisplayData.item("fields", getFields().toString()));
+      }
+      builder.add(DisplayData.item("withPointInTime", isWithPointInTime()));
       getConnectionConfiguration().populateDisplayData(builder);
     }
   }
@@ -807,6 +907,11 @@ public class ElasticsearchIO {
     private String current;
     private String scrollId;
     private ListIterator<String> batchIterator;
+    // point in time paging state, see Read#withPointInTime()
+    private String pointInTimeQuery;
+    private String pointInTimeId;
+    private JsonNode searchAfter;
+    private boolean lastPage;
 
     private BoundedElasticsearchReader(BoundedElasticsearchSource source) {
       this.source = source;
@@ -820,12 +925,18 @@ public class ElasticsearchIO {
       if (query == null) {
         query = "{\"query\": { \"match_all\": {} }}";
       }
+      if (source.spec.getFields() != null) {
+        query = addSourceFiltering(query, source.spec.getFields());
+      }
       if ((source.backendVersion >= 5) && source.numSlices != null && source.numSlices > 1) {
         // if there is more than one slice, add the slice to the user query
         String sliceQuery =
             String.format("\"slice\": {\"id\": %s,\"max\": %s}", source.sliceId, source.numSlices);
         query = query.replaceFirst("\\{", "{" + sliceQuery + ",");
       }
+      if (source.spec.isWithPointInTime()) {
+        return startPointInTime(query);
+      }
       String endPoint =
           String.format(
               "/%s/%s/_search",
@@ -849,6 +960,50 @@ public class ElasticsearchIO {
       return readNextBatchAndReturnFirstDocument(searchResult);
     }
 
+    private boolean startPointInTime(String query) throws IOException {
+      String backendVersionNumber =
+          getBackendVersionNumber(source.spec.getConnectionConfiguration());
+      checkArgument(
+          supportsPointInTime(backendVersionNumber),
+          "withPointInTime() requires Elasticsearch 7.10 or later, but the backend version is %s",
+          backendVersionNumber);
+      Request request =
+          new Request(
+              "POST",
+              String.format("/%s/_pit", source.spec.getConnectionConfiguration().getIndex()));
+      request.addParameter("keep_alive", source.spec.getScrollKeepalive());
+      pointInTimeId =
+          parseResponse(restClient.performRequest(request).getEntity()).path("id").asText();
+      pointInTimeQuery = query;
+      return readNextPointInTimePage();
+    }
+
+    private boolean readNextPointInTimePage() throws IOException {
+      String body =
+          buildPointInTimeQuery(
+              pointInTimeQuery,
+              pointInTimeId,
+              source.spec.getScrollKeepalive(),
+              source.spec.getBatchSize(),
+              searchAfter);
+      // a point in time is bound to its indices, the search must not target any index
+      Request request = new Request("GET", "/_search");
+      request.setEntity(new NStringEntity(body, ContentType.APPLICATION_JSON));
+      JsonNode searchResult = parseResponse(restClient.performRequest(request).getEntity());
+      // the point in time id can change between two searches, always use the most recent one
+      String newPointInTimeId = searchResult.path("pit_id").asText();
+      if (!newPointInTimeId.isEmpty()) {
+        pointInTimeId = newPointInTimeId;
+      }
+      JsonNode hits = searchResult.path("hits").path("hits");
+      if (hits.size() > 0) {
+        searchAfter = hits.get(hits.size() - 1).path("sort");
+      }
+      // a partial page is the last one, this saves a final empty search
+      lastPage = hits.size() < source.spec.getBatchSize();
+      return readNextBatchAndReturnFirstDocument(searchResult);
+    }
+
     private void updateScrollId(JsonNode searchResult) {
       scrollId = searchResult.path("_scroll_id").asText();
     }
@@ -858,6 +1013,13 @@ public class ElasticsearchIO {
       if (batchIterator.hasNext()) {
         current = batchIterator.next();
         return true;
+      } else if (source.spec.isWithPointInTime()) {
+        if (lastPage) {
+          current = null;
+          batchIterator = null;
+          return false;
+        }
+        return readNextPointInTimePage();
       } else {
         String requestBody =
             String.format(
@@ -908,14 +1070,22 @@ public class ElasticsearchIO {
 
     @Override
     public void close() throws IOException {
-      // remove the scroll
-      String requestBody = String.format("{\"scroll_id\" : [\"%s\"]}", scrollId);
-      HttpEntity entity = new NStringEntity(requestBody, ContentType.APPLICATION_JSON);
       try {
-        Request request = new Request("DELETE", "/_search/scroll");
-        request.addParameters(Collections.emptyMap());
-        request.setEntity(entity);
-        restClient.performRequest(request);
+        if (pointInTimeId != null) {
+          // release the point in time
+          String requestBody = String.format("{\"id\" : \"%s\"}", pointInTimeId);
+          Request request = new Request("DELETE", "/_pit");
+          request.setEntity(new NStringEntity(requestBody, ContentType.APPLICATION_JSON));
+          restClient.performRequest(request);
+        } else if (scrollId != null) {
+          // remove the scroll
+          String requestBody = String.format("{\"scroll_id\" : [\"%s\"]}", scrollId);
+          HttpEntity entity = new NStringEntity(requestBody, ContentType.APPLICATION_JSON);
+          Request request = new Request("DELETE", "/_search/scroll");
+          request.addParameters(Collections.emptyMap());
+          request.setEntity(entity);
+          restClient.performRequest(request);
+        }
       } finally {
         if (restClient != null) {
           restClient.close();
@@ -1068,6 +1238,10 @@ public class ElasticsearchIO {
 
     abstract boolean getUsePartialUpdate();
 
+    abstract int getMaxParallelRequests();
+
+    abstract boolean getAdaptiveBatchSize();
+
     abstract Builder builder();
 
     @AutoValue.Builder
@@ -1088,6 +1262,10 @@ public class ElasticsearchIO {
 
       abstract Builder setRetryConfiguration(RetryConfiguration retryConfiguration);
 
+      abstract Builder setMaxParallelRequests(int maxParallelRequests);
+
+      abstract Builder setAdaptiveBatchSize(boolean adaptiveBatchSize);
+
       abstract Write build();
     }
 
@@ -1214,6 +1392,42 @@ public class ElasticsearchIO {
       return builder().setRetryConfiguration(retryConfiguration).build();
     }
 
+    /**
+     * Provide the maximum number of bulk requests sent concurrently to Elasticsearch by each
+     * instance of the writer. Default is 1: a bulk request is sent only once the previous one
+     * completed. With more requests in flight, the next batch is built while the previous ones are
+     * indexed, which hides the latency of the bulk requests. When all the requests are in flight,
+     * the writer waits for one of them to complete, so a slow or overloaded cluster (for instance
+     * while requests are retried on 429 TOO_MANY_REQUESTS errors, see {@link
+     * #withRetryConfiguration(RetryConfiguration)}) slows down the pipeline instead of being
+     * flooded. All the requests are completed at the end of each bundle.
+     *
+     * @param maxParallelRequests maximum number of bulk requests in flight
+     * @return the {@link Write} with the maximum number of parallel requests set
+     */
+    public Write withMaxParallelRequests(int maxParallelRequests) {
+      checkArgument(
+          maxParallelRequests > 0,
+          "maxParallelRequests must be > 0, but was %s",
+          maxParallelRequests);
+      return builder().setMaxParallelRequests(maxParallelRequests).build();
+    }
+
+    /**
+     * Provide an instruction to control whether the batch size in number of documents adapts to
+     * the load of the cluster. When enabled, the batch size is halved each time a bulk request gets
+     * 429 TOO_MANY_REQUESTS errors and increases again by a tenth of {@code withMaxBatchSize()}
+     * after each bulk request indexed without such errors, never exceeding {@code
+     * withMaxBatchSize()}. Batches are still flushed when they reach {@code
+     * withMaxBatchSizeBytes()}. Default is false.
+     *
+     * @param adaptiveBatchSize set to true to adapt the batch size to the load of the cluster
+     * @return the {@link Write} with the adaptive batch size control set
+     */
+    public Write withAdaptiveBatchSize(boolean adaptiveBatchSize) {
+      return builder().setAdaptiveBatchSize(adaptiveBatchSize).build();
+    }
+
     @Override
     public PDone expand(PCollection<String> input) {
       ConnectionConfiguration connectionConfiguration = getConnectionConfiguration();
@@ -1244,6 +1458,11 @@ public class ElasticsearchIO {
       private transient RestClient restClient;
       private ArrayList<String> batch;
       private long currentBatchSizeBytes;
+      // the batch size in number of documents, lowered when Elasticsearch pushes back
+      private transient AtomicLong maxBatchSize;
+      private transient ExecutorService executor;
+      private transient Semaphore parallelRequests;
+      private final List<Future<Void>> pendingRequests = new ArrayList<>();
 
       // Encapsulates the elements which form the metadata for an Elasticsearch bulk operation
       private static class DocumentMetadata implements Serializable {
@@ -1281,6 +1500,18 @@ public class ElasticsearchIO {
                   .withMaxRetries(spec.getRetryConfiguration().getMaxAttempts() - 1)
                   .withMaxCumulativeBackoff(spec.getRetryConfiguration().getMaxDuration());
         }
+
+        maxBatchSize = new AtomicLong(spec.getMaxBatchSize());
+        if (spec.getMaxParallelRequests() > 1) {
+          executor =
+              Executors.newFixedThreadPool(
+                  spec.getMaxParallelRequests(),
+                  new ThreadFactoryBuilder()
+                      .setDaemon(true)
+                      .setNameFormat("ElasticsearchIO-write-%d")
+                      .build());
+          parallelRequests = new Semaphore(spec.getMaxParallelRequests());
+        }
       }
 
       @StartBundle
@@ -1371,7 +1602,7 @@ public class ElasticsearchIO {
         }
 
         currentBatchSizeBytes += document.getBytes(StandardCharsets.UTF_8).length;
-        if (batch.size() >= spec.getMaxBatchSize()
+        if (batch.size() >= maxBatchSize.get()
             || currentBatchSizeBytes >= spec.getMaxBatchSizeBytes()) {
           flushBatch();
         }
@@ -1381,6 +1612,13 @@ public class ElasticsearchIO {
       public void finishBundle(FinishBundleContext context)
           throws IOException, InterruptedException {
         flushBatch();
+        try {
+          while (!pendingRequests.isEmpty()) {
+            waitFor(pendingRequests.remove(0));
+          }
+        } finally {
+          pendingRequests.clear();
+        }
       }
 
       private void flushBatch() throws IOException, InterruptedException {
@@ -1393,6 +1631,53 @@ public class ElasticsearchIO {
         }
         batch.clear();
         currentBatchSizeBytes = 0;
+        String bulkRequestBody = bulkRequest.toString();
+        if (executor == null) {
+          sendBulkRequest(bulkRequestBody);
+          return;
+        }
+
+        // fail fast on the requests that already failed, and wait for a free slot
+        for (Iterator<Future<Void>> it = pendingRequests.iterator(); it.hasNext(); ) {
+          Future<Void> pendingRequest = it.next();
+          if (pendingRequest.isDone()) {
+            it.remove();
+            waitFor(pendingRequest);
+          }
+        }
+        parallelRequests.acquire();
+        try {
+          pendingRequests.add(
+              executor.submit(
+                  () -> {
+                    try {
+                      sendBulkRequest(bulkRequestBody);
+                    } finally {
+                      parallelRequests.release();
+                    }
+                    return null;
+                  }));
+        } catch (RejectedExecutionException e) {
+          parallelRequests.release();
+          throw e;
+        }
+      }
+
+      private static void waitFor(Future<Void> request) throws IOException, InterruptedException {
+        try {
+          request.get();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          throw new IOException(cause);
+        }
+      }
+
+      private void sendBulkRequest(String bulkRequest) throws IOException, InterruptedException {
         Response response;
         HttpEntity responseEntity;
         // Elasticsearch will default to the index/type provided here if none are set in the
@@ -1403,20 +1688,38 @@ public class ElasticsearchIO {
                 "/%s/%s/_bulk",
                 spec.getConnectionConfiguration().getIndex(),
                 spec.getConnectionConfiguration().getType());
-        HttpEntity requestBody =
-            new NStringEntity(bulkRequest.toString(), ContentType.APPLICATION_JSON);
+        HttpEntity requestBody = new NStringEntity(bulkRequest, ContentType.APPLICATION_JSON);
         Request request = new Request("POST", endPoint);
         request.addParameters(Collections.emptyMap());
         request.setEntity(requestBody);
         response = restClient.performRequest(request);
         responseEntity = new BufferedHttpEntity(response.getEntity());
-        if (spec.getRetryConfiguration() != null
-            && spec.getRetryConfiguration().getRetryPredicate().test(responseEntity)) {
+        boolean retry =
+            spec.getRetryConfiguration() != null
+                && spec.getRetryConfiguration().getRetryPredicate().test(responseEntity);
+        if (spec.getAdaptiveBatchSize()) {
+          adaptBatchSize(retry || RetryConfiguration.DEFAULT_RETRY_PREDICATE.test(responseEntity));
+        }
+        if (retry) {
           responseEntity = handleRetry("POST", endPoint, Collections.emptyMap(), requestBody);
         }
         checkForErrors(responseEntity, backendVersion, spec.getUsePartialUpdate());
       }
 
+      /**
+       * Halves the batch size when Elasticsearch pushed back, otherwise increases it by a tenth of
+       * the configured maximum batch size.
+       */
+      private void adaptBatchSize(boolean pushedBack) {
+        long max = spec.getMaxBatchSize();
+        if (pushedBack) {
+          long size = maxBatchSize.updateAndGet(current -> Math.max(1L, current / 2));
+          LOG.warn("Elasticsearch is overloaded, lowering the bulk size to {} documents", size);
+        } else {
+          maxBatchSize.updateAndGet(current -> Math.min(max, current + Math.max(1L, max / 10)));
+        }
+      }
+
       /** retry request based on retry configuration policy. */
       private HttpEntity handleRetry(
           String method, String endpoint, Map<String, String> params, HttpEntity requestBody)
@@ -1444,13 +1747,39 @@ public class ElasticsearchIO {
 
       @Teardown
       public void closeClient() throws IOException {
-        if (restClient != null) {
-          restClient.close();
+        try {
+          if (executor != null) {
+            executor.shutdownNow();
+          }
+        } finally {
+          if (restClient != null) {
+            restClient.close();
+          }
         }
       }
     }
   }
 
+  /** Returns whether the given Elasticsearch version number supports point in time search. */
+  static boolean supportsPointInTime(String versionNumber) {
+    String[] parts = versionNumber.split("\\.");
+    int major = Integer.parseInt(parts[0]);
+    int minor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+    return major > 7 || (major == 7 && minor >= 10);
+  }
+
+  /** Returns the full version number of the backend, e.g. {@code 7.10.2}. */
+  static String getBackendVersionNumber(ConnectionConfiguration connectionConfiguration) {
+    try (RestClient restClient = connectionConfiguration.createClient()) {
+      Request request = new Request("GET", "");
+      Response response = restClient.performRequest(request);
+      JsonNode jsonNode = parseResponse(response.getEntity());
+      return jsonNode.path("version").path("number").asText();
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Cannot get Elasticsearch version", e);
+    }
+  }
+
   static int getBackendVersion(ConnectionConfiguration connectionConfiguration) {
     try (RestClient restClient = connectionConfiguration.createClient()) {
       Request request = new Request("GET", "");
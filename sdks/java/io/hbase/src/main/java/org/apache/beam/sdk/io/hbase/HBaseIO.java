@@ -25,24 +25,33 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.annotation.Nullable;
 import org.apache.beam.sdk.annotations.Experimental;
 import org.apache.beam.sdk.annotations.Experimental.Kind;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.SerializableCoder;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarLongCoder;
 import org.apache.beam.sdk.io.BoundedSource;
 import org.apache.beam.sdk.io.hadoop.SerializableConfiguration;
 import org.apache.beam.sdk.io.range.ByteKey;
 import org.apache.beam.sdk.io.range.ByteKeyRange;
 import org.apache.beam.sdk.io.range.ByteKeyRangeTracker;
 import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.transforms.AsyncLookup;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
@@ -50,14 +59,14 @@ import org.apache.beam.sdk.transforms.display.DisplayData;
 import org.apache.beam.sdk.values.PBegin;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PDone;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HRegionLocation;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Admin;
-import org.apache.hadoop.hbase.client.BufferedMutator;
-import org.apache.hadoop.hbase.client.BufferedMutatorParams;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
@@ -115,8 +124,20 @@ import org.slf4j.LoggerFactory;
  *         .withConfiguration(configuration)
  *         .withTableId("table")
  *         .withFilter(filter));
+ *
+ * // Scan a single column, fetching 1000 rows per RPC without filling the block cache.
+ * p.apply("column read",
+ *     HBaseIO.read()
+ *         .withConfiguration(configuration)
+ *         .withTableId("table")
+ *         .withColumns(family, qualifier)
+ *         .withCaching(1000)
+ *         .withCacheBlocks(false));
  * }</pre>
  *
+ * <p>The table is split by region, and the regions are scanned in parallel. The scans running in a
+ * worker share a single HBase {@link Connection}.
+ *
  * <p>{@link HBaseIO#readAll()} allows to execute multiple {@link Scan}s to multiple {@link Table}s.
  * These queries are encapsulated via an initial {@link PCollection} of {@link Read}s and can be
  * used to create advanced compositional patterns like reading from a Source and then based on the
@@ -131,6 +152,20 @@ import org.slf4j.LoggerFactory;
  * queries.apply("readAll", HBaseIO.readAll().withConfiguration(configuration));
  * }</pre>
  *
+ * <h3>Looking up rows</h3>
+ *
+ * <p>{@link HBaseIO#lookup()} gets the rows of a table by their keys, to enrich each element of a
+ * {@link PCollection} with {@link AsyncLookup}. The keys of the elements are batched into
+ * multi-gets, which are sent concurrently, for example:
+ *
+ * <pre>{@code
+ * PCollection<Event> events = ...;
+ * PCollection<KV<Event, Result>> enriched = events.apply(
+ *     AsyncLookup.of(
+ *         (Event event) -> ByteKey.copyFrom(event.getUserId()),
+ *         HBaseIO.lookup().withConfiguration(configuration).withTableId("users")));
+ * }</pre>
+ *
  * <h3>Writing to HBase</h3>
  *
  * <p>The HBase sink executes a set of row mutations on a single table. It takes as input a {@link
@@ -150,6 +185,11 @@ import org.slf4j.LoggerFactory;
  *         .withTableId("table"));
  * }</pre>
  *
+ * <p>The mutations are sent in batches through a {@link
+ * org.apache.hadoop.hbase.client.BufferedMutator} shared by the writers of the table in a worker,
+ * which sends them once {@link Write#withWriteBufferSize(long)} bytes are buffered, and at the end
+ * of each bundle.
+ *
  * <h3>Experimental</h3>
  *
  * <p>The design of the API for HBaseIO is currently related to the BigtableIO one, it can evolve or
@@ -159,6 +199,7 @@ import org.slf4j.LoggerFactory;
 @Experimental(Kind.SOURCE_SINK)
 public class HBaseIO {
   private static final Logger LOG = LoggerFactory.getLogger(HBaseIO.class);
+  private static final int DEFAULT_LOOKUP_PARALLELISM = 4;
 
   /** Disallow construction of utility class. */
   private HBaseIO() {}
@@ -204,6 +245,38 @@ public class HBaseIO {
       return withScan(scan.setFilter(filter));
     }
 
+    /**
+     * Sets the number of rows fetched from a region server per RPC. Larger values make scans
+     * faster at the cost of memory on both sides.
+     */
+    public Read withCaching(int caching) {
+      checkArgument(caching > 0, "caching must be > 0, but was %s", caching);
+      return withScan(scan.setCaching(caching));
+    }
+
+    /**
+     * Sets whether the blocks read by the scan are added to the block cache of the region servers.
+     * Full table scans usually should not, so that they do not evict the blocks of other readers.
+     */
+    public Read withCacheBlocks(boolean cacheBlocks) {
+      return withScan(scan.setCacheBlocks(cacheBlocks));
+    }
+
+    /**
+     * Reads only the given columns of the family, or the whole family if no qualifier is given.
+     * May be called once per family.
+     */
+    public Read withColumns(byte[] family, byte[]... qualifiers) {
+      checkArgument(family != null, "family cannot be null");
+      if (qualifiers.length == 0) {
+        return withScan(scan.addFamily(family));
+      }
+      for (byte[] qualifier : qualifiers) {
+        scan.addColumn(family, qualifier);
+      }
+      return withScan(scan);
+    }
+
     /** Reads only rows in the specified range. */
     public Read withKeyRange(ByteKeyRange keyRange) {
       checkArgument(keyRange != null, "keyRange cannot be null");
@@ -472,6 +545,8 @@ public class HBaseIO {
   private static class HBaseReader extends BoundedSource.BoundedReader<Result> {
     private HBaseSource source;
     private Connection connection;
+    private Configuration connectionConfiguration;
+    private Table table;
     private ResultScanner scanner;
     private Iterator<Result> iter;
     private Result current;
@@ -492,11 +567,12 @@ public class HBaseIO {
       HBaseSource source = getCurrentSource();
       Configuration configuration = source.read.configuration;
       String tableId = source.read.tableId;
-      connection = ConnectionFactory.createConnection(configuration);
+      connection = HBaseSharedConnection.acquire(configuration);
+      connectionConfiguration = configuration;
       TableName tableName = TableName.valueOf(tableId);
-      Table table = connection.getTable(tableName);
       // [BEAM-2319] We have to clone the Scan because the underlying scanner may mutate it.
       Scan scanClone = new Scan(source.read.scan);
+      table = connection.getTable(tableName);
       scanner = table.getScanner(scanClone);
       iter = scanner.iterator();
       return advance();
@@ -530,8 +606,12 @@ public class HBaseIO {
         scanner.close();
         scanner = null;
       }
+      if (table != null) {
+        table.close();
+        table = null;
+      }
       if (connection != null) {
-        connection.close();
+        HBaseSharedConnection.release(connectionConfiguration);
         connection = null;
       }
     }
@@ -585,6 +665,116 @@ public class HBaseIO {
     }
   }
 
+  /**
+   * Creates an uninitialized {@link HBaseIO.Lookup}. Before use, the {@code Lookup} must be
+   * initialized with a {@link HBaseIO.Lookup#withConfiguration(Configuration)} that specifies the
+   * HBase instance, and a {@link HBaseIO.Lookup#withTableId tableId} that specifies which table to
+   * look up.
+   */
+  public static Lookup lookup() {
+    return new Lookup(null /* SerializableConfiguration */, "", DEFAULT_LOOKUP_PARALLELISM);
+  }
+
+  /**
+   * A {@link AsyncLookup.LookupFn} getting the rows of a table by their keys, to enrich a {@link
+   * PCollection} with {@link AsyncLookup}. Each batch of keys is fetched with a single multi-get,
+   * and up to {@link #withParallelism(int) parallelism} batches are fetched at once. Keys without a
+   * row have no value.
+   */
+  public static class Lookup implements AsyncLookup.LookupFn<ByteKey, Result> {
+    /** Looks up the HBase instance indicated by the given configuration. */
+    public Lookup withConfiguration(Configuration configuration) {
+      checkArgument(configuration != null, "configuration cannot be null");
+      return new Lookup(new SerializableConfiguration(configuration), tableId, parallelism);
+    }
+
+    /** Looks up the specified table. */
+    public Lookup withTableId(String tableId) {
+      checkArgument(tableId != null, "tableId cannot be null");
+      return new Lookup(serializableConfiguration, tableId, parallelism);
+    }
+
+    /** Sets the number of threads of a DoFn instance sending multi-gets. Defaults to 4. */
+    public Lookup withParallelism(int parallelism) {
+      checkArgument(parallelism > 0, "parallelism must be > 0, but was %s", parallelism);
+      return new Lookup(serializableConfiguration, tableId, parallelism);
+    }
+
+    private Lookup(
+        SerializableConfiguration serializableConfiguration, String tableId, int parallelism) {
+      this.serializableConfiguration = serializableConfiguration;
+      this.tableId = tableId;
+      this.parallelism = parallelism;
+    }
+
+    @Override
+    public void setup() throws IOException {
+      checkArgument(serializableConfiguration != null, "withConfiguration() is required");
+      checkArgument(tableId != null && !tableId.isEmpty(), "withTableId() is required");
+      connection = HBaseSharedConnection.acquire(serializableConfiguration.get());
+      executor =
+          Executors.newFixedThreadPool(
+              parallelism,
+              new ThreadFactoryBuilder().setDaemon(true).setNameFormat("HBaseIO-%d").build());
+    }
+
+    @Override
+    public CompletionStage<Map<ByteKey, Result>> lookup(List<ByteKey> keys) {
+      List<Get> gets = new ArrayList<>(keys.size());
+      for (ByteKey key : keys) {
+        gets.add(new Get(key.getBytes()));
+      }
+      return CompletableFuture.supplyAsync(
+          () -> {
+            Result[] results;
+            try (Table table = connection.getTable(TableName.valueOf(tableId))) {
+              results = table.get(gets);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+            Map<ByteKey, Result> values = new HashMap<>();
+            for (int i = 0; i < results.length; i++) {
+              if (!results[i].isEmpty()) {
+                values.put(keys.get(i), results[i]);
+              }
+            }
+            return values;
+          },
+          executor);
+    }
+
+    @Override
+    public void teardown() throws IOException {
+      if (executor != null) {
+        executor.shutdown();
+        executor = null;
+      }
+      if (connection != null) {
+        HBaseSharedConnection.release(serializableConfiguration.get());
+        connection = null;
+      }
+    }
+
+    public Configuration getConfiguration() {
+      return serializableConfiguration.get();
+    }
+
+    public String getTableId() {
+      return tableId;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("HBaseIO.Lookup(table=%s)", tableId);
+    }
+
+    private final SerializableConfiguration serializableConfiguration;
+    private final String tableId;
+    private final int parallelism;
+    @Nullable private transient Connection connection;
+    @Nullable private transient ExecutorService executor;
+  }
+
   /**
    * Creates an uninitialized {@link HBaseIO.Write}. Before use, the {@code Write} must be
    * initialized with a {@link HBaseIO.Write#withConfiguration(Configuration)} that specifies the
@@ -592,7 +782,7 @@ public class HBaseIO {
    * which table to write.
    */
   public static Write write() {
-    return new Write(null /* Configuration */, "");
+    return new Write(null /* Configuration */, "", 0 /* writeBufferSize */);
   }
 
   /**
@@ -605,18 +795,32 @@ public class HBaseIO {
     /** Writes to the HBase instance indicated by the* given Configuration. */
     public Write withConfiguration(Configuration configuration) {
       checkArgument(configuration != null, "configuration cannot be null");
-      return new Write(configuration, tableId);
+      return new Write(configuration, tableId, writeBufferSize);
     }
 
     /** Writes to the specified table. */
     public Write withTableId(String tableId) {
       checkArgument(tableId != null, "tableId cannot be null");
-      return new Write(configuration, tableId);
+      return new Write(configuration, tableId, writeBufferSize);
+    }
+
+    /**
+     * Sets the size in bytes of the buffered mutations that triggers sending them to the region
+     * servers. Defaults to {@code hbase.client.write.buffer} of the configuration.
+     *
+     * <p>The mutations of all the writers of a table in a JVM go through the same buffer, which is
+     * also flushed at the end of each bundle.
+     */
+    public Write withWriteBufferSize(long writeBufferSize) {
+      checkArgument(
+          writeBufferSize > 0, "writeBufferSize must be > 0, but was %s", writeBufferSize);
+      return new Write(configuration, tableId, writeBufferSize);
     }
 
-    private Write(Configuration configuration, String tableId) {
+    private Write(Configuration configuration, String tableId, long writeBufferSize) {
       this.configuration = configuration;
       this.tableId = tableId;
+      this.writeBufferSize = writeBufferSize;
     }
 
     @Override
@@ -639,6 +843,9 @@ public class HBaseIO {
       super.populateDisplayData(builder);
       builder.add(DisplayData.item("configuration", configuration.toString()));
       builder.add(DisplayData.item("tableId", tableId));
+      if (writeBufferSize > 0) {
+        builder.add(DisplayData.item("writeBufferSize", writeBufferSize));
+      }
     }
 
     public Configuration getConfiguration() {
@@ -649,6 +856,10 @@ public class HBaseIO {
       return tableId;
     }
 
+    public long getWriteBufferSize() {
+      return writeBufferSize;
+    }
+
     @Override
     public boolean equals(Object o) {
       if (this == o) {
@@ -659,12 +870,13 @@ public class HBaseIO {
       }
       Write write = (Write) o;
       return configuration.toString().equals(write.configuration.toString())
-          && Objects.equals(tableId, write.tableId);
+          && Objects.equals(tableId, write.tableId)
+          && writeBufferSize == write.writeBufferSize;
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(configuration, tableId);
+      return Objects.hash(configuration, tableId, writeBufferSize);
     }
 
     /**
@@ -684,25 +896,29 @@ public class HBaseIO {
       public SerializationProxy(Write write) {
         configuration = write.configuration;
         tableId = write.tableId;
+        writeBufferSize = write.writeBufferSize;
       }
 
       private void writeObject(ObjectOutputStream out) throws IOException {
         SerializableCoder.of(SerializableConfiguration.class)
             .encode(new SerializableConfiguration(this.configuration), out);
         StringUtf8Coder.of().encode(this.tableId, out);
+        VarLongCoder.of().encode(this.writeBufferSize, out);
       }
 
       private void readObject(ObjectInputStream in) throws IOException {
         this.configuration = SerializableCoder.of(SerializableConfiguration.class).decode(in).get();
         this.tableId = StringUtf8Coder.of().decode(in);
+        this.writeBufferSize = VarLongCoder.of().decode(in);
       }
 
       Object readResolve() {
-        return HBaseIO.write().withConfiguration(configuration).withTableId(tableId);
+        return new Write(configuration, tableId, writeBufferSize);
       }
 
       private Configuration configuration;
       private String tableId;
+      private long writeBufferSize;
     }
 
     @SuppressFBWarnings("SE_BAD_FIELD")
@@ -710,6 +926,8 @@ public class HBaseIO {
 
     private final String tableId;
 
+    private final long writeBufferSize;
+
     private class HBaseWriterFn extends DoFn<Mutation, Void> {
 
       HBaseWriterFn(Write write) {
@@ -720,13 +938,12 @@ public class HBaseIO {
 
       @Setup
       public void setup() throws Exception {
-        connection = ConnectionFactory.createConnection(configuration);
+        mutator = HBaseSharedConnection.acquireMutator(configuration, tableId, writeBufferSize);
       }
 
       @StartBundle
       public void startBundle(StartBundleContext c) throws IOException {
-        BufferedMutatorParams params = new BufferedMutatorParams(TableName.valueOf(tableId));
-        mutator = connection.getBufferedMutator(params);
+        failureCountAtStart = mutator.getFailureCount();
         recordsWritten = 0;
       }
 
@@ -738,20 +955,16 @@ public class HBaseIO {
 
       @FinishBundle
       public void finishBundle() throws Exception {
-        mutator.flush();
+        mutator.flush(failureCountAtStart);
         LOG.debug("Wrote {} records", recordsWritten);
       }
 
       @Teardown
       public void tearDown() throws Exception {
         if (mutator != null) {
-          mutator.close();
+          HBaseSharedConnection.releaseMutator(mutator);
           mutator = null;
         }
-        if (connection != null) {
-          connection.close();
-          connection = null;
-        }
       }
 
       @Override
@@ -761,9 +974,9 @@ public class HBaseIO {
 
       private final Write write;
       private long recordsWritten;
+      private long failureCountAtStart;
 
-      private transient Connection connection;
-      private transient BufferedMutator mutator;
+      private transient HBaseSharedConnection.SharedMutator mutator;
     }
   }
 }
@@ -17,7 +17,10 @@
  */
 package org.apache.beam.sdk.io.hbase;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.apache.beam.sdk.io.hbase.HBaseIO.Read;
 import org.apache.beam.sdk.io.range.ByteKey;
 import org.apache.beam.sdk.io.range.ByteKeyRange;
@@ -25,39 +28,55 @@ import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.DoFn.BoundedPerElement;
 import org.apache.beam.sdk.transforms.splittabledofn.ByteKeyRangeTracker;
 import org.apache.beam.sdk.transforms.splittabledofn.RestrictionTracker;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HRegionLocation;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Connection;
-import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Table;
 
-/** A SplittableDoFn to read from HBase. */
+/**
+ * A SplittableDoFn to read from HBase.
+ *
+ * <p>The configurations come with the elements, so the shared connection of a configuration is
+ * acquired for its first element, and kept until the DoFn instance is torn down.
+ */
 @BoundedPerElement
 class HBaseReadSplittableDoFn extends DoFn<Read, Result> {
+  // The acquired connections and their configuration, by configuration key.
+  private transient Map<String, Connection> connections;
+  private transient Map<String, Configuration> configurations;
+
   HBaseReadSplittableDoFn() {}
 
+  @Setup
+  public void setup() {
+    connections = new HashMap<>();
+    configurations = new HashMap<>();
+  }
+
   @ProcessElement
   public void processElement(
       @Element Read read,
       OutputReceiver<Result> out,
       RestrictionTracker<ByteKeyRange, ByteKey> tracker)
       throws Exception {
-    Connection connection = ConnectionFactory.createConnection(read.getConfiguration());
-    TableName tableName = TableName.valueOf(read.getTableId());
-    Table table = connection.getTable(tableName);
-    final ByteKeyRange range = tracker.currentRestriction();
-    try (ResultScanner scanner =
-        table.getScanner(HBaseUtils.newScanInRange(read.getScan(), range))) {
-      for (Result result : scanner) {
-        ByteKey key = ByteKey.copyFrom(result.getRow());
-        if (!tracker.tryClaim(key)) {
-          return;
+    // The restrictions of the regions are processed concurrently, and share the connection.
+    Connection connection = getConnection(read.getConfiguration());
+    try (Table table = connection.getTable(TableName.valueOf(read.getTableId()))) {
+      final ByteKeyRange range = tracker.currentRestriction();
+      try (ResultScanner scanner =
+          table.getScanner(HBaseUtils.newScanInRange(read.getScan(), range))) {
+        for (Result result : scanner) {
+          ByteKey key = ByteKey.copyFrom(result.getRow());
+          if (!tracker.tryClaim(key)) {
+            return;
+          }
+          out.output(result);
         }
-        out.output(result);
+        tracker.tryClaim(ByteKey.EMPTY);
       }
-      tracker.tryClaim(ByteKey.EMPTY);
     }
   }
 
@@ -70,9 +89,9 @@ class HBaseReadSplittableDoFn extends DoFn<Read, Result> {
   public void splitRestriction(
       @Element Read read, @Restriction ByteKeyRange range, OutputReceiver<ByteKeyRange> receiver)
       throws Exception {
-    Connection connection = ConnectionFactory.createConnection(read.getConfiguration());
     List<HRegionLocation> regionLocations =
-        HBaseUtils.getRegionLocations(connection, read.getTableId(), range);
+        HBaseUtils.getRegionLocations(
+            getConnection(read.getConfiguration()), read.getTableId(), range);
     List<ByteKeyRange> splitRanges =
         HBaseUtils.getRanges(regionLocations, read.getTableId(), range);
     for (ByteKeyRange splitRange : splitRanges) {
@@ -84,4 +103,36 @@ class HBaseReadSplittableDoFn extends DoFn<Read, Result> {
   public ByteKeyRangeTracker newTracker(@Restriction ByteKeyRange range) {
     return ByteKeyRangeTracker.of(range);
   }
+
+  @Teardown
+  public void teardown() throws IOException {
+    IOException failure = null;
+    for (Configuration configuration : configurations.values()) {
+      try {
+        HBaseSharedConnection.release(configuration);
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    connections.clear();
+    configurations.clear();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private Connection getConnection(Configuration configuration) throws IOException {
+    String key = HBaseSharedConnection.keyOf(configuration);
+    Connection connection = connections.get(key);
+    if (connection == null) {
+      connection = HBaseSharedConnection.acquire(configuration);
+      connections.put(key, connection);
+      configurations.put(key, configuration);
+    }
+    return connection;
+  }
 }
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.io.hbase;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+
+/**
+ * Reference-counted HBase {@link Connection}s and {@link BufferedMutator}s, shared by the readers
+ * and writers of a JVM. A connection is shared by all users of the same configuration, so that the
+ * regions scanned concurrently on a worker do not each set up a connection. A mutator is shared by
+ * all writers of a table, so that writes are batched across DoFn instances and bundles.
+ */
+class HBaseSharedConnection {
+
+  private static final Map<String, SharedConnection> CONNECTIONS = new HashMap<>();
+  private static final Map<String, SharedMutator> MUTATORS = new HashMap<>();
+
+  private HBaseSharedConnection() {}
+
+  /** Returns the shared connection for the configuration. Must be given back with release. */
+  static synchronized Connection acquire(Configuration configuration) throws IOException {
+    String key = keyOf(configuration);
+    SharedConnection shared = CONNECTIONS.get(key);
+    if (shared == null) {
+      shared = new SharedConnection(ConnectionFactory.createConnection(configuration));
+      CONNECTIONS.put(key, shared);
+    }
+    shared.references++;
+    return shared.connection;
+  }
+
+  /** Gives back a connection from {@link #acquire}, closing it once it is not used anymore. */
+  static synchronized void release(Configuration configuration) throws IOException {
+    String key = keyOf(configuration);
+    SharedConnection shared = CONNECTIONS.get(key);
+    if (shared != null && --shared.references == 0) {
+      CONNECTIONS.remove(key);
+      shared.connection.close();
+    }
+  }
+
+  /**
+   * Returns the shared mutator for the table. {@code writeBufferSize} is the size of the buffered
+   * mutations that triggers a flush, or 0 for the default of the configuration. Must be given back
+   * with {@link #releaseMutator}.
+   */
+  static synchronized SharedMutator acquireMutator(
+      Configuration configuration, String tableId, long writeBufferSize) throws IOException {
+    String key = keyOf(configuration) + "/" + tableId + "/" + writeBufferSize;
+    SharedMutator shared = MUTATORS.get(key);
+    if (shared == null) {
+      Connection connection = acquire(configuration);
+      try {
+        shared = new SharedMutator(key, configuration, tableId);
+        BufferedMutatorParams params =
+            new BufferedMutatorParams(TableName.valueOf(tableId)).listener(shared::onFailure);
+        if (writeBufferSize > 0) {
+          params.writeBufferSize(writeBufferSize);
+        }
+        shared.mutator = connection.getBufferedMutator(params);
+      } catch (IOException | RuntimeException e) {
+        release(configuration);
+        throw e;
+      }
+      MUTATORS.put(key, shared);
+    }
+    shared.references++;
+    return shared;
+  }
+
+  /** Gives back a mutator from {@link #acquireMutator}, flushing and closing it once unused. */
+  static synchronized void releaseMutator(SharedMutator shared) throws IOException {
+    if (--shared.references == 0) {
+      MUTATORS.remove(shared.key);
+      try {
+        shared.mutator.close();
+      } finally {
+        release(shared.configuration);
+      }
+    }
+  }
+
+  /** Identifies a configuration by its properties, as {@link Configuration} has no equals. */
+  static String keyOf(Configuration configuration) {
+    Map<String, String> properties = new TreeMap<>();
+    for (Map.Entry<String, String> property : configuration) {
+      properties.put(property.getKey(), property.getValue());
+    }
+    return properties.toString();
+  }
+
+  private static class SharedConnection {
+    private final Connection connection;
+    private int references = 0;
+
+    SharedConnection(Connection connection) {
+      this.connection = connection;
+    }
+  }
+
+  /**
+   * A {@link BufferedMutator} shared by several writers. The mutations of a writer may be sent
+   * along with those of other writers, so a failure to write them may be reported to any writer.
+   * Instead, failures are counted, and {@link #flush(long)} fails if any write failed since the
+   * writer read {@link #getFailureCount()}, which is enough to retry the bundle since mutations are
+   * idempotent.
+   */
+  static class SharedMutator {
+    private final String key;
+    private final Configuration configuration;
+    private final String tableId;
+    private final AtomicLong failures = new AtomicLong();
+    private volatile RetriesExhaustedWithDetailsException lastFailure;
+    private BufferedMutator mutator;
+    private int references = 0;
+
+    private SharedMutator(String key, Configuration configuration, String tableId) {
+      this.key = key;
+      this.configuration = configuration;
+      this.tableId = tableId;
+    }
+
+    private void onFailure(RetriesExhaustedWithDetailsException e, BufferedMutator mutator) {
+      lastFailure = e;
+      failures.incrementAndGet();
+    }
+
+    long getFailureCount() {
+      return failures.get();
+    }
+
+    void mutate(Mutation mutation) throws IOException {
+      mutator.mutate(mutation);
+    }
+
+    /** Flushes all buffered mutations, failing if a write failed since {@code failureCount}. */
+    void flush(long failureCount) throws IOException {
+      mutator.flush();
+      if (failures.get() != failureCount) {
+        throw new IOException("Failed to write mutations to table " + tableId, lastFailure);
+      }
+    }
+  }
+}
@@ -17,8 +17,14 @@
  */
 package org.apache.beam.sdk.io.hbase;
 
+import com.google.cloud.Timestamp;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import org.apache.beam.sdk.PipelineResult;
 import org.apache.beam.sdk.io.GenerateSequence;
 import org.apache.beam.sdk.io.common.HashingFn;
 import org.apache.beam.sdk.io.common.IOTestPipelineOptions;
@@ -28,6 +34,10 @@ import org.apache.beam.sdk.options.Description;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
 import org.apache.beam.sdk.testing.PAssert;
 import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.testutils.NamedTestResult;
+import org.apache.beam.sdk.testutils.metrics.IOITMetrics;
+import org.apache.beam.sdk.testutils.metrics.MetricsReader;
+import org.apache.beam.sdk.testutils.metrics.TimeMonitor;
 import org.apache.beam.sdk.transforms.Combine;
 import org.apache.beam.sdk.transforms.Count;
 import org.apache.beam.sdk.transforms.DoFn;
@@ -83,6 +93,7 @@ public class HBaseIOIT {
   private static final String TABLE_NAME = "IOTesting";
   private static final byte[] COLUMN_FAMILY = Bytes.toBytes("TestData");
   private static final byte[] COLUMN_HASH = Bytes.toBytes("hash");
+  private static final String NAMESPACE = HBaseIOIT.class.getName();
   private static Admin admin;
   private static HBasePipelineOptions options;
 
@@ -118,25 +129,31 @@ public class HBaseIOIT {
   /** Tests writing then reading data for a HBase database. */
   @Test
   public void testWriteThenRead() {
-    runWrite();
-    runRead();
+    PipelineResult writeResult = runWrite();
+    PipelineResult readResult = runRead();
+    collectAndPublishMetrics(writeResult, readResult);
   }
 
   /** Writes the test dataset to HBase. */
-  private void runWrite() {
+  private PipelineResult runWrite() {
     pipelineWrite
         .apply("Generate Sequence", GenerateSequence.from(0).to((long) numberOfRows))
         .apply("Prepare TestRows", ParDo.of(new TestRow.DeterministicallyConstructTestRowFn()))
         .apply("Prepare mutations", ParDo.of(new ConstructMutations()))
+        .apply("Collect write time", ParDo.of(new TimeMonitor<>(NAMESPACE, "write_time")))
         .apply("Write to HBase", HBaseIO.write().withConfiguration(conf).withTableId(TABLE_NAME));
 
-    pipelineWrite.run().waitUntilFinish();
+    PipelineResult result = pipelineWrite.run();
+    result.waitUntilFinish();
+    return result;
   }
 
   /** Read the test dataset from hbase and validate its contents. */
-  private void runRead() {
+  private PipelineResult runRead() {
     PCollection<Result> tableRows =
-        pipelineRead.apply(HBaseIO.read().withConfiguration(conf).withTableId(TABLE_NAME));
+        pipelineRead
+            .apply(HBaseIO.read().withConfiguration(conf).withTableId(TABLE_NAME))
+            .apply("Collect read time", ParDo.of(new TimeMonitor<>(NAMESPACE, "read_time")));
 
     PAssert.thatSingleton(tableRows.apply("Count All", Count.<Result>globally()))
         .isEqualTo((long) numberOfRows);
@@ -149,7 +166,55 @@ public class HBaseIOIT {
     PAssert.that(consolidatedHashcode)
         .containsInAnyOrder(TestRow.getExpectedHashForRowCount(numberOfRows));
 
-    pipelineRead.run().waitUntilFinish();
+    PipelineResult result = pipelineRead.run();
+    result.waitUntilFinish();
+    return result;
+  }
+
+  private void collectAndPublishMetrics(PipelineResult writeResult, PipelineResult readResult) {
+    String uuid = UUID.randomUUID().toString();
+    String timestamp = Timestamp.now().toString();
+
+    IOITMetrics writeMetrics =
+        new IOITMetrics(
+            getSuppliers(uuid, timestamp, "write_time", "write_throughput"),
+            writeResult,
+            NAMESPACE,
+            uuid,
+            timestamp);
+    IOITMetrics readMetrics =
+        new IOITMetrics(
+            getSuppliers(uuid, timestamp, "read_time", "read_throughput"),
+            readResult,
+            NAMESPACE,
+            uuid,
+            timestamp);
+    writeMetrics.publish(options.getBigQueryDataset(), options.getBigQueryTable());
+    readMetrics.publish(options.getBigQueryDataset(), options.getBigQueryTable());
+  }
+
+  /** Reports the time of a step in seconds, and its throughput in rows per second. */
+  private static Set<Function<MetricsReader, NamedTestResult>> getSuppliers(
+      String uuid, String timestamp, String timeMetricName, String throughputMetricName) {
+    Set<Function<MetricsReader, NamedTestResult>> suppliers = new HashSet<>();
+    suppliers.add(
+        reader ->
+            NamedTestResult.create(
+                uuid, timestamp, timeMetricName, getSeconds(reader, timeMetricName)));
+    suppliers.add(
+        reader ->
+            NamedTestResult.create(
+                uuid,
+                timestamp,
+                throughputMetricName,
+                numberOfRows / getSeconds(reader, timeMetricName)));
+    return suppliers;
+  }
+
+  private static double getSeconds(MetricsReader reader, String timeMetricName) {
+    long start = reader.getStartTimeMetric(timeMetricName);
+    long end = reader.getEndTimeMetric(timeMetricName);
+    return (end - start) / 1e3;
   }
 
   /** Produces test rows. */
@@ -24,8 +24,10 @@ import static org.apache.beam.sdk.testing.SourceTestUtils.assertSplitAtFractionS
 import static org.apache.beam.sdk.transforms.display.DisplayDataMatchers.hasDisplayItem;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -40,10 +42,15 @@ import org.apache.beam.sdk.io.range.ByteKeyRange;
 import org.apache.beam.sdk.testing.PAssert;
 import org.apache.beam.sdk.testing.SourceTestUtils;
 import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.AsyncLookup;
 import org.apache.beam.sdk.transforms.Count;
 import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.DoFn.OutputReceiver;
+import org.apache.beam.sdk.transforms.MapElements;
 import org.apache.beam.sdk.transforms.display.DisplayData;
+import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.TypeDescriptors;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HBaseTestingUtility;
@@ -68,6 +75,7 @@ import org.apache.hadoop.hbase.filter.RegexStringComparator;
 import org.apache.hadoop.hbase.filter.RowFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.hamcrest.Matchers;
+import org.joda.time.Instant;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Rule;
@@ -264,6 +272,59 @@ public class HBaseIOTest {
         HBaseIO.read().withConfiguration(conf).withTableId(table).withFilter(filter), true, 20);
   }
 
+  /** Tests reading all rows of a single column, with scanner caching and without block caching. */
+  @Test
+  public void testReadingWithScanOptions() throws Exception {
+    final String table = tmpTable.getName();
+    final int numRows = 1001;
+    createAndWriteData(table, numRows);
+
+    runReadTestLength(
+        HBaseIO.read()
+            .withConfiguration(conf)
+            .withTableId(table)
+            .withColumns(COLUMN_FAMILY, COLUMN_NAME)
+            .withCaching(100)
+            .withCacheBlocks(false),
+        true,
+        numRows);
+  }
+
+  /** Tests looking up rows by key, including a key without a row. */
+  @Test
+  public void testLookup() throws Exception {
+    final String table = tmpTable.getName();
+    createAndWriteData(table, 10);
+
+    List<String> rows = new ArrayList<>();
+    List<KV<String, String>> expected = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      String row = StringUtils.leftPad("_" + i, 21, String.format("%X", i));
+      rows.add(row);
+      expected.add(KV.of(row, String.valueOf(i)));
+    }
+    rows.add("missing");
+
+    PCollection<KV<String, String>> names =
+        p.apply(Create.of(rows))
+            .apply(
+                AsyncLookup.of(
+                        (String row) -> ByteKey.copyFrom(Bytes.toBytes(row)),
+                        HBaseIO.lookup().withConfiguration(conf).withTableId(table))
+                    .withBatchSize(3))
+            .apply(
+                MapElements.into(
+                        TypeDescriptors.kvs(TypeDescriptors.strings(), TypeDescriptors.strings()))
+                    .via(
+                        (KV<String, Result> kv) ->
+                            KV.of(
+                                kv.getKey(),
+                                Bytes.toString(
+                                    kv.getValue().getValue(COLUMN_FAMILY, COLUMN_NAME)))));
+    PAssert.that(names).containsInAnyOrder(expected);
+    p.run().waitUntilFinish();
+  }
+
   /**
    * Tests reading all rows using key ranges. Tests a prefix [), a suffix (], and a restricted range
    * [] and that some properties hold across them.
@@ -338,6 +399,42 @@ public class HBaseIOTest {
         441);
   }
 
+  /** Tests that the splittable DoFn keeps its connection across restrictions until teardown. */
+  @Test
+  public void testReadSplittableDoFnReleasesConnectionOnTeardown() throws Exception {
+    final String table = tmpTable.getName();
+    createAndWriteData(table, 100);
+    // A configuration of its own, so that no other reader shares its connection.
+    Configuration configuration = new Configuration(conf);
+    configuration.set("beam.hbaseio.test.id", UUID.randomUUID().toString());
+    HBaseIO.Read read = HBaseIO.read().withConfiguration(configuration).withTableId(table);
+
+    List<ByteKeyRange> ranges = new ArrayList<>();
+    OutputReceiver<ByteKeyRange> receiver =
+        new OutputReceiver<ByteKeyRange>() {
+          @Override
+          public void output(ByteKeyRange range) {
+            ranges.add(range);
+          }
+
+          @Override
+          public void outputWithTimestamp(ByteKeyRange range, Instant timestamp) {
+            ranges.add(range);
+          }
+        };
+    HBaseReadSplittableDoFn fn = new HBaseReadSplittableDoFn();
+    fn.setup();
+    fn.splitRestriction(read, ByteKeyRange.ALL_KEYS, receiver);
+    fn.splitRestriction(read, ByteKeyRange.ALL_KEYS, receiver);
+    assertFalse(ranges.isEmpty());
+
+    Connection connection = HBaseSharedConnection.acquire(configuration);
+    HBaseSharedConnection.release(configuration);
+    assertFalse(connection.isClosed());
+    fn.teardown();
+    assertTrue(connection.isClosed());
+  }
+
   /** Tests dynamic work rebalancing exhaustively. */
   @Test
   public void testReadingSplitAtFractionExhaustive() throws Exception {
@@ -409,6 +506,26 @@ public class HBaseIOTest {
     assertEquals(numMutations, results.size());
   }
 
+  /** Tests that mutations buffered across several flushes of a small buffer are all written. */
+  @Test
+  public void testWritingWithWriteBufferSize() throws Exception {
+    final String table = tmpTable.getName();
+    final String key = "key";
+    final String value = "value";
+    final int numMutations = 100;
+
+    createTable(table);
+
+    p.apply("multiple rows", Create.of(makeMutations(key, value, numMutations)))
+        .apply(
+            "write",
+            HBaseIO.write().withConfiguration(conf).withTableId(table).withWriteBufferSize(1024));
+    p.run().waitUntilFinish();
+
+    List<Result> results = readTable(table, new Scan());
+    assertEquals(numMutations, results.size());
+  }
+
   /** Tests that when writing to a non-existent table, the write fails. */
   @Test
   public void testWritingFailsTableDoesNotExist() {
@@ -443,6 +560,9 @@ public class HBaseIOTest {
     HBaseIO.Write write = HBaseIO.write().withTableId(table).withConfiguration(conf);
     DisplayData displayData = DisplayData.from(write);
     assertThat(displayData, hasDisplayItem("tableId", table));
+
+    DisplayData bufferedDisplayData = DisplayData.from(write.withWriteBufferSize(1024));
+    assertThat(bufferedDisplayData, hasDisplayItem("writeBufferSize", 1024L));
   }
 
   // HBase helper methods
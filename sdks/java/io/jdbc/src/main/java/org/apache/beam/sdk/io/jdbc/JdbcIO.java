@@ -28,11 +28,19 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -41,7 +49,9 @@ import javax.sql.DataSource;
 import org.apache.beam.sdk.annotations.Experimental;
 import org.apache.beam.sdk.annotations.Experimental.Kind;
 import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.KvCoder;
 import org.apache.beam.sdk.coders.RowCoder;
+import org.apache.beam.sdk.coders.VarLongCoder;
 import org.apache.beam.sdk.options.ValueProvider;
 import org.apache.beam.sdk.schemas.NoSuchSchemaException;
 import org.apache.beam.sdk.schemas.Schema;
@@ -62,12 +72,16 @@ import org.apache.beam.sdk.util.BackOff;
 import org.apache.beam.sdk.util.BackOffUtils;
 import org.apache.beam.sdk.util.FluentBackoff;
 import org.apache.beam.sdk.util.Sleeper;
+import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PBegin;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PCollectionView;
 import org.apache.beam.sdk.values.PDone;
 import org.apache.beam.sdk.values.Row;
 import org.apache.beam.sdk.values.TypeDescriptor;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.ByteStreams;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.CountingOutputStream;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.dbcp2.BasicDataSource;
 import org.apache.commons.dbcp2.DataSourceConnectionFactory;
 import org.apache.commons.dbcp2.PoolableConnectionFactory;
@@ -75,6 +89,7 @@ import org.apache.commons.dbcp2.PoolingDataSource;
 import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.joda.time.Duration;
+import org.joda.time.ReadableInstant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -147,7 +162,22 @@ import org.slf4j.LoggerFactory;
  * );
  * }</pre>
  *
- * By default, the provided function instantiates a DataSource per execution thread. In some
+ * <p>Large tables can be read in parallel with {@link #readWithPartitions()}, which splits the
+ * range of a numeric, date or timestamp column into a number of partitions, reads each partition
+ * with its own query and returns the result as {@link Row}s with an inferred schema:
+ *
+ * <pre>{@code
+ * pipeline.apply(JdbcIO.readWithPartitions()
+ *   .withDataSourceConfiguration(JdbcIO.DataSourceConfiguration.create(
+ *       "org.postgresql.Driver", "jdbc:postgresql://hostname:5432/mydb",
+ *       "username", "password"))
+ *   .withTable("Person")
+ *   .withPartitionColumn("id")
+ *   .withNumPartitions(100)
+ * );
+ * }</pre>
+ *
+ * <p>By default, the provided function instantiates a DataSource per execution thread. In some
  * circumstances, such as DataSources that have a pool of connections, this can quickly overwhelm
  * the database by requesting too many connections. In that case you should make the DataSource a
  * static singleton so it gets instantiated only once per JVM.
@@ -179,6 +209,28 @@ import org.slf4j.LoggerFactory;
  *    );
  * }</pre>
  *
+ * <p>Statements are executed in batches of {@link Write#withBatchSize(long) batchSize} statements,
+ * which can also be bounded by their encoded size in bytes with {@link
+ * Write#withMaxBatchSizeBytes(long)}. An {@code INSERT ... VALUES (...)} statement can be rewritten
+ * to insert several rows per statement with {@link Write#withRowsPerStatement(int)}, and several
+ * batches can be written concurrently on separate connections of the {@link DataSource} with {@link
+ * Write#withMaxConcurrentBatches(int)}, so that the commit of a batch overlaps with building the
+ * next one:
+ *
+ * <pre>{@code
+ * pipeline
+ *   .apply(...)
+ *   .apply(JdbcIO.<Row>write()
+ *      .withDataSourceConfiguration(JdbcIO.DataSourceConfiguration.create(
+ *            "org.postgresql.Driver", "jdbc:postgresql://hostname:5432/mydb"))
+ *      .withTable("Person")
+ *      .withUpsert(JdbcIO.UpsertDialect.POSTGRES, "id")
+ *      .withRowsPerStatement(100)
+ *      .withMaxBatchSizeBytes(4 * 1024 * 1024)
+ *      .withMaxConcurrentBatches(4)
+ *    );
+ * }</pre>
+ *
  * <p>NB: in case of transient failures, Beam runners may execute parts of JdbcIO.Write multiple
  * times for fault tolerance. Because of that, you should avoid using {@code INSERT} statements,
  * since that risks duplicating records in the database, or failing due to primary key conflicts.
@@ -226,8 +278,21 @@ public class JdbcIO {
         .build();
   }
 
+  /**
+   * Read Beam {@link Row}s from a table of a JDBC data source, splitting the range of a partition
+   * column into several partitions which are read in parallel.
+   */
+  @Experimental(Kind.SCHEMAS)
+  public static ReadWithPartitions readWithPartitions() {
+    return new AutoValue_JdbcIO_ReadWithPartitions.Builder()
+        .setNumPartitions(DEFAULT_NUM_PARTITIONS)
+        .setFetchSize(DEFAULT_FETCH_SIZE)
+        .build();
+  }
+
   private static final long DEFAULT_BATCH_SIZE = 1000L;
   private static final int DEFAULT_FETCH_SIZE = 50_000;
+  private static final int DEFAULT_NUM_PARTITIONS = 200;
 
   /**
    * Write data to a JDBC datasource.
@@ -241,10 +306,23 @@ public class JdbcIO {
   public static <T> WriteVoid<T> writeVoid() {
     return new AutoValue_JdbcIO_WriteVoid.Builder<T>()
         .setBatchSize(DEFAULT_BATCH_SIZE)
+        .setRowsPerStatement(1)
+        .setMaxConcurrentBatches(1)
         .setRetryStrategy(new DefaultRetryStrategy())
         .build();
   }
 
+  /**
+   * The upsert syntax used by {@link Write#withUpsert(UpsertDialect, String...)} when the statement
+   * is generated from the schema of the input.
+   */
+  public enum UpsertDialect {
+    /** {@code INSERT ... ON CONFLICT (keys) DO UPDATE SET ...}, as supported by PostgreSQL. */
+    POSTGRES,
+    /** {@code INSERT ... ON DUPLICATE KEY UPDATE ...}, as supported by MySQL and MariaDB. */
+    MYSQL
+  }
+
   /**
    * This is the default {@link Predicate} we use to detect DeadLock. It basically test if the
    * {@link SQLException#getSQLState()} equals 40001. 40001 is the SQL State used by most of
@@ -545,15 +623,7 @@ public class JdbcIO {
     }
 
     private Schema inferBeamSchema() {
-      DataSource ds = getDataSourceProviderFn().apply(null);
-      try (Connection conn = ds.getConnection();
-          PreparedStatement statement =
-              conn.prepareStatement(
-                  getQuery().get(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
-        return SchemaUtil.toBeamSchema(statement.getMetaData());
-      } catch (SQLException e) {
-        throw new BeamSchemaInferenceException("Failed to infer Beam schema", e);
-      }
+      return JdbcIO.inferBeamSchema(getDataSourceProviderFn().apply(null), getQuery().get());
     }
 
     @Override
@@ -566,6 +636,278 @@ public class JdbcIO {
     }
   }
 
+  private static Schema inferBeamSchema(DataSource dataSource, String query) {
+    try (Connection conn = dataSource.getConnection();
+        PreparedStatement statement =
+            conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+      return SchemaUtil.toBeamSchema(statement.getMetaData());
+    } catch (SQLException e) {
+      throw new BeamSchemaInferenceException("Failed to infer Beam schema", e);
+    }
+  }
+
+  /**
+   * Implementation of {@link #readWithPartitions()}.
+   *
+   * <p>The range of the partition column is either provided with {@link #withLowerBound} and {@link
+   * #withUpperBound}, or computed at execution time with a {@code MIN}/{@code MAX} query. It is
+   * split into {@link #withNumPartitions numPartitions} ranges that are distributed across workers
+   * and read with one query each. Rows with a {@code NULL} partition column are not read.
+   */
+  @AutoValue
+  @Experimental(Kind.SCHEMAS)
+  public abstract static class ReadWithPartitions extends PTransform<PBegin, PCollection<Row>> {
+    @Nullable
+    abstract SerializableFunction<Void, DataSource> getDataSourceProviderFn();
+
+    @Nullable
+    abstract String getTable();
+
+    @Nullable
+    abstract String getPartitionColumn();
+
+    abstract int getNumPartitions();
+
+    @Nullable
+    abstract Long getLowerBound();
+
+    @Nullable
+    abstract Long getUpperBound();
+
+    abstract int getFetchSize();
+
+    abstract Builder toBuilder();
+
+    @AutoValue.Builder
+    abstract static class Builder {
+      abstract Builder setDataSourceProviderFn(
+          SerializableFunction<Void, DataSource> dataSourceProviderFn);
+
+      abstract Builder setTable(String table);
+
+      abstract Builder setPartitionColumn(String partitionColumn);
+
+      abstract Builder setNumPartitions(int numPartitions);
+
+      abstract Builder setLowerBound(Long lowerBound);
+
+      abstract Builder setUpperBound(Long upperBound);
+
+      abstract Builder setFetchSize(int fetchSize);
+
+      abstract ReadWithPartitions build();
+    }
+
+    public ReadWithPartitions withDataSourceConfiguration(DataSourceConfiguration config) {
+      return withDataSourceProviderFn(new DataSourceProviderFromDataSourceConfiguration(config));
+    }
+
+    public ReadWithPartitions withDataSourceProviderFn(
+        SerializableFunction<Void, DataSource> dataSourceProviderFn) {
+      return toBuilder().setDataSourceProviderFn(dataSourceProviderFn).build();
+    }
+
+    /** The table (or any relation usable in a {@code FROM} clause) to read from. */
+    public ReadWithPartitions withTable(String table) {
+      checkArgument(table != null, "table can not be null");
+      return toBuilder().setTable(table).build();
+    }
+
+    /** The numeric, {@code DATE} or {@code TIMESTAMP} column used to partition the table. */
+    public ReadWithPartitions withPartitionColumn(String partitionColumn) {
+      checkArgument(partitionColumn != null, "partitionColumn can not be null");
+      return toBuilder().setPartitionColumn(partitionColumn).build();
+    }
+
+    /** The number of partitions, and therefore queries, the table is read with. Default is 200. */
+    public ReadWithPartitions withNumPartitions(int numPartitions) {
+      checkArgument(numPartitions > 0, "numPartitions must be > 0, but was %s", numPartitions);
+      return toBuilder().setNumPartitions(numPartitions).build();
+    }
+
+    /** The inclusive lower bound of a numeric partition column. */
+    public ReadWithPartitions withLowerBound(long lowerBound) {
+      return toBuilder().setLowerBound(lowerBound).build();
+    }
+
+    /** The inclusive upper bound of a numeric partition column. */
+    public ReadWithPartitions withUpperBound(long upperBound) {
+      return toBuilder().setUpperBound(upperBound).build();
+    }
+
+    /** The inclusive lower bound of a {@code DATE} or {@code TIMESTAMP} partition column. */
+    public ReadWithPartitions withLowerBound(ReadableInstant lowerBound) {
+      checkArgument(lowerBound != null, "lowerBound can not be null");
+      return withLowerBound(lowerBound.getMillis());
+    }
+
+    /** The inclusive upper bound of a {@code DATE} or {@code TIMESTAMP} partition column. */
+    public ReadWithPartitions withUpperBound(ReadableInstant upperBound) {
+      checkArgument(upperBound != null, "upperBound can not be null");
+      return withUpperBound(upperBound.getMillis());
+    }
+
+    /**
+     * This method is used to set the size of the data that is going to be fetched and loaded in
+     * memory per every database call, for each partition. Please refer to: {@link
+     * java.sql.Statement#setFetchSize(int)}
+     */
+    public ReadWithPartitions withFetchSize(int fetchSize) {
+      checkArgument(fetchSize > 0, "fetch size must be > 0");
+      return toBuilder().setFetchSize(fetchSize).build();
+    }
+
+    @Override
+    public PCollection<Row> expand(PBegin input) {
+      checkArgument(getTable() != null, "withTable() is required");
+      checkArgument(getPartitionColumn() != null, "withPartitionColumn() is required");
+      checkArgument(
+          (getDataSourceProviderFn() != null),
+          "withDataSourceConfiguration() or withDataSourceProviderFn() is required");
+      if (getLowerBound() != null && getUpperBound() != null) {
+        checkArgument(
+            getLowerBound() <= getUpperBound(),
+            "lowerBound (%s) must be <= upperBound (%s)",
+            getLowerBound(),
+            getUpperBound());
+      }
+
+      Schema schema =
+          inferBeamSchema(
+              getDataSourceProviderFn().apply(null),
+              String.format("SELECT * FROM %s", getTable()));
+      Schema.Field partitionField =
+          schema.getFields().stream()
+              .filter(field -> field.getName().equalsIgnoreCase(getPartitionColumn()))
+              .findFirst()
+              .orElseThrow(
+                  () ->
+                      new IllegalArgumentException(
+                          String.format(
+                              "Partition column %s not found in table %s",
+                              getPartitionColumn(), getTable())));
+
+      KvCoder<Long, Long> rangeCoder = KvCoder.of(VarLongCoder.of(), VarLongCoder.of());
+      PCollection<KV<Long, Long>> bounds;
+      if (getLowerBound() != null && getUpperBound() != null) {
+        bounds =
+            input
+                .apply("Bounds", Create.of(KV.of(getLowerBound(), getUpperBound())))
+                .setCoder(rangeCoder);
+      } else {
+        bounds =
+            input
+                .apply(Create.of((Void) null))
+                .apply(
+                    "Compute bounds",
+                    ParDo.of(
+                        new ComputeBoundsFn(
+                            getDataSourceProviderFn(),
+                            getTable(),
+                            getPartitionColumn(),
+                            getLowerBound(),
+                            getUpperBound())))
+                .setCoder(rangeCoder);
+      }
+
+      PCollection<Row> rows =
+          bounds
+              .apply("Partition", ParDo.of(new PartitionFn(getNumPartitions())))
+              .setCoder(rangeCoder)
+              .apply(Reshuffle.viaRandomKey())
+              .apply(
+                  "Read partitions",
+                  JdbcIO.<KV<Long, Long>, Row>readAll()
+                      .withDataSourceProviderFn(getDataSourceProviderFn())
+                      .withQuery(JdbcUtil.generatePartitionQuery(getTable(), getPartitionColumn()))
+                      .withParameterSetter(
+                          JdbcUtil.getPartitionRangeSetter(partitionField.getType()))
+                      .withCoder(RowCoder.of(schema))
+                      .withRowMapper(SchemaUtil.BeamRowMapper.of(schema))
+                      .withFetchSize(getFetchSize())
+                      .withOutputParallelization(false));
+      rows.setRowSchema(schema);
+      return rows;
+    }
+
+    @Override
+    public void populateDisplayData(DisplayData.Builder builder) {
+      super.populateDisplayData(builder);
+      builder.add(DisplayData.item("table", getTable()));
+      builder.add(DisplayData.item("partitionColumn", getPartitionColumn()));
+      builder.add(DisplayData.item("numPartitions", getNumPartitions()));
+      builder.addIfNotNull(DisplayData.item("lowerBound", getLowerBound()));
+      builder.addIfNotNull(DisplayData.item("upperBound", getUpperBound()));
+      if (getDataSourceProviderFn() instanceof HasDisplayData) {
+        ((HasDisplayData) getDataSourceProviderFn()).populateDisplayData(builder);
+      }
+    }
+  }
+
+  /**
+   * A {@link DoFn} computing the missing bounds of the partition column of a {@link
+   * ReadWithPartitions}. Outputs nothing if the table has no rows with a non-null partition column.
+   */
+  private static class ComputeBoundsFn extends DoFn<Void, KV<Long, Long>> {
+    private final SerializableFunction<Void, DataSource> dataSourceProviderFn;
+    private final String table;
+    private final String partitionColumn;
+    @Nullable private final Long lowerBound;
+    @Nullable private final Long upperBound;
+
+    private ComputeBoundsFn(
+        SerializableFunction<Void, DataSource> dataSourceProviderFn,
+        String table,
+        String partitionColumn,
+        @Nullable Long lowerBound,
+        @Nullable Long upperBound) {
+      this.dataSourceProviderFn = dataSourceProviderFn;
+      this.table = table;
+      this.partitionColumn = partitionColumn;
+      this.lowerBound = lowerBound;
+      this.upperBound = upperBound;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext context) throws Exception {
+      String query =
+          String.format("SELECT MIN(%s), MAX(%s) FROM %s", partitionColumn, partitionColumn, table);
+      try (Connection connection = dataSourceProviderFn.apply(null).getConnection();
+          PreparedStatement statement = connection.prepareStatement(query);
+          ResultSet resultSet = statement.executeQuery()) {
+        if (!resultSet.next() || resultSet.getObject(1) == null) {
+          LOG.info("No rows to read from {}", table);
+          return;
+        }
+        long lower =
+            lowerBound != null ? lowerBound : JdbcUtil.toPartitionBound(resultSet.getObject(1));
+        long upper =
+            upperBound != null ? upperBound : JdbcUtil.toPartitionBound(resultSet.getObject(2));
+        if (lower <= upper) {
+          context.output(KV.of(lower, upper));
+        }
+      }
+    }
+  }
+
+  /** A {@link DoFn} splitting the bounds of a partition column into ranges. */
+  private static class PartitionFn extends DoFn<KV<Long, Long>, KV<Long, Long>> {
+    private final int numPartitions;
+
+    private PartitionFn(int numPartitions) {
+      this.numPartitions = numPartitions;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext context) {
+      KV<Long, Long> bounds = context.element();
+      for (KV<Long, Long> range :
+          JdbcUtil.partitionRange(bounds.getKey(), bounds.getValue(), numPartitions)) {
+        context.output(range);
+      }
+    }
+  }
+
   /** Implementation of {@link #read}. */
   @AutoValue
   public abstract static class Read<T> extends PTransform<PBegin, PCollection<T>> {
@@ -964,11 +1306,31 @@ public class JdbcIO {
       return new Write(inner.withBatchSize(batchSize));
     }
 
+    /** See {@link WriteVoid#withMaxBatchSizeBytes(long)}. */
+    public Write<T> withMaxBatchSizeBytes(long maxBatchSizeBytes) {
+      return new Write(inner.withMaxBatchSizeBytes(maxBatchSizeBytes));
+    }
+
+    /** See {@link WriteVoid#withRowsPerStatement(int)}. */
+    public Write<T> withRowsPerStatement(int rowsPerStatement) {
+      return new Write(inner.withRowsPerStatement(rowsPerStatement));
+    }
+
+    /** See {@link WriteVoid#withMaxConcurrentBatches(int)}. */
+    public Write<T> withMaxConcurrentBatches(int maxConcurrentBatches) {
+      return new Write(inner.withMaxConcurrentBatches(maxConcurrentBatches));
+    }
+
     /** See {@link WriteVoid#withRetryStrategy(RetryStrategy)}. */
     public Write<T> withRetryStrategy(RetryStrategy retryStrategy) {
       return new Write(inner.withRetryStrategy(retryStrategy));
     }
 
+    /** See {@link WriteVoid#withUpsert(UpsertDialect, String...)}. */
+    public Write<T> withUpsert(UpsertDialect dialect, String... keyColumns) {
+      return new Write(inner.withUpsert(dialect, keyColumns));
+    }
+
     /** See {@link WriteVoid#withTable(String)}. */
     public Write<T> withTable(String table) {
       return new Write(inner.withTable(table));
@@ -1010,13 +1372,17 @@ public class JdbcIO {
             inner.getTable() != null, "table cannot be null if statement is not provided");
         Schema schema = input.getSchema();
         List<SchemaUtil.FieldWithIndex> fields = getFilteredFields(schema);
+        List<Schema.Field> tableFields =
+            fields.stream().map(SchemaUtil.FieldWithIndex::getField).collect(Collectors.toList());
         inner =
             inner.withStatement(
-                JdbcUtil.generateStatement(
-                    inner.getTable(),
-                    fields.stream()
-                        .map(SchemaUtil.FieldWithIndex::getField)
-                        .collect(Collectors.toList())));
+                inner.getUpsertDialect() == null
+                    ? JdbcUtil.generateStatement(inner.getTable(), tableFields)
+                    : JdbcUtil.generateUpsertStatement(
+                        inner.getUpsertDialect(),
+                        inner.getTable(),
+                        tableFields,
+                        inner.getUpsertKeyColumns()));
         inner =
             inner.withPreparedStatementSetter(
                 new AutoGeneratedPreparedStatementSetter(fields, input.getToRowFunction()));
@@ -1147,6 +1513,13 @@ public class JdbcIO {
 
     abstract long getBatchSize();
 
+    @Nullable
+    abstract Long getMaxBatchSizeBytes();
+
+    abstract int getRowsPerStatement();
+
+    abstract int getMaxConcurrentBatches();
+
     @Nullable
     abstract PreparedStatementSetter<T> getPreparedStatementSetter();
 
@@ -1156,6 +1529,12 @@ public class JdbcIO {
     @Nullable
     abstract String getTable();
 
+    @Nullable
+    abstract UpsertDialect getUpsertDialect();
+
+    @Nullable
+    abstract List<String> getUpsertKeyColumns();
+
     abstract Builder<T> toBuilder();
 
     @AutoValue.Builder
@@ -1167,12 +1546,22 @@ public class JdbcIO {
 
       abstract Builder<T> setBatchSize(long batchSize);
 
+      abstract Builder<T> setMaxBatchSizeBytes(Long maxBatchSizeBytes);
+
+      abstract Builder<T> setRowsPerStatement(int rowsPerStatement);
+
+      abstract Builder<T> setMaxConcurrentBatches(int maxConcurrentBatches);
+
       abstract Builder<T> setPreparedStatementSetter(PreparedStatementSetter<T> setter);
 
       abstract Builder<T> setRetryStrategy(RetryStrategy deadlockPredicate);
 
       abstract Builder<T> setTable(String table);
 
+      abstract Builder<T> setUpsertDialect(UpsertDialect upsertDialect);
+
+      abstract Builder<T> setUpsertKeyColumns(List<String> upsertKeyColumns);
+
       abstract WriteVoid<T> build();
     }
 
@@ -1207,6 +1596,67 @@ public class JdbcIO {
       return toBuilder().setBatchSize(batchSize).build();
     }
 
+    /**
+     * Provide a maximum size in bytes for the batch, in addition to {@link #withBatchSize(long)}.
+     * The size of an element is the size of its encoding with the {@link Coder} of the input. By
+     * default, batches are only bounded by their number of statements.
+     *
+     * @param maxBatchSizeBytes maximum batch size in bytes
+     */
+    public WriteVoid<T> withMaxBatchSizeBytes(long maxBatchSizeBytes) {
+      checkArgument(
+          maxBatchSizeBytes > 0, "maxBatchSizeBytes must be > 0, but was %s", maxBatchSizeBytes);
+      return toBuilder().setMaxBatchSizeBytes(maxBatchSizeBytes).build();
+    }
+
+    /**
+     * Rewrite an {@code INSERT ... VALUES (...)} statement so that each executed statement inserts
+     * up to {@code rowsPerStatement} rows with a multi-row {@code VALUES (...), (...)} clause.
+     * Default is 1. Statements which can not be rewritten, e.g. because they have parameters
+     * outside of their {@code VALUES} tuple, are executed one row at a time.
+     *
+     * <p>Some drivers can do this rewriting themselves, e.g. with the {@code
+     * reWriteBatchedInserts} property of the PostgreSQL driver or the {@code
+     * rewriteBatchedStatements} property of the MySQL driver.
+     */
+    public WriteVoid<T> withRowsPerStatement(int rowsPerStatement) {
+      checkArgument(
+          rowsPerStatement > 0, "rowsPerStatement must be > 0, but was %s", rowsPerStatement);
+      return toBuilder().setRowsPerStatement(rowsPerStatement).build();
+    }
+
+    /**
+     * Provide the maximum number of batches each {@link DoFn} instance executes concurrently.
+     * Default is 1, which executes and commits each batch before accepting more elements.
+     *
+     * <p>With more than one concurrent batch, each batch is executed and committed on its own
+     * connection, so the {@link DataSource} should be a pool able to provide that many connections
+     * (for instance the one built from a {@link DataSourceConfiguration}). The order in which the
+     * batches of a bundle are committed is not defined.
+     */
+    public WriteVoid<T> withMaxConcurrentBatches(int maxConcurrentBatches) {
+      checkArgument(
+          maxConcurrentBatches > 0,
+          "maxConcurrentBatches must be > 0, but was %s",
+          maxConcurrentBatches);
+      return toBuilder().setMaxConcurrentBatches(maxConcurrentBatches).build();
+    }
+
+    /**
+     * When the statement is generated from the schema of the input and {@link #withTable(String)},
+     * generate an upsert statement in the given dialect instead of a plain insert, so that rows
+     * with the same {@code keyColumns} as an existing row update it. This makes writes idempotent
+     * when runners retry bundles.
+     */
+    public WriteVoid<T> withUpsert(UpsertDialect dialect, String... keyColumns) {
+      checkArgument(dialect != null, "dialect can not be null");
+      checkArgument(keyColumns != null, "keyColumns can not be null");
+      return toBuilder()
+          .setUpsertDialect(dialect)
+          .setUpsertKeyColumns(Arrays.asList(keyColumns))
+          .build();
+    }
+
     /**
      * When a SQL exception occurs, {@link Write} uses this {@link RetryStrategy} to determine if it
      * will retry the statements. If {@link RetryStrategy#apply(SQLException)} returns {@code true},
@@ -1231,12 +1681,13 @@ public class JdbcIO {
           (getDataSourceProviderFn() != null),
           "withDataSourceConfiguration() or withDataSourceProviderFn() is required");
 
-      return input.apply(ParDo.of(new WriteFn<>(this)));
+      return input.apply(ParDo.of(new WriteFn<>(this, input.getCoder())));
     }
 
     private static class WriteFn<T> extends DoFn<T, Void> {
 
       private final WriteVoid<T> spec;
+      private final Coder<T> coder;
 
       private static final int MAX_RETRIES = 5;
       private static final FluentBackoff BUNDLE_WRITE_BACKOFF =
@@ -1247,22 +1698,54 @@ public class JdbcIO {
       private DataSource dataSource;
       private Connection connection;
       private PreparedStatement preparedStatement;
-      private final List<T> records = new ArrayList<>();
-
-      public WriteFn(WriteVoid<T> spec) {
+      private String statement;
+      @Nullable private String multiRowStatement;
+      private int parametersPerRow;
+      private List<T> records = new ArrayList<>();
+      private long recordsSizeBytes;
+      private ExecutorService executor;
+      private Semaphore concurrentBatches;
+      private final List<Future<Void>> pendingBatches = new ArrayList<>();
+
+      public WriteFn(WriteVoid<T> spec, Coder<T> coder) {
         this.spec = spec;
+        this.coder = coder;
       }
 
       @Setup
       public void setup() {
         dataSource = spec.getDataSourceProviderFn().apply(null);
+        statement = spec.getStatement().get();
+        if (spec.getRowsPerStatement() > 1) {
+          multiRowStatement =
+              JdbcUtil.generateMultiRowStatement(statement, spec.getRowsPerStatement());
+          if (multiRowStatement == null) {
+            LOG.warn(
+                "Statement {} can not be rewritten to insert multiple rows, "
+                    + "rows are inserted one at a time",
+                statement);
+          }
+          parametersPerRow = JdbcUtil.countParameters(statement);
+        }
+        if (spec.getMaxConcurrentBatches() > 1) {
+          executor =
+              Executors.newFixedThreadPool(
+                  spec.getMaxConcurrentBatches(),
+                  new ThreadFactoryBuilder()
+                      .setDaemon(true)
+                      .setNameFormat("JdbcIO-write-%d")
+                      .build());
+          concurrentBatches = new Semaphore(spec.getMaxConcurrentBatches());
+        }
       }
 
       @StartBundle
       public void startBundle() throws Exception {
-        connection = dataSource.getConnection();
-        connection.setAutoCommit(false);
-        preparedStatement = connection.prepareStatement(spec.getStatement().get());
+        if (executor == null) {
+          connection = dataSource.getConnection();
+          connection.setAutoCommit(false);
+          preparedStatement = connection.prepareStatement(statement);
+        }
       }
 
       @ProcessElement
@@ -1270,12 +1753,24 @@ public class JdbcIO {
         T record = context.element();
 
         records.add(record);
+        if (spec.getMaxBatchSizeBytes() != null) {
+          recordsSizeBytes += sizeOf(record);
+        }
 
-        if (records.size() >= spec.getBatchSize()) {
-          executeBatch();
+        if (records.size() >= spec.getBatchSize()
+            || (spec.getMaxBatchSizeBytes() != null
+                && recordsSizeBytes >= spec.getMaxBatchSizeBytes())) {
+          flush();
         }
       }
 
+      private long sizeOf(T record) throws IOException {
+        CountingOutputStream outputStream =
+            new CountingOutputStream(ByteStreams.nullOutputStream());
+        coder.encode(record, outputStream);
+        return outputStream.getCount();
+      }
+
       private void processRecord(T record, PreparedStatement preparedStatement) {
         try {
           preparedStatement.clearParameters();
@@ -1288,53 +1783,168 @@ public class JdbcIO {
 
       @FinishBundle
       public void finishBundle() throws Exception {
-        executeBatch();
         try {
-          if (preparedStatement != null) {
-            preparedStatement.close();
+          flush();
+          while (!pendingBatches.isEmpty()) {
+            waitFor(pendingBatches.remove(0));
           }
         } finally {
-          if (connection != null) {
-            connection.close();
+          cancelPendingBatches();
+          try {
+            if (preparedStatement != null) {
+              preparedStatement.close();
+            }
+          } finally {
+            if (connection != null) {
+              connection.close();
+            }
           }
         }
       }
 
-      private void executeBatch() throws SQLException, IOException, InterruptedException {
+      @Teardown
+      public void teardown() {
+        if (executor != null) {
+          executor.shutdownNow();
+        }
+      }
+
+      private void flush() throws Exception {
         if (records.isEmpty()) {
           return;
         }
+        List<T> batch = records;
+        records = new ArrayList<>();
+        recordsSizeBytes = 0;
+        if (executor == null) {
+          executeBatch(connection, batch);
+          return;
+        }
+
+        // fail fast on the batches that already failed, and wait for a free slot
+        try {
+          for (Iterator<Future<Void>> it = pendingBatches.iterator(); it.hasNext(); ) {
+            Future<Void> pendingBatch = it.next();
+            if (pendingBatch.isDone()) {
+              it.remove();
+              waitFor(pendingBatch);
+            }
+          }
+        } catch (Exception e) {
+          cancelPendingBatches();
+          throw e;
+        }
+        Semaphore permits = concurrentBatches;
+        permits.acquire();
+        try {
+          pendingBatches.add(
+              executor.submit(
+                  () -> {
+                    try (Connection batchConnection = dataSource.getConnection()) {
+                      batchConnection.setAutoCommit(false);
+                      executeBatch(batchConnection, batch);
+                    } finally {
+                      permits.release();
+                    }
+                    return null;
+                  }));
+        } catch (RejectedExecutionException e) {
+          permits.release();
+          throw e;
+        }
+      }
+
+      /**
+       * Cancels the batches still in progress once a batch failed, since the bundle is retried as a
+       * whole. The batches which are cancelled before they start never release their permits, so
+       * the following batches use new permits.
+       */
+      private void cancelPendingBatches() {
+        if (pendingBatches.isEmpty()) {
+          return;
+        }
+        for (Future<Void> pendingBatch : pendingBatches) {
+          pendingBatch.cancel(true);
+        }
+        pendingBatches.clear();
+        concurrentBatches = new Semaphore(spec.getMaxConcurrentBatches());
+      }
+
+      private static void waitFor(Future<Void> batch) throws Exception {
+        try {
+          batch.get();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof Exception) {
+            throw (Exception) cause;
+          }
+          throw e;
+        }
+      }
+
+      private void executeBatch(Connection connection, List<T> records)
+          throws SQLException, IOException, InterruptedException {
         Sleeper sleeper = Sleeper.DEFAULT;
         BackOff backoff = BUNDLE_WRITE_BACKOFF.backoff();
         while (true) {
-          try (PreparedStatement preparedStatement =
-              connection.prepareStatement(spec.getStatement().get())) {
-            try {
-              // add each record in the statement batch
-              for (T record : records) {
-                processRecord(record, preparedStatement);
+          try {
+            // add each record in the statement batches and execute them
+            writeRecords(connection, records);
+            // commit the changes
+            connection.commit();
+            break;
+          } catch (SQLException exception) {
+            if (!spec.getRetryStrategy().apply(exception)) {
+              throw exception;
+            }
+            LOG.warn("Deadlock detected, retrying", exception);
+            // clean up the connection state
+            connection.rollback();
+            if (!BackOffUtils.next(sleeper, backoff)) {
+              // we tried the max number of times
+              throw exception;
+            }
+          }
+        }
+      }
+
+      private void writeRecords(Connection connection, List<T> records) throws SQLException {
+        int multiRowRecords = 0;
+        if (multiRowStatement != null) {
+          int rowsPerStatement = spec.getRowsPerStatement();
+          multiRowRecords = records.size() - records.size() % rowsPerStatement;
+          if (multiRowRecords > 0) {
+            try (PreparedStatement preparedStatement =
+                connection.prepareStatement(multiRowStatement)) {
+              for (int i = 0; i < multiRowRecords; i += rowsPerStatement) {
+                preparedStatement.clearParameters();
+                for (int row = 0; row < rowsPerStatement; row++) {
+                  setParameters(
+                      records.get(i + row),
+                      JdbcUtil.withParameterOffset(preparedStatement, row * parametersPerRow));
+                }
+                preparedStatement.addBatch();
               }
-              // execute the batch
               preparedStatement.executeBatch();
-              // commit the changes
-              connection.commit();
-              break;
-            } catch (SQLException exception) {
-              if (!spec.getRetryStrategy().apply(exception)) {
-                throw exception;
-              }
-              LOG.warn("Deadlock detected, retrying", exception);
-              // clean up the statement batch and the connection state
-              preparedStatement.clearBatch();
-              connection.rollback();
-              if (!BackOffUtils.next(sleeper, backoff)) {
-                // we tried the max number of times
-                throw exception;
-              }
             }
           }
         }
-        records.clear();
+        if (multiRowRecords < records.size()) {
+          try (PreparedStatement preparedStatement = connection.prepareStatement(statement)) {
+            for (T record : records.subList(multiRowRecords, records.size())) {
+              processRecord(record, preparedStatement);
+            }
+            preparedStatement.executeBatch();
+          }
+        }
+      }
+
+      private void setParameters(T record, PreparedStatement preparedStatement) {
+        try {
+          spec.getPreparedStatementSetter().setParameters(record, preparedStatement);
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
       }
     }
   }
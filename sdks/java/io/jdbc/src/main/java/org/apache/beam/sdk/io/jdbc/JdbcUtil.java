@@ -17,18 +17,27 @@
  */
 package org.apache.beam.sdk.io.jdbc;
 
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
 import java.sql.Date;
 import java.sql.JDBCType;
+import java.sql.PreparedStatement;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import javax.annotation.Nullable;
 import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.values.KV;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
 import org.joda.time.DateTime;
 
@@ -50,6 +59,229 @@ class JdbcUtil {
     return String.format("INSERT INTO %s(%s) VALUES(%s)", tableName, fieldNames, valuePlaceholder);
   }
 
+  /**
+   * Generates an insert statement based on {@link Schema.Field} which updates the existing row when
+   * a row with the same key already exists, using the upsert syntax of the given dialect.
+   */
+  static String generateUpsertStatement(
+      JdbcIO.UpsertDialect dialect,
+      String tableName,
+      List<Schema.Field> fields,
+      List<String> keyColumns) {
+    for (String keyColumn : keyColumns) {
+      checkArgument(
+          fields.stream().anyMatch(field -> field.getName().equalsIgnoreCase(keyColumn)),
+          "Key column %s is not a column of table %s",
+          keyColumn,
+          tableName);
+    }
+    List<String> updatedColumns =
+        fields.stream()
+            .map(Schema.Field::getName)
+            .filter(name -> keyColumns.stream().noneMatch(name::equalsIgnoreCase))
+            .collect(Collectors.toList());
+    String insert = generateStatement(tableName, fields);
+
+    switch (dialect) {
+      case POSTGRES:
+        checkArgument(!keyColumns.isEmpty(), "POSTGRES upserts require at least one key column");
+        String conflictTarget = String.join(", ", keyColumns);
+        if (updatedColumns.isEmpty()) {
+          return String.format("%s ON CONFLICT (%s) DO NOTHING", insert, conflictTarget);
+        }
+        return String.format(
+            "%s ON CONFLICT (%s) DO UPDATE SET %s",
+            insert,
+            conflictTarget,
+            updatedColumns.stream()
+                .map(name -> String.format("%s = EXCLUDED.%s", name, name))
+                .collect(Collectors.joining(", ")));
+      case MYSQL:
+        // MySQL resolves conflicts on any unique key, the key columns are only excluded from the
+        // update.
+        List<String> assignedColumns =
+            updatedColumns.isEmpty()
+                ? Collections.singletonList(fields.get(0).getName())
+                : updatedColumns;
+        return String.format(
+            "%s ON DUPLICATE KEY UPDATE %s",
+            insert,
+            assignedColumns.stream()
+                .map(name -> String.format("%s = VALUES(%s)", name, name))
+                .collect(Collectors.joining(", ")));
+      default:
+        throw new IllegalArgumentException("Unsupported upsert dialect " + dialect);
+    }
+  }
+
+  private static final Pattern INSERT_VALUES_PATTERN =
+      Pattern.compile(
+          "^\\s*INSERT\\s.*?\\bVALUES\\s*\\(", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+  /**
+   * Rewrites an {@code INSERT ... VALUES (...) [...]} statement into a statement inserting {@code
+   * rows} rows at once, by repeating its {@code VALUES} tuple. Returns {@code null} if the
+   * statement can not be rewritten, e.g. because it is not an insert statement or because it has
+   * parameters outside of its {@code VALUES} tuple.
+   */
+  @Nullable
+  static String generateMultiRowStatement(String statement, int rows) {
+    checkArgument(rows > 0, "rows must be > 0, but was %s", rows);
+    Matcher matcher = INSERT_VALUES_PATTERN.matcher(statement);
+    if (!matcher.find()) {
+      return null;
+    }
+    int tupleStart = matcher.end() - 1;
+    int tupleEnd = findClosingParenthesis(statement, tupleStart);
+    if (tupleEnd < 0) {
+      return null;
+    }
+    String tuple = statement.substring(tupleStart, tupleEnd + 1);
+    if (countParameters(tuple) != countParameters(statement)) {
+      return null;
+    }
+    return statement.substring(0, tupleStart)
+        + String.join(", ", Collections.nCopies(rows, tuple))
+        + statement.substring(tupleEnd + 1);
+  }
+
+  /** Counts the {@code ?} parameter placeholders of a statement, ignoring quoted literals. */
+  static int countParameters(String statement) {
+    int count = 0;
+    char quote = 0;
+    for (int i = 0; i < statement.length(); i++) {
+      char c = statement.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"') {
+        quote = c;
+      } else if (c == '?') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static int findClosingParenthesis(String statement, int openingParenthesis) {
+    int depth = 0;
+    char quote = 0;
+    for (int i = openingParenthesis; i < statement.length(); i++) {
+      char c = statement.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"') {
+        quote = c;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')' && --depth == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns a view of a {@link PreparedStatement} whose parameter indices are shifted by {@code
+   * offset}, so that a {@link JdbcIO.PreparedStatementSetter} can set the parameters of the n-th
+   * row of a multi-row statement. {@link PreparedStatement#clearParameters()} is ignored by the
+   * view.
+   */
+  static PreparedStatement withParameterOffset(PreparedStatement statement, int offset) {
+    if (offset == 0) {
+      return statement;
+    }
+    return new ParameterOffsetPreparedStatement(statement, offset);
+  }
+
+  /** Generates a select statement reading the rows of one partition of a table. */
+  static String generatePartitionQuery(String tableName, String partitionColumn) {
+    return String.format(
+        "SELECT * FROM %s WHERE %s >= ? AND %s < ?", tableName, partitionColumn, partitionColumn);
+  }
+
+  /**
+   * Splits the inclusive range {@code [lowerBound, upperBound]} into at most {@code numPartitions}
+   * contiguous half-open ranges {@code [start, end)} of (almost) equal width.
+   */
+  static List<KV<Long, Long>> partitionRange(long lowerBound, long upperBound, int numPartitions) {
+    checkArgument(numPartitions > 0, "numPartitions must be > 0, but was %s", numPartitions);
+    checkArgument(
+        lowerBound <= upperBound,
+        "lowerBound (%s) must be <= upperBound (%s)",
+        lowerBound,
+        upperBound);
+    checkArgument(upperBound < Long.MAX_VALUE, "upperBound must be < %s", Long.MAX_VALUE);
+
+    long span = Math.addExact(Math.subtractExact(upperBound, lowerBound), 1L);
+    long stride = span / numPartitions + (span % numPartitions == 0 ? 0 : 1);
+    List<KV<Long, Long>> ranges = new ArrayList<>();
+    long start = lowerBound;
+    while (start <= upperBound) {
+      long end = upperBound - start < stride ? upperBound + 1 : start + stride;
+      ranges.add(KV.of(start, end));
+      start = end;
+    }
+    return ranges;
+  }
+
+  /**
+   * Converts a value of a numeric, date or timestamp partition column into the {@code long} used to
+   * compute partition ranges. Temporal values are converted to milliseconds since the epoch.
+   */
+  static long toPartitionBound(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    } else if (value instanceof java.util.Date) {
+      return ((java.util.Date) value).getTime();
+    }
+    throw new IllegalArgumentException(
+        "Partition column must be numeric, DATE or TIMESTAMP, but found a value of type "
+            + (value == null ? null : value.getClass().getName()));
+  }
+
+  /**
+   * Returns the {@link JdbcIO.PreparedStatementSetter} binding the two parameters of {@link
+   * #generatePartitionQuery} for a partition column of the given type.
+   */
+  static JdbcIO.PreparedStatementSetter<KV<Long, Long>> getPartitionRangeSetter(
+      Schema.FieldType partitionColumnType) {
+    switch (partitionColumnType.getTypeName()) {
+      case BYTE:
+      case INT16:
+      case INT32:
+      case INT64:
+      case DECIMAL:
+        return (range, ps) -> {
+          ps.setLong(1, range.getKey());
+          ps.setLong(2, range.getValue());
+        };
+      case DATETIME:
+        return (range, ps) -> {
+          ps.setTimestamp(1, new Timestamp(range.getKey()));
+          ps.setTimestamp(2, new Timestamp(range.getValue()));
+        };
+      case LOGICAL_TYPE:
+        String logicalTypeName = partitionColumnType.getLogicalType().getIdentifier();
+        if (JDBCType.DATE.getName().equals(logicalTypeName)) {
+          return (range, ps) -> {
+            ps.setDate(1, new Date(range.getKey()));
+            ps.setDate(2, new Date(range.getValue()));
+          };
+        } else if (JDBCType.TIMESTAMP_WITH_TIMEZONE.getName().equals(logicalTypeName)) {
+          return getPartitionRangeSetter(Schema.FieldType.DATETIME);
+        }
+        break;
+      default:
+        break;
+    }
+    throw new IllegalArgumentException(
+        "Partition column must be numeric, DATE or TIMESTAMP, but was " + partitionColumnType);
+  }
+
   /** PreparedStatementSetCaller for Schema Field types. * */
   private static Map<Schema.TypeName, JdbcIO.PreparedStatementSetCaller> typeNamePsSetCallerMap =
       new EnumMap<>(
@@ -66,12 +66,14 @@ import org.apache.beam.sdk.testing.PAssert;
 import org.apache.beam.sdk.testing.TestPipeline;
 import org.apache.beam.sdk.transforms.Count;
 import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.MapElements;
 import org.apache.beam.sdk.transforms.SerializableFunction;
 import org.apache.beam.sdk.transforms.Wait;
 import org.apache.beam.sdk.util.SerializableUtils;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.Row;
+import org.apache.beam.sdk.values.TypeDescriptor;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.apache.commons.dbcp2.PoolingDataSource;
 import org.apache.derby.drda.NetworkServerControl;
@@ -411,6 +413,64 @@ public class JdbcIOTest implements Serializable {
     pipeline.run();
   }
 
+  @Test
+  public void testReadWithPartitions() {
+    PCollection<Row> rows =
+        pipeline.apply(
+            JdbcIO.readWithPartitions()
+                .withDataSourceConfiguration(JdbcIO.DataSourceConfiguration.create(dataSource))
+                .withTable(readTableName)
+                .withPartitionColumn("id")
+                .withNumPartitions(7)
+                .withFetchSize(12));
+
+    Schema expectedSchema =
+        Schema.of(
+            Schema.Field.of("ID", Schema.FieldType.INT32).withNullable(true),
+            Schema.Field.of("NAME", LogicalTypes.variableLengthString(JDBCType.VARCHAR, 500))
+                .withNullable(true));
+    assertEquals(expectedSchema, rows.getSchema());
+
+    PAssert.thatSingleton(rows.apply("Count All", Count.globally()))
+        .isEqualTo((long) EXPECTED_ROW_COUNT);
+    PAssert.that(
+            rows.apply(
+                MapElements.into(TypeDescriptor.of(TestRow.class))
+                    .via(row -> TestRow.create(row.getInt32("ID"), row.getString("NAME")))))
+        .containsInAnyOrder(TestRow.getExpectedValues(0, EXPECTED_ROW_COUNT));
+
+    pipeline.run();
+  }
+
+  @Test
+  public void testReadWithPartitionsAndBounds() {
+    PCollection<Row> rows =
+        pipeline.apply(
+            JdbcIO.readWithPartitions()
+                .withDataSourceConfiguration(JdbcIO.DataSourceConfiguration.create(dataSource))
+                .withTable(readTableName)
+                .withPartitionColumn("id")
+                .withLowerBound(100L)
+                .withUpperBound(199L)
+                .withNumPartitions(3));
+
+    PAssert.thatSingleton(rows.apply("Count All", Count.globally())).isEqualTo(100L);
+
+    pipeline.run();
+  }
+
+  @Test
+  public void testReadWithPartitionsOnUnknownColumn() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Partition column unknown not found");
+
+    pipeline.apply(
+        JdbcIO.readWithPartitions()
+            .withDataSourceConfiguration(JdbcIO.DataSourceConfiguration.create(dataSource))
+            .withTable(readTableName)
+            .withPartitionColumn("unknown"));
+  }
+
   @Test
   public void testWrite() throws Exception {
     final long rowsToAdd = 1000L;
@@ -429,6 +489,31 @@ public class JdbcIOTest implements Serializable {
     }
   }
 
+  @Test
+  public void testWriteWithMultiRowStatementsAndConcurrentBatches() throws Exception {
+    final long rowsToAdd = 1000L;
+
+    String tableName = DatabaseTestHelper.getTestTableName("UT_WRITE_MULTI_ROW");
+    DatabaseTestHelper.createTable(dataSource, tableName);
+    try {
+      ArrayList<KV<Integer, String>> data = getDataToWrite(rowsToAdd);
+      pipeline
+          .apply(Create.of(data))
+          .apply(
+              getJdbcWrite(tableName)
+                  .withBatchSize(100L)
+                  .withMaxBatchSizeBytes(512L)
+                  .withRowsPerStatement(7)
+                  .withMaxConcurrentBatches(3));
+
+      pipeline.run();
+
+      assertRowCount(tableName, EXPECTED_ROW_COUNT);
+    } finally {
+      DatabaseTestHelper.deleteTable(dataSource, tableName);
+    }
+  }
+
   @Test
   public void testWriteWithResultsAndWaitOn() throws Exception {
     final long rowsToAdd = 1000L;
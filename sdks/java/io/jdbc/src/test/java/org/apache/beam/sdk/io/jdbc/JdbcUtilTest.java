@@ -18,8 +18,21 @@
 package org.apache.beam.sdk.io.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
 import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.values.KV;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -41,4 +54,112 @@ public class JdbcUtilTest {
     String expectedStmt = "INSERT INTO test_table(col1, col2, col3) VALUES(?, ?, ?)";
     assertEquals(expectedStmt, generatedStmt);
   }
+
+  @Test
+  public void testPartitionRange() {
+    assertEquals(
+        Arrays.asList(KV.of(0L, 4L), KV.of(4L, 8L), KV.of(8L, 10L)),
+        JdbcUtil.partitionRange(0L, 9L, 3));
+    assertEquals(
+        Arrays.asList(KV.of(-5L, 0L), KV.of(0L, 5L)), JdbcUtil.partitionRange(-5L, 4L, 2));
+    // fewer values than partitions
+    assertEquals(
+        Arrays.asList(KV.of(1L, 2L), KV.of(2L, 3L)), JdbcUtil.partitionRange(1L, 2L, 10));
+    assertEquals(Collections.singletonList(KV.of(7L, 8L)), JdbcUtil.partitionRange(7L, 7L, 4));
+  }
+
+  @Test
+  public void testPartitionRangeWithInvalidBounds() {
+    assertThrows(IllegalArgumentException.class, () -> JdbcUtil.partitionRange(10L, 9L, 3));
+    assertThrows(
+        IllegalArgumentException.class, () -> JdbcUtil.partitionRange(0L, Long.MAX_VALUE, 3));
+  }
+
+  @Test
+  public void testToPartitionBound() {
+    assertEquals(42L, JdbcUtil.toPartitionBound(42));
+    assertEquals(42L, JdbcUtil.toPartitionBound(new BigDecimal("42")));
+    assertEquals(1000L, JdbcUtil.toPartitionBound(new Timestamp(1000L)));
+    assertThrows(IllegalArgumentException.class, () -> JdbcUtil.toPartitionBound("42"));
+  }
+
+  @Test
+  public void testGenerateUpsertStatement() {
+    Schema schema =
+        Schema.builder()
+            .addField("id", Schema.FieldType.INT64)
+            .addField("name", Schema.FieldType.STRING)
+            .addField("age", Schema.FieldType.INT32)
+            .build();
+
+    assertEquals(
+        "INSERT INTO person(id, name, age) VALUES(?, ?, ?) ON CONFLICT (id) "
+            + "DO UPDATE SET name = EXCLUDED.name, age = EXCLUDED.age",
+        JdbcUtil.generateUpsertStatement(
+            JdbcIO.UpsertDialect.POSTGRES,
+            "person",
+            schema.getFields(),
+            Collections.singletonList("id")));
+    assertEquals(
+        "INSERT INTO person(id, name, age) VALUES(?, ?, ?) ON DUPLICATE KEY UPDATE "
+            + "name = VALUES(name), age = VALUES(age)",
+        JdbcUtil.generateUpsertStatement(
+            JdbcIO.UpsertDialect.MYSQL,
+            "person",
+            schema.getFields(),
+            Collections.singletonList("id")));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            JdbcUtil.generateUpsertStatement(
+                JdbcIO.UpsertDialect.POSTGRES,
+                "person",
+                schema.getFields(),
+                Collections.singletonList("unknown")));
+  }
+
+  @Test
+  public void testGenerateMultiRowStatement() {
+    assertEquals(
+        "INSERT INTO person(id, name) VALUES(?, ?), (?, ?), (?, ?)",
+        JdbcUtil.generateMultiRowStatement("INSERT INTO person(id, name) VALUES(?, ?)", 3));
+    assertEquals(
+        "insert into person values (?, cast(? as int)), (?, cast(? as int)) "
+            + "on conflict (id) do nothing",
+        JdbcUtil.generateMultiRowStatement(
+            "insert into person values (?, cast(? as int)) on conflict (id) do nothing", 2));
+    assertEquals(
+        "INSERT INTO person VALUES('a)', ?), ('a)', ?)",
+        JdbcUtil.generateMultiRowStatement("INSERT INTO person VALUES('a)', ?)", 2));
+    // parameters outside of the VALUES tuple
+    assertNull(
+        JdbcUtil.generateMultiRowStatement(
+            "INSERT INTO person VALUES(?, ?) ON DUPLICATE KEY UPDATE name = ?", 2));
+    assertNull(JdbcUtil.generateMultiRowStatement("UPDATE person SET name = ? WHERE id = ?", 2));
+  }
+
+  @Test
+  public void testCountParameters() {
+    assertEquals(2, JdbcUtil.countParameters("SELECT * FROM t WHERE a = ? AND b = ?"));
+    assertEquals(1, JdbcUtil.countParameters("SELECT * FROM t WHERE a = '?' AND b = ?"));
+  }
+
+  @Test
+  public void testWithParameterOffset() throws Exception {
+    PreparedStatement statement = mock(PreparedStatement.class);
+    assertSame(statement, JdbcUtil.withParameterOffset(statement, 0));
+
+    PreparedStatement secondRow = JdbcUtil.withParameterOffset(statement, 2);
+    secondRow.clearParameters();
+    secondRow.setInt(1, 42);
+    secondRow.setString(2, "Bob");
+    secondRow.setNull(3, Types.VARCHAR, "VARCHAR");
+    secondRow.addBatch();
+
+    verify(statement).setInt(3, 42);
+    verify(statement).setString(4, "Bob");
+    verify(statement).setNull(5, Types.VARCHAR, "VARCHAR");
+    verify(statement).addBatch();
+    verifyNoMoreInteractions(statement);
+  }
 }
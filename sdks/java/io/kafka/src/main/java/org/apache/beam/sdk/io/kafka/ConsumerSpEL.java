@@ -54,7 +54,14 @@ class ConsumerSpEL {
   private boolean hasRecordTimestamp = false;
   private boolean hasOffsetsForTimes = false;
 
+  // Resolved once, since it is checked for every record read.
+  private static final boolean HAS_HEADERS = clientHasHeaders();
+
   static boolean hasHeaders() {
+    return HAS_HEADERS;
+  }
+
+  private static boolean clientHasHeaders() {
     boolean clientHasHeaders = false;
     try {
       // It is supported by Kafka Client 0.11.0.0 onwards.
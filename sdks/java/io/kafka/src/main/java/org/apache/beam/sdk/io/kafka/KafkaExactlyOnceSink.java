@@ -24,11 +24,15 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
@@ -67,6 +71,7 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Immutabl
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterators;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Lists;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
@@ -260,6 +265,18 @@ class KafkaExactlyOnceSink<K, V>
     private final Counter elementsBuffered = Metrics.counter(METRIC_NAMESPACE, "elementsBuffered");
     private final Counter numTransactions = Metrics.counter(METRIC_NAMESPACE, "numTransactions");
 
+    // Commits transactions deferred to the end of the bundle, see withPipelinedTransactions().
+    private static final ExecutorService COMMIT_THREADS =
+        Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("KafkaExactlyOnceSink-commit-%d")
+                .build());
+
+    // Writers of the shards with a transaction waiting to be committed in finishBundle(). They
+    // stay out of the cache until then.
+    private transient Map<Integer, ShardWriter<K, V>> pendingCommits;
+
     ExactlyOnceWriter(WriteRecords<K, V> spec, Coder<ProducerRecord<K, V>> elemCoder) {
       this.spec = spec;
       this.outOfOrderBufferSpec =
@@ -270,6 +287,13 @@ class KafkaExactlyOnceSink<K, V>
     public void setup() {
       // This is on the worker. Ensure the runtime version is till compatible.
       KafkaExactlyOnceSink.ensureEOSSupport();
+      pendingCommits = new LinkedHashMap<>();
+    }
+
+    @StartBundle
+    public void startBundle() {
+      // Left over from a failed bundle. Its records are written again on retry.
+      abortPendingCommits();
     }
 
     // Futures ignored as exceptions will be flushed out in the commitTxn
@@ -291,9 +315,20 @@ class KafkaExactlyOnceSink<K, V>
       long nextId = MoreObjects.firstNonNull(nextIdState.read(), 0L);
       long minBufferedId = MoreObjects.firstNonNull(minBufferedIdState.read(), Long.MAX_VALUE);
 
-      ShardWriterCache<K, V> cache =
-          (ShardWriterCache<K, V>) CACHE_BY_GROUP_ID.getUnchecked(spec.getSinkGroupId());
-      ShardWriter<K, V> writer = cache.removeIfPresent(shard);
+      ShardWriterCache<K, V> cache = getCache();
+      ShardWriter<K, V> writer = pendingCommits.remove(shard);
+      if (writer != null) {
+        // Another pane of the same shard in this bundle, its transaction has to be committed first.
+        try {
+          commitPendingTxn(writer);
+          numTransactions.inc();
+        } catch (KafkaException e) {
+          writer.producer.close();
+          throw e;
+        }
+      } else {
+        writer = cache.removeIfPresent(shard);
+      }
       if (writer == null) {
         writer = initShardWriter(shard, writerIdState, nextId);
       }
@@ -359,7 +394,8 @@ class KafkaExactlyOnceSink<K, V>
           nextId++;
 
           if (++txnSize >= MAX_RECORDS_PER_TXN) {
-            writer.commitTxn(recordId, numTransactions);
+            writer.commitTxn(recordId);
+            numTransactions.inc();
             txnSize = 0;
             writer.beginTxn();
           }
@@ -389,7 +425,16 @@ class KafkaExactlyOnceSink<K, V>
           }
         }
 
-        writer.commitTxn(nextId - 1, numTransactions);
+        if (spec.isPipelinedTransactions()) {
+          // Committed in finishBundle() along with the other shards of the bundle. Writing the
+          // state first is safe, it is not persisted if the bundle fails.
+          writer.pendingCommitId = nextId - 1;
+          pendingCommits.put(shard, writer);
+          writer = null;
+        } else {
+          writer.commitTxn(nextId - 1);
+          numTransactions.inc();
+        }
         nextIdState.write(nextId);
 
       } catch (ProducerSpEL.UnrecoverableProducerException e) {
@@ -419,6 +464,90 @@ class KafkaExactlyOnceSink<K, V>
       }
     }
 
+    @FinishBundle
+    public void finishBundle() throws IOException {
+      if (pendingCommits.isEmpty()) {
+        return;
+      }
+      List<ShardWriter<K, V>> writers = new ArrayList<>(pendingCommits.values());
+      pendingCommits.clear();
+
+      // Commit the transactions of all the shards at once rather than one after the other.
+      List<Future<?>> commits = new ArrayList<>(writers.size());
+      for (ShardWriter<K, V> writer : writers) {
+        commits.add(
+            COMMIT_THREADS.submit(
+                () -> {
+                  commitPendingTxn(writer);
+                  return null;
+                }));
+      }
+
+      ShardWriterCache<K, V> cache = getCache();
+      Exception failure = null;
+      for (int i = 0; i < writers.size(); i++) {
+        ShardWriter<K, V> writer = writers.get(i);
+        try {
+          commits.get(i).get();
+          numTransactions.inc();
+          cache.insert(writer.shard, writer);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          writer.producer.close();
+          failure = failure == null ? e : failure;
+        } catch (ExecutionException e) {
+          // The transaction is aborted (or the producer unusable), a new producer is initialized
+          // when the shard is retried.
+          LOG.warn(
+              "{} : closing producer {} after failing to commit. Committed id {}.",
+              writer.shard,
+              writer.producerName,
+              writer.committedId,
+              e.getCause());
+          writer.producer.close();
+          failure = failure == null ? e : failure;
+        }
+      }
+      if (failure != null) {
+        throw new IOException("Failed to commit Kafka transactions", failure);
+      }
+    }
+
+    @Teardown
+    public void teardown() {
+      abortPendingCommits();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ShardWriterCache<K, V> getCache() {
+      return (ShardWriterCache<K, V>) CACHE_BY_GROUP_ID.getUnchecked(spec.getSinkGroupId());
+    }
+
+    private void commitPendingTxn(ShardWriter<K, V> writer) throws IOException {
+      writer.commitTxn(writer.pendingCommitId);
+    }
+
+    private void abortPendingCommits() {
+      if (pendingCommits == null || pendingCommits.isEmpty()) {
+        return;
+      }
+      for (ShardWriter<K, V> writer : pendingCommits.values()) {
+        LOG.info(
+            "{} : aborting uncommitted transaction after committed id {}",
+            writer.shard,
+            writer.committedId);
+        try {
+          ProducerSpEL.abortTransaction(writer.producer);
+        } catch (KafkaException e) {
+          LOG.warn("{} : failed to abort transaction", writer.shard, e);
+        } finally {
+          // Closed rather than cached, the retry initializes a fresh producer for the shard.
+          writer.producer.close();
+        }
+      }
+      pendingCommits.clear();
+    }
+
     private static class ShardMetadata {
 
       @JsonProperty("seq")
@@ -447,6 +576,7 @@ class KafkaExactlyOnceSink<K, V>
       private final String producerName;
       private final WriteRecords<K, V> spec;
       private long committedId;
+      private long pendingCommitId; // Last record id of a transaction committed in finishBundle().
 
       ShardWriter(
           int shard,
@@ -493,7 +623,7 @@ class KafkaExactlyOnceSink<K, V>
         }
       }
 
-      void commitTxn(long lastRecordId, Counter numTransactions) throws IOException {
+      void commitTxn(long lastRecordId) throws IOException {
         try {
           // Store id in consumer group metadata for the partition.
           // NOTE: Kafka keeps this metadata for 24 hours since the last update. This limits
@@ -509,7 +639,6 @@ class KafkaExactlyOnceSink<K, V>
               spec.getSinkGroupId());
           ProducerSpEL.commitTransaction(producer);
 
-          numTransactions.inc();
           LOG.debug("{} : committed {} records", shard, lastRecordId - committedId);
 
           committedId = lastRecordId;
@@ -42,6 +42,8 @@ import org.apache.beam.sdk.coders.ByteArrayCoder;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.CoderRegistry;
 import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.SerializableCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.coders.VarIntCoder;
 import org.apache.beam.sdk.coders.VarLongCoder;
 import org.apache.beam.sdk.expansion.ExternalTransformRegistrar;
@@ -50,18 +52,24 @@ import org.apache.beam.sdk.io.UnboundedSource;
 import org.apache.beam.sdk.io.UnboundedSource.CheckpointMark;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.ValueProvider;
+import org.apache.beam.sdk.transforms.Create;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.ExternalTransformBuilder;
+import org.apache.beam.sdk.transforms.Impulse;
 import org.apache.beam.sdk.transforms.MapElements;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.transforms.SerializableFunction;
 import org.apache.beam.sdk.transforms.SimpleFunction;
+import org.apache.beam.sdk.transforms.Values;
+import org.apache.beam.sdk.transforms.Watch;
 import org.apache.beam.sdk.transforms.display.DisplayData;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PBegin;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PDone;
+import org.apache.beam.sdk.values.TypeDescriptor;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Joiner;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
@@ -73,6 +81,7 @@ import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.Deserializer;
@@ -171,6 +180,14 @@ import org.slf4j.LoggerFactory;
  * used. It does recognize `default.api.timeout.ms` setting and will honor the timeout value if it
  * is passes in consumer config.
  *
+ * <h3>Reading with a splittable DoFn</h3>
+ *
+ * <p>{@link Read#withSplittableRead()} reads each partition as a separate element of a splittable
+ * {@link DoFn} instead of an {@link UnboundedSource}. New partitions of the topics are discovered
+ * while the pipeline runs and runners supporting dynamic splitting can split the backlog of a
+ * partition that falls behind. {@link Read#readSourceDescriptors()} reads partitions described by
+ * an input {@link PCollection} of {@link KafkaSourceDescriptor}s instead.
+ *
  * <h3>Use Avro schema with Confluent Schema Registry</h3>
  *
  * <p>If you want to deserialize the keys and/or values based on a schema available in Confluent
@@ -229,6 +246,14 @@ import org.slf4j.LoggerFactory;
  *   );
  * }</pre>
  *
+ * <p>By default each instance of the sink {@link DoFn} opens its own producer. With {@code
+ * withSharedProducer()} the instances in a worker JVM with the same producer configuration share
+ * one producer, which batches records of all of them together. {@code withMaxInflightBytes()}
+ * blocks the sink while more than the given number of bytes are sent but not acknowledged by
+ * Kafka. The sink reports the producer's {@code record-send-rate}, {@code batch-size-avg} and
+ * {@code request-latency-avg} as gauges in the {@code KafkaWriter} namespace at the end of each
+ * bundle.
+ *
  * <p>Often you might want to write just values without any keys to Kafka. Use {@code values()} to
  * write records with default empty(null) key:
  *
@@ -307,6 +332,9 @@ public class KafkaIO {
         .setMaxNumRecords(Long.MAX_VALUE)
         .setCommitOffsetsInFinalizeEnabled(false)
         .setTimestampPolicyFactory(TimestampPolicyFactory.withProcessingTime())
+        .setSplittableReadEnabled(false)
+        .setPrefetchDepth(0)
+        .setDeserializationParallelism(1)
         .build();
   }
 
@@ -323,6 +351,9 @@ public class KafkaIO {
                 .setEOS(false)
                 .setNumShards(0)
                 .setConsumerFactoryFn(Read.KAFKA_CONSUMER_FACTORY_FN)
+                .setSharedProducer(false)
+                .setMaxInflightBytes(0L)
+                .setPipelinedTransactions(false)
                 .build())
         .build();
   }
@@ -338,6 +369,9 @@ public class KafkaIO {
         .setEOS(false)
         .setNumShards(0)
         .setConsumerFactoryFn(Read.KAFKA_CONSUMER_FACTORY_FN)
+        .setSharedProducer(false)
+        .setMaxInflightBytes(0L)
+        .setPipelinedTransactions(false)
         .build();
   }
 
@@ -389,6 +423,15 @@ public class KafkaIO {
     @Nullable
     abstract DeserializerProvider getValueDeserializerProvider();
 
+    abstract boolean isSplittableReadEnabled();
+
+    @Nullable
+    abstract Duration getPartitionDiscoveryInterval();
+
+    abstract int getPrefetchDepth();
+
+    abstract int getDeserializationParallelism();
+
     abstract Builder<K, V> toBuilder();
 
     @Experimental(Kind.PORTABILITY)
@@ -428,6 +471,14 @@ public class KafkaIO {
       abstract Builder<K, V> setValueDeserializerProvider(
           DeserializerProvider deserializerProvider);
 
+      abstract Builder<K, V> setSplittableReadEnabled(boolean splittableReadEnabled);
+
+      abstract Builder<K, V> setPartitionDiscoveryInterval(Duration partitionDiscoveryInterval);
+
+      abstract Builder<K, V> setPrefetchDepth(int prefetchDepth);
+
+      abstract Builder<K, V> setDeserializationParallelism(int deserializationParallelism);
+
       abstract Read<K, V> build();
 
       @Override
@@ -463,6 +514,9 @@ public class KafkaIO {
         setMaxNumRecords(Long.MAX_VALUE);
         setCommitOffsetsInFinalizeEnabled(false);
         setTimestampPolicyFactory(TimestampPolicyFactory.withProcessingTime());
+        setSplittableReadEnabled(false);
+        setPrefetchDepth(0);
+        setDeserializationParallelism(1);
         // We do not include Metadata until we can encode KafkaRecords cross-language
         return build().withoutMetadata();
       }
@@ -853,13 +907,124 @@ public class KafkaIO {
       return toBuilder().setConsumerConfig(config).build();
     }
 
+    /**
+     * Reads with a splittable {@link DoFn} instead of an {@link UnboundedSource}. Each Kafka
+     * partition is read as a separate element with its own offset range restriction and watermark
+     * estimator. Runners supporting dynamic splitting can split off part of the backlog of a
+     * partition that falls behind and process it on another worker.
+     *
+     * <p>When reading from topics, new partitions are discovered while the pipeline runs, see
+     * {@link #withPartitionDiscoveryInterval(Duration)}. When reading explicit partitions set with
+     * {@link #withTopicPartitions(List)}, only those partitions are read.
+     *
+     * <p>{@link #withMaxNumRecords(long)}, {@link #withMaxReadTime(Duration)} and {@link
+     * #commitOffsetsInFinalize()} are not supported in this mode.
+     */
+    @Experimental(Kind.SPLITTABLE_DO_FN)
+    public Read<K, V> withSplittableRead() {
+      return toBuilder().setSplittableReadEnabled(true).build();
+    }
+
+    /**
+     * Sets how often the partitions of the topics are listed in order to discover new partitions
+     * with {@link #withSplittableRead()}. Default is 1 minute.
+     */
+    @Experimental(Kind.SPLITTABLE_DO_FN)
+    public Read<K, V> withPartitionDiscoveryInterval(Duration partitionDiscoveryInterval) {
+      checkArgument(
+          partitionDiscoveryInterval != null && partitionDiscoveryInterval.getMillis() > 0,
+          "partitionDiscoveryInterval should be positive");
+      return toBuilder().setPartitionDiscoveryInterval(partitionDiscoveryInterval).build();
+    }
+
+    /**
+     * Returns a {@link PTransform} which reads the Kafka partitions described by an input {@link
+     * PCollection} of {@link KafkaSourceDescriptor}s with a splittable {@link DoFn}, using the
+     * consumer configuration, deserializers and timestamp policy of this {@link Read}. Topics and
+     * partitions set on this {@link Read} are ignored. This allows pipelines to compute the set of
+     * partitions to read at runtime. See {@link #withSplittableRead()}.
+     */
+    @Experimental(Kind.SPLITTABLE_DO_FN)
+    public PTransform<PCollection<KafkaSourceDescriptor>, PCollection<KafkaRecord<K, V>>>
+        readSourceDescriptors() {
+      return new ReadSourceDescriptors<>(this);
+    }
+
+    /**
+     * Sets the number of batches of records returned by {@link Consumer#poll(long)} that can be
+     * buffered ahead of the reader. By default batches are handed over to the reader one at a time,
+     * so the consumer does not poll again until the reader picks up the previous batch. A deeper
+     * prefetch keeps the consumer fetching while the reader is busy, at the cost of holding more
+     * records in memory (up to {@code max.poll.records} per batch).
+     */
+    public Read<K, V> withPrefetchDepth(int prefetchDepth) {
+      checkArgument(prefetchDepth >= 0, "prefetchDepth should be >= 0, but was %s", prefetchDepth);
+      return toBuilder().setPrefetchDepth(prefetchDepth).build();
+    }
+
+    /**
+     * Sets the number of threads used to deserialize records. By default records are deserialized
+     * one by one by the reader. With more than one thread, the records of each polled batch are
+     * deserialized ahead of the reader, in parallel across the partitions of a split. Each
+     * partition then gets its own key and value {@link Deserializer} instances, since deserializers
+     * are not expected to be thread safe.
+     */
+    public Read<K, V> withDeserializationParallelism(int deserializationParallelism) {
+      checkArgument(
+          deserializationParallelism > 0,
+          "deserializationParallelism should be > 0, but was %s",
+          deserializationParallelism);
+      return toBuilder().setDeserializationParallelism(deserializationParallelism).build();
+    }
+
     /** Returns a {@link PTransform} for PCollection of {@link KV}, dropping Kafka metatdata. */
     public PTransform<PBegin, PCollection<KV<K, V>>> withoutMetadata() {
       return new TypedWithoutMetadata<>(this);
     }
 
+    /**
+     * Returns a {@link PTransform} for PCollection of values, dropping keys and Kafka metadata.
+     * Unlike {@link #withoutMetadata()}, the source directly outputs the values encoded with the
+     * value {@link Coder}, and keys and headers are neither deserialized nor kept. Combined with
+     * {@link KafkaIO#readBytes()} this outputs the raw {@code byte[]} values as polled from Kafka.
+     *
+     * <p>Note that a custom {@link TimestampPolicy} gets records without key and headers.
+     */
+    public PTransform<PBegin, PCollection<V>> values() {
+      return new TypedValues<>(this);
+    }
+
     @Override
     public PCollection<KafkaRecord<K, V>> expand(PBegin input) {
+      checkReadConfiguration();
+
+      if (isSplittableReadEnabled()) {
+        return expandWithSplittableRead(input);
+      }
+
+      // Infer key/value coders if not specified explicitly
+      CoderRegistry coderRegistry = input.getPipeline().getCoderRegistry();
+
+      Coder<K> keyCoder = getKeyCoder(coderRegistry);
+      Coder<V> valueCoder = getValueCoder(coderRegistry);
+
+      Unbounded<KafkaRecord<K, V>> unbounded =
+          org.apache.beam.sdk.io.Read.from(
+              toBuilder().setKeyCoder(keyCoder).setValueCoder(valueCoder).build().makeSource());
+
+      return input.getPipeline().apply(withReadLimits(unbounded));
+    }
+
+    // Handles unbounded source to bounded conversion if maxNumRecords or maxReadTime is set.
+    private <T> PTransform<PBegin, PCollection<T>> withReadLimits(Unbounded<T> unbounded) {
+      if (getMaxNumRecords() < Long.MAX_VALUE || getMaxReadTime() != null) {
+        return unbounded.withMaxReadTime(getMaxReadTime()).withMaxNumRecords(getMaxNumRecords());
+      }
+      return unbounded;
+    }
+
+    /** Checks the configuration of the read when it is expanded, also by {@link TypedValues}. */
+    private void checkReadConfiguration() {
       checkArgument(
           getConsumerConfig().get(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG) != null,
           "withBootstrapServers() is required");
@@ -899,26 +1064,6 @@ public class KafkaIO {
               ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG);
         }
       }
-
-      // Infer key/value coders if not specified explicitly
-      CoderRegistry coderRegistry = input.getPipeline().getCoderRegistry();
-
-      Coder<K> keyCoder = getKeyCoder(coderRegistry);
-      Coder<V> valueCoder = getValueCoder(coderRegistry);
-
-      // Handles unbounded source to bounded conversion if maxNumRecords or maxReadTime is set.
-      Unbounded<KafkaRecord<K, V>> unbounded =
-          org.apache.beam.sdk.io.Read.from(
-              toBuilder().setKeyCoder(keyCoder).setValueCoder(valueCoder).build().makeSource());
-
-      PTransform<PBegin, PCollection<KafkaRecord<K, V>>> transform = unbounded;
-
-      if (getMaxNumRecords() < Long.MAX_VALUE || getMaxReadTime() != null) {
-        transform =
-            unbounded.withMaxReadTime(getMaxReadTime()).withMaxNumRecords(getMaxNumRecords());
-      }
-
-      return input.getPipeline().apply(transform);
     }
 
     private Coder<K> getKeyCoder(CoderRegistry coderRegistry) {
@@ -933,6 +1078,54 @@ public class KafkaIO {
           : getValueDeserializerProvider().getCoder(coderRegistry);
     }
 
+    private PCollection<KafkaRecord<K, V>> expandWithSplittableRead(PBegin input) {
+      checkArgument(
+          getMaxNumRecords() == Long.MAX_VALUE && getMaxReadTime() == null,
+          "withMaxNumRecords() and withMaxReadTime() are not supported with withSplittableRead()");
+      checkArgument(
+          !isCommitOffsetsInFinalizeEnabled(),
+          "commitOffsetsInFinalize() is not supported with withSplittableRead()");
+      checkArgument(
+          getWatermarkFn() == null,
+          "withWatermarkFn() is not supported with withSplittableRead(), "
+              + "use withTimestampPolicyFactory() instead");
+
+      PCollection<KafkaSourceDescriptor> descriptors;
+      if (getTopicPartitions().size() > 0) {
+        List<KafkaSourceDescriptor> partitions = new ArrayList<>();
+        for (TopicPartition topicPartition : getTopicPartitions()) {
+          partitions.add(KafkaSourceDescriptor.of(topicPartition));
+        }
+        descriptors =
+            input.apply(
+                "Create Partitions",
+                Create.of(partitions).withCoder(SerializableCoder.of(KafkaSourceDescriptor.class)));
+      } else {
+        Duration interval =
+            getPartitionDiscoveryInterval() != null
+                ? getPartitionDiscoveryInterval()
+                : DEFAULT_PARTITION_DISCOVERY_INTERVAL;
+        descriptors =
+            input
+                .apply(Impulse.create())
+                .apply(
+                    "Discover Partitions",
+                    Watch.growthOf(new PartitionPollFn<>(this))
+                        .withPollInterval(interval)
+                        .withOutputCoder(KvCoder.of(StringUtf8Coder.of(), VarIntCoder.of())))
+                .apply(Values.create())
+                .apply(
+                    "Make Descriptors",
+                    MapElements.into(TypeDescriptor.of(KafkaSourceDescriptor.class))
+                        .via(
+                            kv ->
+                                KafkaSourceDescriptor.of(
+                                    new TopicPartition(kv.getKey(), kv.getValue()))))
+                .setCoder(SerializableCoder.of(KafkaSourceDescriptor.class));
+      }
+      return descriptors.apply("Read Partitions", readSourceDescriptors());
+    }
+
     /**
      * Creates an {@link UnboundedSource UnboundedSource&lt;KafkaRecord&lt;K, V&gt;, ?&gt;} with the
      * configuration in {@link Read}. Primary use case is unit tests, should not be used in an
@@ -985,6 +1178,9 @@ public class KafkaIO {
             ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG,
             false);
 
+    private static final Duration DEFAULT_PARTITION_DISCOVERY_INTERVAL =
+        Duration.standardMinutes(1);
+
     // default Kafka 0.9 Consumer supplier.
     private static final SerializableFunction<Map<String, Object>, Consumer<byte[], byte[]>>
         KAFKA_CONSUMER_FACTORY_FN = KafkaConsumer::new;
@@ -1051,6 +1247,104 @@ public class KafkaIO {
     }
   }
 
+  /**
+   * A {@link PTransform} to read values from Kafka topics. See {@link Read#values()} for more
+   * information.
+   */
+  public static class TypedValues<K, V> extends PTransform<PBegin, PCollection<V>> {
+    private final Read<K, V> read;
+
+    TypedValues(Read<K, V> read) {
+      super("KafkaIO.Read");
+      this.read = read;
+    }
+
+    @Override
+    public PCollection<V> expand(PBegin begin) {
+      read.checkReadConfiguration();
+      checkArgument(
+          !read.isSplittableReadEnabled(), "values() is not supported with withSplittableRead()");
+
+      Coder<V> valueCoder = read.getValueCoder(begin.getPipeline().getCoderRegistry());
+      KafkaUnboundedSource<K, V> source =
+          new KafkaUnboundedSource<>(read.toBuilder().setValueCoder(valueCoder).build(), -1);
+
+      Unbounded<V> unbounded = org.apache.beam.sdk.io.Read.from(new KafkaValueSource<>(source));
+      return begin.getPipeline().apply(read.withReadLimits(unbounded));
+    }
+
+    @Override
+    public void populateDisplayData(DisplayData.Builder builder) {
+      super.populateDisplayData(builder);
+      read.populateDisplayData(builder);
+    }
+  }
+
+  /**
+   * A {@link PTransform} to read the Kafka partitions described by {@link KafkaSourceDescriptor}s.
+   * See {@link Read#readSourceDescriptors()}.
+   */
+  private static class ReadSourceDescriptors<K, V>
+      extends PTransform<PCollection<KafkaSourceDescriptor>, PCollection<KafkaRecord<K, V>>> {
+    private final Read<K, V> read;
+
+    ReadSourceDescriptors(Read<K, V> read) {
+      super("KafkaIO.ReadSourceDescriptors");
+      this.read = read;
+    }
+
+    @Override
+    public PCollection<KafkaRecord<K, V>> expand(PCollection<KafkaSourceDescriptor> input) {
+      checkArgument(
+          read.getConsumerConfig().get(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG) != null,
+          "withBootstrapServers() is required");
+      checkArgument(read.getKeyDeserializerProvider() != null, "withKeyDeserializer() is required");
+      checkArgument(
+          read.getValueDeserializerProvider() != null, "withValueDeserializer() is required");
+
+      CoderRegistry coderRegistry = input.getPipeline().getCoderRegistry();
+      Coder<K> keyCoder = read.getKeyCoder(coderRegistry);
+      Coder<V> valueCoder = read.getValueCoder(coderRegistry);
+
+      return input
+          .apply(ParDo.of(new ReadFromKafkaDoFn<>(read)))
+          .setCoder(KafkaRecordCoder.of(keyCoder, valueCoder));
+    }
+
+    @Override
+    public void populateDisplayData(DisplayData.Builder builder) {
+      super.populateDisplayData(builder);
+      read.populateDisplayData(builder);
+    }
+  }
+
+  /** Lists the partitions of the topics to read, polled by {@link Watch} to discover new ones. */
+  private static class PartitionPollFn<K, V>
+      extends Watch.Growth.PollFn<byte[], KV<String, Integer>> {
+    private final Read<K, V> read;
+
+    PartitionPollFn(Read<K, V> read) {
+      this.read = read;
+    }
+
+    @Override
+    public Watch.Growth.PollResult<KV<String, Integer>> apply(byte[] element, Context c) {
+      List<KV<String, Integer>> partitions = new ArrayList<>();
+      try (Consumer<byte[], byte[]> consumer =
+          read.getConsumerFactoryFn().apply(read.getConsumerConfig())) {
+        for (String topic : read.getTopics()) {
+          for (PartitionInfo partition : consumer.partitionsFor(topic)) {
+            partitions.add(KV.of(partition.topic(), partition.partition()));
+          }
+        }
+      }
+      // Descriptors are emitted at the minimum timestamp so that records read from the partitions
+      // can have any timestamp assigned by the timestamp policy.
+      return Watch.Growth.PollResult.incomplete(BoundedWindow.TIMESTAMP_MIN_VALUE, partitions)
+          .withWatermark(Instant.now());
+    }
+  }
+
   ////////////////////////////////////////////////////////////////////////////////////////////////
 
   private static final Logger LOG = LoggerFactory.getLogger(KafkaIO.class);
@@ -1124,6 +1418,12 @@ public class KafkaIO {
     abstract SerializableFunction<Map<String, Object>, ? extends Consumer<?, ?>>
         getConsumerFactoryFn();
 
+    abstract boolean isSharedProducer();
+
+    abstract long getMaxInflightBytes();
+
+    abstract boolean isPipelinedTransactions();
+
     abstract Builder<K, V> toBuilder();
 
     @AutoValue.Builder
@@ -1151,6 +1451,12 @@ public class KafkaIO {
       abstract Builder<K, V> setConsumerFactoryFn(
           SerializableFunction<Map<String, Object>, ? extends Consumer<?, ?>> fn);
 
+      abstract Builder<K, V> setSharedProducer(boolean sharedProducer);
+
+      abstract Builder<K, V> setMaxInflightBytes(long maxInflightBytes);
+
+      abstract Builder<K, V> setPipelinedTransactions(boolean pipelinedTransactions);
+
       abstract WriteRecords<K, V> build();
     }
 
@@ -1299,6 +1605,40 @@ public class KafkaIO {
       return toBuilder().setConsumerFactoryFn(consumerFactoryFn).build();
     }
 
+    /**
+     * Shares one Kafka producer among the instances of the sink in a worker JVM that use the same
+     * producer configuration, instead of opening a producer for each instance. This lets the
+     * producer batch records from all of them and reduces the number of connections to the
+     * brokers. The producer is closed when the last instance using it is torn down. Not used with
+     * the exactly-once sink, which needs a transactional producer per shard.
+     */
+    public WriteRecords<K, V> withSharedProducer() {
+      return toBuilder().setSharedProducer(true).build();
+    }
+
+    /**
+     * Bounds the number of bytes sent to Kafka but not yet acknowledged. Once the bound is reached
+     * the sink blocks until Kafka acknowledges earlier records, which pushes back on the pipeline
+     * instead of buffering records in the producer. The size of a record is estimated with the
+     * average serialized size of the records acknowledged so far. The bound applies to the
+     * producer, i.e. it is shared with {@link #withSharedProducer()}. Default is 0, no bound.
+     */
+    public WriteRecords<K, V> withMaxInflightBytes(long maxInflightBytes) {
+      checkArgument(maxInflightBytes > 0, "maxInflightBytes should be > 0");
+      return toBuilder().setMaxInflightBytes(maxInflightBytes).build();
+    }
+
+    /**
+     * When exactly-once semantics are enabled (see {@link #withEOS(int, String)}), defers the
+     * commit of the transaction of each shard to the end of the bundle, and commits the
+     * transactions of all the shards of the bundle concurrently. By default the transaction of a
+     * shard is committed before the next shard is written. Sequence ids are still committed
+     * atomically with the records of each shard, so a failed bundle is retried as before.
+     */
+    public WriteRecords<K, V> withPipelinedTransactions() {
+      return toBuilder().setPipelinedTransactions(true).build();
+    }
+
     @Override
     public PDone expand(PCollection<ProducerRecord<K, V>> input) {
       checkArgument(
@@ -1320,6 +1660,7 @@ public class KafkaIO {
 
         input.apply(new KafkaExactlyOnceSink<>(this));
       } else {
+        checkArgument(!isPipelinedTransactions(), "withPipelinedTransactions() requires withEOS()");
         input.apply(ParDo.of(new KafkaWriter<>(this)));
       }
       return PDone.in(input.getPipeline());
@@ -1556,6 +1897,31 @@ public class KafkaIO {
           getWriteRecordsTransform().withConsumerFactoryFn(consumerFactoryFn));
     }
 
+    /**
+     * Wrapper method over {@link WriteRecords#withSharedProducer()}, used to keep the
+     * compatibility with old API based on KV type of element.
+     */
+    public Write<K, V> withSharedProducer() {
+      return withWriteRecordsTransform(getWriteRecordsTransform().withSharedProducer());
+    }
+
+    /**
+     * Wrapper method over {@link WriteRecords#withMaxInflightBytes(long)}, used to keep the
+     * compatibility with old API based on KV type of element.
+     */
+    public Write<K, V> withMaxInflightBytes(long maxInflightBytes) {
+      return withWriteRecordsTransform(
+          getWriteRecordsTransform().withMaxInflightBytes(maxInflightBytes));
+    }
+
+    /**
+     * Wrapper method over {@link WriteRecords#withPipelinedTransactions()}, used to keep the
+     * compatibility with old API based on KV type of element.
+     */
+    public Write<K, V> withPipelinedTransactions() {
+      return withWriteRecordsTransform(getWriteRecordsTransform().withPipelinedTransactions());
+    }
+
     /**
      * Adds the given producer properties, overriding old values of properties with the same key.
      *
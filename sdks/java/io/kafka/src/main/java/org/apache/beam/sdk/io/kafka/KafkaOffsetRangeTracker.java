@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.io.kafka;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
+
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+import org.apache.beam.sdk.io.range.OffsetRange;
+import org.apache.beam.sdk.transforms.splittabledofn.RestrictionTracker;
+import org.apache.beam.sdk.transforms.splittabledofn.Sizes;
+import org.apache.beam.sdk.transforms.splittabledofn.SplitResult;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.MoreObjects;
+
+/**
+ * A {@link RestrictionTracker} for claiming offsets of a Kafka partition. Unlike {@link
+ * org.apache.beam.sdk.transforms.splittabledofn.OffsetRangeTracker}, it supports splitting off a
+ * fraction of the remaining work, which lets runners hand part of a hot partition's backlog to
+ * another worker. The end of an open ended range ({@code Long.MAX_VALUE}) is estimated with the
+ * latest offset of the partition.
+ */
+class KafkaOffsetRangeTracker extends RestrictionTracker<OffsetRange, Long>
+    implements Sizes.HasSize {
+  private OffsetRange range;
+  private final LongSupplier latestOffsetEstimator;
+  @Nullable private Long lastClaimedOffset = null;
+  @Nullable private Long lastAttemptedOffset = null;
+
+  /**
+   * @param latestOffsetEstimator returns the latest offset of the partition, or a negative value if
+   *     it is not known.
+   */
+  KafkaOffsetRangeTracker(OffsetRange range, LongSupplier latestOffsetEstimator) {
+    this.range = checkNotNull(range);
+    this.latestOffsetEstimator = checkNotNull(latestOffsetEstimator);
+  }
+
+  @Override
+  public OffsetRange currentRestriction() {
+    return range;
+  }
+
+  @Override
+  @Nullable
+  public SplitResult<OffsetRange> trySplit(double fractionOfRemainder) {
+    long cur = (lastAttemptedOffset == null) ? range.getFrom() - 1 : lastAttemptedOffset;
+    long splitPos;
+    if (fractionOfRemainder == 0) {
+      // Checkpoint: the residual is everything that was not attempted yet.
+      splitPos = cur + 1;
+    } else {
+      long end = estimatedEnd(cur);
+      splitPos = cur + Math.max(1L, (long) Math.ceil((end - cur) * fractionOfRemainder));
+    }
+    if (splitPos >= range.getTo()) {
+      return null;
+    }
+    OffsetRange residual = new OffsetRange(splitPos, range.getTo());
+    this.range = new OffsetRange(range.getFrom(), splitPos);
+    return SplitResult.of(range, residual);
+  }
+
+  /**
+   * Attempts to claim the given offset.
+   *
+   * <p>Must be larger than the last attempted offset. Offsets may skip values, e.g. with log
+   * compaction or transactional markers.
+   *
+   * @return {@code true} if the offset was successfully claimed, {@code false} if it is outside the
+   *     current {@link OffsetRange} of this tracker (in that case this operation is a no-op).
+   */
+  @Override
+  public boolean tryClaim(Long i) {
+    checkArgument(
+        lastAttemptedOffset == null || i > lastAttemptedOffset,
+        "Trying to claim offset %s while last attempted was %s",
+        i,
+        lastAttemptedOffset);
+    checkArgument(
+        i >= range.getFrom(), "Trying to claim offset %s before start of the range %s", i, range);
+    lastAttemptedOffset = i;
+    if (i >= range.getTo()) {
+      return false;
+    }
+    lastClaimedOffset = i;
+    return true;
+  }
+
+  @Override
+  public void checkDone() throws IllegalStateException {
+    if (range.getFrom() == range.getTo()) {
+      return;
+    }
+    checkState(
+        lastAttemptedOffset != null && lastAttemptedOffset >= range.getTo() - 1,
+        "Last attempted offset was %s in range %s, claiming work in [%s, %s) was not attempted",
+        lastAttemptedOffset,
+        range,
+        lastAttemptedOffset == null ? range.getFrom() : lastAttemptedOffset + 1,
+        range.getTo());
+  }
+
+  /** Returns the number of offsets left to claim, bounded by the latest offset of the partition. */
+  @Override
+  public double getSize() {
+    if (range.getTo() == Long.MAX_VALUE && latestOffsetEstimator.getAsLong() < 0) {
+      return 1; // Backlog is not known yet.
+    }
+    long cur = (lastAttemptedOffset == null) ? range.getFrom() - 1 : lastAttemptedOffset;
+    return Math.max(0, estimatedEnd(cur) - cur - 1);
+  }
+
+  // End of the range as far as work that is available right now is concerned.
+  private long estimatedEnd(long cur) {
+    long latestOffset = latestOffsetEstimator.getAsLong();
+    if (latestOffset < 0) {
+      return range.getTo() == Long.MAX_VALUE ? cur + 1 : range.getTo();
+    }
+    return Math.min(range.getTo(), Math.max(latestOffset, cur + 1));
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("range", range)
+        .add("lastClaimedOffset", lastClaimedOffset)
+        .add("lastAttemptedOffset", lastAttemptedOffset)
+        .toString();
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.io.kafka;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+import java.io.Serializable;
+import javax.annotation.Nullable;
+import org.apache.beam.sdk.annotations.Experimental;
+import org.apache.beam.sdk.annotations.Experimental.Kind;
+import org.apache.kafka.common.TopicPartition;
+import org.joda.time.Instant;
+
+/**
+ * Describes a single Kafka partition to be read by {@link KafkaIO.Read#readSourceDescriptors()},
+ * along with an optional position to start reading from.
+ *
+ * <p>If neither a start offset nor a start read time is set, reading starts from the committed
+ * offset of the consumer group or as configured by {@code auto.offset.reset}, same as {@link
+ * KafkaIO#read()}.
+ */
+@Experimental(Kind.SPLITTABLE_DO_FN)
+@AutoValue
+public abstract class KafkaSourceDescriptor implements Serializable {
+  public abstract String getTopic();
+
+  public abstract int getPartition();
+
+  @Nullable
+  public abstract Long getStartReadOffset();
+
+  @Nullable
+  public abstract Instant getStartReadTime();
+
+  /** Returns the {@link TopicPartition} described by this descriptor. */
+  public TopicPartition getTopicPartition() {
+    return new TopicPartition(getTopic(), getPartition());
+  }
+
+  /** Creates a descriptor for the given partition without an explicit start position. */
+  public static KafkaSourceDescriptor of(TopicPartition topicPartition) {
+    return of(topicPartition, null, null);
+  }
+
+  /**
+   * Creates a descriptor for the given partition. At most one of {@code startReadOffset} and
+   * {@code startReadTime} can be set.
+   */
+  public static KafkaSourceDescriptor of(
+      TopicPartition topicPartition,
+      @Nullable Long startReadOffset,
+      @Nullable Instant startReadTime) {
+    checkArgument(topicPartition != null, "topicPartition can not be null");
+    checkArgument(
+        startReadOffset == null || startReadTime == null,
+        "Only one of startReadOffset and startReadTime can be set");
+    return new AutoValue_KafkaSourceDescriptor(
+        topicPartition.topic(), topicPartition.partition(), startReadOffset, startReadTime);
+  }
+}
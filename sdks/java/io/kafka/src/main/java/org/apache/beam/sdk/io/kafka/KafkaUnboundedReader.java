@@ -30,6 +30,9 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -55,6 +58,7 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.Visi
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterators;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.Closeables;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
@@ -87,6 +91,19 @@ class KafkaUnboundedReader<K, V> extends UnboundedReader<KafkaRecord<K, V>> {
     valueDeserializerInstance =
         spec.getValueDeserializerProvider().getDeserializer(spec.getConsumerConfig(), false);
 
+    for (PartitionState<K, V> pState : partitionStates) {
+      if (deserializerThreads == null) {
+        pState.keyDeserializer = keyDeserializerInstance;
+        pState.valueDeserializer = valueDeserializerInstance;
+      } else {
+        // Deserializers are not expected to be thread safe, each partition gets its own.
+        pState.keyDeserializer =
+            spec.getKeyDeserializerProvider().getDeserializer(spec.getConsumerConfig(), true);
+        pState.valueDeserializer =
+            spec.getValueDeserializerProvider().getDeserializer(spec.getConsumerConfig(), false);
+      }
+    }
+
     // Seek to start offset for each partition. This is the first interaction with the server.
     // Unfortunately it can block forever in case of network issues like incorrect ACLs.
     // Initialize partition in a separate thread and cancel it if takes longer than a minute.
@@ -151,6 +168,7 @@ class KafkaUnboundedReader<K, V> extends UnboundedReader<KafkaRecord<K, V>> {
 
         if (!pState.recordIter.hasNext()) { // -- (c)
           pState.recordIter = Collections.emptyIterator(); // drop ref
+          pState.deserializedRecordIter = Collections.emptyIterator();
           curBatch.remove();
           continue;
         }
@@ -159,6 +177,9 @@ class KafkaUnboundedReader<K, V> extends UnboundedReader<KafkaRecord<K, V>> {
         elementsReadBySplit.inc();
 
         ConsumerRecord<byte[], byte[]> rawRecord = pState.recordIter.next();
+        // Only set with parallel deserialization, in the same order as recordIter.
+        KafkaRecord<K, V> deserializedRecord =
+            pState.deserializedRecordIter.hasNext() ? pState.deserializedRecordIter.next() : null;
         long expected = pState.nextOffset;
         long offset = rawRecord.offset();
 
@@ -184,15 +205,9 @@ class KafkaUnboundedReader<K, V> extends UnboundedReader<KafkaRecord<K, V>> {
         // and 'curRecord' remains unchanged. The runner should close this reader.
         // TODO: write records that can't be deserialized to a "dead-letter" additional output.
         KafkaRecord<K, V> record =
-            new KafkaRecord<>(
-                rawRecord.topic(),
-                rawRecord.partition(),
-                rawRecord.offset(),
-                consumerSpEL.getRecordTimestamp(rawRecord),
-                consumerSpEL.getRecordTimestampType(rawRecord),
-                ConsumerSpEL.hasHeaders() ? rawRecord.headers() : null,
-                keyDeserializerInstance.deserialize(rawRecord.topic(), rawRecord.key()),
-                valueDeserializerInstance.deserialize(rawRecord.topic(), rawRecord.value()));
+            deserializedRecord != null
+                ? deserializedRecord
+                : pState.toKafkaRecord(rawRecord, consumerSpEL, valuesOnly);
 
         curTimestamp =
             pState.timestampPolicy.getTimestampForRecord(pState.mkTimestampPolicyContext(), record);
@@ -296,6 +311,7 @@ class KafkaUnboundedReader<K, V> extends UnboundedReader<KafkaRecord<K, V>> {
 
   private final KafkaUnboundedSource<K, V> source;
   private final String name;
+  private final boolean valuesOnly; // Skip keys and headers, see KafkaValueSource.
   private Consumer<byte[], byte[]> consumer;
   private final List<PartitionState<K, V>> partitionStates;
   private KafkaRecord<K, V> curRecord;
@@ -335,9 +351,12 @@ class KafkaUnboundedReader<K, V> extends UnboundedReader<KafkaRecord<K, V>> {
   // like 100 milliseconds does not work well. This along with large receive buffer for
   // consumer achieved best throughput in tests (see `defaultConsumerProperties`).
   private final ExecutorService consumerPollThread = Executors.newSingleThreadExecutor();
+  // Deserializes the records of each batch in parallel across partitions, if enabled with
+  // KafkaIO.Read#withDeserializationParallelism(). Null when records are deserialized in advance().
+  @Nullable private final ExecutorService deserializerThreads;
   private AtomicReference<Exception> consumerPollException = new AtomicReference<>();
-  private final SynchronousQueue<ConsumerRecords<byte[], byte[]>> availableRecordsQueue =
-      new SynchronousQueue<>();
+  // Batches polled ahead of the reader, see KafkaIO.Read#withPrefetchDepth().
+  private final BlockingQueue<ConsumerRecords<byte[], byte[]>> availableRecordsQueue;
   private AtomicReference<KafkaCheckpointMark> finalizedCheckpointMark = new AtomicReference<>();
   private AtomicBoolean closed = new AtomicBoolean(false);
 
@@ -380,7 +399,7 @@ class KafkaUnboundedReader<K, V> extends UnboundedReader<KafkaRecord<K, V>> {
     }
   }
 
-  private static class TimestampPolicyContext extends TimestampPolicy.PartitionContext {
+  static class TimestampPolicyContext extends TimestampPolicy.PartitionContext {
 
     private final long messageBacklog;
     private final Instant backlogCheckTime;
@@ -411,6 +430,10 @@ class KafkaUnboundedReader<K, V> extends UnboundedReader<KafkaRecord<K, V>> {
     private final TimestampPolicy<K, V> timestampPolicy;
 
     private Iterator<ConsumerRecord<byte[], byte[]>> recordIter = Collections.emptyIterator();
+    private Iterator<KafkaRecord<K, V>> deserializedRecordIter = Collections.emptyIterator();
+
+    private Deserializer<K> keyDeserializer;
+    private Deserializer<V> valueDeserializer;
 
     private MovingAvg avgRecordSize = new MovingAvg();
     private MovingAvg avgOffsetGap = new MovingAvg(); // > 0 only when log compaction is enabled.
@@ -471,13 +494,45 @@ class KafkaUnboundedReader<K, V> extends UnboundedReader<KafkaRecord<K, V>> {
       lastWatermark = timestampPolicy.getWatermark(mkTimestampPolicyContext());
       return lastWatermark;
     }
+
+    KafkaRecord<K, V> toKafkaRecord(
+        ConsumerRecord<byte[], byte[]> rawRecord, ConsumerSpEL consumerSpEL, boolean valuesOnly) {
+      return new KafkaRecord<>(
+          rawRecord.topic(),
+          rawRecord.partition(),
+          rawRecord.offset(),
+          consumerSpEL.getRecordTimestamp(rawRecord),
+          consumerSpEL.getRecordTimestampType(rawRecord),
+          !valuesOnly && ConsumerSpEL.hasHeaders() ? rawRecord.headers() : null,
+          valuesOnly ? null : keyDeserializer.deserialize(rawRecord.topic(), rawRecord.key()),
+          valueDeserializer.deserialize(rawRecord.topic(), rawRecord.value()));
+    }
+
+    List<KafkaRecord<K, V>> toKafkaRecords(
+        List<ConsumerRecord<byte[], byte[]>> rawRecords,
+        ConsumerSpEL consumerSpEL,
+        boolean valuesOnly) {
+      List<KafkaRecord<K, V>> records = new ArrayList<>(rawRecords.size());
+      for (ConsumerRecord<byte[], byte[]> rawRecord : rawRecords) {
+        records.add(toKafkaRecord(rawRecord, consumerSpEL, valuesOnly));
+      }
+      return records;
+    }
   }
 
   KafkaUnboundedReader(
       KafkaUnboundedSource<K, V> source, @Nullable KafkaCheckpointMark checkpointMark) {
+    this(source, checkpointMark, false);
+  }
+
+  KafkaUnboundedReader(
+      KafkaUnboundedSource<K, V> source,
+      @Nullable KafkaCheckpointMark checkpointMark,
+      boolean valuesOnly) {
     this.consumerSpEL = new ConsumerSpEL();
     this.source = source;
     this.name = "Reader-" + source.getId();
+    this.valuesOnly = valuesOnly;
 
     List<TopicPartition> partitions = source.getSpec().getTopicPartitions();
     List<PartitionState<K, V>> states = new ArrayList<>(partitions.size());
@@ -520,6 +575,22 @@ class KafkaUnboundedReader<K, V> extends UnboundedReader<KafkaRecord<K, V>> {
 
     partitionStates = ImmutableList.copyOf(states);
 
+    int prefetchDepth = source.getSpec().getPrefetchDepth();
+    availableRecordsQueue =
+        prefetchDepth > 0 ? new ArrayBlockingQueue<>(prefetchDepth) : new SynchronousQueue<>();
+
+    int numDeserializerThreads =
+        Math.min(source.getSpec().getDeserializationParallelism(), partitions.size());
+    deserializerThreads =
+        numDeserializerThreads > 1
+            ? Executors.newFixedThreadPool(
+                numDeserializerThreads,
+                new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat(name + "-deserializer-%d")
+                    .build())
+            : null;
+
     String splitId = String.valueOf(source.getId());
     elementsReadBySplit = SourceMetrics.elementsReadBySplit(splitId);
     bytesReadBySplit = SourceMetrics.bytesReadBySplit(splitId);
@@ -610,10 +681,39 @@ class KafkaUnboundedReader<K, V> extends UnboundedReader<KafkaRecord<K, V>> {
 
     partitionStates.forEach(p -> p.recordIter = records.records(p.topicPartition).iterator());
 
+    if (deserializerThreads != null) {
+      deserializeInParallel(records);
+    }
+
     // cycle through the partitions in order to interleave records from each.
     curBatch = Iterators.cycle(new ArrayList<>(partitionStates));
   }
 
+  private void deserializeInParallel(ConsumerRecords<byte[], byte[]> records) throws IOException {
+    List<Future<List<KafkaRecord<K, V>>>> futures = new ArrayList<>(partitionStates.size());
+    for (PartitionState<K, V> pState : partitionStates) {
+      List<ConsumerRecord<byte[], byte[]>> rawRecords = records.records(pState.topicPartition);
+      futures.add(
+          rawRecords.isEmpty()
+              ? null
+              : deserializerThreads.submit(
+                  () -> pState.toKafkaRecords(rawRecords, consumerSpEL, valuesOnly)));
+    }
+    for (int i = 0; i < partitionStates.size(); i++) {
+      if (futures.get(i) == null) {
+        continue;
+      }
+      try {
+        partitionStates.get(i).deserializedRecordIter = futures.get(i).get().iterator();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      } catch (ExecutionException e) {
+        throw new IOException("Exception while deserializing records from Kafka", e.getCause());
+      }
+    }
+  }
+
   private void setupInitialOffset(PartitionState pState) {
     Read<K, V> spec = source.getSpec();
 
@@ -725,6 +825,9 @@ class KafkaUnboundedReader<K, V> extends UnboundedReader<KafkaRecord<K, V>> {
     closed.set(true);
     consumerPollThread.shutdown();
     offsetFetcherThread.shutdown();
+    if (deserializerThreads != null) {
+      deserializerThreads.shutdownNow();
+    }
 
     boolean isShutdown = false;
 
@@ -755,6 +858,12 @@ class KafkaUnboundedReader<K, V> extends UnboundedReader<KafkaRecord<K, V>> {
 
     Closeables.close(keyDeserializerInstance, true);
     Closeables.close(valueDeserializerInstance, true);
+    if (deserializerThreads != null) {
+      for (PartitionState<K, V> pState : partitionStates) {
+        Closeables.close(pState.keyDeserializer, true);
+        Closeables.close(pState.valueDeserializer, true);
+      }
+    }
 
     Closeables.close(offsetConsumer, true);
     Closeables.close(consumer, true);
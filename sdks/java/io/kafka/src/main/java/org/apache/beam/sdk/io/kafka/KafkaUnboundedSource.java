@@ -115,15 +115,24 @@ class KafkaUnboundedSource<K, V> extends UnboundedSource<KafkaRecord<K, V>, Kafk
   @Override
   public KafkaUnboundedReader<K, V> createReader(
       PipelineOptions options, KafkaCheckpointMark checkpointMark) {
+    return createReader(options, checkpointMark, false);
+  }
+
+  /**
+   * Creates a reader, which does not deserialize keys and headers of the records if {@code
+   * valuesOnly} is set. See {@link KafkaValueSource}.
+   */
+  KafkaUnboundedReader<K, V> createReader(
+      PipelineOptions options, KafkaCheckpointMark checkpointMark, boolean valuesOnly) {
     if (spec.getTopicPartitions().isEmpty()) {
       LOG.warn("Looks like generateSplits() is not called. Generate single split.");
       try {
-        return new KafkaUnboundedReader<>(split(1, options).get(0), checkpointMark);
+        return new KafkaUnboundedReader<>(split(1, options).get(0), checkpointMark, valuesOnly);
       } catch (Exception e) {
         throw new RuntimeException(e);
       }
     }
-    return new KafkaUnboundedReader<>(this, checkpointMark);
+    return new KafkaUnboundedReader<>(this, checkpointMark, valuesOnly);
   }
 
   @Override
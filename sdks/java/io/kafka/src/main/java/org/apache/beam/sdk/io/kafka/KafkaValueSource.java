@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.io.kafka;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.io.UnboundedSource;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.joda.time.Instant;
+
+/**
+ * An {@link UnboundedSource} of the values of Kafka records, see {@link KafkaIO.Read#values()}. It
+ * wraps a {@link KafkaUnboundedSource} whose reader skips keys and headers, and outputs the values
+ * with the value {@link Coder}, without encoding {@link KafkaRecord} metadata.
+ */
+class KafkaValueSource<K, V> extends UnboundedSource<V, KafkaCheckpointMark> {
+
+  private final KafkaUnboundedSource<K, V> source;
+
+  KafkaValueSource(KafkaUnboundedSource<K, V> source) {
+    this.source = source;
+  }
+
+  @Override
+  public List<KafkaValueSource<K, V>> split(int desiredNumSplits, PipelineOptions options)
+      throws Exception {
+    return source.split(desiredNumSplits, options).stream()
+        .map(KafkaValueSource::new)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public UnboundedReader<V> createReader(
+      PipelineOptions options, @Nullable KafkaCheckpointMark checkpointMark) {
+    return new ValueReader<>(this, source.createReader(options, checkpointMark, true));
+  }
+
+  @Override
+  public Coder<KafkaCheckpointMark> getCheckpointMarkCoder() {
+    return source.getCheckpointMarkCoder();
+  }
+
+  @Override
+  public boolean requiresDeduping() {
+    return source.requiresDeduping();
+  }
+
+  @Override
+  public Coder<V> getOutputCoder() {
+    return source.getSpec().getValueCoder();
+  }
+
+  private static class ValueReader<K, V> extends UnboundedReader<V> {
+    private final KafkaValueSource<K, V> source;
+    private final KafkaUnboundedReader<K, V> reader;
+
+    ValueReader(KafkaValueSource<K, V> source, KafkaUnboundedReader<K, V> reader) {
+      this.source = source;
+      this.reader = reader;
+    }
+
+    @Override
+    public boolean start() throws IOException {
+      return reader.start();
+    }
+
+    @Override
+    public boolean advance() throws IOException {
+      return reader.advance();
+    }
+
+    @Override
+    public V getCurrent() throws NoSuchElementException {
+      return reader.getCurrent().getKV().getValue();
+    }
+
+    @Override
+    public Instant getCurrentTimestamp() throws NoSuchElementException {
+      return reader.getCurrentTimestamp();
+    }
+
+    @Override
+    public Instant getWatermark() {
+      return reader.getWatermark();
+    }
+
+    @Override
+    public CheckpointMark getCheckpointMark() {
+      return reader.getCheckpointMark();
+    }
+
+    @Override
+    public long getSplitBacklogBytes() {
+      return reader.getSplitBacklogBytes();
+    }
+
+    @Override
+    public UnboundedSource<V, ?> getCurrentSource() {
+      return source;
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+}
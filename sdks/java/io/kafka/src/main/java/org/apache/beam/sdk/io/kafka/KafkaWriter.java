@@ -18,18 +18,27 @@
 package org.apache.beam.sdk.io.kafka;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 import org.apache.beam.sdk.io.kafka.KafkaIO.WriteRecords;
 import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.metrics.SinkMetrics;
 import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.SerializableFunction;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableSet;
 import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,10 +50,18 @@ class KafkaWriter<K, V> extends DoFn<ProducerRecord<K, V>, Void> {
 
   @Setup
   public void setup() {
-    if (spec.getProducerFactoryFn() != null) {
-      producer = spec.getProducerFactoryFn().apply(producerConfig);
+    if (spec.isSharedProducer()) {
+      sharedProducer =
+          SharedProducer.acquire(
+              producerConfig, spec.getProducerFactoryFn(), spec.getMaxInflightBytes());
+      producer = sharedProducer.producer;
+      inflightBytes = sharedProducer.inflightBytes;
     } else {
-      producer = new KafkaProducer<>(producerConfig);
+      producer = createProducer(producerConfig, spec.getProducerFactoryFn());
+      inflightBytes =
+          spec.getMaxInflightBytes() > 0
+              ? new InflightBytesLimiter(spec.getMaxInflightBytes())
+              : null;
     }
   }
 
@@ -65,9 +82,15 @@ class KafkaWriter<K, V> extends DoFn<ProducerRecord<K, V>, Void> {
                 : null);
     String topicName = record.topic() != null ? record.topic() : spec.getTopic();
 
+    long estimatedBytes = 0;
+    if (inflightBytes != null) {
+      // Blocks while too many bytes are waiting for an acknowledgement from Kafka.
+      estimatedBytes = inflightBytes.acquire();
+    }
+
     producer.send(
         new ProducerRecord<>(topicName, null, timestampMillis, record.key(), record.value()),
-        new SendCallback());
+        new SendCallback(estimatedBytes));
 
     elementsWritten.inc();
   }
@@ -75,22 +98,35 @@ class KafkaWriter<K, V> extends DoFn<ProducerRecord<K, V>, Void> {
   @FinishBundle
   public void finishBundle() throws IOException {
     producer.flush();
+    reportProducerMetrics();
     checkForFailures();
   }
 
   @Teardown
   public void teardown() {
-    producer.close();
+    if (sharedProducer != null) {
+      SharedProducer.release(sharedProducer);
+    } else {
+      producer.close();
+    }
   }
 
   ///////////////////////////////////////////////////////////////////////////////////
 
   private static final Logger LOG = LoggerFactory.getLogger(KafkaWriter.class);
+  private static final String METRIC_NAMESPACE = "KafkaWriter";
+
+  // Producer metrics reported as gauges, see reportProducerMetrics().
+  private static final String PRODUCER_METRICS_GROUP = "producer-metrics";
+  private static final ImmutableSet<String> PRODUCER_METRICS =
+      ImmutableSet.of("record-send-rate", "batch-size-avg", "request-latency-avg");
 
   private final WriteRecords<K, V> spec;
   private final Map<String, Object> producerConfig;
 
   private transient Producer<K, V> producer = null;
+  @Nullable private transient SharedProducer<K, V> sharedProducer = null;
+  @Nullable private transient InflightBytesLimiter inflightBytes = null;
   // first exception and number of failures since last invocation of checkForFailures():
   private transient Exception sendException = null;
   private transient long numSendFailures = 0;
@@ -107,6 +143,30 @@ class KafkaWriter<K, V> extends DoFn<ProducerRecord<K, V>, Void> {
         ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, spec.getValueSerializer());
   }
 
+  private static <K, V> Producer<K, V> createProducer(
+      Map<String, Object> producerConfig,
+      @Nullable SerializableFunction<Map<String, Object>, Producer<K, V>> producerFactoryFn) {
+    if (producerFactoryFn != null) {
+      return producerFactoryFn.apply(producerConfig);
+    } else {
+      return new KafkaProducer<>(producerConfig);
+    }
+  }
+
+  private void reportProducerMetrics() {
+    for (Map.Entry<MetricName, ? extends Metric> entry : producer.metrics().entrySet()) {
+      MetricName name = entry.getKey();
+      if (!PRODUCER_METRICS_GROUP.equals(name.group()) || !PRODUCER_METRICS.contains(name.name())) {
+        continue;
+      }
+      Object value = entry.getValue().metricValue();
+      if (value instanceof Number && !Double.isNaN(((Number) value).doubleValue())) {
+        Metrics.gauge(METRIC_NAMESPACE, name.name())
+            .set(Math.round(((Number) value).doubleValue()));
+      }
+    }
+  }
+
   private synchronized void checkForFailures() throws IOException {
     if (numSendFailures == 0) {
       return;
@@ -125,8 +185,18 @@ class KafkaWriter<K, V> extends DoFn<ProducerRecord<K, V>, Void> {
   }
 
   private class SendCallback implements Callback {
+    private final long estimatedBytes;
+
+    SendCallback(long estimatedBytes) {
+      this.estimatedBytes = estimatedBytes;
+    }
+
     @Override
     public void onCompletion(RecordMetadata metadata, Exception exception) {
+      if (inflightBytes != null) {
+        inflightBytes.release(estimatedBytes, exception == null ? metadata : null);
+      }
+
       if (exception == null) {
         return;
       }
@@ -141,4 +211,103 @@ class KafkaWriter<K, V> extends DoFn<ProducerRecord<K, V>, Void> {
       LOG.warn("send failed : '{}'", exception.getMessage());
     }
   }
+
+  /**
+   * Bounds the bytes sent to a producer but not acknowledged yet. Serialization happens inside the
+   * producer, so the size of a record is estimated with a moving average of the serialized size of
+   * the acknowledged records.
+   */
+  @VisibleForTesting
+  static class InflightBytesLimiter {
+    private static final long INITIAL_RECORD_SIZE_ESTIMATE = 1024;
+    private static final double MOVING_AVG_WEIGHT = 0.05;
+
+    private final long maxInflightBytes;
+    private long inflightBytes = 0;
+    private double avgRecordSize = INITIAL_RECORD_SIZE_ESTIMATE;
+
+    InflightBytesLimiter(long maxInflightBytes) {
+      this.maxInflightBytes = maxInflightBytes;
+    }
+
+    /**
+     * Waits until the estimated size of the next record fits in the bound and returns the estimate,
+     * to be passed to {@link #release}. A record is always let through when nothing is in flight.
+     */
+    synchronized long acquire() throws InterruptedException {
+      long estimate = Math.max(1, Math.round(avgRecordSize));
+      while (inflightBytes > 0 && inflightBytes + estimate > maxInflightBytes) {
+        wait();
+      }
+      inflightBytes += estimate;
+      return estimate;
+    }
+
+    synchronized void release(long estimatedBytes, @Nullable RecordMetadata metadata) {
+      inflightBytes -= estimatedBytes;
+      if (metadata != null) {
+        // Sizes are -1 when the key or value is null.
+        long size =
+            Math.max(0, metadata.serializedKeySize()) + Math.max(0, metadata.serializedValueSize());
+        avgRecordSize += (size - avgRecordSize) * MOVING_AVG_WEIGHT;
+      }
+      notifyAll();
+    }
+
+    @VisibleForTesting
+    synchronized long getInflightBytes() {
+      return inflightBytes;
+    }
+  }
+
+  /**
+   * A producer shared by the {@link KafkaWriter} instances in the JVM with the same producer
+   * configuration. It is closed when the last of them releases it.
+   */
+  private static class SharedProducer<K, V> {
+    private static final Map<List<Object>, SharedProducer<?, ?>> PRODUCERS = new HashMap<>();
+
+    private final List<Object> key;
+    private final Producer<K, V> producer;
+    @Nullable private final InflightBytesLimiter inflightBytes;
+    private int refCount = 0;
+
+    private SharedProducer(
+        List<Object> key, Producer<K, V> producer, @Nullable InflightBytesLimiter inflightBytes) {
+      this.key = key;
+      this.producer = producer;
+      this.inflightBytes = inflightBytes;
+    }
+
+    @SuppressWarnings("unchecked")
+    static synchronized <K, V> SharedProducer<K, V> acquire(
+        Map<String, Object> producerConfig,
+        @Nullable SerializableFunction<Map<String, Object>, Producer<K, V>> producerFactoryFn,
+        long maxInflightBytes) {
+      // Factory functions are deserialized per DoFn instance, their class identifies them.
+      List<Object> key =
+          Arrays.asList(
+              producerConfig,
+              producerFactoryFn == null ? null : producerFactoryFn.getClass().getName(),
+              maxInflightBytes);
+      SharedProducer<K, V> shared = (SharedProducer<K, V>) PRODUCERS.get(key);
+      if (shared == null) {
+        shared =
+            new SharedProducer<>(
+                key,
+                createProducer(producerConfig, producerFactoryFn),
+                maxInflightBytes > 0 ? new InflightBytesLimiter(maxInflightBytes) : null);
+        PRODUCERS.put(key, shared);
+      }
+      shared.refCount++;
+      return shared;
+    }
+
+    static synchronized void release(SharedProducer<?, ?> shared) {
+      if (--shared.refCount == 0) {
+        PRODUCERS.remove(shared.key);
+        shared.producer.close();
+      }
+    }
+  }
 }
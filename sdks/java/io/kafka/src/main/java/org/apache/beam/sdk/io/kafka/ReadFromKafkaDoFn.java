@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.io.kafka;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.io.UnboundedSource.UnboundedReader;
+import org.apache.beam.sdk.io.kafka.KafkaIO.Read;
+import org.apache.beam.sdk.io.range.OffsetRange;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.DoFn.UnboundedPerElement;
+import org.apache.beam.sdk.transforms.splittabledofn.ManualWatermarkEstimator;
+import org.apache.beam.sdk.transforms.splittabledofn.RestrictionTracker;
+import org.apache.beam.sdk.transforms.splittabledofn.WatermarkEstimators;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.Closeables;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A splittable {@link DoFn} which reads the Kafka partition described by each input {@link
+ * KafkaSourceDescriptor}. See {@link Read#readSourceDescriptors()} for user visible documentation.
+ *
+ * <p>The restriction is the {@link OffsetRange} of the partition left to read, which is open ended
+ * ({@code Long.MAX_VALUE}) initially. {@link KafkaOffsetRangeTracker} estimates its end with the
+ * latest offset of the partition, so that the size reported to the runner is the backlog of the
+ * partition and a split hands over a fraction of that backlog. Each restriction has its own
+ * watermark estimator driven by the {@link TimestampPolicy} of the partition.
+ */
+@UnboundedPerElement
+class ReadFromKafkaDoFn<K, V> extends DoFn<KafkaSourceDescriptor, KafkaRecord<K, V>> {
+  private static final Logger LOG = LoggerFactory.getLogger(ReadFromKafkaDoFn.class);
+
+  private static final Duration KAFKA_POLL_TIMEOUT = Duration.millis(1000);
+  // Same as the interval at which KafkaUnboundedReader refreshes latest offsets.
+  private static final Duration LATEST_OFFSET_REFRESH_INTERVAL = Duration.standardSeconds(1);
+  // The delay before resuming a partition after an empty poll, doubled after each empty poll.
+  private static final Duration MIN_RESUME_DELAY = Duration.millis(100);
+  private static final Duration MAX_RESUME_DELAY = Duration.standardSeconds(5);
+  // The consumers of the partitions which were not processed for this long are closed.
+  private static final Duration CONSUMER_IDLE_TIMEOUT = Duration.standardMinutes(1);
+
+  private final Read<K, V> spec;
+
+  private transient ConsumerSpEL consumerSpEL;
+  private transient Deserializer<K> keyDeserializerInstance;
+  private transient Deserializer<V> valueDeserializerInstance;
+
+  // The consumers of the partitions processed by this instance, kept across the calls of
+  // processElement() so that a resumed restriction does not connect to Kafka again.
+  private transient Map<TopicPartition, PartitionConsumer> partitionConsumers;
+
+  // Fetches latest offsets of the partitions processed by this instance, see getLatestOffset().
+  private transient Consumer<byte[], byte[]> offsetConsumer;
+  private transient List<TopicPartition> offsetConsumerPartitions;
+  private transient Map<TopicPartition, LatestOffset> latestOffsets;
+
+  ReadFromKafkaDoFn(Read<K, V> spec) {
+    this.spec = spec;
+  }
+
+  private static class LatestOffset {
+    private final long offset;
+    private final Instant fetchTime;
+
+    LatestOffset(long offset, Instant fetchTime) {
+      this.offset = offset;
+      this.fetchTime = fetchTime;
+    }
+  }
+
+  /** The consumer reading a partition, along with the number of consecutive empty polls. */
+  private static class PartitionConsumer {
+    private final Consumer<byte[], byte[]> consumer;
+    private int emptyPolls;
+    private Instant lastUsed;
+
+    PartitionConsumer(Consumer<byte[], byte[]> consumer) {
+      this.consumer = consumer;
+    }
+  }
+
+  @Setup
+  public void setup() {
+    consumerSpEL = new ConsumerSpEL();
+    keyDeserializerInstance =
+        spec.getKeyDeserializerProvider().getDeserializer(spec.getConsumerConfig(), true);
+    valueDeserializerInstance =
+        spec.getValueDeserializerProvider().getDeserializer(spec.getConsumerConfig(), false);
+    offsetConsumerPartitions = new ArrayList<>();
+    latestOffsets = new HashMap<>();
+    partitionConsumers = new HashMap<>();
+  }
+
+  @GetInitialRestriction
+  public OffsetRange initialRestriction(@Element KafkaSourceDescriptor descriptor) {
+    TopicPartition topicPartition = descriptor.getTopicPartition();
+    if (descriptor.getStartReadOffset() != null) {
+      return new OffsetRange(descriptor.getStartReadOffset(), Long.MAX_VALUE);
+    }
+    Instant startReadTime =
+        descriptor.getStartReadTime() != null
+            ? descriptor.getStartReadTime()
+            : spec.getStartReadTime();
+    long startOffset;
+    try (Consumer<byte[], byte[]> consumer =
+        spec.getConsumerFactoryFn().apply(spec.getConsumerConfig())) {
+      consumerSpEL.evaluateAssign(consumer, ImmutableList.of(topicPartition));
+      if (startReadTime != null) {
+        startOffset = consumerSpEL.offsetForTime(consumer, topicPartition, startReadTime);
+      } else {
+        // Committed offset of the group, or as configured by 'auto.offset.reset'.
+        startOffset = consumer.position(topicPartition);
+      }
+    }
+    LOG.info("{}: reading from offset {}", topicPartition, startOffset);
+    return new OffsetRange(startOffset, Long.MAX_VALUE);
+  }
+
+  @GetSize
+  public double getSize(
+      @Element KafkaSourceDescriptor descriptor, @Restriction OffsetRange restriction) {
+    return restrictionTracker(descriptor, restriction).getSize();
+  }
+
+  @NewTracker
+  public KafkaOffsetRangeTracker restrictionTracker(
+      @Element KafkaSourceDescriptor descriptor, @Restriction OffsetRange restriction) {
+    TopicPartition topicPartition = descriptor.getTopicPartition();
+    return new KafkaOffsetRangeTracker(restriction, () -> getLatestOffset(topicPartition).offset);
+  }
+
+  @GetRestrictionCoder
+  public Coder<OffsetRange> restrictionCoder() {
+    return OffsetRange.Coder.of();
+  }
+
+  @GetInitialWatermarkEstimatorState
+  public Instant getInitialWatermarkEstimatorState(@Timestamp Instant currentElementTimestamp) {
+    return currentElementTimestamp;
+  }
+
+  @NewWatermarkEstimator
+  public WatermarkEstimators.Manual newWatermarkEstimator(
+      @WatermarkEstimatorState Instant watermarkEstimatorState) {
+    return new WatermarkEstimators.Manual(watermarkEstimatorState);
+  }
+
+  @ProcessElement
+  public ProcessContinuation processElement(
+      @Element KafkaSourceDescriptor descriptor,
+      RestrictionTracker<OffsetRange, Long> tracker,
+      ManualWatermarkEstimator<Instant> watermarkEstimator,
+      OutputReceiver<KafkaRecord<K, V>> receiver)
+      throws IOException {
+    TopicPartition topicPartition = descriptor.getTopicPartition();
+    TimestampPolicy<K, V> timestampPolicy =
+        spec.getTimestampPolicyFactory()
+            .createTimestampPolicy(
+                topicPartition, Optional.of(watermarkEstimator.currentWatermark()));
+    long nextOffset = tracker.currentRestriction().getFrom();
+
+    PartitionConsumer partitionConsumer = getPartitionConsumer(topicPartition, nextOffset);
+    Consumer<byte[], byte[]> consumer = partitionConsumer.consumer;
+    try {
+      while (true) {
+        ConsumerRecords<byte[], byte[]> rawRecords = consumer.poll(KAFKA_POLL_TIMEOUT.getMillis());
+        if (rawRecords.isEmpty()) {
+          watermarkEstimator.setWatermark(
+              timestampPolicy.getWatermark(mkTimestampPolicyContext(topicPartition, nextOffset)));
+          // The rest of a bounded restriction might not exist anymore due to log compaction.
+          long position = consumer.position(topicPartition);
+          if (position >= tracker.currentRestriction().getTo()) {
+            tracker.tryClaim(position);
+            return ProcessContinuation.stop();
+          }
+          // Yield so that the runner can checkpoint an idle partition, and back off while it is
+          // idle.
+          return ProcessContinuation.resume()
+              .withResumeDelay(getResumeDelay(partitionConsumer.emptyPolls++));
+        }
+        partitionConsumer.emptyPolls = 0;
+
+        for (ConsumerRecord<byte[], byte[]> rawRecord : rawRecords.records(topicPartition)) {
+          if (rawRecord.offset() < nextOffset) {
+            // this can happen when compression is enabled in Kafka (seems to be fixed in 0.10)
+            continue;
+          }
+          if (!tracker.tryClaim(rawRecord.offset())) {
+            return ProcessContinuation.stop();
+          }
+          KafkaRecord<K, V> record =
+              new KafkaRecord<>(
+                  rawRecord.topic(),
+                  rawRecord.partition(),
+                  rawRecord.offset(),
+                  consumerSpEL.getRecordTimestamp(rawRecord),
+                  consumerSpEL.getRecordTimestampType(rawRecord),
+                  ConsumerSpEL.hasHeaders() ? rawRecord.headers() : null,
+                  keyDeserializerInstance.deserialize(rawRecord.topic(), rawRecord.key()),
+                  valueDeserializerInstance.deserialize(rawRecord.topic(), rawRecord.value()));
+          Instant timestamp =
+              timestampPolicy.getTimestampForRecord(
+                  mkTimestampPolicyContext(topicPartition, nextOffset), record);
+          receiver.outputWithTimestamp(record, timestamp);
+          nextOffset = rawRecord.offset() + 1;
+        }
+        watermarkEstimator.setWatermark(
+            timestampPolicy.getWatermark(mkTimestampPolicyContext(topicPartition, nextOffset)));
+      }
+    } catch (RuntimeException e) {
+      // The consumer might be left in an unknown state, the partition is read with a new one.
+      partitionConsumers.remove(topicPartition);
+      Closeables.close(consumer, true);
+      throw e;
+    }
+  }
+
+  @Teardown
+  public void teardown() throws Exception {
+    Closeables.close(keyDeserializerInstance, true);
+    Closeables.close(valueDeserializerInstance, true);
+    Closeables.close(offsetConsumer, true);
+    if (partitionConsumers != null) {
+      for (PartitionConsumer partitionConsumer : partitionConsumers.values()) {
+        Closeables.close(partitionConsumer.consumer, true);
+      }
+      partitionConsumers.clear();
+    }
+  }
+
+  /**
+   * Returns the consumer of the partition, positioned at the given offset. The consumer is created
+   * on the first call for the partition, and reused as long as the partition is processed. The
+   * consumers of the other partitions which have been idle for {@link #CONSUMER_IDLE_TIMEOUT} are
+   * closed, since their partitions are likely processed by other instances now.
+   */
+  private PartitionConsumer getPartitionConsumer(TopicPartition topicPartition, long nextOffset)
+      throws IOException {
+    Instant now = Instant.now();
+    for (Iterator<Map.Entry<TopicPartition, PartitionConsumer>> it =
+            partitionConsumers.entrySet().iterator();
+        it.hasNext(); ) {
+      PartitionConsumer idle = it.next().getValue();
+      if (idle.lastUsed.plus(CONSUMER_IDLE_TIMEOUT).isBefore(now)) {
+        it.remove();
+        Closeables.close(idle.consumer, true);
+      }
+    }
+
+    PartitionConsumer partitionConsumer = partitionConsumers.get(topicPartition);
+    if (partitionConsumer == null) {
+      Consumer<byte[], byte[]> consumer =
+          spec.getConsumerFactoryFn().apply(spec.getConsumerConfig());
+      consumerSpEL.evaluateAssign(consumer, ImmutableList.of(topicPartition));
+      consumer.seek(topicPartition, nextOffset);
+      partitionConsumer = new PartitionConsumer(consumer);
+      partitionConsumers.put(topicPartition, partitionConsumer);
+    } else if (partitionConsumer.consumer.position(topicPartition) != nextOffset) {
+      // another restriction of the partition was processed in between
+      partitionConsumer.consumer.seek(topicPartition, nextOffset);
+    }
+    partitionConsumer.lastUsed = now;
+    return partitionConsumer;
+  }
+
+  /** Returns the delay before resuming a partition after the given number of empty polls. */
+  @VisibleForTesting
+  static Duration getResumeDelay(int emptyPolls) {
+    long delayMillis = MIN_RESUME_DELAY.getMillis() << Math.min(emptyPolls, 16);
+    return Duration.millis(Math.min(delayMillis, MAX_RESUME_DELAY.getMillis()));
+  }
+
+  private KafkaUnboundedReader.TimestampPolicyContext mkTimestampPolicyContext(
+      TopicPartition topicPartition, long nextOffset) {
+    LatestOffset latestOffset = getLatestOffset(topicPartition);
+    long backlog =
+        latestOffset.offset < 0
+            ? UnboundedReader.BACKLOG_UNKNOWN
+            : Math.max(0, latestOffset.offset - nextOffset);
+    return new KafkaUnboundedReader.TimestampPolicyContext(backlog, latestOffset.fetchTime);
+  }
+
+  /**
+   * Returns the latest offset of the partition, fetched at most once per {@link
+   * #LATEST_OFFSET_REFRESH_INTERVAL}. The offset is negative if it could not be fetched yet. This
+   * is invoked by runners through {@link GetSize} and trackers, possibly concurrently with {@link
+   * ProcessElement}.
+   */
+  private synchronized LatestOffset getLatestOffset(TopicPartition topicPartition) {
+    Instant now = Instant.now();
+    LatestOffset cached = latestOffsets.get(topicPartition);
+    if (cached != null && cached.fetchTime.plus(LATEST_OFFSET_REFRESH_INTERVAL).isAfter(now)) {
+      return cached;
+    }
+    try {
+      if (offsetConsumer == null) {
+        offsetConsumer = spec.getConsumerFactoryFn().apply(getOffsetConsumerConfig());
+      }
+      if (!offsetConsumerPartitions.contains(topicPartition)) {
+        offsetConsumerPartitions.add(topicPartition);
+        consumerSpEL.evaluateAssign(offsetConsumer, offsetConsumerPartitions);
+      }
+      consumerSpEL.evaluateSeek2End(offsetConsumer, topicPartition);
+      LatestOffset latestOffset = new LatestOffset(offsetConsumer.position(topicPartition), now);
+      latestOffsets.put(topicPartition, latestOffset);
+      return latestOffset;
+    } catch (Exception e) {
+      LOG.warn(
+          "exception while fetching latest offset for partition {}. will be retried.",
+          topicPartition,
+          e);
+      return cached != null ? cached : new LatestOffset(-1, BoundedWindow.TIMESTAMP_MIN_VALUE);
+    }
+  }
+
+  // Same as KafkaUnboundedReader#getOffsetConsumerConfig(), see the comments there.
+  private Map<String, Object> getOffsetConsumerConfig() {
+    Map<String, Object> offsetConsumerConfig = new HashMap<>(spec.getConsumerConfig());
+    offsetConsumerConfig.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+    Object groupId = spec.getConsumerConfig().get(ConsumerConfig.GROUP_ID_CONFIG);
+    String offsetGroupId =
+        String.format(
+            "%s_offset_consumer_%d_%s",
+            getClass().getSimpleName(),
+            (new Random()).nextInt(Integer.MAX_VALUE),
+            (groupId == null ? "none" : groupId));
+    offsetConsumerConfig.put(ConsumerConfig.GROUP_ID_CONFIG, offsetGroupId);
+
+    if (spec.getOffsetConsumerConfig() != null) {
+      offsetConsumerConfig.putAll(spec.getOffsetConsumerConfig());
+    }
+    offsetConsumerConfig.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_uncommitted");
+    return offsetConsumerConfig;
+  }
+}
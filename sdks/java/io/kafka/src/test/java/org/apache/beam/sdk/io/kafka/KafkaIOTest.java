@@ -25,9 +25,11 @@ import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.isA;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
 import static org.junit.internal.matchers.ThrowableCauseMatcher.hasCause;
 import static org.junit.internal.matchers.ThrowableMessageMatcher.hasMessage;
@@ -52,9 +54,11 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -69,6 +73,7 @@ import org.apache.beam.sdk.io.AvroGeneratedUser;
 import org.apache.beam.sdk.io.Read;
 import org.apache.beam.sdk.io.UnboundedSource;
 import org.apache.beam.sdk.io.UnboundedSource.UnboundedReader;
+import org.apache.beam.sdk.io.range.OffsetRange;
 import org.apache.beam.sdk.metrics.MetricName;
 import org.apache.beam.sdk.metrics.MetricNameFilter;
 import org.apache.beam.sdk.metrics.MetricQueryResults;
@@ -90,6 +95,8 @@ import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.transforms.SerializableFunction;
 import org.apache.beam.sdk.transforms.Values;
 import org.apache.beam.sdk.transforms.display.DisplayData;
+import org.apache.beam.sdk.transforms.splittabledofn.SplitResult;
+import org.apache.beam.sdk.transforms.splittabledofn.WatermarkEstimators;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.transforms.windowing.FixedWindows;
 import org.apache.beam.sdk.transforms.windowing.Window;
@@ -621,6 +628,166 @@ public class KafkaIOTest {
     p.run();
   }
 
+  @Test
+  public void testReadFromKafkaDoFnInitialRestriction() {
+    ReadFromKafkaDoFn<Integer, Long> dofn =
+        new ReadFromKafkaDoFn<>(mkKafkaReadTransform(100, null));
+    dofn.setup();
+    TopicPartition tp = new TopicPartition("topic_a", 3);
+
+    // Starts at the earliest offset as configured by the mock consumer.
+    assertEquals(
+        new OffsetRange(0, Long.MAX_VALUE), dofn.initialRestriction(KafkaSourceDescriptor.of(tp)));
+    assertEquals(
+        new OffsetRange(2, Long.MAX_VALUE),
+        dofn.initialRestriction(KafkaSourceDescriptor.of(tp, 2L, null)));
+  }
+
+  @Test
+  public void testReadFromKafkaDoFnProcessElement() throws Exception {
+    // 20 partitions with 5 records each.
+    ReadFromKafkaDoFn<Integer, Long> dofn =
+        new ReadFromKafkaDoFn<>(mkKafkaReadTransform(100, null));
+    dofn.setup();
+    KafkaSourceDescriptor descriptor = KafkaSourceDescriptor.of(new TopicPartition("topic_a", 0));
+    KafkaOffsetRangeTracker tracker = dofn.restrictionTracker(descriptor, new OffsetRange(1, 4));
+    assertEquals(3, tracker.getSize(), 0);
+
+    List<Long> values = new ArrayList<>();
+    DoFn.ProcessContinuation continuation =
+        dofn.processElement(
+            descriptor,
+            tracker,
+            new WatermarkEstimators.Manual(BoundedWindow.TIMESTAMP_MIN_VALUE),
+            new DoFn.OutputReceiver<KafkaRecord<Integer, Long>>() {
+              @Override
+              public void output(KafkaRecord<Integer, Long> output) {
+                values.add(output.getKV().getValue());
+              }
+
+              @Override
+              public void outputWithTimestamp(
+                  KafkaRecord<Integer, Long> output, Instant timestamp) {
+                output(output);
+              }
+            });
+    dofn.teardown();
+
+    assertEquals(DoFn.ProcessContinuation.stop(), continuation);
+    assertEquals(ImmutableList.of(20L, 40L, 60L), values);
+    tracker.checkDone();
+  }
+
+  private static final AtomicInteger createdReadConsumers = new AtomicInteger();
+
+  @Test
+  public void testReadFromKafkaDoFnReusesConsumerAndBacksOffWhenIdle() throws Exception {
+    createdReadConsumers.set(0);
+    ConsumerFactoryFn consumerFactoryFn =
+        new ConsumerFactoryFn(
+            ImmutableList.of("topic_a", "topic_b"), 10, 100, OffsetResetStrategy.EARLIEST);
+    ReadFromKafkaDoFn<Integer, Long> dofn =
+        new ReadFromKafkaDoFn<>(
+            mkKafkaReadTransform(100, null)
+                .withConsumerFactoryFn(
+                    config -> {
+                      // the offset consumer fetching latest offsets is not counted
+                      if (!String.valueOf(config.get(ConsumerConfig.GROUP_ID_CONFIG))
+                          .contains("_offset_consumer_")) {
+                        createdReadConsumers.incrementAndGet();
+                      }
+                      return consumerFactoryFn.apply(config);
+                    }));
+    dofn.setup();
+    // The 5 records of the partition were all read already.
+    KafkaSourceDescriptor descriptor = KafkaSourceDescriptor.of(new TopicPartition("topic_a", 0));
+
+    List<Duration> resumeDelays = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      DoFn.ProcessContinuation continuation =
+          dofn.processElement(
+              descriptor,
+              dofn.restrictionTracker(descriptor, new OffsetRange(5, Long.MAX_VALUE)),
+              new WatermarkEstimators.Manual(BoundedWindow.TIMESTAMP_MIN_VALUE),
+              new DoFn.OutputReceiver<KafkaRecord<Integer, Long>>() {
+                @Override
+                public void output(KafkaRecord<Integer, Long> output) {
+                  fail("No record expected, but got " + output);
+                }
+
+                @Override
+                public void outputWithTimestamp(
+                    KafkaRecord<Integer, Long> output, Instant timestamp) {
+                  output(output);
+                }
+              });
+      assertTrue(continuation.shouldResume());
+      resumeDelays.add(continuation.resumeDelay());
+    }
+    dofn.teardown();
+
+    assertEquals(1, createdReadConsumers.get());
+    assertEquals(
+        ImmutableList.of(Duration.millis(100), Duration.millis(200), Duration.millis(400)),
+        resumeDelays);
+    assertEquals(Duration.standardSeconds(5), ReadFromKafkaDoFn.getResumeDelay(100));
+  }
+
+  @Test
+  public void testKafkaOffsetRangeTrackerSplitsBacklog() {
+    KafkaOffsetRangeTracker tracker =
+        new KafkaOffsetRangeTracker(new OffsetRange(10, Long.MAX_VALUE), () -> 110L);
+    assertEquals(100, tracker.getSize(), 0);
+    assertTrue(tracker.tryClaim(10L));
+
+    // Half of the backlog up to the latest offset is split off, the rest of the partition too.
+    SplitResult<OffsetRange> split = tracker.trySplit(0.5);
+    assertEquals(new OffsetRange(10, 60), split.getPrimary());
+    assertEquals(new OffsetRange(60, Long.MAX_VALUE), split.getResidual());
+
+    SplitResult<OffsetRange> checkpoint = tracker.trySplit(0);
+    assertEquals(new OffsetRange(10, 11), checkpoint.getPrimary());
+    assertEquals(new OffsetRange(11, 60), checkpoint.getResidual());
+    tracker.checkDone();
+
+    // Nothing left to split.
+    assertNull(tracker.trySplit(0.5));
+  }
+
+  @Test
+  public void testSplittableReadWithMaxNumRecords() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("are not supported with withSplittableRead()");
+
+    p.apply(mkKafkaReadTransform(100, null).withSplittableRead());
+  }
+
+  @Test
+  public void testUnboundedSourceWithPrefetchAndParallelDeserialization() {
+    int numElements = 1000;
+
+    PCollection<Long> input =
+        p.apply(
+                mkKafkaReadTransform(numElements, new ValueAsTimestampFn())
+                    .withPrefetchDepth(4)
+                    .withDeserializationParallelism(4)
+                    .withoutMetadata())
+            .apply(Values.create());
+
+    addCountingAsserts(input, numElements);
+    p.run();
+  }
+
+  @Test
+  public void testUnboundedSourceValues() {
+    int numElements = 1000;
+
+    PCollection<Long> input = p.apply(mkKafkaReadTransform(numElements, null).values());
+
+    addCountingAsserts(input, numElements);
+    p.run();
+  }
+
   private static class ElementValueDiff extends DoFn<Long, Long> {
     @ProcessElement
     public void processElement(ProcessContext c) throws Exception {
@@ -1404,6 +1571,119 @@ public class KafkaIOTest {
     }
   }
 
+  @Test
+  public void testExactlyOnceSinkWithPipelinedTransactions() {
+    // testExactlyOnceSink() with commits deferred to the end of the bundle.
+
+    if (!ProducerSpEL.supportsTransactions()) {
+      LOG.warn(
+          "testExactlyOnceSinkWithPipelinedTransactions() is disabled as Kafka client version "
+              + "does not support transactions.");
+      return;
+    }
+
+    int numElements = 1000;
+
+    try (MockProducerWrapper producerWrapper = new MockProducerWrapper()) {
+
+      ProducerSendCompletionThread completionThread =
+          new ProducerSendCompletionThread(producerWrapper.mockProducer).start();
+
+      String topic = "test";
+
+      p.apply(mkKafkaReadTransform(numElements, new ValueAsTimestampFn()).withoutMetadata())
+          .apply(
+              KafkaIO.<Integer, Long>write()
+                  .withBootstrapServers("none")
+                  .withTopic(topic)
+                  .withKeySerializer(IntegerSerializer.class)
+                  .withValueSerializer(LongSerializer.class)
+                  .withEOS(1, "test-pipelined")
+                  .withPipelinedTransactions()
+                  .withConsumerFactoryFn(
+                      new ConsumerFactoryFn(
+                          Lists.newArrayList(topic), 10, 10, OffsetResetStrategy.EARLIEST))
+                  .withPublishTimestampFunction((e, ts) -> ts)
+                  .withProducerFactoryFn(new ProducerFactoryFn(producerWrapper.producerKey)));
+
+      p.run();
+
+      completionThread.shutdown();
+
+      verifyProducerRecords(producerWrapper.mockProducer, topic, numElements, false, true);
+    }
+  }
+
+  @Test
+  public void testPipelinedTransactionsRequireEOS() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("withPipelinedTransactions() requires withEOS()");
+
+    p.apply(mkKafkaReadTransform(10, null).withoutMetadata())
+        .apply(
+            KafkaIO.<Integer, Long>write()
+                .withBootstrapServers("none")
+                .withTopic("test")
+                .withKeySerializer(IntegerSerializer.class)
+                .withValueSerializer(LongSerializer.class)
+                .withPipelinedTransactions());
+  }
+
+  @Test
+  public void testSinkWithSharedProducerAndMaxInflightBytes() throws Exception {
+    // testSink() with a producer shared by the DoFn instances and a bound on unacknowledged bytes.
+
+    int numElements = 1000;
+
+    try (MockProducerWrapper producerWrapper = new MockProducerWrapper()) {
+
+      ProducerSendCompletionThread completionThread =
+          new ProducerSendCompletionThread(producerWrapper.mockProducer).start();
+
+      String topic = "test";
+
+      p.apply(mkKafkaReadTransform(numElements, new ValueAsTimestampFn()).withoutMetadata())
+          .apply(
+              KafkaIO.<Integer, Long>write()
+                  .withBootstrapServers("none")
+                  .withTopic(topic)
+                  .withKeySerializer(IntegerSerializer.class)
+                  .withValueSerializer(LongSerializer.class)
+                  .withInputTimestamp()
+                  .withSharedProducer()
+                  .withMaxInflightBytes(100)
+                  .withProducerFactoryFn(new ProducerFactoryFn(producerWrapper.producerKey)));
+
+      p.run();
+
+      completionThread.shutdown();
+
+      verifyProducerRecords(producerWrapper.mockProducer, topic, numElements, false, true);
+    }
+  }
+
+  @Test
+  public void testInflightBytesLimiter() throws Exception {
+    KafkaWriter.InflightBytesLimiter limiter = new KafkaWriter.InflightBytesLimiter(1500);
+
+    // The first record is let through even if its estimate is above the bound.
+    long first = limiter.acquire();
+    assertEquals(1024, first);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Long> second = executor.submit(limiter::acquire);
+      Thread.sleep(100);
+      assertFalse("acquire() should block until bytes are released", second.isDone());
+
+      limiter.release(first, null);
+      assertEquals(1024L, (long) second.get(10, TimeUnit.SECONDS));
+      assertEquals(1024, limiter.getInflightBytes());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   @Test
   public void testSinkWithSendErrors() throws Throwable {
     // similar to testSink(), except that up to 10 of the send calls to producer will fail
@@ -234,6 +234,18 @@ import org.slf4j.LoggerFactory;
  *    .withCustomRateLimitPolicy(new MyCustomPolicyFactory())
  * }</pre>
  *
+ * <p>By default each shard buffers up to {@link Read#withMaxCapacityPerShard(Integer)} records.
+ * When reading many shards it is usually better to bound the records buffered by all shards of a
+ * reader by their total size, which also sizes the getRecords() batches of each shard from the
+ * observed record sizes and from how far behind the tip of the stream the shard is:
+ *
+ * <pre>{@code
+ * p.apply(KinesisIO.read()
+ *    .withStreamName("streamName")
+ *    .withInitialPositionInStream(InitialPositionInStream.LATEST)
+ *    .withMaxBufferedBytes(256 * 1024 * 1024))
+ * }</pre>
+ *
  * <h3>Writing to Kinesis</h3>
  *
  * <p>Example usage:
@@ -339,6 +351,9 @@ public final class KinesisIO {
 
     abstract Integer getMaxCapacityPerShard();
 
+    @Nullable
+    abstract Long getMaxBufferedBytes();
+
     abstract Builder toBuilder();
 
     @AutoValue.Builder
@@ -364,6 +379,8 @@ public final class KinesisIO {
 
       abstract Builder setMaxCapacityPerShard(Integer maxCapacity);
 
+      abstract Builder setMaxBufferedBytes(Long maxBufferedBytes);
+
       abstract Read build();
     }
 
@@ -536,6 +553,20 @@ public final class KinesisIO {
       return toBuilder().setMaxCapacityPerShard(maxCapacity).build();
     }
 
+    /**
+     * Bounds the records buffered by a reader by their total size instead of by {@link
+     * #withMaxCapacityPerShard(Integer)}. The buffer is shared by all shards handled by the reader.
+     * Each getRecords() call then requests as many records as are expected to fit the share of the
+     * buffer of its shard, based on the sizes of the records read so far, and at most {@link
+     * #withRequestRecordsLimit(int)}. Once a shard has caught up with the tip of the stream its
+     * batches only grow with the traffic it sees.
+     */
+    public Read withMaxBufferedBytes(long maxBufferedBytes) {
+      checkArgument(
+          maxBufferedBytes > 0, "maxBufferedBytes must be positive, but was: %s", maxBufferedBytes);
+      return toBuilder().setMaxBufferedBytes(maxBufferedBytes).build();
+    }
+
     @Override
     public PCollection<KinesisRecord> expand(PBegin input) {
       Unbounded<KinesisRecord> unbounded =
@@ -548,7 +579,8 @@ public final class KinesisIO {
                   getWatermarkPolicyFactory(),
                   getRateLimitPolicyFactory(),
                   getRequestRecordsLimit(),
-                  getMaxCapacityPerShard()));
+                  getMaxCapacityPerShard(),
+                  getMaxBufferedBytes()));
 
       PTransform<PBegin, PCollection<KinesisRecord>> transform = unbounded;
 
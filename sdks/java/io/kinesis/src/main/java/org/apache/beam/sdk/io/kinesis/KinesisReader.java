@@ -191,6 +191,7 @@ class KinesisReader extends UnboundedSource.UnboundedReader<KinesisRecord> {
         initialCheckpointGenerator.generate(kinesis),
         watermarkPolicyFactory,
         rateLimitPolicyFactory,
-        maxCapacityPerShard);
+        maxCapacityPerShard,
+        source.getMaxBufferedBytes());
   }
 }
@@ -21,6 +21,7 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Lists.newArrayList;
 
 import java.util.List;
+import javax.annotation.Nullable;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.SerializableCoder;
 import org.apache.beam.sdk.io.UnboundedSource;
@@ -42,6 +43,7 @@ class KinesisSource extends UnboundedSource<KinesisRecord, KinesisReaderCheckpoi
   private CheckpointGenerator initialCheckpointGenerator;
   private final Integer limit;
   private final Integer maxCapacityPerShard;
+  @Nullable private final Long maxBufferedBytes;
 
   KinesisSource(
       AWSClientsProvider awsClientsProvider,
@@ -51,7 +53,8 @@ class KinesisSource extends UnboundedSource<KinesisRecord, KinesisReaderCheckpoi
       WatermarkPolicyFactory watermarkPolicyFactory,
       RateLimitPolicyFactory rateLimitPolicyFactory,
       Integer limit,
-      Integer maxCapacityPerShard) {
+      Integer maxCapacityPerShard,
+      @Nullable Long maxBufferedBytes) {
     this(
         awsClientsProvider,
         new DynamicCheckpointGenerator(streamName, startingPoint),
@@ -60,7 +63,8 @@ class KinesisSource extends UnboundedSource<KinesisRecord, KinesisReaderCheckpoi
         watermarkPolicyFactory,
         rateLimitPolicyFactory,
         limit,
-        maxCapacityPerShard);
+        maxCapacityPerShard,
+        maxBufferedBytes);
   }
 
   private KinesisSource(
@@ -71,7 +75,8 @@ class KinesisSource extends UnboundedSource<KinesisRecord, KinesisReaderCheckpoi
       WatermarkPolicyFactory watermarkPolicyFactory,
       RateLimitPolicyFactory rateLimitPolicyFactory,
       Integer limit,
-      Integer maxCapacityPerShard) {
+      Integer maxCapacityPerShard,
+      @Nullable Long maxBufferedBytes) {
     this.awsClientsProvider = awsClientsProvider;
     this.initialCheckpointGenerator = initialCheckpoint;
     this.streamName = streamName;
@@ -80,6 +85,7 @@ class KinesisSource extends UnboundedSource<KinesisRecord, KinesisReaderCheckpoi
     this.rateLimitPolicyFactory = rateLimitPolicyFactory;
     this.limit = limit;
     this.maxCapacityPerShard = maxCapacityPerShard;
+    this.maxBufferedBytes = maxBufferedBytes;
     validate();
   }
 
@@ -105,7 +111,8 @@ class KinesisSource extends UnboundedSource<KinesisRecord, KinesisReaderCheckpoi
               watermarkPolicyFactory,
               rateLimitPolicyFactory,
               limit,
-              maxCapacityPerShard));
+              maxCapacityPerShard,
+              maxBufferedBytes));
     }
     return sources;
   }
@@ -158,4 +165,9 @@ class KinesisSource extends UnboundedSource<KinesisRecord, KinesisReaderCheckpoi
   String getStreamName() {
     return streamName;
   }
+
+  @Nullable
+  Long getMaxBufferedBytes() {
+    return maxBufferedBytes;
+  }
 }
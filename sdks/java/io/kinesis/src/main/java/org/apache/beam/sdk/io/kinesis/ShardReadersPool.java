@@ -27,11 +27,13 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
@@ -43,6 +45,12 @@ import org.slf4j.LoggerFactory;
 /**
  * Internal shard iterators pool. It maintains the thread pool for reading Kinesis shards in
  * separate threads. Read records are stored in a blocking queue of limited capacity.
+ *
+ * <p>When {@code maxBufferedBytes} is set, the queue is instead bounded by the total size of the
+ * buffered records, shared by all shards, so that a busy shard can use the space idle shards do not
+ * need. The GetRecords limit of each shard is then sized from the observed record sizes so that a
+ * batch fits the share of the buffer of the shard, see {@link
+ * ShardRecordsIterator#nextRecordsLimit(long, int)}.
  */
 class ShardReadersPool {
 
@@ -50,6 +58,9 @@ class ShardReadersPool {
   public static final int DEFAULT_CAPACITY_PER_SHARD = 10_000;
   private static final int ATTEMPTS_TO_SHUTDOWN = 3;
 
+  /** Upper bound of the bytes returned by a single GetRecords call. */
+  private static final long MAX_BATCH_BYTES = 10L * 1024 * 1024;
+
   /**
    * Executor service for running the threads that read records from shards handled by this pool.
    * Each thread runs the {@link ShardReadersPool#readLoop(ShardRecordsIterator)} method and handles
@@ -78,19 +89,44 @@ class ShardReadersPool {
   private final RateLimitPolicyFactory rateLimitPolicyFactory;
   private final KinesisReaderCheckpoint initialCheckpoint;
   private final int queueCapacityPerShard;
+  @Nullable private final Long maxBufferedBytes;
   private final AtomicBoolean poolOpened = new AtomicBoolean(true);
 
+  /** The total size of the records in {@link #recordsQueue}, when bounded by bytes. */
+  private long bufferedBytes = 0;
+
+  private final Object bufferedBytesLock = new Object();
+
   ShardReadersPool(
       SimplifiedKinesisClient kinesis,
       KinesisReaderCheckpoint initialCheckpoint,
       WatermarkPolicyFactory watermarkPolicyFactory,
       RateLimitPolicyFactory rateLimitPolicyFactory,
       int queueCapacityPerShard) {
+    this(
+        kinesis,
+        initialCheckpoint,
+        watermarkPolicyFactory,
+        rateLimitPolicyFactory,
+        queueCapacityPerShard,
+        null);
+  }
+
+  ShardReadersPool(
+      SimplifiedKinesisClient kinesis,
+      KinesisReaderCheckpoint initialCheckpoint,
+      WatermarkPolicyFactory watermarkPolicyFactory,
+      RateLimitPolicyFactory rateLimitPolicyFactory,
+      int queueCapacityPerShard,
+      @Nullable Long maxBufferedBytes) {
+    checkArgument(
+        maxBufferedBytes == null || maxBufferedBytes > 0, "maxBufferedBytes must be positive");
     this.kinesis = kinesis;
     this.initialCheckpoint = initialCheckpoint;
     this.watermarkPolicyFactory = watermarkPolicyFactory;
     this.rateLimitPolicyFactory = rateLimitPolicyFactory;
     this.queueCapacityPerShard = queueCapacityPerShard;
+    this.maxBufferedBytes = maxBufferedBytes;
     this.executorService = Executors.newCachedThreadPool();
     this.numberOfRecordsInAQueueByShard = new ConcurrentHashMap<>();
     this.shardIteratorsMap = new AtomicReference<>();
@@ -102,7 +138,11 @@ class ShardReadersPool {
       shardsMap.put(checkpoint.getShardId(), createShardIterator(kinesis, checkpoint));
     }
     shardIteratorsMap.set(shardsMap.build());
-    if (!shardIteratorsMap.get().isEmpty()) {
+    if (maxBufferedBytes != null) {
+      // Bounded by acquireBufferSpace() rather than by the number of records.
+      recordsQueue = new LinkedBlockingQueue<>();
+      startReadingShards(shardIteratorsMap.get().values());
+    } else if (!shardIteratorsMap.get().isEmpty()) {
       recordsQueue =
           new ArrayBlockingQueue<>(queueCapacityPerShard * shardIteratorsMap.get().size());
       startReadingShards(shardIteratorsMap.get().values());
@@ -127,9 +167,12 @@ class ShardReadersPool {
     while (poolOpened.get()) {
       try {
         try {
-          List<KinesisRecord> kinesisRecords = shardRecordsIterator.readNextBatch();
+          List<KinesisRecord> kinesisRecords = readNextBatch(shardRecordsIterator);
           try {
             for (KinesisRecord kinesisRecord : kinesisRecords) {
+              if (maxBufferedBytes != null) {
+                acquireBufferSpace(ShardRecordsIterator.sizeOf(kinesisRecord));
+              }
               recordsQueue.put(kinesisRecord);
               numberOfRecordsInAQueueByShard.get(kinesisRecord.getShardId()).incrementAndGet();
             }
@@ -176,12 +219,49 @@ class ShardReadersPool {
     LOG.info("Kinesis Shard read loop has finished");
   }
 
+  private List<KinesisRecord> readNextBatch(ShardRecordsIterator shardRecordsIterator)
+      throws TransientKinesisException, KinesisShardClosedException {
+    if (maxBufferedBytes == null) {
+      return shardRecordsIterator.readNextBatch();
+    }
+    // A single batch of a shard may take up to the share of the buffer of the shard.
+    int numShards = Math.max(1, shardIteratorsMap.get().size());
+    long maxBatchBytes = Math.max(1, Math.min(MAX_BATCH_BYTES, maxBufferedBytes / numShards));
+    Integer limit = kinesis.getLimit();
+    int maxLimit = limit != null ? limit : ShardRecordsIterator.MAX_RECORDS_LIMIT;
+    return shardRecordsIterator.readNextBatch(
+        shardRecordsIterator.nextRecordsLimit(maxBatchBytes, maxLimit));
+  }
+
+  /**
+   * Waits until {@code bytes} more fit into {@link #recordsQueue}. A record larger than the whole
+   * buffer is let in once the buffer is empty.
+   */
+  private void acquireBufferSpace(long bytes) throws InterruptedException {
+    synchronized (bufferedBytesLock) {
+      while (bufferedBytes > 0 && bufferedBytes + bytes > maxBufferedBytes) {
+        bufferedBytesLock.wait();
+      }
+      bufferedBytes += bytes;
+    }
+  }
+
+  private void releaseBufferSpace(long bytes) {
+    synchronized (bufferedBytesLock) {
+      bufferedBytes -= bytes;
+      bufferedBytesLock.notifyAll();
+    }
+  }
+
   CustomOptional<KinesisRecord> nextRecord() {
     try {
       KinesisRecord record = recordsQueue.poll(1, TimeUnit.SECONDS);
       if (record == null) {
         return CustomOptional.absent();
       }
+      if (maxBufferedBytes != null) {
+        releaseBufferSpace(ShardRecordsIterator.sizeOf(record));
+      }
       shardIteratorsMap.get().get(record.getShardId()).ackRecord(record);
 
       // numberOfRecordsInAQueueByShard contains the counter for a given shard until the shard is
@@ -329,4 +409,11 @@ class ShardReadersPool {
   BlockingQueue<KinesisRecord> getRecordsQueue() {
     return recordsQueue;
   }
+
+  @VisibleForTesting
+  long getBufferedBytes() {
+    synchronized (bufferedBytesLock) {
+      return bufferedBytes;
+    }
+  }
 }
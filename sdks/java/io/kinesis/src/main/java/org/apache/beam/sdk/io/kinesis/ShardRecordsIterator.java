@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
 import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +40,14 @@ class ShardRecordsIterator {
 
   private static final Logger LOG = LoggerFactory.getLogger(ShardRecordsIterator.class);
 
+  /** Upper bound of records returned by a single GetRecords call. */
+  static final int MAX_RECORDS_LIMIT = 10_000;
+
+  /** Smallest batch requested by {@link #nextRecordsLimit} once the shard has caught up. */
+  private static final long MIN_UP_TO_DATE_BATCH_BYTES = 64 * 1024;
+
+  private static final double RECORD_SIZE_WEIGHT = 0.2;
+
   private final SimplifiedKinesisClient kinesis;
   private final RecordFilter filter;
   private final String streamName;
@@ -49,6 +58,12 @@ class ShardRecordsIterator {
   private AtomicReference<WatermarkPolicy> watermarkPolicy;
   private WatermarkPolicyFactory watermarkPolicyFactory;
 
+  // Observed sizes of the fetched Kinesis records, used to size the GetRecords limit. A record
+  // aggregated by the KPL counts once with the size of all of its user records, as that is what the
+  // limit applies to. Only accessed from the thread reading this shard.
+  private double averageRecordBytes = -1;
+  private long lastBatchBytes = 0;
+
   ShardRecordsIterator(
       final ShardCheckpoint initialCheckpoint,
       SimplifiedKinesisClient simplifiedKinesisClient,
@@ -75,30 +90,87 @@ class ShardRecordsIterator {
 
   List<KinesisRecord> readNextBatch()
       throws TransientKinesisException, KinesisShardClosedException {
+    return readNextBatch(null);
+  }
+
+  /**
+   * Reads the next batch of records, requesting at most {@code limit} records from Kinesis. When
+   * {@code limit} is null, the limit of the {@link SimplifiedKinesisClient} is used.
+   */
+  List<KinesisRecord> readNextBatch(@Nullable Integer limit)
+      throws TransientKinesisException, KinesisShardClosedException {
     if (shardIterator == null) {
       throw new KinesisShardClosedException(
           String.format(
               "Shard iterator reached end of the shard: streamName=%s, shardId=%s",
               streamName, shardId));
     }
-    GetKinesisRecordsResult response = fetchRecords();
+    GetKinesisRecordsResult response = fetchRecords(limit);
     LOG.debug("Fetched {} new records", response.getRecords().size());
+    updateRecordSizes(response.getRecords());
 
     List<KinesisRecord> filteredRecords = filter.apply(response.getRecords(), checkpoint.get());
     millisBehindLatest.set(response.getMillisBehindLatest());
     return filteredRecords;
   }
 
-  private GetKinesisRecordsResult fetchRecords() throws TransientKinesisException {
+  private GetKinesisRecordsResult fetchRecords(@Nullable Integer limit)
+      throws TransientKinesisException {
     try {
-      GetKinesisRecordsResult response = kinesis.getRecords(shardIterator, streamName, shardId);
+      GetKinesisRecordsResult response =
+          limit == null
+              ? kinesis.getRecords(shardIterator, streamName, shardId)
+              : kinesis.getRecords(shardIterator, streamName, shardId, limit);
       shardIterator = response.getNextShardIterator();
       return response;
     } catch (ExpiredIteratorException e) {
       LOG.info("Refreshing expired iterator", e);
       shardIterator = checkpoint.get().getShardIterator(kinesis);
-      return fetchRecords();
+      return fetchRecords(limit);
+    }
+  }
+
+  private void updateRecordSizes(List<KinesisRecord> records) {
+    long batchBytes = 0;
+    int kinesisRecords = 0;
+    for (KinesisRecord record : records) {
+      batchBytes += sizeOf(record);
+      if (record.getSubSequenceNumber() == 0) {
+        kinesisRecords++; // The first user record of an aggregated record, or a plain record.
+      }
     }
+    lastBatchBytes = batchBytes;
+    if (kinesisRecords > 0) {
+      double batchAverage = (double) batchBytes / kinesisRecords;
+      averageRecordBytes =
+          averageRecordBytes < 0
+              ? batchAverage
+              : averageRecordBytes + RECORD_SIZE_WEIGHT * (batchAverage - averageRecordBytes);
+    }
+  }
+
+  /**
+   * Returns the number of records to request with the next GetRecords call, so that the response
+   * holds about {@code maxBatchBytes} given the sizes of the records seen so far. While the shard
+   * is behind the tip of the stream the whole {@code maxBatchBytes} is requested. Once it has
+   * caught up, the batch only grows to twice the size of the previous one, so that a quiet shard
+   * does not claim buffer space it will not fill.
+   */
+  int nextRecordsLimit(long maxBatchBytes, int maxLimit) {
+    long targetBytes = maxBatchBytes;
+    if (millisBehindLatest.get() == 0) {
+      targetBytes =
+          Math.min(maxBatchBytes, Math.max(2 * lastBatchBytes, MIN_UP_TO_DATE_BATCH_BYTES));
+    }
+    // Until the first records are seen, assume they are 1KB.
+    double recordBytes = averageRecordBytes < 0 ? 1024 : Math.max(averageRecordBytes, 1);
+    long limit = (long) (targetBytes / recordBytes);
+    return (int) Math.max(1, Math.min(limit, maxLimit));
+  }
+
+  /** Returns the number of bytes a record takes in memory, approximated by its payload size. */
+  static long sizeOf(KinesisRecord record) {
+    return record.getData() == null ? 0 : record.getData().remaining();
   }
 
   ShardCheckpoint getCheckpoint() {
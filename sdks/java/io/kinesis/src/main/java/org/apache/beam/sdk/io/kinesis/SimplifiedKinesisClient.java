@@ -69,6 +69,11 @@ class SimplifiedKinesisClient {
         provider.getKinesisClient(), provider.getCloudWatchClient(), limit);
   }
 
+  /** Returns the number of records requested per GetRecords call, or null for the default. */
+  Integer getLimit() {
+    return limit;
+  }
+
   public String getShardIterator(
       final String streamName,
       final String shardId,
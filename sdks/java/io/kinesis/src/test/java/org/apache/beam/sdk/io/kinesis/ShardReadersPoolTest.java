@@ -28,6 +28,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -124,6 +125,51 @@ public class ShardReadersPoolTest {
     assertThat(shardReadersPool.getRecordsQueue().remainingCapacity()).isEqualTo(100 * 2);
   }
 
+  @Test
+  public void shouldBoundBufferedRecordsByBytes() throws Exception {
+    for (KinesisRecord record : ImmutableList.of(a, b, c, d)) {
+      when(record.getData()).thenReturn(ByteBuffer.allocate(4));
+    }
+    // Each of the two shards may fetch up to half of the buffer at once.
+    when(firstIterator.nextRecordsLimit(5, ShardRecordsIterator.MAX_RECORDS_LIMIT)).thenReturn(2);
+    when(secondIterator.nextRecordsLimit(5, ShardRecordsIterator.MAX_RECORDS_LIMIT)).thenReturn(2);
+    when(firstIterator.readNextBatch(2))
+        .thenReturn(ImmutableList.of(a, b))
+        .thenReturn(Collections.emptyList());
+    when(secondIterator.readNextBatch(2))
+        .thenReturn(ImmutableList.of(c, d))
+        .thenReturn(Collections.emptyList());
+    ShardReadersPool pool =
+        Mockito.spy(
+            new ShardReadersPool(
+                kinesis, checkpoint, watermarkPolicyFactory, rateLimitPolicyFactory, 100, 10L));
+    doReturn(firstIterator).when(pool).createShardIterator(kinesis, firstCheckpoint);
+    doReturn(secondIterator).when(pool).createShardIterator(kinesis, secondCheckpoint);
+
+    pool.start();
+    try {
+      // Only two of the four records of 4 bytes fit into the buffer of 10 bytes.
+      while (pool.getRecordsQueue().size() < 2) {
+        Thread.sleep(10);
+      }
+      Thread.sleep(100);
+      assertThat(pool.getRecordsQueue()).hasSize(2);
+      assertThat(pool.getBufferedBytes()).isEqualTo(8);
+
+      List<KinesisRecord> fetchedRecords = new ArrayList<>();
+      while (fetchedRecords.size() < 4) {
+        CustomOptional<KinesisRecord> nextRecord = pool.nextRecord();
+        if (nextRecord.isPresent()) {
+          fetchedRecords.add(nextRecord.get());
+        }
+      }
+      assertThat(fetchedRecords).containsExactlyInAnyOrder(a, b, c, d);
+      assertThat(pool.getBufferedBytes()).isEqualTo(0);
+    } finally {
+      pool.stop();
+    }
+  }
+
   @Test
   public void shouldReturnAbsentOptionalWhenNoRecords()
       throws TransientKinesisException, KinesisShardClosedException {
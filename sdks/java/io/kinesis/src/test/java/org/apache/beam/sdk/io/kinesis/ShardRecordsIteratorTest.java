@@ -21,11 +21,15 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.amazonaws.services.kinesis.model.ExpiredIteratorException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import org.joda.time.Duration;
 import org.joda.time.Instant;
@@ -152,6 +156,39 @@ public class ShardRecordsIteratorTest {
     assertThat(iterator.readNextBatch()).isEqualTo(Collections.emptyList());
   }
 
+  @Test
+  public void sizesRecordsLimitFromObservedRecords()
+      throws IOException, TransientKinesisException, KinesisShardClosedException {
+    when(a.getData()).thenReturn(ByteBuffer.allocate(100));
+    when(b.getData()).thenReturn(ByteBuffer.allocate(300));
+    // c and d are the user records of a single record aggregated by the KPL.
+    when(c.getData()).thenReturn(ByteBuffer.allocate(100));
+    when(d.getData()).thenReturn(ByteBuffer.allocate(100));
+    when(d.getSubSequenceNumber()).thenReturn(1L);
+    when(firstResult.getRecords()).thenReturn(asList(a, b));
+    when(firstResult.getMillisBehindLatest()).thenReturn(1000L);
+    when(secondResult.getRecords()).thenReturn(asList(c, d));
+    when(secondResult.getMillisBehindLatest()).thenReturn(0L);
+    when(kinesisClient.getRecords(eq(INITIAL_ITERATOR), eq(STREAM_NAME), eq(SHARD_ID), anyInt()))
+        .thenReturn(firstResult);
+    when(kinesisClient.getRecords(eq(SECOND_ITERATOR), eq(STREAM_NAME), eq(SHARD_ID), anyInt()))
+        .thenReturn(secondResult);
+
+    // Records are assumed to be 1KB until some are read.
+    assertThat(iterator.nextRecordsLimit(1_000_000, 10_000)).isEqualTo(976);
+    assertThat(iterator.readNextBatch(976)).isEqualTo(asList(a, b));
+    verify(kinesisClient).getRecords(INITIAL_ITERATOR, STREAM_NAME, SHARD_ID, 976);
+
+    // Behind the tip of the stream, the whole batch size is requested.
+    assertThat(iterator.nextRecordsLimit(1_000_000, 10_000)).isEqualTo(5000);
+    assertThat(iterator.nextRecordsLimit(1_000_000, 1000)).isEqualTo(1000);
+    assertThat(iterator.nextRecordsLimit(10, 1000)).isEqualTo(1);
+
+    // Caught up, the batch grows from the last one. The aggregated record counts once.
+    assertThat(iterator.readNextBatch(5000)).isEqualTo(asList(c, d));
+    assertThat(iterator.nextRecordsLimit(1_000_000, 10_000)).isEqualTo(64 * 1024 / 200);
+  }
+
   private static class IdentityAnswer implements Answer<Object> {
 
     @Override
@@ -27,16 +27,38 @@ import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoClientURI;
 import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.ChangeStreamIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLContext;
@@ -45,22 +67,30 @@ import org.apache.beam.sdk.annotations.Experimental.Kind;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.SerializableCoder;
 import org.apache.beam.sdk.io.BoundedSource;
+import org.apache.beam.sdk.io.Read.Unbounded;
+import org.apache.beam.sdk.io.UnboundedSource;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.transforms.SerializableFunction;
 import org.apache.beam.sdk.transforms.display.DisplayData;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.values.PBegin;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PDone;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Throwables;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.bson.BsonDocument;
 import org.bson.BsonInt32;
 import org.bson.BsonString;
+import org.bson.BsonTimestamp;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -90,6 +120,18 @@ import org.slf4j.LoggerFactory;
  * <p>The source also accepts an optional configuration: {@code withFilter()} allows you to define a
  * JSON filter to get subset of data.
  *
+ * <p>{@link MongoDbIO#readChangeStream()} tails the change stream of a collection instead, as an
+ * unbounded {@code PCollection<Document>} of change events. Checkpoints hold the resume token of
+ * the last event read, or the operation time the stream started at if no event was read yet:
+ *
+ * <pre>{@code
+ * pipeline.apply(MongoDbIO.readChangeStream()
+ *   .withUri("mongodb://localhost:27017")
+ *   .withDatabase("my-database")
+ *   .withCollection("my-collection")
+ *   .withUpdateLookup(true))
+ * }</pre>
+ *
  * <h3>Writing to MongoDB</h3>
  *
  * <p>MongoDB sink supports writing of Document (as JSON String) in a MongoDB.
@@ -107,6 +149,10 @@ import org.slf4j.LoggerFactory;
  *     .withNumSplits(30))
  *
  * }</pre>
+ *
+ * <p>For bulk loads, {@code withOrdered(false)} lets MongoDB apply the writes of a batch in any
+ * order and {@code withMaxInflightBatches()} keeps several batches in flight per worker thread.
+ * {@code withUpsertKey()} replaces the documents matching a key field instead of inserting.
  */
 @Experimental(Kind.SOURCE_SINK)
 public class MongoDbIO {
@@ -126,6 +172,19 @@ public class MongoDbIO {
         .build();
   }
 
+  /** Read the change stream of a MongoDB collection. */
+  public static ReadChangeStream readChangeStream() {
+    return new AutoValue_MongoDbIO_ReadChangeStream.Builder()
+        .setMaxConnectionIdleTime(60000)
+        .setSslEnabled(false)
+        .setIgnoreSSLCertificate(false)
+        .setSslInvalidHostNameAllowed(false)
+        .setPipeline(Collections.emptyList())
+        .setUpdateLookup(false)
+        .setMaxNumRecords(Long.MAX_VALUE)
+        .build();
+  }
+
   /** Write data to MongoDB. */
   public static Write write() {
     return new AutoValue_MongoDbIO_Write.Builder()
@@ -135,6 +194,7 @@ public class MongoDbIO {
         .setIgnoreSSLCertificate(false)
         .setSslInvalidHostNameAllowed(false)
         .setOrdered(true)
+        .setMaxInflightBatches(1)
         .build();
   }
 
@@ -758,6 +818,417 @@ public class MongoDbIO {
     }
   }
 
+  /**
+   * A {@link PTransform} to read the change events of a MongoDB collection as an unbounded {@code
+   * PCollection<Document>}.
+   *
+   * <p>Each output {@link Document} holds the {@code operationType} and the {@code documentKey} of
+   * the change, the {@code fullDocument} for inserts and replaces (and for updates with {@link
+   * #withUpdateLookup(boolean)}), and the {@code updateDescription} for updates. Its timestamp is
+   * the cluster time of the change.
+   *
+   * <p>The resume token of the last change read is stored in the checkpoint, so that a restored
+   * reader resumes the change stream after it. Change streams require a replica set or a sharded
+   * cluster.
+   */
+  @AutoValue
+  public abstract static class ReadChangeStream extends PTransform<PBegin, PCollection<Document>> {
+    @Nullable
+    abstract String uri();
+
+    abstract int maxConnectionIdleTime();
+
+    abstract boolean sslEnabled();
+
+    abstract boolean sslInvalidHostNameAllowed();
+
+    abstract boolean ignoreSSLCertificate();
+
+    @Nullable
+    abstract String database();
+
+    @Nullable
+    abstract String collection();
+
+    abstract List<BsonDocument> pipeline();
+
+    abstract boolean updateLookup();
+
+    abstract long maxNumRecords();
+
+    @Nullable
+    abstract Duration maxReadTime();
+
+    abstract Builder builder();
+
+    @AutoValue.Builder
+    abstract static class Builder {
+      abstract Builder setUri(String uri);
+
+      abstract Builder setMaxConnectionIdleTime(int maxConnectionIdleTime);
+
+      abstract Builder setSslEnabled(boolean value);
+
+      abstract Builder setSslInvalidHostNameAllowed(boolean value);
+
+      abstract Builder setIgnoreSSLCertificate(boolean value);
+
+      abstract Builder setDatabase(String database);
+
+      abstract Builder setCollection(String collection);
+
+      abstract Builder setPipeline(List<BsonDocument> pipeline);
+
+      abstract Builder setUpdateLookup(boolean updateLookup);
+
+      abstract Builder setMaxNumRecords(long maxNumRecords);
+
+      abstract Builder setMaxReadTime(Duration maxReadTime);
+
+      abstract ReadChangeStream build();
+    }
+
+    /** Define the location of the MongoDB instances using an URI, see {@link Read#withUri}. */
+    public ReadChangeStream withUri(String uri) {
+      checkArgument(uri != null, "uri can not be null");
+      return builder().setUri(uri).build();
+    }
+
+    /** Sets the maximum idle time for a pooled connection. */
+    public ReadChangeStream withMaxConnectionIdleTime(int maxConnectionIdleTime) {
+      return builder().setMaxConnectionIdleTime(maxConnectionIdleTime).build();
+    }
+
+    /** Enable ssl for connection. */
+    public ReadChangeStream withSSLEnabled(boolean sslEnabled) {
+      return builder().setSslEnabled(sslEnabled).build();
+    }
+
+    /** Enable invalidHostNameAllowed for ssl for connection. */
+    public ReadChangeStream withSSLInvalidHostNameAllowed(boolean invalidHostNameAllowed) {
+      return builder().setSslInvalidHostNameAllowed(invalidHostNameAllowed).build();
+    }
+
+    /** Enable ignoreSSLCertificate for ssl for connection (allow for self signed certificates). */
+    public ReadChangeStream withIgnoreSSLCertificate(boolean ignoreSSLCertificate) {
+      return builder().setIgnoreSSLCertificate(ignoreSSLCertificate).build();
+    }
+
+    /** Sets the database to use. */
+    public ReadChangeStream withDatabase(String database) {
+      checkArgument(database != null, "database can not be null");
+      return builder().setDatabase(database).build();
+    }
+
+    /** Sets the collection to watch in the database. */
+    public ReadChangeStream withCollection(String collection) {
+      checkArgument(collection != null, "collection can not be null");
+      return builder().setCollection(collection).build();
+    }
+
+    /**
+     * Sets an aggregation pipeline applied to the change events by MongoDB, for instance a {@code
+     * $match} stage on {@code operationType}.
+     */
+    public ReadChangeStream withPipeline(List<BsonDocument> pipeline) {
+      checkArgument(pipeline != null, "pipeline can not be null");
+      return builder().setPipeline(pipeline).build();
+    }
+
+    /** Sets whether to look up the current version of the document of update events. */
+    public ReadChangeStream withUpdateLookup(boolean updateLookup) {
+      return builder().setUpdateLookup(updateLookup).build();
+    }
+
+    /**
+     * Reads at most the given number of change events, making the output bounded. Mainly for tests
+     * and demos.
+     */
+    public ReadChangeStream withMaxNumRecords(long maxNumRecords) {
+      checkArgument(maxNumRecords > 0, "maxNumRecords must be > 0, but was %s", maxNumRecords);
+      return builder().setMaxNumRecords(maxNumRecords).build();
+    }
+
+    /**
+     * Reads change events for at most the given duration, making the output bounded. Mainly for
+     * tests and demos.
+     */
+    public ReadChangeStream withMaxReadTime(Duration maxReadTime) {
+      checkArgument(maxReadTime != null, "maxReadTime can not be null");
+      return builder().setMaxReadTime(maxReadTime).build();
+    }
+
+    @Override
+    public PCollection<Document> expand(PBegin input) {
+      checkArgument(uri() != null, "withUri() is required");
+      checkArgument(database() != null, "withDatabase() is required");
+      checkArgument(collection() != null, "withCollection() is required");
+
+      Unbounded<Document> unbounded =
+          org.apache.beam.sdk.io.Read.from(new UnboundedMongoDbSource(this));
+      PTransform<PBegin, PCollection<Document>> transform = unbounded;
+      if (maxNumRecords() < Long.MAX_VALUE || maxReadTime() != null) {
+        transform = unbounded.withMaxReadTime(maxReadTime()).withMaxNumRecords(maxNumRecords());
+      }
+      return input.apply(transform);
+    }
+
+    @Override
+    public void populateDisplayData(DisplayData.Builder builder) {
+      super.populateDisplayData(builder);
+      builder.add(DisplayData.item("uri", uri()));
+      builder.add(DisplayData.item("maxConnectionIdleTime", maxConnectionIdleTime()));
+      builder.add(DisplayData.item("sslEnabled", sslEnabled()));
+      builder.add(DisplayData.item("sslInvalidHostNameAllowed", sslInvalidHostNameAllowed()));
+      builder.add(DisplayData.item("ignoreSSLCertificate", ignoreSSLCertificate()));
+      builder.add(DisplayData.item("database", database()));
+      builder.add(DisplayData.item("collection", collection()));
+      builder.add(DisplayData.item("pipeline", pipeline().toString()));
+      builder.add(DisplayData.item("updateLookup", updateLookup()));
+    }
+  }
+
+  /**
+   * A MongoDB {@link UnboundedSource} reading the change stream of a collection. The change stream
+   * of a collection is a single ordered stream, so the source does not split.
+   */
+  @VisibleForTesting
+  static class UnboundedMongoDbSource
+      extends UnboundedSource<Document, ChangeStreamCheckpointMark> {
+    private final ReadChangeStream spec;
+
+    private UnboundedMongoDbSource(ReadChangeStream spec) {
+      this.spec = spec;
+    }
+
+    @Override
+    public List<UnboundedMongoDbSource> split(int desiredNumSplits, PipelineOptions options) {
+      return Collections.singletonList(this);
+    }
+
+    @Override
+    public UnboundedReader<Document> createReader(
+        PipelineOptions options, @Nullable ChangeStreamCheckpointMark checkpointMark) {
+      return checkpointMark != null
+          ? new UnboundedMongoDbReader(
+              this, checkpointMark.resumeToken, checkpointMark.startOperationTime)
+          : new UnboundedMongoDbReader(this, null, null);
+    }
+
+    @Override
+    public Coder<ChangeStreamCheckpointMark> getCheckpointMarkCoder() {
+      return SerializableCoder.of(ChangeStreamCheckpointMark.class);
+    }
+
+    @Override
+    public Coder<Document> getOutputCoder() {
+      return SerializableCoder.of(Document.class);
+    }
+
+    @Override
+    public void populateDisplayData(DisplayData.Builder builder) {
+      spec.populateDisplayData(builder);
+    }
+  }
+
+  /**
+   * Checkpoint of a change stream: the resume token of the last change read as JSON, or if no
+   * change was read, the operation time the stream started at, so that the changes made since then
+   * are not skipped.
+   */
+  @VisibleForTesting
+  static class ChangeStreamCheckpointMark implements UnboundedSource.CheckpointMark, Serializable {
+    @Nullable private final String resumeToken;
+    @Nullable private final Long startOperationTime;
+
+    ChangeStreamCheckpointMark(@Nullable String resumeToken, @Nullable Long startOperationTime) {
+      this.resumeToken = resumeToken;
+      this.startOperationTime = startOperationTime;
+    }
+
+    @Override
+    public void finalizeCheckpoint() {
+      // Nothing to do, the change stream is resumed from the token stored in the checkpoint.
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ChangeStreamCheckpointMark)) {
+        return false;
+      }
+      ChangeStreamCheckpointMark that = (ChangeStreamCheckpointMark) o;
+      return Objects.equals(resumeToken, that.resumeToken)
+          && Objects.equals(startOperationTime, that.startOperationTime);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(resumeToken, startOperationTime);
+    }
+  }
+
+  private static class UnboundedMongoDbReader extends UnboundedSource.UnboundedReader<Document> {
+    private final UnboundedMongoDbSource source;
+
+    @Nullable private String resumeToken;
+    // The operation time the stream was opened at, as the value of a BSON timestamp.
+    @Nullable private Long startOperationTime;
+    private MongoClient client;
+    // The session of the change stream, whose operation time is the cluster time of its last read.
+    private ClientSession session;
+    private MongoCursor<ChangeStreamDocument<Document>> cursor;
+    private Document current;
+    private Instant currentTimestamp;
+    private Instant watermark = BoundedWindow.TIMESTAMP_MIN_VALUE;
+
+    UnboundedMongoDbReader(
+        UnboundedMongoDbSource source,
+        @Nullable String resumeToken,
+        @Nullable Long startOperationTime) {
+      this.source = source;
+      this.resumeToken = resumeToken;
+      this.startOperationTime = startOperationTime;
+    }
+
+    @Override
+    public boolean start() {
+      ReadChangeStream spec = source.spec;
+      client =
+          new MongoClient(
+              new MongoClientURI(
+                  spec.uri(),
+                  getOptions(
+                      spec.maxConnectionIdleTime(),
+                      spec.sslEnabled(),
+                      spec.sslInvalidHostNameAllowed(),
+                      spec.ignoreSSLCertificate())));
+      MongoCollection<Document> mongoCollection =
+          client.getDatabase(spec.database()).getCollection(spec.collection());
+      session = client.startSession();
+      // advance() must not block for long, so wait at most a second for new changes.
+      ChangeStreamIterable<Document> changeStream =
+          mongoCollection.watch(session, spec.pipeline()).maxAwaitTime(1, TimeUnit.SECONDS);
+      if (spec.updateLookup()) {
+        changeStream = changeStream.fullDocument(FullDocument.UPDATE_LOOKUP);
+      }
+      if (resumeToken != null) {
+        changeStream = changeStream.resumeAfter(BsonDocument.parse(resumeToken));
+      } else if (startOperationTime != null) {
+        changeStream = changeStream.startAtOperationTime(new BsonTimestamp(startOperationTime));
+      }
+      cursor = changeStream.iterator();
+      if (resumeToken == null && startOperationTime == null) {
+        BsonTimestamp operationTime = session.getOperationTime();
+        if (operationTime != null) {
+          startOperationTime = operationTime.getValue();
+        }
+      }
+      return advance();
+    }
+
+    @Override
+    public boolean advance() {
+      ChangeStreamDocument<Document> change = cursor.tryNext();
+      if (change == null) {
+        // Changes are returned in cluster time order, and the read found none up to its operation
+        // time, so no change older than that is left to read.
+        BsonTimestamp operationTime = session.getOperationTime();
+        if (operationTime != null) {
+          Instant readTime = new Instant(operationTime.getTime() * 1000L);
+          if (readTime.isAfter(watermark)) {
+            watermark = readTime;
+          }
+        }
+        return false;
+      }
+      current = toDocument(change);
+      resumeToken = change.getResumeToken().toJson();
+      currentTimestamp =
+          change.getClusterTime() != null
+              ? new Instant(change.getClusterTime().getTime() * 1000L)
+              : Instant.now();
+      if (currentTimestamp.isAfter(watermark)) {
+        watermark = currentTimestamp;
+      }
+      return true;
+    }
+
+    @Override
+    public Document getCurrent() {
+      if (current == null) {
+        throw new NoSuchElementException();
+      }
+      return current;
+    }
+
+    @Override
+    public Instant getCurrentTimestamp() {
+      if (current == null) {
+        throw new NoSuchElementException();
+      }
+      return currentTimestamp;
+    }
+
+    @Override
+    public Instant getWatermark() {
+      return watermark;
+    }
+
+    @Override
+    public UnboundedSource.CheckpointMark getCheckpointMark() {
+      return new ChangeStreamCheckpointMark(resumeToken, startOperationTime);
+    }
+
+    @Override
+    public UnboundedMongoDbSource getCurrentSource() {
+      return source;
+    }
+
+    @Override
+    public void close() {
+      try {
+        if (cursor != null) {
+          cursor.close();
+        }
+      } catch (Exception e) {
+        LOG.warn("Error closing MongoDB change stream", e);
+      }
+      try {
+        if (session != null) {
+          session.close();
+        }
+      } catch (Exception e) {
+        LOG.warn("Error closing MongoDB session", e);
+      }
+      try {
+        if (client != null) {
+          client.close();
+        }
+      } catch (Exception e) {
+        LOG.warn("Error closing MongoDB client", e);
+      }
+    }
+  }
+
+  /** Converts a change event to the {@link Document} output by {@link ReadChangeStream}. */
+  @VisibleForTesting
+  static Document toDocument(ChangeStreamDocument<Document> change) {
+    Document document =
+        new Document("operationType", change.getOperationType().getValue())
+            .append("documentKey", change.getDocumentKey());
+    if (change.getFullDocument() != null) {
+      document.append("fullDocument", change.getFullDocument());
+    }
+    UpdateDescription updateDescription = change.getUpdateDescription();
+    if (updateDescription != null) {
+      document.append(
+          "updateDescription",
+          new Document("updatedFields", updateDescription.getUpdatedFields())
+              .append("removedFields", updateDescription.getRemovedFields()));
+    }
+    return document;
+  }
+
   /** A {@link PTransform} to write to a MongoDB database. */
   @AutoValue
   public abstract static class Write extends PTransform<PCollection<Document>, PDone> {
@@ -783,6 +1254,11 @@ public class MongoDbIO {
 
     abstract long batchSize();
 
+    abstract int maxInflightBatches();
+
+    @Nullable
+    abstract String upsertKey();
+
     abstract Builder builder();
 
     @AutoValue.Builder
@@ -805,6 +1281,10 @@ public class MongoDbIO {
 
       abstract Builder setBatchSize(long batchSize);
 
+      abstract Builder setMaxInflightBatches(int maxInflightBatches);
+
+      abstract Builder setUpsertKey(String upsertKey);
+
       abstract Write build();
     }
 
@@ -895,6 +1375,30 @@ public class MongoDbIO {
       return builder().setBatchSize(batchSize).build();
     }
 
+    /**
+     * Sets the number of batches each worker thread may have in flight at once (default: 1). While
+     * batches are written, the next ones are filled. Write order is only preserved within a batch
+     * when several are in flight.
+     */
+    public Write withMaxInflightBatches(int maxInflightBatches) {
+      checkArgument(
+          maxInflightBatches > 0,
+          "maxInflightBatches must be > 0, but was %s",
+          maxInflightBatches);
+      return builder().setMaxInflightBatches(maxInflightBatches).build();
+    }
+
+    /**
+     * Replaces the document whose {@code upsertKey} field equals that of the written document, or
+     * inserts the written document if there is none, instead of inserting every document. The
+     * field should be covered by an index. The written documents without the field, or with a null
+     * value, are inserted, since they would otherwise replace any document missing the field.
+     */
+    public Write withUpsertKey(String upsertKey) {
+      checkArgument(upsertKey != null, "upsertKey can not be null");
+      return builder().setUpsertKey(upsertKey).build();
+    }
+
     @Override
     public PDone expand(PCollection<Document> input) {
       checkArgument(uri() != null, "withUri() is required");
@@ -916,12 +1420,16 @@ public class MongoDbIO {
       builder.add(DisplayData.item("database", database()));
       builder.add(DisplayData.item("collection", collection()));
       builder.add(DisplayData.item("batchSize", batchSize()));
+      builder.add(DisplayData.item("maxInflightBatches", maxInflightBatches()));
+      builder.addIfNotNull(DisplayData.item("upsertKey", upsertKey()));
     }
 
     static class WriteFn extends DoFn<Document, Void> {
       private final Write spec;
       private transient MongoClient client;
+      private transient ExecutorService executor;
       private List<Document> batch;
+      private Deque<Future<?>> pendingBatches;
 
       WriteFn(Write spec) {
         this.spec = spec;
@@ -938,15 +1446,25 @@ public class MongoDbIO {
                         spec.sslEnabled(),
                         spec.sslInvalidHostNameAllowed(),
                         spec.ignoreSSLCertificate())));
+        if (spec.maxInflightBatches() > 1) {
+          executor =
+              Executors.newFixedThreadPool(
+                  spec.maxInflightBatches(),
+                  new ThreadFactoryBuilder()
+                      .setDaemon(true)
+                      .setNameFormat("MongoDbIO-write-%d")
+                      .build());
+        }
       }
 
       @StartBundle
       public void startBundle() {
         batch = new ArrayList<>();
+        pendingBatches = new ArrayDeque<>();
       }
 
       @ProcessElement
-      public void processElement(ProcessContext ctx) {
+      public void processElement(ProcessContext ctx) throws IOException {
         // Need to copy the document because mongoCollection.insertMany() will mutate it
         // before inserting (will assign an id).
         batch.add(new Document(ctx.element()));
@@ -956,29 +1474,75 @@ public class MongoDbIO {
       }
 
       @FinishBundle
-      public void finishBundle() {
+      public void finishBundle() throws IOException {
         flush();
+        while (!pendingBatches.isEmpty()) {
+          awaitOldestBatch();
+        }
       }
 
-      private void flush() {
+      private void flush() throws IOException {
         if (batch.isEmpty()) {
           return;
         }
+        List<Document> documents = batch;
+        batch = new ArrayList<>();
+        if (executor == null) {
+          writeBatch(documents);
+          return;
+        }
+        while (pendingBatches.size() >= spec.maxInflightBatches()) {
+          awaitOldestBatch();
+        }
+        pendingBatches.add(executor.submit(() -> writeBatch(documents)));
+      }
+
+      private void awaitOldestBatch() throws IOException {
+        try {
+          pendingBatches.removeFirst().get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while writing to MongoDB");
+        } catch (ExecutionException e) {
+          Throwables.throwIfUnchecked(e.getCause());
+          throw new IOException(e.getCause());
+        }
+      }
+
+      private void writeBatch(List<Document> documents) {
         MongoDatabase mongoDatabase = client.getDatabase(spec.database());
         MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(spec.collection());
         try {
-          mongoCollection.insertMany(batch, new InsertManyOptions().ordered(spec.ordered()));
+          if (spec.upsertKey() == null) {
+            mongoCollection.insertMany(documents, new InsertManyOptions().ordered(spec.ordered()));
+          } else {
+            List<WriteModel<Document>> upserts = new ArrayList<>(documents.size());
+            for (Document document : documents) {
+              if (document.get(spec.upsertKey()) != null) {
+                upserts.add(
+                    new ReplaceOneModel<>(
+                        Filters.eq(spec.upsertKey(), document.get(spec.upsertKey())),
+                        document,
+                        new ReplaceOptions().upsert(true)));
+              } else {
+                upserts.add(new InsertOneModel<>(document));
+              }
+            }
+            mongoCollection.bulkWrite(upserts, new BulkWriteOptions().ordered(spec.ordered()));
+          }
         } catch (MongoBulkWriteException e) {
           if (spec.ordered()) {
             throw e;
           }
         }
-
-        batch.clear();
       }
 
       @Teardown
       public void closeMongoClient() {
+        if (executor != null) {
+          executor.shutdownNow();
+          executor = null;
+        }
         client.close();
         client = null;
       }
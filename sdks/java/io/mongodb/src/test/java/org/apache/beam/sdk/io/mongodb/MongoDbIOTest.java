@@ -18,11 +18,16 @@
 package org.apache.beam.sdk.io.mongodb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import com.mongodb.MongoClient;
+import com.mongodb.MongoNamespace;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
 import de.flapdoodle.embed.mongo.MongodExecutable;
 import de.flapdoodle.embed.mongo.MongodProcess;
 import de.flapdoodle.embed.mongo.MongodStarter;
@@ -34,8 +39,12 @@ import de.flapdoodle.embed.mongo.config.Storage;
 import de.flapdoodle.embed.mongo.distribution.Version;
 import de.flapdoodle.embed.process.runtime.Network;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.SerializableCoder;
 import org.apache.beam.sdk.io.common.NetworkTestHelper;
+import org.apache.beam.sdk.testing.CoderProperties;
 import org.apache.beam.sdk.testing.PAssert;
 import org.apache.beam.sdk.testing.TestPipeline;
 import org.apache.beam.sdk.transforms.Count;
@@ -48,6 +57,7 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterator
 import org.bson.BsonDocument;
 import org.bson.BsonInt32;
 import org.bson.BsonString;
+import org.bson.BsonTimestamp;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.junit.AfterClass;
@@ -361,6 +371,145 @@ public class MongoDbIOTest {
     assertEquals(1, countElements(collectionName));
   }
 
+  @Test
+  public void testWriteWithMaxInflightBatches() {
+    final String collectionName = "testWriteWithMaxInflightBatches";
+    final int numElements = 1000;
+
+    pipeline
+        .apply(Create.of(createDocuments(numElements)))
+        .apply(
+            MongoDbIO.write()
+                .withUri("mongodb://localhost:" + port)
+                .withDatabase(DATABASE)
+                .withCollection(collectionName)
+                .withOrdered(false)
+                .withBatchSize(10)
+                .withMaxInflightBatches(4));
+
+    pipeline.run();
+
+    assertEquals(numElements, countElements(collectionName));
+  }
+
+  @Test
+  public void testWriteWithUpsertKey() {
+    final String collectionName = "testWriteWithUpsertKey";
+    List<Document> existing = new ArrayList<>();
+    for (Document document : createDocuments(5)) {
+      existing.add(new Document("scientist", document.get("scientist")).append("country", "old"));
+    }
+    getCollection(collectionName).insertMany(existing);
+
+    // The 10 documents have distinct scientists, 5 of which are already in the collection.
+    pipeline
+        .apply(Create.of(createDocuments(10)))
+        .apply(
+            MongoDbIO.write()
+                .withUri("mongodb://localhost:" + port)
+                .withDatabase(DATABASE)
+                .withCollection(collectionName)
+                .withUpsertKey("scientist"));
+
+    pipeline.run();
+
+    assertEquals(10, countElements(collectionName));
+    assertEquals(
+        0,
+        Iterators.size(
+            getCollection(collectionName).find(Filters.eq("country", "old")).iterator()));
+  }
+
+  @Test
+  public void testWriteWithUpsertKeyInsertsDocumentsWithoutKey() {
+    final String collectionName = "testWriteWithUpsertKeyInsertsDocumentsWithoutKey";
+    getCollection(collectionName).insertOne(new Document("country", "kept"));
+
+    // Documents without the upsert key must not replace the existing document missing it too.
+    List<Document> documents = new ArrayList<>(createDocuments(3));
+    documents.add(new Document("country", "new"));
+    documents.add(new Document("country", "new").append("scientist", null));
+    pipeline
+        .apply(Create.of(documents))
+        .apply(
+            MongoDbIO.write()
+                .withUri("mongodb://localhost:" + port)
+                .withDatabase(DATABASE)
+                .withCollection(collectionName)
+                .withUpsertKey("scientist"));
+
+    pipeline.run();
+
+    assertEquals(6, countElements(collectionName));
+    assertEquals(
+        1,
+        Iterators.size(
+            getCollection(collectionName).find(Filters.eq("country", "kept")).iterator()));
+    assertEquals(
+        2,
+        Iterators.size(
+            getCollection(collectionName).find(Filters.eq("country", "new")).iterator()));
+  }
+
+  @Test
+  public void testChangeStreamCheckpointMarkCoder() throws Exception {
+    Coder<MongoDbIO.ChangeStreamCheckpointMark> coder =
+        SerializableCoder.of(MongoDbIO.ChangeStreamCheckpointMark.class);
+    CoderProperties.coderDecodeEncodeEqual(
+        coder, new MongoDbIO.ChangeStreamCheckpointMark("{\"_data\": \"825E5A\"}", null));
+    CoderProperties.coderDecodeEncodeEqual(
+        coder, new MongoDbIO.ChangeStreamCheckpointMark(null, 6800000000000000001L));
+    CoderProperties.coderDecodeEncodeEqual(
+        coder, new MongoDbIO.ChangeStreamCheckpointMark(null, null));
+  }
+
+  @Test
+  public void testChangeStreamToDocument() {
+    Document fullDocument = new Document("_id", 1).append("scientist", "Einstein");
+    ChangeStreamDocument<Document> change =
+        new ChangeStreamDocument<>(
+            new BsonDocument("_data", new BsonString("825E5A")),
+            new MongoNamespace(DATABASE, "testChangeStreamToDocument"),
+            fullDocument,
+            new BsonDocument("_id", new BsonInt32(1)),
+            new BsonTimestamp(1, 0),
+            OperationType.UPDATE,
+            new UpdateDescription(
+                Collections.singletonList("country"),
+                new BsonDocument("scientist", new BsonString("Einstein"))));
+
+    Document document = MongoDbIO.toDocument(change);
+
+    assertEquals("update", document.get("operationType"));
+    assertEquals(new BsonDocument("_id", new BsonInt32(1)), document.get("documentKey"));
+    assertEquals(fullDocument, document.get("fullDocument"));
+    Document updateDescription = (Document) document.get("updateDescription");
+    assertEquals(
+        new BsonDocument("scientist", new BsonString("Einstein")),
+        updateDescription.get("updatedFields"));
+    assertEquals(Collections.singletonList("country"), updateDescription.get("removedFields"));
+  }
+
+  @Test
+  public void testChangeStreamToDocumentOfDelete() {
+    ChangeStreamDocument<Document> change =
+        new ChangeStreamDocument<>(
+            new BsonDocument("_data", new BsonString("825E5B")),
+            new MongoNamespace(DATABASE, "testChangeStreamToDocumentOfDelete"),
+            null,
+            new BsonDocument("_id", new BsonInt32(1)),
+            new BsonTimestamp(1, 0),
+            OperationType.DELETE,
+            null);
+
+    Document document = MongoDbIO.toDocument(change);
+
+    assertEquals("delete", document.get("operationType"));
+    assertEquals(new BsonDocument("_id", new BsonInt32(1)), document.get("documentKey"));
+    assertFalse(document.containsKey("fullDocument"));
+    assertFalse(document.containsKey("updateDescription"));
+  }
+
   private static List<Document> createDocuments(final int n) {
     final String[] scientists =
         new String[] {
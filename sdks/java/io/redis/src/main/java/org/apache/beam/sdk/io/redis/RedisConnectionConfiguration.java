@@ -44,6 +44,8 @@ public abstract class RedisConnectionConfiguration implements Serializable {
 
   abstract boolean ssl();
 
+  abstract boolean clusterMode();
+
   abstract Builder builder();
 
   @AutoValue.Builder
@@ -58,6 +60,8 @@ public abstract class RedisConnectionConfiguration implements Serializable {
 
     abstract Builder setSsl(boolean ssl);
 
+    abstract Builder setClusterMode(boolean clusterMode);
+
     abstract RedisConnectionConfiguration build();
   }
 
@@ -67,6 +71,7 @@ public abstract class RedisConnectionConfiguration implements Serializable {
         .setPort(Protocol.DEFAULT_PORT)
         .setTimeout(Protocol.DEFAULT_TIMEOUT)
         .setSsl(false)
+        .setClusterMode(false)
         .build();
   }
 
@@ -76,6 +81,7 @@ public abstract class RedisConnectionConfiguration implements Serializable {
         .setPort(port)
         .setTimeout(Protocol.DEFAULT_TIMEOUT)
         .setSsl(false)
+        .setClusterMode(false)
         .build();
   }
 
@@ -110,9 +116,23 @@ public abstract class RedisConnectionConfiguration implements Serializable {
     return builder().setSsl(true).build();
   }
 
+  /**
+   * Enable Redis Cluster mode. The host and port are then those of any node of the cluster, from
+   * which the masters serving each hash slot are discovered. Keys are read from and written to the
+   * master serving their hash slot, and the masters are requested in parallel.
+   */
+  public RedisConnectionConfiguration enableClusterMode() {
+    return builder().setClusterMode(true).build();
+  }
+
   /** Connect to the Redis instance. */
   public Jedis connect() {
-    Jedis jedis = new Jedis(host(), port(), timeout(), ssl());
+    return connect(host(), port());
+  }
+
+  /** Connect to a given node of the Redis instance, with the settings of this configuration. */
+  Jedis connect(String host, int port) {
+    Jedis jedis = new Jedis(host, port, timeout(), ssl());
     if (auth() != null) {
       jedis.auth(auth());
     }
@@ -125,5 +145,6 @@ public abstract class RedisConnectionConfiguration implements Serializable {
     builder.add(DisplayData.item("port", port()));
     builder.addIfNotNull(DisplayData.item("timeout", timeout()));
     builder.add(DisplayData.item("ssl", ssl()));
+    builder.add(DisplayData.item("clusterMode", clusterMode()));
   }
 }
@@ -20,13 +20,22 @@ package org.apache.beam.sdk.io.redis;
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
 
 import com.google.auto.value.AutoValue;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
 import javax.annotation.Nullable;
 import org.apache.beam.sdk.annotations.Experimental;
 import org.apache.beam.sdk.annotations.Experimental.Kind;
 import org.apache.beam.sdk.coders.KvCoder;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.transforms.AsyncLookup;
 import org.apache.beam.sdk.transforms.Create;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.Filter;
@@ -37,6 +46,7 @@ import org.apache.beam.sdk.transforms.SerializableFunctions;
 import org.apache.beam.sdk.transforms.View;
 import org.apache.beam.sdk.transforms.display.DisplayData;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PBegin;
 import org.apache.beam.sdk.values.PCollection;
@@ -44,8 +54,10 @@ import org.apache.beam.sdk.values.PCollectionView;
 import org.apache.beam.sdk.values.PDone;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ArrayListMultimap;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Multimap;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.ScanParams;
 import redis.clients.jedis.ScanResult;
 
@@ -105,6 +117,38 @@ import redis.clients.jedis.ScanResult;
  *   .apply(RedisIO.write().withEndpoint("::1", 6379))
  *
  * }</pre>
+ *
+ * <h3>Looking up values</h3>
+ *
+ * <p>{@link #lookup()} gets the values of keys for {@link AsyncLookup}, which enriches the elements
+ * of a {@link PCollection} with the values of their keys, with several lookups in flight at once:
+ *
+ * <pre>{@code
+ * PCollection<KV<Order, String>> ordersWithCustomers =
+ *   orders.apply(AsyncLookup.of(Order::getCustomerId, RedisIO.lookup().withEndpoint("::1", 6379)));
+ *
+ * }</pre>
+ *
+ * <h3>Batching and Redis Cluster</h3>
+ *
+ * <p>Keys are read and written in batches, which are sent on a pipeline and answered in the
+ * background while the next batches are prepared. {@code withMaxInflightBatches()} opens several
+ * connections to each Redis node, so that several batches are in flight at once. The commands on a
+ * key are always sent on the same connection, so they are applied in order.
+ *
+ * <p>With {@link RedisConnectionConfiguration#enableClusterMode()}, the masters of a Redis Cluster
+ * are discovered from the given node, and each key is routed to the master serving its hash slot,
+ * so that a bundle is read from or written to all the masters in parallel:
+ *
+ * <pre>{@code
+ * pipeline.apply(...)
+ *   .apply(RedisIO.write()
+ *     .withConnectionConfiguration(
+ *         RedisConnectionConfiguration.create("::1", 7000).enableClusterMode())
+ *     .withBatchSize(500)
+ *     .withMaxInflightBatches(4))
+ *
+ * }</pre>
  */
 @Experimental(Kind.SOURCE_SINK)
 public class RedisIO {
@@ -115,6 +159,7 @@ public class RedisIO {
         .setConnectionConfiguration(RedisConnectionConfiguration.create())
         .setKeyPattern("*")
         .setBatchSize(1000)
+        .setMaxInflightBatches(1)
         .setOutputParallelization(true)
         .build();
   }
@@ -127,6 +172,7 @@ public class RedisIO {
     return new AutoValue_RedisIO_ReadAll.Builder()
         .setConnectionConfiguration(RedisConnectionConfiguration.create())
         .setBatchSize(1000)
+        .setMaxInflightBatches(1)
         .setOutputParallelization(true)
         .build();
   }
@@ -136,9 +182,19 @@ public class RedisIO {
     return new AutoValue_RedisIO_Write.Builder()
         .setConnectionConfiguration(RedisConnectionConfiguration.create())
         .setMethod(Write.Method.APPEND)
+        .setBatchSize(1000)
+        .setMaxInflightBatches(1)
         .build();
   }
 
+  /**
+   * A {@link AsyncLookup.LookupFn} getting the values of keys, to enrich a {@link PCollection} with
+   * {@link AsyncLookup}.
+   */
+  public static Lookup lookup() {
+    return new Lookup(RedisConnectionConfiguration.create(), 1);
+  }
+
   private RedisIO() {}
 
   /** Implementation of {@link #read()}. */
@@ -153,6 +209,8 @@ public class RedisIO {
 
     abstract int batchSize();
 
+    abstract int maxInflightBatches();
+
     abstract boolean outputParallelization();
 
     abstract Builder toBuilder();
@@ -167,6 +225,8 @@ public class RedisIO {
 
       abstract Builder setBatchSize(int batchSize);
 
+      abstract Builder setMaxInflightBatches(int maxInflightBatches);
+
       abstract Builder setOutputParallelization(boolean outputParallelization);
 
       abstract Read build();
@@ -208,6 +268,16 @@ public class RedisIO {
       return toBuilder().setBatchSize(batchSize).build();
     }
 
+    /**
+     * Defines the number of connections to each Redis node, on which batches of keys are requested
+     * in parallel. The default is 1, with which the next batch of a node is prepared while the
+     * previous one is requested.
+     */
+    public Read withMaxInflightBatches(int maxInflightBatches) {
+      checkArgument(maxInflightBatches > 0, "maxInflightBatches should be > 0");
+      return toBuilder().setMaxInflightBatches(maxInflightBatches).build();
+    }
+
     /**
      * Whether to reshuffle the resulting PCollection so results are distributed to all workers. The
      * default is to parallelize and should only be changed if this is known to be unnecessary.
@@ -232,6 +302,7 @@ public class RedisIO {
               RedisIO.readAll()
                   .withConnectionConfiguration(connectionConfiguration())
                   .withBatchSize(batchSize())
+                  .withMaxInflightBatches(maxInflightBatches())
                   .withOutputParallelization(outputParallelization()));
     }
   }
@@ -246,6 +317,8 @@ public class RedisIO {
 
     abstract int batchSize();
 
+    abstract int maxInflightBatches();
+
     abstract boolean outputParallelization();
 
     abstract Builder toBuilder();
@@ -257,6 +330,8 @@ public class RedisIO {
 
       abstract Builder setBatchSize(int batchSize);
 
+      abstract Builder setMaxInflightBatches(int maxInflightBatches);
+
       abstract Builder setOutputParallelization(boolean outputParallelization);
 
       abstract ReadAll build();
@@ -293,6 +368,16 @@ public class RedisIO {
       return toBuilder().setBatchSize(batchSize).build();
     }
 
+    /**
+     * Defines the number of connections to each Redis node, on which batches of keys are requested
+     * in parallel. The default is 1, with which the next batch of a node is prepared while the
+     * previous one is requested.
+     */
+    public ReadAll withMaxInflightBatches(int maxInflightBatches) {
+      checkArgument(maxInflightBatches > 0, "maxInflightBatches should be > 0");
+      return toBuilder().setMaxInflightBatches(maxInflightBatches).build();
+    }
+
     /**
      * Whether to reshuffle the resulting PCollection so results are distributed to all workers. The
      * default is to parallelize and should only be changed if this is known to be unnecessary.
@@ -306,7 +391,9 @@ public class RedisIO {
       checkArgument(connectionConfiguration() != null, "withConnectionConfiguration() is required");
       PCollection<KV<String, String>> output =
           input
-              .apply(ParDo.of(new ReadFn(connectionConfiguration(), batchSize())))
+              .apply(
+                  ParDo.of(
+                      new ReadFn(connectionConfiguration(), batchSize(), maxInflightBatches())))
               .setCoder(KvCoder.of(StringUtf8Coder.of(), StringUtf8Coder.of()));
       if (outputParallelization()) {
         output = output.apply(new Reparallelize());
@@ -315,30 +402,22 @@ public class RedisIO {
     }
   }
 
-  private abstract static class BaseReadFn<T> extends DoFn<String, T> {
-    protected final RedisConnectionConfiguration connectionConfiguration;
+  /** A {@link DoFn} scanning the keys matching a pattern, on every master in cluster mode. */
+  private static class ReadKeysWithPattern extends DoFn<String, String> {
+    private final RedisConnectionConfiguration connectionConfiguration;
 
-    transient Jedis jedis;
+    private transient List<Jedis> masters;
 
-    BaseReadFn(RedisConnectionConfiguration connectionConfiguration) {
+    ReadKeysWithPattern(RedisConnectionConfiguration connectionConfiguration) {
       this.connectionConfiguration = connectionConfiguration;
     }
 
     @Setup
     public void setup() {
-      jedis = connectionConfiguration.connect();
-    }
-
-    @Teardown
-    public void teardown() {
-      jedis.close();
-    }
-  }
-
-  private static class ReadKeysWithPattern extends BaseReadFn<String> {
-
-    ReadKeysWithPattern(RedisConnectionConfiguration connectionConfiguration) {
-      super(connectionConfiguration);
+      masters = new ArrayList<>();
+      for (HostAndPort master : RedisPipelinedClient.getMasters(connectionConfiguration)) {
+        masters.add(connectionConfiguration.connect(master.getHost(), master.getPort()));
+      }
     }
 
     @ProcessElement
@@ -346,45 +425,81 @@ public class RedisIO {
       ScanParams scanParams = new ScanParams();
       scanParams.match(c.element());
 
-      String cursor = ScanParams.SCAN_POINTER_START;
-      boolean finished = false;
-      while (!finished) {
-        ScanResult<String> scanResult = jedis.scan(cursor, scanParams);
-        List<String> keys = scanResult.getResult();
-        for (String k : keys) {
-          c.output(k);
-        }
-        cursor = scanResult.getCursor();
-        if (cursor.equals(ScanParams.SCAN_POINTER_START)) {
-          finished = true;
+      for (Jedis jedis : masters) {
+        String cursor = ScanParams.SCAN_POINTER_START;
+        boolean finished = false;
+        while (!finished) {
+          ScanResult<String> scanResult = jedis.scan(cursor, scanParams);
+          List<String> keys = scanResult.getResult();
+          for (String k : keys) {
+            c.output(k);
+          }
+          cursor = scanResult.getCursor();
+          if (cursor.equals(ScanParams.SCAN_POINTER_START)) {
+            finished = true;
+          }
         }
       }
     }
+
+    @Teardown
+    public void teardown() {
+      for (Jedis jedis : masters) {
+        jedis.close();
+      }
+    }
   }
 
-  /** A {@link DoFn} requesting Redis server to get key/value pairs. */
-  private static class ReadFn extends BaseReadFn<KV<String, String>> {
-    @Nullable transient Multimap<BoundedWindow, String> bundles = null;
-    @Nullable AtomicInteger batchCount = null;
+  /**
+   * A {@link DoFn} requesting Redis server to get key/value pairs. The keys are batched by the
+   * connection they are routed to, and the values of a batch are output once the batch is answered,
+   * while the next batches are being prepared.
+   */
+  private static class ReadFn extends DoFn<String, KV<String, String>> {
+    private final RedisConnectionConfiguration connectionConfiguration;
     private final int batchSize;
+    private final int maxInflightBatches;
+
+    private transient RedisPipelinedClient client;
+    @Nullable private transient List<Multimap<BoundedWindow, String>> batches = null;
+    @Nullable private transient Deque<Future<Multimap<BoundedWindow, KV<String, String>>>> pending;
 
-    ReadFn(RedisConnectionConfiguration connectionConfiguration, int batchSize) {
-      super(connectionConfiguration);
+    ReadFn(
+        RedisConnectionConfiguration connectionConfiguration,
+        int batchSize,
+        int maxInflightBatches) {
+      this.connectionConfiguration = connectionConfiguration;
       this.batchSize = batchSize;
+      this.maxInflightBatches = maxInflightBatches;
+    }
+
+    @Setup
+    public void setup() {
+      client = new RedisPipelinedClient(connectionConfiguration, maxInflightBatches);
+      client.connect();
     }
 
     @StartBundle
     public void startBundle() {
-      bundles = ArrayListMultimap.create();
-      batchCount = new AtomicInteger();
+      client.reconnectIfStale();
+      batches = new ArrayList<>();
+      for (int i = 0; i < client.getLaneCount(); i++) {
+        batches.add(ArrayListMultimap.create());
+      }
+      pending = new ArrayDeque<>();
     }
 
     @ProcessElement
-    public void processElement(ProcessContext c, BoundedWindow window) {
+    public void processElement(ProcessContext c, BoundedWindow window) throws IOException {
       String key = c.element();
-      bundles.put(window, key);
-      if (batchCount.incrementAndGet() > getBatchSize()) {
-        Multimap<BoundedWindow, KV<String, String>> kvs = fetchAndFlush();
+      int lane = client.laneOf(key);
+      batches.get(lane).put(window, key);
+      if (batches.get(lane).size() >= getBatchSize()) {
+        fetch(lane);
+      }
+      while (!pending.isEmpty() && pending.peek().isDone()) {
+        Multimap<BoundedWindow, KV<String, String>> kvs =
+            RedisPipelinedClient.await(pending.poll());
         for (BoundedWindow w : kvs.keySet()) {
           for (KV<String, String> kv : kvs.get(w)) {
             c.output(kv);
@@ -394,33 +509,86 @@ public class RedisIO {
     }
 
     @FinishBundle
-    public void finishBundle(FinishBundleContext context) {
-      Multimap<BoundedWindow, KV<String, String>> kvs = fetchAndFlush();
-      for (BoundedWindow w : kvs.keySet()) {
-        for (KV<String, String> kv : kvs.get(w)) {
-          context.output(kv, w.maxTimestamp(), w);
+    public void finishBundle(FinishBundleContext context) throws IOException {
+      for (int lane = 0; lane < batches.size(); lane++) {
+        if (!batches.get(lane).isEmpty()) {
+          fetch(lane);
+        }
+      }
+      while (!pending.isEmpty()) {
+        Multimap<BoundedWindow, KV<String, String>> kvs =
+            RedisPipelinedClient.await(pending.poll());
+        for (BoundedWindow w : kvs.keySet()) {
+          for (KV<String, String> kv : kvs.get(w)) {
+            context.output(kv, w.maxTimestamp(), w);
+          }
         }
       }
     }
 
+    @Teardown
+    public void teardown() {
+      client.close();
+    }
+
     private int getBatchSize() {
       return batchSize;
     }
 
-    private Multimap<BoundedWindow, KV<String, String>> fetchAndFlush() {
+    private void fetch(int lane) throws IOException {
+      pending.add(client.submit(lane, new ReadBatch(batches.get(lane), client.isClusterMode())));
+      batches.set(lane, ArrayListMultimap.create());
+    }
+  }
+
+  /**
+   * Gets the values of a batch of keys. The keys are requested with a single MGET, or with one
+   * MGET per key in cluster mode, since the keys of an MGET must all have the same hash slot.
+   */
+  private static class ReadBatch
+      implements RedisPipelinedClient.Batch<Multimap<BoundedWindow, KV<String, String>>> {
+    private final Multimap<BoundedWindow, String> keys;
+    private final boolean clusterMode;
+    private final List<BoundedWindow> windows = new ArrayList<>();
+    private final List<String[]> requestedKeys = new ArrayList<>();
+    private final List<Response<List<String>>> responses = new ArrayList<>();
+
+    ReadBatch(Multimap<BoundedWindow, String> keys, boolean clusterMode) {
+      this.keys = keys;
+      this.clusterMode = clusterMode;
+    }
+
+    @Override
+    public void send(Pipeline pipeline) {
+      for (BoundedWindow w : keys.keySet()) {
+        if (clusterMode) {
+          for (String key : keys.get(w)) {
+            request(pipeline, w, new String[] {key});
+          }
+        } else {
+          request(pipeline, w, keys.get(w).toArray(new String[0]));
+        }
+      }
+    }
+
+    private void request(Pipeline pipeline, BoundedWindow window, String[] windowKeys) {
+      windows.add(window);
+      requestedKeys.add(windowKeys);
+      responses.add(pipeline.mget(windowKeys));
+    }
+
+    @Override
+    public Multimap<BoundedWindow, KV<String, String>> result() {
       Multimap<BoundedWindow, KV<String, String>> kvs = ArrayListMultimap.create();
-      for (BoundedWindow w : bundles.keySet()) {
-        String[] keys = new String[bundles.get(w).size()];
-        bundles.get(w).toArray(keys);
-        List<String> results = jedis.mget(keys);
+      for (int request = 0; request < responses.size(); request++) {
+        String[] windowKeys = requestedKeys.get(request);
+        List<String> results = responses.get(request).get();
         for (int i = 0; i < results.size(); i++) {
           if (results.get(i) != null) {
-            kvs.put(w, KV.of(keys[i], results.get(i)));
+            kvs.put(windows.get(request), KV.of(windowKeys[i], results.get(i)));
           }
         }
       }
-      bundles = ArrayListMultimap.create();
-      batchCount.set(0);
       return kvs;
     }
   }
@@ -450,6 +618,98 @@ public class RedisIO {
     }
   }
 
+  /**
+   * Implementation of {@link #lookup()}. The keys of a lookup are requested on the connections they
+   * are routed to, in parallel, with the batches of the other lookups in flight.
+   *
+   * <p>Each {@link DoFn} instance of {@link AsyncLookup} deserializes its own {@code Lookup}, which
+   * owns the client it connects in {@link #setup()} and closes in {@link #teardown()}.
+   */
+  public static class Lookup implements AsyncLookup.LookupFn<String, String> {
+    private final RedisConnectionConfiguration connectionConfiguration;
+    private final int maxInflightBatches;
+
+    @Nullable private transient RedisPipelinedClient client;
+
+    private Lookup(RedisConnectionConfiguration connectionConfiguration, int maxInflightBatches) {
+      this.connectionConfiguration = connectionConfiguration;
+      this.maxInflightBatches = maxInflightBatches;
+    }
+
+    public Lookup withEndpoint(String host, int port) {
+      checkArgument(host != null, "host can not be null");
+      checkArgument(port > 0, "port can not be negative or 0");
+      return new Lookup(connectionConfiguration.withHost(host).withPort(port), maxInflightBatches);
+    }
+
+    public Lookup withAuth(String auth) {
+      checkArgument(auth != null, "auth can not be null");
+      return new Lookup(connectionConfiguration.withAuth(auth), maxInflightBatches);
+    }
+
+    public Lookup withTimeout(int timeout) {
+      checkArgument(timeout >= 0, "timeout can not be negative");
+      return new Lookup(connectionConfiguration.withTimeout(timeout), maxInflightBatches);
+    }
+
+    public Lookup withConnectionConfiguration(RedisConnectionConfiguration connection) {
+      checkArgument(connection != null, "connection can not be null");
+      return new Lookup(connection, maxInflightBatches);
+    }
+
+    /** Defines the number of connections to each Redis node. The default is 1. */
+    public Lookup withMaxInflightBatches(int maxInflightBatches) {
+      checkArgument(maxInflightBatches > 0, "maxInflightBatches should be > 0");
+      return new Lookup(connectionConfiguration, maxInflightBatches);
+    }
+
+    @Override
+    public void setup() {
+      client = new RedisPipelinedClient(connectionConfiguration, maxInflightBatches);
+      client.connect();
+    }
+
+    @Override
+    public CompletionStage<Map<String, String>> lookup(List<String> keys) throws IOException {
+      client.reconnectIfStale();
+      List<Multimap<BoundedWindow, String>> batches = new ArrayList<>();
+      for (int i = 0; i < client.getLaneCount(); i++) {
+        batches.add(ArrayListMultimap.create());
+      }
+      for (String key : keys) {
+        batches.get(client.laneOf(key)).put(GlobalWindow.INSTANCE, key);
+      }
+      List<CompletableFuture<Multimap<BoundedWindow, KV<String, String>>>> results =
+          new ArrayList<>();
+      for (int lane = 0; lane < batches.size(); lane++) {
+        if (!batches.get(lane).isEmpty()) {
+          results.add(
+              client.submitAsync(lane, new ReadBatch(batches.get(lane), client.isClusterMode())));
+        }
+      }
+      return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+          .thenApply(
+              done -> {
+                Map<String, String> values = new HashMap<>();
+                for (CompletableFuture<Multimap<BoundedWindow, KV<String, String>>> result :
+                    results) {
+                  for (KV<String, String> kv : result.join().values()) {
+                    values.put(kv.getKey(), kv.getValue());
+                  }
+                }
+                return values;
+              });
+    }
+
+    @Override
+    public void teardown() {
+      if (client != null) {
+        client.close();
+        client = null;
+      }
+    }
+  }
+
   /** A {@link PTransform} to write to a Redis server. */
   @AutoValue
   public abstract static class Write extends PTransform<PCollection<KV<String, String>>, PDone> {
@@ -502,6 +762,10 @@ public class RedisIO {
     @Nullable
     abstract Long expireTime();
 
+    abstract int batchSize();
+
+    abstract int maxInflightBatches();
+
     abstract Builder toBuilder();
 
     @AutoValue.Builder
@@ -514,6 +778,10 @@ public class RedisIO {
 
       abstract Builder setExpireTime(Long expireTimeMillis);
 
+      abstract Builder setBatchSize(int batchSize);
+
+      abstract Builder setMaxInflightBatches(int maxInflightBatches);
+
       abstract Write build();
     }
 
@@ -555,6 +823,26 @@ public class RedisIO {
       return toBuilder().setExpireTime(expireTimeMillis).build();
     }
 
+    /**
+     * Defines the number of records sent to a Redis connection in a single pipeline. The default
+     * is 1000.
+     */
+    public Write withBatchSize(int batchSize) {
+      checkArgument(batchSize > 0, "batchSize should be > 0");
+      return toBuilder().setBatchSize(batchSize).build();
+    }
+
+    /**
+     * Defines the number of connections to each Redis node, on which batches of records are sent
+     * in parallel. The records of a key are always sent on the same connection, so that they are
+     * applied in order. The default is 1, with which the next batch of a node is prepared while the
+     * previous one is sent.
+     */
+    public Write withMaxInflightBatches(int maxInflightBatches) {
+      checkArgument(maxInflightBatches > 0, "maxInflightBatches should be > 0");
+      return toBuilder().setMaxInflightBatches(maxInflightBatches).build();
+    }
+
     @Override
     public PDone expand(PCollection<KV<String, String>> input) {
       checkArgument(connectionConfiguration() != null, "withConnectionConfiguration() is required");
@@ -563,16 +851,17 @@ public class RedisIO {
       return PDone.in(input.getPipeline());
     }
 
+    /**
+     * Writes the records in batches per connection, which are sent without MULTI/EXEC. The batches
+     * of the different connections are sent in parallel, while the next batches are prepared.
+     */
     private static class WriteFn extends DoFn<KV<String, String>, Void> {
 
-      private static final int DEFAULT_BATCH_SIZE = 1000;
-
       private final Write spec;
 
-      private transient Jedis jedis;
-      private transient Pipeline pipeline;
-
-      private int batchCount;
+      private transient RedisPipelinedClient client;
+      private transient List<List<KV<String, String>>> batches;
+      private transient Deque<Future<Void>> pendingBatches;
 
       public WriteFn(Write spec) {
         this.spec = spec;
@@ -580,63 +869,91 @@ public class RedisIO {
 
       @Setup
       public void setup() {
-        jedis = spec.connectionConfiguration().connect();
+        client =
+            new RedisPipelinedClient(spec.connectionConfiguration(), spec.maxInflightBatches());
+        client.connect();
       }
 
       @StartBundle
       public void startBundle() {
-        pipeline = jedis.pipelined();
-        pipeline.multi();
-        batchCount = 0;
+        client.reconnectIfStale();
+        batches = new ArrayList<>();
+        for (int i = 0; i < client.getLaneCount(); i++) {
+          batches.add(new ArrayList<>());
+        }
+        pendingBatches = new ArrayDeque<>();
       }
 
       @ProcessElement
-      public void processElement(ProcessContext c) {
+      public void processElement(ProcessContext c) throws IOException {
         KV<String, String> record = c.element();
 
-        writeRecord(record);
-
-        batchCount++;
+        int lane = client.laneOf(record.getKey());
+        List<KV<String, String>> batch = batches.get(lane);
+        batch.add(record);
 
-        if (batchCount >= DEFAULT_BATCH_SIZE) {
-          pipeline.exec();
-          pipeline.sync();
-          pipeline.multi();
-          batchCount = 0;
+        if (batch.size() >= spec.batchSize()) {
+          flush(lane);
+        }
+        while (!pendingBatches.isEmpty() && pendingBatches.peek().isDone()) {
+          RedisPipelinedClient.await(pendingBatches.poll());
         }
       }
 
-      private void writeRecord(KV<String, String> record) {
+      private void flush(int lane) throws IOException {
+        List<KV<String, String>> batch = batches.get(lane);
+        batches.set(lane, new ArrayList<>());
+        pendingBatches.add(
+            client.submit(
+                lane,
+                new RedisPipelinedClient.Batch<Void>() {
+                  @Override
+                  public void send(Pipeline pipeline) {
+                    for (KV<String, String> record : batch) {
+                      writeRecord(pipeline, record);
+                    }
+                  }
+
+                  @Override
+                  public Void result() {
+                    return null;
+                  }
+                }));
+      }
+
+      private void writeRecord(Pipeline pipeline, KV<String, String> record) {
         Method method = spec.method();
         Long expireTime = spec.expireTime();
 
         if (Method.APPEND == method) {
-          writeUsingAppendCommand(record, expireTime);
+          writeUsingAppendCommand(pipeline, record, expireTime);
         } else if (Method.SET == method) {
-          writeUsingSetCommand(record, expireTime);
+          writeUsingSetCommand(pipeline, record, expireTime);
         } else if (Method.LPUSH == method || Method.RPUSH == method) {
-          writeUsingListCommand(record, method, expireTime);
+          writeUsingListCommand(pipeline, record, method, expireTime);
         } else if (Method.SADD == method) {
-          writeUsingSaddCommand(record, expireTime);
+          writeUsingSaddCommand(pipeline, record, expireTime);
         } else if (Method.PFADD == method) {
-          writeUsingHLLCommand(record, expireTime);
+          writeUsingHLLCommand(pipeline, record, expireTime);
         } else if (Method.INCRBY == method) {
-          writeUsingIncrBy(record);
+          writeUsingIncrBy(pipeline, record);
         } else if (Method.DECRBY == method) {
-          writeUsingDecrBy(record);
+          writeUsingDecrBy(pipeline, record);
         }
       }
 
-      private void writeUsingAppendCommand(KV<String, String> record, Long expireTime) {
+      private void writeUsingAppendCommand(
+          Pipeline pipeline, KV<String, String> record, Long expireTime) {
         String key = record.getKey();
         String value = record.getValue();
 
         pipeline.append(key, value);
 
-        setExpireTimeWhenRequired(key, expireTime);
+        setExpireTimeWhenRequired(pipeline, key, expireTime);
       }
 
-      private void writeUsingSetCommand(KV<String, String> record, Long expireTime) {
+      private void writeUsingSetCommand(
+          Pipeline pipeline, KV<String, String> record, Long expireTime) {
         String key = record.getKey();
         String value = record.getValue();
 
@@ -648,7 +965,7 @@ public class RedisIO {
       }
 
       private void writeUsingListCommand(
-          KV<String, String> record, Method method, Long expireTime) {
+          Pipeline pipeline, KV<String, String> record, Method method, Long expireTime) {
 
         String key = record.getKey();
         String value = record.getValue();
@@ -659,55 +976,60 @@ public class RedisIO {
           pipeline.rpush(key, value);
         }
 
-        setExpireTimeWhenRequired(key, expireTime);
+        setExpireTimeWhenRequired(pipeline, key, expireTime);
       }
 
-      private void writeUsingSaddCommand(KV<String, String> record, Long expireTime) {
+      private void writeUsingSaddCommand(
+          Pipeline pipeline, KV<String, String> record, Long expireTime) {
         String key = record.getKey();
         String value = record.getValue();
 
         pipeline.sadd(key, value);
       }
 
-      private void writeUsingHLLCommand(KV<String, String> record, Long expireTime) {
+      private void writeUsingHLLCommand(
+          Pipeline pipeline, KV<String, String> record, Long expireTime) {
         String key = record.getKey();
         String value = record.getValue();
 
         pipeline.pfadd(key, value);
       }
 
-      private void writeUsingIncrBy(KV<String, String> record) {
+      private void writeUsingIncrBy(Pipeline pipeline, KV<String, String> record) {
         String key = record.getKey();
         String value = record.getValue();
         long inc = Long.parseLong(value);
         pipeline.incrBy(key, inc);
       }
 
-      private void writeUsingDecrBy(KV<String, String> record) {
+      private void writeUsingDecrBy(Pipeline pipeline, KV<String, String> record) {
         String key = record.getKey();
         String value = record.getValue();
         long decr = Long.parseLong(value);
         pipeline.decrBy(key, decr);
       }
 
-      private void setExpireTimeWhenRequired(String key, Long expireTime) {
+      private void setExpireTimeWhenRequired(Pipeline pipeline, String key, Long expireTime) {
         if (expireTime != null) {
           pipeline.pexpire(key, expireTime);
         }
       }
 
       @FinishBundle
-      public void finishBundle() {
-        if (pipeline.isInMulti()) {
-          pipeline.exec();
-          pipeline.sync();
+      public void finishBundle() throws IOException {
+        for (int lane = 0; lane < batches.size(); lane++) {
+          if (!batches.get(lane).isEmpty()) {
+            flush(lane);
+          }
+        }
+        while (!pendingBatches.isEmpty()) {
+          RedisPipelinedClient.await(pendingBatches.poll());
         }
-        batchCount = 0;
       }
 
       @Teardown
       public void teardown() {
-        jedis.close();
+        client.close();
       }
     }
   }
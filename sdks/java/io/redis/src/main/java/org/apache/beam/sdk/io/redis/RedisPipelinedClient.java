@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.io.redis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+import redis.clients.jedis.util.JedisClusterCRC16;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Sends batches of commands to Redis on pipelines that are synced in the background, so that the
+ * caller prepares the next batches while the previous ones are in flight.
+ *
+ * <p>Keys are routed by their hash slot. In cluster mode each master of the cluster has its own
+ * connections, and the batches of different masters are sent in parallel. Each master has {@code
+ * connectionsPerNode} connections, or lanes, which each send one batch at a time. A key is always
+ * sent on the same lane, so that the commands on a key are applied in order.
+ */
+class RedisPipelinedClient implements Closeable {
+
+  private static final int HASH_SLOTS = 16384;
+
+  private final RedisConnectionConfiguration configuration;
+  private final int connectionsPerNode;
+  private final List<Lane> lanes = new ArrayList<>();
+  @Nullable private int[] slotNodes; // The node serving each hash slot, in cluster mode.
+  private volatile boolean stale = false;
+
+  /** The commands of a batch, which are sent on a pipeline and answered once it is synced. */
+  interface Batch<T> {
+    void send(Pipeline pipeline);
+
+    T result();
+  }
+
+  RedisPipelinedClient(RedisConnectionConfiguration configuration, int connectionsPerNode) {
+    this.configuration = configuration;
+    this.connectionsPerNode = connectionsPerNode;
+  }
+
+  /** Connects to the Redis instance, or to all the masters of the cluster in cluster mode. */
+  void connect() {
+    if (!configuration.clusterMode()) {
+      addLanes(new HostAndPort(configuration.host(), configuration.port()));
+      return;
+    }
+    slotNodes = new int[HASH_SLOTS];
+    Arrays.fill(slotNodes, -1);
+    int node = 0;
+    for (Map.Entry<HostAndPort, List<int[]>> master : getSlotsByMaster(configuration).entrySet()) {
+      addLanes(master.getKey());
+      for (int[] range : master.getValue()) {
+        Arrays.fill(slotNodes, range[0], range[1] + 1, node);
+      }
+      node++;
+    }
+  }
+
+  /**
+   * Reconnects if a batch was redirected, lost its connection or was refused by a node that is no
+   * longer a master, since the connections or the slots of the cluster may have changed.
+   */
+  void reconnectIfStale() {
+    if (stale) {
+      close();
+      connect();
+      stale = false;
+    }
+  }
+
+  boolean isClusterMode() {
+    return configuration.clusterMode();
+  }
+
+  int getLaneCount() {
+    return lanes.size();
+  }
+
+  /** Returns the lane on which the commands on the key are sent. */
+  int laneOf(String key) {
+    int slot = JedisClusterCRC16.getSlot(key);
+    int node = 0;
+    if (slotNodes != null) {
+      node = slotNodes[slot];
+      if (node < 0) {
+        throw new IllegalStateException(
+            String.format("Slot %s of key %s is not served by the cluster", slot, key));
+      }
+    }
+    return node * connectionsPerNode + slot % connectionsPerNode;
+  }
+
+  /**
+   * Sends the batch on the lane, once the previous batch of the lane has been answered. Returns
+   * the result of the batch, which fails if the batch was redirected to another node.
+   */
+  <T> CompletableFuture<T> submit(int lane, Batch<T> batch) throws IOException {
+    Lane target = lanes.get(lane);
+    if (target.last != null) {
+      await(target.last);
+    }
+    return submitAsync(lane, batch);
+  }
+
+  /**
+   * Sends the batch on the lane after the previous batch of the lane, without waiting for it.
+   * Returns the result of the batch, which fails if the batch was redirected to another node, and
+   * does not depend on the result of the previous batch.
+   */
+  <T> CompletableFuture<T> submitAsync(int lane, Batch<T> batch) {
+    Lane target = lanes.get(lane);
+    CompletableFuture<?> previous =
+        target.last != null ? target.last : CompletableFuture.completedFuture(null);
+    CompletableFuture<T> result =
+        previous
+            .handle((value, failure) -> null)
+            .thenApplyAsync(ignored -> sync(target, batch), target.executor);
+    target.last = result;
+    return result;
+  }
+
+  private <T> T sync(Lane target, Batch<T> batch) {
+    List<Object> responses;
+    try {
+      Pipeline pipeline = target.jedis.pipelined();
+      batch.send(pipeline);
+      responses = pipeline.syncAndReturnAll();
+    } catch (JedisConnectionException e) {
+      // The connection is broken or timed out, for instance as the node failed over.
+      stale = true;
+      throw e;
+    }
+    for (Object response : responses) {
+      if (response instanceof JedisRedirectionException || isFailoverError(response)) {
+        stale = true;
+        throw (JedisDataException) response;
+      }
+    }
+    return batch.result();
+  }
+
+  /** Whether the response is the error of a node that was demoted or lost its cluster. */
+  private static boolean isFailoverError(Object response) {
+    if (!(response instanceof JedisDataException)) {
+      return false;
+    }
+    String message = ((JedisDataException) response).getMessage();
+    return message != null && (message.startsWith("READONLY") || message.startsWith("CLUSTERDOWN"));
+  }
+
+  /** Waits for the result of a batch, rethrowing its failure. */
+  static <T> T await(Future<T> result) throws IOException {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a batch to be sent to Redis");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  @Override
+  public void close() {
+    for (Lane lane : lanes) {
+      lane.executor.shutdown();
+      try {
+        lane.jedis.close();
+      } catch (JedisConnectionException e) {
+        // The connection is already broken.
+      }
+    }
+    lanes.clear();
+    slotNodes = null;
+  }
+
+  /** Returns the masters of the Redis instance, which is only one node when not in cluster mode. */
+  static List<HostAndPort> getMasters(RedisConnectionConfiguration configuration) {
+    if (!configuration.clusterMode()) {
+      return Arrays.asList(new HostAndPort(configuration.host(), configuration.port()));
+    }
+    return new ArrayList<>(getSlotsByMaster(configuration).keySet());
+  }
+
+  /** Returns the ranges of hash slots served by each master of the cluster, from CLUSTER SLOTS. */
+  @SuppressWarnings("unchecked")
+  private static Map<HostAndPort, List<int[]>> getSlotsByMaster(
+      RedisConnectionConfiguration configuration) {
+    Map<HostAndPort, List<int[]>> slotsByMaster = new LinkedHashMap<>();
+    try (Jedis jedis = configuration.connect()) {
+      for (Object slots : jedis.clusterSlots()) {
+        // [start slot, end slot, [master host, master port, ...], replicas...]
+        List<Object> range = (List<Object>) slots;
+        List<Object> master = (List<Object>) range.get(2);
+        String host = SafeEncoder.encode((byte[]) master.get(0));
+        HostAndPort hostAndPort =
+            new HostAndPort(
+                host.isEmpty() ? configuration.host() : host,
+                ((Long) master.get(1)).intValue());
+        slotsByMaster
+            .computeIfAbsent(hostAndPort, k -> new ArrayList<>())
+            .add(new int[] {((Long) range.get(0)).intValue(), ((Long) range.get(1)).intValue()});
+      }
+    }
+    return slotsByMaster;
+  }
+
+  private void addLanes(HostAndPort node) {
+    for (int i = 0; i < connectionsPerNode; i++) {
+      lanes.add(new Lane(configuration.connect(node.getHost(), node.getPort())));
+    }
+  }
+
+  /** A connection to a node, with the thread syncing its pipelines. */
+  private static class Lane {
+    private final Jedis jedis;
+    private final ExecutorService executor;
+    @Nullable private CompletableFuture<?> last;
+
+    Lane(Jedis jedis) {
+      this.jedis = jedis;
+      this.executor =
+          Executors.newSingleThreadExecutor(
+              new ThreadFactoryBuilder().setDaemon(true).setNameFormat("RedisIO-%d").build());
+    }
+  }
+}
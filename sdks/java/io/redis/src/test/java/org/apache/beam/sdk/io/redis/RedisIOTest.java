@@ -18,16 +18,29 @@
 package org.apache.beam.sdk.io.redis;
 
 import static org.junit.Assert.assertEquals;
-
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import javax.annotation.Nullable;
 import org.apache.beam.sdk.io.common.NetworkTestHelper;
 import org.apache.beam.sdk.io.redis.RedisIO.Write.Method;
 import org.apache.beam.sdk.testing.PAssert;
 import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.AsyncLookup;
 import org.apache.beam.sdk.transforms.Count;
 import org.apache.beam.sdk.transforms.Create;
 import org.apache.beam.sdk.values.KV;
@@ -39,6 +52,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
 import redis.embedded.RedisServer;
 
 /** Test on the Redis IO. */
@@ -84,6 +100,176 @@ public class RedisIOTest {
     p.run();
   }
 
+  @Test
+  public void testReadWithMaxInflightBatches() {
+    List<KV<String, String>> data = buildIncrementalData("inflightread", 100);
+    data.forEach(kv -> client.set(kv.getKey(), kv.getValue()));
+
+    PCollection<KV<String, String>> read =
+        p.apply(
+            "Read",
+            RedisIO.read()
+                .withEndpoint(REDIS_HOST, port)
+                .withKeyPattern("inflightread*")
+                .withBatchSize(7)
+                .withMaxInflightBatches(3));
+    PAssert.that(read).containsInAnyOrder(data);
+    p.run();
+  }
+
+  @Test
+  public void testLookup() {
+    List<KV<String, String>> data = buildIncrementalData("lookup", 10);
+    data.forEach(kv -> client.set(kv.getKey(), kv.getValue()));
+
+    PCollection<KV<String, String>> enriched =
+        p.apply(Create.of("lookup1", "lookup2", "lookup2", "missing"))
+            .apply(
+                AsyncLookup.of(
+                        (String key) -> key,
+                        RedisIO.lookup().withEndpoint(REDIS_HOST, port).withMaxInflightBatches(2))
+                    .withBatchSize(2));
+    PAssert.that(enriched)
+        .containsInAnyOrder(KV.of("lookup1", "1"), KV.of("lookup2", "2"), KV.of("lookup2", "2"));
+    p.run();
+  }
+
+  /** Tests that a lookup returns without waiting for the batches in flight on its lane. */
+  @Test(timeout = 30_000)
+  public void testLookupDoesNotWaitForBatchesInFlight() throws Exception {
+    CountDownLatch answer = new CountDownLatch(1);
+    try (ServerSocket slowServer = new ServerSocket(0)) {
+      // a server answering the MGET of both lookups only once released
+      Thread server =
+          new Thread(
+              () -> {
+                try (Socket socket = slowServer.accept()) {
+                  answer.await();
+                  OutputStream out = socket.getOutputStream();
+                  out.write("*1\r\n$1\r\n1\r\n*1\r\n$1\r\n2\r\n".getBytes(StandardCharsets.UTF_8));
+                  out.flush();
+                  InputStream in = socket.getInputStream();
+                  while (in.read() != -1) {
+                    // until the client closes the connection
+                  }
+                } catch (Exception e) {
+                  throw new RuntimeException(e);
+                }
+              });
+      server.setDaemon(true);
+      server.start();
+
+      RedisIO.Lookup lookup = RedisIO.lookup().withEndpoint(REDIS_HOST, slowServer.getLocalPort());
+      lookup.setup();
+      try {
+        CompletableFuture<Map<String, String>> first =
+            lookup.lookup(Collections.singletonList("first")).toCompletableFuture();
+        CompletableFuture<Map<String, String>> second =
+            lookup.lookup(Collections.singletonList("second")).toCompletableFuture();
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+
+        answer.countDown();
+        assertEquals(Collections.singletonMap("first", "1"), first.get());
+        assertEquals(Collections.singletonMap("second", "2"), second.get());
+      } finally {
+        lookup.teardown();
+      }
+      server.join();
+    }
+  }
+
+  @Test
+  public void testReadWithClusterMode() throws Exception {
+    List<KV<String, String>> data = buildIncrementalData("clusterread", 10);
+    data.forEach(kv -> client.set(kv.getKey(), kv.getValue()));
+
+    try (ServerSocket seed = startClusterSeed()) {
+      PCollection<KV<String, String>> read =
+          p.apply(
+              "Read",
+              RedisIO.read()
+                  .withConnectionConfiguration(
+                      RedisConnectionConfiguration.create(REDIS_HOST, seed.getLocalPort())
+                          .enableClusterMode())
+                  .withKeyPattern("clusterread*")
+                  .withBatchSize(3));
+      PAssert.that(read).containsInAnyOrder(data);
+      p.run();
+    }
+  }
+
+  @Test
+  public void testWriteWithClusterMode() throws Exception {
+    List<KV<String, String>> data = buildIncrementalData("clusterwrite", 10);
+
+    try (ServerSocket seed = startClusterSeed()) {
+      p.apply(Create.of(data))
+          .apply(
+              RedisIO.write()
+                  .withConnectionConfiguration(
+                      RedisConnectionConfiguration.create(REDIS_HOST, seed.getLocalPort())
+                          .enableClusterMode())
+                  .withBatchSize(3)
+                  .withMaxInflightBatches(2));
+      p.run();
+    }
+
+    for (KV<String, String> kv : data) {
+      assertEquals(kv.getValue(), client.get(kv.getKey()));
+    }
+  }
+
+  /** Tests that the client reconnects before the next batch once a connection is lost. */
+  @Test(timeout = 30_000)
+  public void testReconnectsAfterConnectionError() throws Exception {
+    try (ServerSocket flakyServer = new ServerSocket(0)) {
+      // a server dropping the first connection, then answering the GET on the next one
+      Thread server =
+          new Thread(
+              () -> {
+                try {
+                  try (Socket dropped = flakyServer.accept()) {
+                    dropped.getInputStream().read();
+                  }
+                  try (Socket socket = flakyServer.accept()) {
+                    InputStream in = socket.getInputStream();
+                    in.read();
+                    OutputStream out = socket.getOutputStream();
+                    out.write("$5\r\nvalue\r\n".getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    while (in.read() != -1) {
+                      // until the client closes the connection
+                    }
+                  }
+                } catch (Exception e) {
+                  throw new RuntimeException(e);
+                }
+              });
+      server.setDaemon(true);
+      server.start();
+
+      RedisPipelinedClient pipelinedClient =
+          new RedisPipelinedClient(
+              RedisConnectionConfiguration.create(REDIS_HOST, flakyServer.getLocalPort()), 1);
+      pipelinedClient.connect();
+      try {
+        try {
+          RedisPipelinedClient.await(pipelinedClient.submit(0, new GetBatch("key")));
+          fail("Expected the batch to fail on the dropped connection");
+        } catch (JedisConnectionException e) {
+          // expected
+        }
+        pipelinedClient.reconnectIfStale();
+        assertEquals(
+            "value", RedisPipelinedClient.await(pipelinedClient.submit(0, new GetBatch("key"))));
+      } finally {
+        pipelinedClient.close();
+      }
+      server.join();
+    }
+  }
+
   @Test
   public void testReadWithKeyPattern() {
     List<KV<String, String>> data = buildIncrementalData("pattern", 10);
@@ -145,6 +331,33 @@ public class RedisIOTest {
     assertEquals(value + newValue, String.join("", values));
   }
 
+  @Test
+  public void testWriteWithMaxInflightBatches() {
+    String key = "testWriteWithMaxInflightBatches";
+    List<String> values = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      values.add(String.valueOf(i));
+    }
+    List<KV<String, String>> data = buildConstantKeyList(key, values);
+    data.addAll(buildIncrementalData("inflightwrite", 100));
+
+    PCollection<KV<String, String>> write = p.apply(Create.of(data));
+    write.apply(
+        RedisIO.write()
+            .withEndpoint(REDIS_HOST, port)
+            .withMethod(Method.RPUSH)
+            .withBatchSize(7)
+            .withMaxInflightBatches(3));
+    p.run();
+
+    List<String> pushed = client.lrange(key, 0, -1);
+    assertEquals(new HashSet<>(values), new HashSet<>(pushed));
+    assertEquals(values.size(), pushed.size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals(String.valueOf(i), client.lindex("inflightwrite" + i, 0));
+    }
+  }
+
   @Test
   public void testWriteWithMethodSAdd() {
     String key = "testWriteWithMethodSAdd";
@@ -205,6 +418,59 @@ public class RedisIOTest {
     assertEquals(-1, count);
   }
 
+  /**
+   * Starts a fake node of a Redis Cluster, which answers CLUSTER SLOTS with all the slots served by
+   * the embedded Redis server.
+   */
+  private static ServerSocket startClusterSeed() throws Exception {
+    ServerSocket seed = new ServerSocket(0);
+    String slots =
+        String.format(
+            "*1\r\n*3\r\n:0\r\n:16383\r\n*2\r\n$%d\r\n%s\r\n:%d\r\n",
+            REDIS_HOST.length(), REDIS_HOST, port);
+    Thread server =
+        new Thread(
+            () -> {
+              while (!seed.isClosed()) {
+                try (Socket socket = seed.accept()) {
+                  InputStream in = socket.getInputStream();
+                  in.read();
+                  OutputStream out = socket.getOutputStream();
+                  out.write(slots.getBytes(StandardCharsets.UTF_8));
+                  out.flush();
+                  while (in.read() != -1) {
+                    // until the client closes the connection
+                  }
+                } catch (Exception e) {
+                  // the seed was closed, or a client went away
+                }
+              }
+            });
+    server.setDaemon(true);
+    server.start();
+    return seed;
+  }
+
+  /** A batch of a single GET. */
+  private static class GetBatch implements RedisPipelinedClient.Batch<String> {
+    private final String key;
+    @Nullable private Response<String> response;
+
+    GetBatch(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public void send(Pipeline pipeline) {
+      response = pipeline.get(key);
+    }
+
+    @Override
+    public String result() {
+      return response.get();
+    }
+  }
+
   private static List<KV<String, String>> buildConstantKeyList(String key, List<String> values) {
     List<KV<String, String>> data = new ArrayList<>();
     for (String value : values) {